@@ -67,6 +67,16 @@ public class KernelAnalysisModule extends TmfStateSystemAnalysisModule {
             // LttngStrings.SYSCALL_PREFIX
             // );
 
+    /**
+     * System property to build the history in several shards, each one with
+     * its own thread. The sharded history is stored in separate files, so the
+     * files built without it are not reused.
+     */
+    private static final String SHARDED_HISTORY_PROPERTY = "org.eclipse.tracecompass.analysis.os.linux.core.kernel.shardedHistory"; //$NON-NLS-1$
+    private static final String SHARDED_PREFIX = "sharded-"; //$NON-NLS-1$
+
+    private final boolean fSharded = Boolean.getBoolean(SHARDED_HISTORY_PROPERTY);
+
     /** The requirements as an immutable set */
     private static final Set<TmfAbstractAnalysisRequirement> REQUIREMENTS;
 
@@ -97,6 +107,21 @@ public class KernelAnalysisModule extends TmfStateSystemAnalysisModule {
         return new KernelStateProvider(trace, layout);
     }
 
+    @Override
+    protected StateSystemBackendType getBackendType() {
+        /*
+         * The kernel state system has a lot of attributes, its history can be
+         * built with several threads.
+         */
+        return fSharded ? StateSystemBackendType.SHARDED : super.getBackendType();
+    }
+
+    @Override
+    protected String getSsFileName() {
+        /* Do not reopen the files of one layout with the other */
+        return fSharded ? SHARDED_PREFIX + super.getSsFileName() : super.getSsFileName();
+    }
+
     @Override
     protected String getFullHelpText() {
         return NonNullUtils.nullToEmptyString(Messages.LttngKernelAnalysisModule_Help);
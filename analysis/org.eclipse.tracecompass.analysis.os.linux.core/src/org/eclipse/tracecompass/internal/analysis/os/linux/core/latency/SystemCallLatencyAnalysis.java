@@ -11,6 +11,8 @@ package org.eclipse.tracecompass.internal.analysis.os.linux.core.latency;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.Collection;
@@ -29,6 +31,7 @@ import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEven
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
 import org.eclipse.tracecompass.analysis.timing.core.segmentstore.AbstractSegmentStoreAnalysisEventBasedModule;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentSerializer;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -54,6 +57,22 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
     private static final Collection<ISegmentAspect> BASE_ASPECTS =
             ImmutableList.of(SyscallNameAspect.INSTANCE);
 
+    /**
+     * Only the name needs to be saved, the names being shared by the system
+     * calls of a page of the data file
+     */
+    private static final ISegmentSerializer<ISegment> SERIALIZER = new ISegmentSerializer<ISegment>() {
+        @Override
+        public void writeSegment(ISegment segment, DataOutput out) throws IOException {
+            out.writeUTF(((SystemCall) segment).getName());
+        }
+
+        @Override
+        public ISegment readSegment(long start, long end, DataInput in) throws IOException {
+            return new SystemCall(new SystemCall.InitialInfo(start, in.readUTF()), end);
+        }
+    };
+
     @Override
     public String getId() {
         return ID;
@@ -82,6 +101,11 @@ public class SystemCallLatencyAnalysis extends AbstractSegmentStoreAnalysisEvent
         return DATA_FILENAME;
     }
 
+    @Override
+    protected ISegmentSerializer<ISegment> getSegmentSerializer() {
+        return SERIALIZER;
+    }
+
     @Override
     public AbstractSegmentStoreAnalysisRequest createAnalysisRequest(ISegmentStore<ISegment> syscalls) {
         return new SyscallLatencyAnalysisRequest(syscalls);
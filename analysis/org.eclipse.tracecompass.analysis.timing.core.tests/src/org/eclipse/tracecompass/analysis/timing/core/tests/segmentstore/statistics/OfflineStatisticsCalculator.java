@@ -105,6 +105,20 @@ public class OfflineStatisticsCalculator {
         return total;
     }
 
+    /**
+     * Get a percentile, using the nearest rank method
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the smallest length that percentile of the intervals do not
+     *         exceed
+     */
+    public long getPercentile(double percentile) {
+        long[] lengths = fSs.stream().mapToLong(ISegment::getLength).sorted().toArray();
+        int rank = (int) Math.ceil(percentile / 100 * lengths.length) - 1;
+        return lengths[Math.max(0, Math.min(lengths.length - 1, rank))];
+    }
+
     /**
      * Get the # of intervals
      * @return the # of intervals
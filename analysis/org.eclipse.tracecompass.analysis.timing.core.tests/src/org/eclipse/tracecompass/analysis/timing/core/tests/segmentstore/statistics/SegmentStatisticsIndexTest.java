@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.timing.core.tests.segmentstore.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics.SegmentStoreStatistics;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStatisticsIndex;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory.SegmentStoreType;
+import org.junit.Test;
+
+/**
+ * Test the range statistics of the segment statistics index against
+ * statistics computed from all the intersecting segments
+ */
+public class SegmentStatisticsIndexTest {
+
+    private static final double ERROR = 0.000001;
+
+    private static @Nullable String getType(ISegment segment) {
+        long length = segment.getLength();
+        return (length % 3 == 0) ? null : String.valueOf(length % 3);
+    }
+
+    /**
+     * Compare the statistics of random ranges, with a few long segments
+     */
+    @Test
+    public void testRanges() {
+        ISegmentStore<@NonNull ISegment> store = SegmentStoreFactory.createSegmentStore(SegmentStoreType.Indexed);
+        Random rnd = new Random(1234);
+        for (int i = 0; i < 10000; i++) {
+            long start = rnd.nextInt(1000000);
+            long length = (i % 1000 == 0) ? 200000 : rnd.nextInt(1000);
+            store.add(new BasicSegment(start, start + length));
+        }
+        SegmentStatisticsIndex index = SegmentStatisticsIndex.build(store, SegmentStatisticsIndexTest::getType, 64, new NullProgressMonitor());
+        assertNotNull(index);
+
+        validate(store, index, Long.MIN_VALUE, Long.MAX_VALUE);
+        validate(store, index, 0, 0);
+        validate(store, index, 1200000, 1300000);
+        for (int i = 0; i < 50; i++) {
+            long start = rnd.nextInt(1100000) - 50000;
+            validate(store, index, start, start + rnd.nextInt(300000));
+        }
+    }
+
+    /**
+     * Test ranges starting or ending exactly on the boundaries of the buckets,
+     * with segments starting before the range and ending inside it
+     */
+    @Test
+    public void testBucketBoundaries() {
+        ISegmentStore<@NonNull ISegment> store = SegmentStoreFactory.createSegmentStore(SegmentStoreType.Indexed);
+        for (int i = 0; i < 100; i++) {
+            store.add(new BasicSegment(i * 10, i * 10 + 25));
+        }
+        SegmentStatisticsIndex index = SegmentStatisticsIndex.build(store, SegmentStatisticsIndexTest::getType, 10, new NullProgressMonitor());
+        assertNotNull(index);
+
+        SegmentStoreStatistics stats = index.getTotalStats(500, 799, new NullProgressMonitor());
+        assertNotNull(stats);
+        assertEquals(32, stats.getNbSegments());
+        validate(store, index, 500, 799);
+        validate(store, index, 0, 99);
+        validate(store, index, 100, 100);
+        validate(store, index, 400, 999);
+        validate(store, index, 501, 800);
+    }
+
+    /**
+     * Test the index of an empty segment store
+     */
+    @Test
+    public void testEmpty() {
+        ISegmentStore<@NonNull ISegment> store = SegmentStoreFactory.createSegmentStore();
+        SegmentStatisticsIndex index = SegmentStatisticsIndex.build(store, SegmentStatisticsIndexTest::getType, 64, new NullProgressMonitor());
+        assertNotNull(index);
+        SegmentStoreStatistics stats = index.getTotalStats(0, 100, new NullProgressMonitor());
+        assertNotNull(stats);
+        assertEquals(0, stats.getNbSegments());
+    }
+
+    private static void validate(ISegmentStore<@NonNull ISegment> store, SegmentStatisticsIndex index, long start, long end) {
+        SegmentStoreStatistics expected = new SegmentStoreStatistics();
+        for (ISegment segment : store.getIntersectingElements(start, end)) {
+            expected.update(segment);
+        }
+        SegmentStoreStatistics actual = index.getTotalStats(start, end, new NullProgressMonitor());
+        assertNotNull(actual);
+        validate(expected, actual);
+
+        Map<String, SegmentStoreStatistics> perType = index.getPerTypeStats(start, end, new NullProgressMonitor());
+        assertNotNull(perType);
+        for (String type : new String[] { "1", "2" }) {
+            SegmentStoreStatistics expectedType = new SegmentStoreStatistics();
+            for (ISegment segment : store.getIntersectingElements(start, end)) {
+                if (type.equals(getType(segment))) {
+                    expectedType.update(segment);
+                }
+            }
+            SegmentStoreStatistics actualType = perType.get(type);
+            if (expectedType.getNbSegments() == 0) {
+                assertNull(actualType);
+            } else {
+                assertNotNull(actualType);
+                validate(expectedType, actualType);
+            }
+        }
+    }
+
+    private static void validate(SegmentStoreStatistics expected, SegmentStoreStatistics actual) {
+        assertEquals("Count", expected.getNbSegments(), actual.getNbSegments());
+        if (expected.getNbSegments() == 0) {
+            return;
+        }
+        assertEquals("Min", expected.getMin(), actual.getMin());
+        assertEquals("Max", expected.getMax(), actual.getMax());
+        assertEquals("Total", expected.getTotal(), actual.getTotal(), ERROR);
+        assertEquals("Average", expected.getAverage(), actual.getAverage(), ERROR);
+        assertEquals("Standard deviation", expected.getStdDev(), actual.getStdDev(), expected.getStdDev() * ERROR);
+        assertEquals("Median", expected.getPercentile(50), actual.getPercentile(50));
+        assertEquals("99th percentile", expected.getPercentile(99), actual.getPercentile(99));
+    }
+}
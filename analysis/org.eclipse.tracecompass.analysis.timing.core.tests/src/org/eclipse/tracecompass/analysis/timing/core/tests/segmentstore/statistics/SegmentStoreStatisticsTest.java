@@ -39,6 +39,9 @@ public class SegmentStoreStatisticsTest {
     private static final double NO_ERROR = 0.0;
     private static final double ERROR = 0.000001;
     private static final double APPROX_ERROR = 0.0001;
+    /* The percentiles are estimated with a relative error of at most 1% */
+    private static final double PERCENTILE_ERROR = 0.01;
+    private static final double[] PERCENTILES = { 0, 1, 25, 50, 90, 99, 99.9, 100 };
 
     private static void testOnlineVsOffline(List<@NonNull ISegment> fixture) {
         validate(new OfflineStatisticsCalculator(fixture), getSegStoreStat(fixture));
@@ -147,6 +150,23 @@ public class SegmentStoreStatisticsTest {
         testOnlineVsOffline(fixture);
     }
 
+    /**
+     * Test the percentiles of small lengths, which are exact
+     */
+    @Test
+    public void percentileTest() {
+        List<@NonNull ISegment> fixture = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            fixture.add(createDummySegment(0, i));
+        }
+        SegmentStoreStatistics sss = getSegStoreStat(fixture);
+        assertEquals("Median", 50, sss.getPercentile(50));
+        assertEquals("99th percentile", 99, sss.getPercentile(99));
+        assertEquals("Min", 1, sss.getPercentile(0));
+        assertEquals("Max", 100, sss.getPercentile(100));
+        assertEquals("Empty", 0, new SegmentStoreStatistics().getPercentile(50));
+    }
+
     /**
      * Test building a statistics store with streams
      */
@@ -345,6 +365,10 @@ public class SegmentStoreStatisticsTest {
         assertEquals("Min Segment", expected.getMinSegment().getLength(), toBeTested.getMinSegment().getLength());
         assertEquals("Max Segment", expected.getMaxSegment().getLength(), toBeTested.getMaxSegment().getLength());
         assertEquals("Standard Deviation", expected.getStdDev(), toBeTested.getStdDev(), APPROX_ERROR * expected.getStdDev());
+        for (double percentile : PERCENTILES) {
+            /* Merging the percentiles is exact */
+            assertEquals("Percentile " + percentile, expected.getPercentile(percentile), toBeTested.getPercentile(percentile));
+        }
     }
 
     private static void validate(OfflineStatisticsCalculator osc, SegmentStoreStatistics sss) {
@@ -356,6 +380,13 @@ public class SegmentStoreStatisticsTest {
         assertEquals("Min Segment", osc.getMin(), sss.getMinSegment().getLength());
         assertEquals("Max Segment", osc.getMax(), sss.getMaxSegment().getLength());
         assertEquals("Standard Deviation", osc.getStdDev(), sss.getStdDev(), ERROR * osc.getStdDev());
+        if (osc.count() == 0) {
+            return;
+        }
+        for (double percentile : PERCENTILES) {
+            long expected = osc.getPercentile(percentile);
+            assertEquals("Percentile " + percentile, expected, sss.getPercentile(percentile), PERCENTILE_ERROR * expected);
+        }
     }
 
     private static @NonNull BasicSegment createDummySegment(int start, int end) {
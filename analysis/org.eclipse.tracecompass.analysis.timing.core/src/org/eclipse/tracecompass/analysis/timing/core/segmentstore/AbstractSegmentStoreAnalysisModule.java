@@ -25,8 +25,10 @@ import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentSerializer;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory.SegmentStoreType;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
@@ -87,6 +89,21 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
         return null;
     }
 
+    /**
+     * Returns the serializer used to save the segments in the data file. When
+     * there is one, the segments are written to the data file while the
+     * analysis runs, in a compact binary format, and the segment store reads
+     * them back from the file when they are queried. Otherwise, the segments
+     * are kept in memory and saved using Java serialization.
+     *
+     * @return The serializer of the segments, or null to use Java
+     *         serialization
+     * @since 1.2
+     */
+    protected @Nullable ISegmentSerializer<ISegment> getSegmentSerializer() {
+        return null;
+    }
+
     /**
      * Read an object from the ObjectInputStream.
      *
@@ -138,6 +155,10 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
         ITmfTrace trace = checkNotNull(getTrace());
 
         final @Nullable String dataFileName = getDataFileName();
+        final @Nullable ISegmentSerializer<ISegment> serializer = getSegmentSerializer();
+        if (dataFileName != null && serializer != null) {
+            return executeOnDiskAnalysis(trace, dataFileName, serializer, monitor);
+        }
         if (dataFileName != null) {
             /* See if the data file already exists on disk */
             String dir = TmfTraceManager.getSupplementaryFileDir(trace);
@@ -147,7 +168,7 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
                 /* Attempt to read the existing file */
                 try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
                     Object[] segmentArray = readObject(ois);
-                    ISegmentStore<ISegment> store = SegmentStoreFactory.createSegmentStore(NonNullUtils.checkNotNullContents(segmentArray));
+                    ISegmentStore<ISegment> store = SegmentStoreFactory.createSegmentStore(NonNullUtils.checkNotNullContents(segmentArray), SegmentStoreType.Indexed);
                     fSegmentStore = store;
                     sendUpdate(store);
                     return true;
@@ -164,7 +185,8 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
             }
         }
 
-        ISegmentStore<ISegment> segmentStore = SegmentStoreFactory.createSegmentStore();
+        /* The views may query the segment store while it is being built */
+        ISegmentStore<ISegment> segmentStore = SegmentStoreFactory.createSegmentStore(SegmentStoreType.Concurrent);
         boolean completed = buildAnalysisSegments(segmentStore, monitor);
         if (!completed) {
             return false;
@@ -191,6 +213,48 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
         return true;
     }
 
+    private boolean executeOnDiskAnalysis(ITmfTrace trace, String dataFileName,
+            ISegmentSerializer<ISegment> serializer, IProgressMonitor monitor) throws TmfAnalysisException {
+        String dir = TmfTraceManager.getSupplementaryFileDir(trace);
+        final Path file = Paths.get(dir, dataFileName);
+
+        if (Files.exists(file)) {
+            /* Attempt to reopen the existing file */
+            try {
+                ISegmentStore<ISegment> store = SegmentStoreFactory.openOnDiskSegmentStore(file, serializer);
+                fSegmentStore = store;
+                sendUpdate(store);
+                return true;
+            } catch (IOException e) {
+                /*
+                 * The file is from an older version or was not completed, we
+                 * will just fall-through to rebuild a new one.
+                 */
+                try {
+                    Files.delete(file);
+                } catch (IOException e1) {
+                }
+            }
+        }
+
+        ISegmentStore<ISegment> segmentStore;
+        try {
+            segmentStore = SegmentStoreFactory.createOnDiskSegmentStore(file, serializer);
+        } catch (IOException e) {
+            throw new TmfAnalysisException("Cannot create the segment store file " + file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        boolean completed = buildAnalysisSegments(segmentStore, monitor);
+        if (!completed) {
+            segmentStore.dispose();
+            return false;
+        }
+        /* Write the page index, so that the file can be reopened next time */
+        segmentStore.close(false);
+        fSegmentStore = segmentStore;
+        sendUpdate(segmentStore);
+        return true;
+    }
+
     /**
      * Send the segment store to all its listener
      *
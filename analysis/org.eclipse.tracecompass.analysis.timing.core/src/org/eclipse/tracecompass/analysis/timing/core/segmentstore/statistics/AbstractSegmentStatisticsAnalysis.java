@@ -17,6 +17,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.timing.core.segmentstore.ISegmentStoreProvider;
+import org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore.SegmentStatisticsIndex;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
@@ -40,6 +41,8 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
 
     private Map<String, SegmentStoreStatistics> fPerSegmentTypeStats = new HashMap<>();
 
+    private @Nullable SegmentStatisticsIndex fIndex;
+
     @Override
     protected Iterable<IAnalysisModule> getDependentAnalyses() {
         ITmfTrace trace = getTrace();
@@ -59,6 +62,23 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
             return false;
         }
 
+        /*
+         * Index the statistics of the segment store, so that the statistics of
+         * the time ranges selected later do not need to read all the segments
+         */
+        ISegmentStoreProvider provider = fSegmentStoreProviderModule;
+        if (provider instanceof IAnalysisModule) {
+            ((IAnalysisModule) provider).waitForCompletion();
+        }
+        ISegmentStore<@NonNull ISegment> segmentStore = provider != null ? provider.getSegmentStore() : null;
+        if (segmentStore != null) {
+            SegmentStatisticsIndex index = SegmentStatisticsIndex.build(segmentStore, this::getSegmentType, SegmentStatisticsIndex.DEFAULT_NB_BUCKETS, monitor);
+            if (index == null) {
+                return false;
+            }
+            fIndex = index;
+        }
+
         SegmentStoreStatistics totalStats = getTotalStats(TmfTimeRange.ETERNITY.getStartTime().toNanos(), TmfTimeRange.ETERNITY.getEndTime().toNanos(), monitor);
         if (totalStats == null) {
             return false;
@@ -74,6 +94,10 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
     }
 
     private @Nullable SegmentStoreStatistics getTotalStats(long start, long end, IProgressMonitor monitor) {
+        SegmentStatisticsIndex index = fIndex;
+        if (index != null) {
+            return index.getTotalStats(start, end, monitor);
+        }
         Iterable<@NonNull ISegment> store = getSegmentStore(start, end);
         if (store == null) {
             return null;
@@ -110,6 +134,11 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
     }
 
     private @Nullable Map<@NonNull String, @NonNull SegmentStoreStatistics> getPerTypeStats(long start, long end, IProgressMonitor monitor) {
+        SegmentStatisticsIndex index = fIndex;
+        if (index != null) {
+            Map<@NonNull String, @NonNull SegmentStoreStatistics> stats = index.getPerTypeStats(start, end, monitor);
+            return stats != null ? stats : Collections.EMPTY_MAP;
+        }
         Iterable<@NonNull ISegment> store = getSegmentStore(start, end);
         if (monitor.isCanceled()) {
             return Collections.EMPTY_MAP;
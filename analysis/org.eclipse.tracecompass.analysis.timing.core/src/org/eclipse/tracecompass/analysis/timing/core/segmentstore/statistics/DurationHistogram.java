@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations with buckets of logarithmic size, like an HDR
+ * histogram, used to estimate the quantiles of the segment lengths. The
+ * durations below 2^SUB_BUCKET_BITS have their own bucket, the bigger ones are
+ * put in buckets keeping their SUB_BUCKET_BITS most significant bits, so the
+ * relative error on a quantile is less than 1%.
+ *
+ * Only the non-empty buckets are stored, sorted by index, so a histogram
+ * holding a few similar durations stays small. Two histograms are merged
+ * exactly, without losing precision.
+ */
+final class DurationHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private int[] fIndexes = new int[0];
+    private long[] fCounts = new long[0];
+    private int fSize = 0;
+
+    /**
+     * Add a duration to the histogram
+     *
+     * @param duration
+     *            The duration
+     */
+    public void add(long duration) {
+        int index = getIndex(duration);
+        int pos = Arrays.binarySearch(fIndexes, 0, fSize, index);
+        if (pos >= 0) {
+            fCounts[pos]++;
+            return;
+        }
+        pos = -pos - 1;
+        if (fSize == fIndexes.length) {
+            int newLength = Math.max(4, fSize * 2);
+            fIndexes = Arrays.copyOf(fIndexes, newLength);
+            fCounts = Arrays.copyOf(fCounts, newLength);
+        }
+        System.arraycopy(fIndexes, pos, fIndexes, pos + 1, fSize - pos);
+        System.arraycopy(fCounts, pos, fCounts, pos + 1, fSize - pos);
+        fIndexes[pos] = index;
+        fCounts[pos] = 1;
+        fSize++;
+    }
+
+    /**
+     * Add the durations of another histogram to this one
+     *
+     * @param other
+     *            The other histogram
+     */
+    public void merge(DurationHistogram other) {
+        int[] indexes = new int[fSize + other.fSize];
+        long[] counts = new long[fSize + other.fSize];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < fSize || j < other.fSize) {
+            if (j == other.fSize || (i < fSize && fIndexes[i] < other.fIndexes[j])) {
+                indexes[size] = fIndexes[i];
+                counts[size] = fCounts[i++];
+            } else if (i == fSize || other.fIndexes[j] < fIndexes[i]) {
+                indexes[size] = other.fIndexes[j];
+                counts[size] = other.fCounts[j++];
+            } else {
+                indexes[size] = fIndexes[i];
+                counts[size] = fCounts[i++] + other.fCounts[j++];
+            }
+            size++;
+        }
+        fIndexes = indexes;
+        fCounts = counts;
+        fSize = size;
+    }
+
+    /**
+     * Copy this histogram
+     *
+     * @return A new histogram with the same durations
+     */
+    public DurationHistogram copy() {
+        DurationHistogram copy = new DurationHistogram();
+        copy.fIndexes = Arrays.copyOf(fIndexes, fSize);
+        copy.fCounts = Arrays.copyOf(fCounts, fSize);
+        copy.fSize = fSize;
+        return copy;
+    }
+
+    /**
+     * Get an estimate of the duration at a given rank, the durations being
+     * sorted in ascending order
+     *
+     * @param rank
+     *            The rank of the duration, starting at 0
+     * @return The middle of the bucket holding the duration at that rank, or
+     *         the largest duration if the rank is too large
+     */
+    public long getValueAtRank(long rank) {
+        long seen = 0;
+        for (int i = 0; i < fSize; i++) {
+            seen += fCounts[i];
+            if (seen > rank) {
+                return getMiddleValue(fIndexes[i]);
+            }
+        }
+        return fSize == 0 ? 0 : getMiddleValue(fIndexes[fSize - 1]);
+    }
+
+    private static int getIndex(long duration) {
+        if (duration < SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, duration);
+        }
+        /* Keep the SUB_BUCKET_BITS most significant bits */
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(duration) - SUB_BUCKET_BITS;
+        int mantissa = (int) (duration >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (mantissa - HALF_SUB_BUCKET_COUNT);
+    }
+
+    private static long getMiddleValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / HALF_SUB_BUCKET_COUNT + 1;
+        long lowest = (long) (HALF_SUB_BUCKET_COUNT + offset % HALF_SUB_BUCKET_COUNT) << shift;
+        return lowest + ((1L << shift) - 1) / 2;
+    }
+}
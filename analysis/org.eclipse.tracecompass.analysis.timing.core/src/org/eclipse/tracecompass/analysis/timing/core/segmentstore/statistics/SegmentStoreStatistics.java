@@ -15,7 +15,9 @@ import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 
 /**
- * Class to calculate simple segment store statistics (min, max, average)
+ * Class to calculate simple segment store statistics (min, max, average,
+ * percentiles). Statistics computed separately on parts of a segment store can
+ * be combined with {@link #merge}.
  *
  * @author Bernd Hufmann
  */
@@ -29,6 +31,7 @@ public class SegmentStoreStatistics {
      */
     private double fVariance;
     private double fTotal;
+    private DurationHistogram fHistogram;
 
     /**
      * Constructor
@@ -40,6 +43,7 @@ public class SegmentStoreStatistics {
         fAverage = 0.0;
         fVariance = 0.0;
         fTotal = 0.0;
+        fHistogram = new DurationHistogram();
     }
 
     /**
@@ -119,6 +123,32 @@ public class SegmentStoreStatistics {
         return fTotal;
     }
 
+    /**
+     * Get an estimate of a percentile of the segment lengths. The estimate is
+     * exact for lengths below 128, and within 1% of the actual length
+     * otherwise.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100. For example, 50 for the
+     *            median or 99.9 for the length that 99.9% of the segments do
+     *            not exceed.
+     * @return The estimated length at that percentile, or 0 if there are no
+     *         segments
+     * @since 1.2
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile); //$NON-NLS-1$
+        }
+        if (fNbSegments == 0) {
+            return 0;
+        }
+        /* Nearest rank, the smallest length covering the percentile */
+        long rank = Math.max(0, (long) Math.ceil(percentile / 100 * fNbSegments) - 1);
+        long value = fHistogram.getValueAtRank(Math.min(rank, fNbSegments - 1));
+        return Math.max(getMin(), Math.min(getMax(), value));
+    }
+
     /**
      * Update the statistics based on a given segment
      * <p>
@@ -145,12 +175,12 @@ public class SegmentStoreStatistics {
         fAverage += delta / fNbSegments;
         fVariance += delta * (value - fAverage);
         fTotal += value;
+        fHistogram.add(value);
     }
 
     /**
-     * Merge two statistics sets. If the pools are large, there may be a slight
-     * approximation error (empirically, the error is at most 0.001 but usually
-     * around 1e-5 for the standard deviation as this uses pooled variance.
+     * Merge two statistics sets. The result is the same as if all the segments
+     * had been added to this one, apart from rounding errors.
      *
      * @param other
      *            The other segment store statistics
@@ -188,6 +218,7 @@ public class SegmentStoreStatistics {
         double otherAverage = other.getAverage();
         fNbSegments += otherSegments;
         fTotal += other.getTotal();
+        fHistogram.merge(other.fHistogram);
 
         /*
          * Average is a weighted average
@@ -195,24 +226,13 @@ public class SegmentStoreStatistics {
         fAverage = ((oldNbSeg * oldAverage) + (otherAverage * otherSegments)) / fNbSegments;
 
         /*
-         * This one is a bit tricky.
-         *
-         * The variance is the sum of the deltas from a mean squared.
-         *
-         * So if we add the old mean squared back to to variance and remove the
-         * new mean, the standard deviation can be easily calculated.
-         */
-        double avg1Sq = oldAverage * oldAverage;
-        double avg2sq = otherAverage * otherAverage;
-        double avgtSq = fAverage * fAverage;
-        /*
-         * This is a tricky part, bear in mind that the set is not continuous but discrete,
-         * Therefore, we have for n elements, n-1 intervals between them.
-         * Ergo, n-1 intervals are used for divisions and multiplications.
+         * The variance (times the number of elements) of the union is the sum
+         * of the variances of both sets, plus a correction for the distance
+         * between their means, see the parallel algorithm in the same
+         * Wikipedia article as getStdDev().
          */
-        double variance1 = fVariance / (oldNbSeg - 1);
-        double variance2 = other.fVariance / (otherSegments - 1);
-        fVariance = ((variance1 + avg1Sq - avgtSq) * (oldNbSeg - 1) + (variance2 + avg2sq - avgtSq) * (otherSegments - 1));
+        double delta = otherAverage - oldAverage;
+        fVariance += other.fVariance + delta * delta * ((double) oldNbSeg * otherSegments / fNbSegments);
     }
 
     private void copy(SegmentStoreStatistics copyOther) {
@@ -222,5 +242,6 @@ public class SegmentStoreStatistics {
         fNbSegments = copyOther.fNbSegments;
         fTotal = copyOther.fTotal;
         fVariance = copyOther.fVariance;
+        fHistogram = copyOther.fHistogram.copy();
     }
 }
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.timing.core.segmentstore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics.SegmentStoreStatistics;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Pre-aggregated statistics of a segment store, to compute the statistics of
+ * the segments intersecting any time range without going through all of them.
+ *
+ * The segments are put in buckets of equal duration by start time, and a
+ * binary tree over the buckets holds the total and per type statistics of
+ * each subtree. The statistics of a range are merged from the O(log n) nodes
+ * covering the buckets fully inside the range. Only the segments starting in
+ * the partial buckets at the edges of the range, and the ones starting before
+ * the range, are read from the segment store.
+ *
+ * The index must be rebuilt if segments are added to the store.
+ */
+public final class SegmentStatisticsIndex {
+
+    /** Default maximum number of buckets */
+    public static final int DEFAULT_NB_BUCKETS = 1024;
+
+    private final ISegmentStore<ISegment> fStore;
+    private final Function<ISegment, @Nullable String> fTypeFunction;
+
+    private final long fMinStart;
+    private final long fBucketDuration;
+    private final int fNbBuckets;
+    private final int fNbLeaves;
+
+    /*
+     * Statistics of the nodes of the tree. The root is at index 1, the
+     * children of node i are at 2i and 2i+1, and the leaves, one per bucket,
+     * start at index fNbLeaves.
+     */
+    private final SegmentStoreStatistics[] fTotals;
+    private final Map<String, SegmentStoreStatistics>[] fPerType;
+
+    @SuppressWarnings("unchecked")
+    private SegmentStatisticsIndex(ISegmentStore<ISegment> store, Function<ISegment, @Nullable String> typeFunction,
+            long minStart, long bucketDuration, int nbBuckets) {
+        fStore = store;
+        fTypeFunction = typeFunction;
+        fMinStart = minStart;
+        fBucketDuration = bucketDuration;
+        fNbBuckets = nbBuckets;
+        int nbLeaves = 1;
+        while (nbLeaves < nbBuckets) {
+            nbLeaves *= 2;
+        }
+        fNbLeaves = nbLeaves;
+        fTotals = new SegmentStoreStatistics[2 * nbLeaves];
+        fPerType = new Map[2 * nbLeaves];
+        for (int i = 0; i < 2 * nbLeaves; i++) {
+            fTotals[i] = new SegmentStoreStatistics();
+            fPerType[i] = new HashMap<>();
+        }
+    }
+
+    /**
+     * Build the index of a segment store. The store must not be modified
+     * afterwards.
+     *
+     * @param store
+     *            The segment store
+     * @param typeFunction
+     *            The function giving the type of a segment for the per type
+     *            statistics, or null for segments without a type
+     * @param nbBuckets
+     *            The maximum number of buckets
+     * @param monitor
+     *            The progress monitor
+     * @return The index, or null if the monitor was canceled
+     */
+    public static @Nullable SegmentStatisticsIndex build(ISegmentStore<ISegment> store,
+            Function<ISegment, @Nullable String> typeFunction, int nbBuckets, IProgressMonitor monitor) {
+        long minStart = Long.MAX_VALUE;
+        long maxStart = Long.MIN_VALUE;
+        for (ISegment segment : store) {
+            minStart = Math.min(minStart, segment.getStart());
+            maxStart = Math.max(maxStart, segment.getStart());
+        }
+        if (monitor.isCanceled()) {
+            return null;
+        }
+        if (minStart > maxStart) {
+            /* Empty store */
+            return new SegmentStatisticsIndex(store, typeFunction, 0, 1, 0);
+        }
+        long span = maxStart - minStart + 1;
+        long duration = Math.max(1, (span + nbBuckets - 1) / nbBuckets);
+        int count = (int) ((span + duration - 1) / duration);
+        SegmentStatisticsIndex index = new SegmentStatisticsIndex(store, typeFunction, minStart, duration, count);
+
+        for (ISegment segment : store) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            int leaf = index.fNbLeaves + (int) ((segment.getStart() - minStart) / duration);
+            index.fTotals[leaf].update(segment);
+            String type = typeFunction.apply(segment);
+            if (type != null) {
+                index.fPerType[leaf].computeIfAbsent(type, t -> new SegmentStoreStatistics()).update(segment);
+            }
+        }
+        for (int node = index.fNbLeaves - 1; node > 0; node--) {
+            SegmentStoreStatistics total = new SegmentStoreStatistics();
+            total.merge(index.fTotals[2 * node]);
+            total.merge(index.fTotals[2 * node + 1]);
+            index.fTotals[node] = total;
+            Map<String, SegmentStoreStatistics> perType = new HashMap<>();
+            mergeInto(perType, index.fPerType[2 * node]);
+            mergeInto(perType, index.fPerType[2 * node + 1]);
+            index.fPerType[node] = perType;
+        }
+        return index;
+    }
+
+    private static void mergeInto(Map<String, SegmentStoreStatistics> target, Map<String, SegmentStoreStatistics> source) {
+        for (Entry<String, SegmentStoreStatistics> entry : source.entrySet()) {
+            target.computeIfAbsent(entry.getKey(), t -> new SegmentStoreStatistics()).merge(entry.getValue());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Buckets
+    // ------------------------------------------------------------------------
+
+    private long getBucketStart(int bucket) {
+        return fMinStart + bucket * fBucketDuration;
+    }
+
+    /** First bucket starting at or after the start of the range */
+    private int getFirstFullBucket(long start) {
+        if (start <= fMinStart) {
+            return 0;
+        }
+        long offset = start - fMinStart;
+        return (int) Math.min(fNbBuckets, (offset + fBucketDuration - 1) / fBucketDuration);
+    }
+
+    /** Last bucket ending at or before the end of the range */
+    private int getLastFullBucket(long end) {
+        if (end >= getBucketStart(fNbBuckets) - 1) {
+            return fNbBuckets - 1;
+        }
+        if (end < fMinStart) {
+            return -1;
+        }
+        return (int) ((end - fMinStart + 1) / fBucketDuration) - 1;
+    }
+
+    /**
+     * Get the segments intersecting the range that do not start in one of
+     * the full buckets, from the segment store. The segments starting before
+     * the first full bucket are queried even when that bucket starts with the
+     * range, since they may still end inside it.
+     */
+    private Iterable<ISegment> getEdgeSegments(long start, long end, int firstBucket, int lastBucket) {
+        long innerStart = getBucketStart(firstBucket);
+        long innerEnd = getBucketStart(lastBucket + 1);
+        Iterable<ISegment> before = Iterables.filter(fStore.getIntersectingElements(start, Math.max(start, innerStart - 1)), s -> s.getStart() < innerStart);
+        Iterable<ISegment> after = innerEnd <= end ? Iterables.filter(fStore.getIntersectingElements(innerEnd, end), s -> s.getStart() >= innerEnd) : Collections.emptyList();
+        return Iterables.concat(before, after);
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the statistics of the segments intersecting a time range
+     *
+     * @param start
+     *            The start time of the range
+     * @param end
+     *            The end time of the range
+     * @param monitor
+     *            The progress monitor
+     * @return The statistics, or null if the monitor was canceled
+     */
+    public @Nullable SegmentStoreStatistics getTotalStats(long start, long end, IProgressMonitor monitor) {
+        SegmentStoreStatistics stats = new SegmentStoreStatistics();
+        int first = getFirstFullBucket(start);
+        int last = getLastFullBucket(end);
+        Iterable<ISegment> segments;
+        if (first > last) {
+            segments = fStore.getIntersectingElements(start, end);
+        } else {
+            int low = first + fNbLeaves;
+            int high = last + fNbLeaves + 1;
+            while (low < high) {
+                if ((low & 1) == 1) {
+                    stats.merge(fTotals[low++]);
+                }
+                if ((high & 1) == 1) {
+                    stats.merge(fTotals[--high]);
+                }
+                low /= 2;
+                high /= 2;
+            }
+            segments = getEdgeSegments(start, end, first, last);
+        }
+        for (ISegment segment : segments) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            stats.update(segment);
+        }
+        return stats;
+    }
+
+    /**
+     * Get the per type statistics of the segments intersecting a time range
+     *
+     * @param start
+     *            The start time of the range
+     * @param end
+     *            The end time of the range
+     * @param monitor
+     *            The progress monitor
+     * @return The statistics per type, or null if the monitor was canceled
+     */
+    public @Nullable Map<String, SegmentStoreStatistics> getPerTypeStats(long start, long end, IProgressMonitor monitor) {
+        Map<String, SegmentStoreStatistics> stats = new HashMap<>();
+        int first = getFirstFullBucket(start);
+        int last = getLastFullBucket(end);
+        Iterable<ISegment> segments;
+        if (first > last) {
+            segments = fStore.getIntersectingElements(start, end);
+        } else {
+            int low = first + fNbLeaves;
+            int high = last + fNbLeaves + 1;
+            while (low < high) {
+                if ((low & 1) == 1) {
+                    mergeInto(stats, fPerType[low++]);
+                }
+                if ((high & 1) == 1) {
+                    mergeInto(stats, fPerType[--high]);
+                }
+                low /= 2;
+                high /= 2;
+            }
+            segments = getEdgeSegments(start, end, first, last);
+        }
+        for (ISegment segment : segments) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            String type = fTypeFunction.apply(segment);
+            if (type != null) {
+                stats.computeIfAbsent(type, t -> new SegmentStoreStatistics()).update(segment);
+            }
+        }
+        return stats;
+    }
+}
@@ -75,9 +75,16 @@ public abstract class AbstractSegmentStoreStatisticsViewer extends AbstractTmfTr
             checkNotNull(Messages.SegmentStoreStatistics_AverageLabel),
             checkNotNull(Messages.SegmentStoreStatisticsViewer_StandardDeviation),
             checkNotNull(Messages.SegmentStoreStatisticsViewer_Count),
-            checkNotNull(Messages.SegmentStoreStatisticsViewer_Total)
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Total),
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Median),
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Percentile99),
+            checkNotNull(Messages.SegmentStoreStatisticsViewer_Percentile999)
     };
 
+    /** Percentiles shown in the columns following the total */
+    private static final double[] PERCENTILES = { 50, 99, 99.9 };
+    private static final int FIRST_PERCENTILE_COLUMN = 7;
+
     /**
      * Constructor
      *
@@ -137,6 +144,8 @@ public abstract class AbstractSegmentStoreStatisticsViewer extends AbstractTmfTr
                         value = String.valueOf(entry.getEntry().getNbSegments());
                     } else if (columnIndex == 6) {
                         value = String.valueOf(toFormattedString(entry.getEntry().getTotal()));
+                    } else if (columnIndex >= FIRST_PERCENTILE_COLUMN && columnIndex < FIRST_PERCENTILE_COLUMN + PERCENTILES.length) {
+                        value = String.valueOf(toFormattedString(entry.getEntry().getPercentile(PERCENTILES[columnIndex - FIRST_PERCENTILE_COLUMN])));
                     }
                 }
             }
@@ -289,6 +298,26 @@ public abstract class AbstractSegmentStoreStatisticsViewer extends AbstractTmfTr
                     }
                 });
                 columns.add(column);
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    final double percentile = PERCENTILES[i];
+                    column = new TmfTreeColumnData(COLUMN_NAMES[FIRST_PERCENTILE_COLUMN + i]);
+                    column.setAlignment(SWT.RIGHT);
+                    column.setComparator(new ViewerComparator() {
+                        @Override
+                        public int compare(@Nullable Viewer viewer, @Nullable Object e1, @Nullable Object e2) {
+                            if ((e1 == null) || (e2 == null)) {
+                                return 0;
+                            }
+
+                            SegmentStoreStatisticsEntry n1 = (SegmentStoreStatisticsEntry) e1;
+                            SegmentStoreStatisticsEntry n2 = (SegmentStoreStatisticsEntry) e2;
+
+                            return Long.compare(n1.getEntry().getPercentile(percentile), n2.getEntry().getPercentile(percentile));
+
+                        }
+                    });
+                    columns.add(column);
+                }
                 column = new TmfTreeColumnData(""); //$NON-NLS-1$
                 columns.add(column);
                 return columns;
@@ -15,12 +15,18 @@ package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
 
 import static org.junit.Assert.fail;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.test.performance.Dimension;
 import org.eclipse.test.performance.Performance;
 import org.eclipse.test.performance.PerformanceMeter;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFPacketParallelReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
@@ -46,6 +52,14 @@ public class TraceReadBenchmark {
         readTrace(CtfTestTrace.KERNEL, "trace-kernel", true);
     }
 
+    /**
+     * Benchmark reading the trace "kernel", decoding the streams in parallel
+     */
+    @Test
+    public void testKernelTracePrefetch() {
+        readTracePrefetch(CtfTestTrace.KERNEL, "trace-kernel-prefetch");
+    }
+
     /**
      * Benchmark reading the bigger trace "kernel_vm"
      */
@@ -54,7 +68,65 @@ public class TraceReadBenchmark {
         readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm", false);
     }
 
+    /**
+     * Benchmark reading the bigger trace "kernel_vm", decoding the streams in
+     * parallel
+     */
+    @Test
+    public void testKernelVmTracePrefetch() {
+        readTracePrefetch(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-prefetch");
+    }
+
+    /**
+     * Benchmark reading the packets of the trace "kernel" on one thread,
+     * creating the event definitions
+     */
+    @Test
+    public void testKernelTracePackets() {
+        readPackets(CtfTestTrace.KERNEL, "trace-kernel-packets", false);
+    }
+
+    /**
+     * Benchmark reading the packets of the trace "kernel" on one thread, with
+     * the event cursor and the compiled struct layouts
+     */
+    @Test
+    public void testKernelTracePacketsCursor() {
+        readPackets(CtfTestTrace.KERNEL, "trace-kernel-packets-cursor", true);
+    }
+
+    /**
+     * Benchmark reading the packets of the bigger trace "kernel_vm" on one
+     * thread, creating the event definitions
+     */
+    @Test
+    public void testKernelVmTracePackets() {
+        readPackets(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-packets", false);
+    }
+
+    /**
+     * Benchmark reading the packets of the bigger trace "kernel_vm" on one
+     * thread, with the event cursor and the compiled struct layouts
+     */
+    @Test
+    public void testKernelVmTracePacketsCursor() {
+        readPackets(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-packets-cursor", true);
+    }
+
+    private static void readTracePrefetch(CtfTestTrace testTrace, String testName) {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            readTrace(testTrace, testName, false, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private static void readTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary) {
+        readTrace(testTrace, testName, inGlobalSummary, null);
+    }
+
+    private static void readTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary, @Nullable ExecutorService executor) {
         Performance perf = Performance.getDefault();
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
         perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
@@ -67,7 +139,7 @@ public class TraceReadBenchmark {
             pm.start();
             try {
                 CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
-                try (CTFTraceReader traceReader = new CTFTraceReader(trace);) {
+                try (CTFTraceReader traceReader = new CTFTraceReader(trace, executor);) {
 
                     while (traceReader.hasMoreEvents()) {
                         IEventDefinition ed = traceReader.getCurrentEventDef();
@@ -84,4 +156,37 @@ public class TraceReadBenchmark {
         }
         pm.commit();
     }
+
+    private static void readPackets(CtfTestTrace testTrace, String testName, boolean cursor) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                pm.start();
+                try {
+                    CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                    CTFPacketParallelReader reader = new CTFPacketParallelReader(trace, pool);
+                    reader.readPackets((streamInput, packet, packetReader) -> {
+                        while (packetReader.hasMoreEvents()) {
+                            /* Do something with the event */
+                            if (cursor) {
+                                packetReader.readNextEventCursor().getCPU();
+                            } else {
+                                packetReader.readNextEvent().getCPU();
+                            }
+                        }
+                    });
+                } catch (CTFException e) {
+                    fail("Test failed at iteration " + loop + ':' + e.getMessage());
+                }
+                pm.stop();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        pm.commit();
+    }
 }
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFPacketParallelReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.junit.Test;
+
+/**
+ * Test the {@link CTFPacketParallelReader}, by counting the events of a trace
+ * per event type and comparing with the counts of a {@link CTFTraceReader}.
+ */
+public class CTFPacketParallelReaderTest {
+
+    private static final CtfTestTrace testTrace = CtfTestTrace.KERNEL;
+
+    /**
+     * Count the events of each type
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testEventCounts() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+
+        Map<String, Long> expected = new HashMap<>();
+        try (CTFTraceReader reader = new CTFTraceReader(trace);) {
+            while (reader.hasMoreEvents()) {
+                expected.merge(reader.getCurrentEventDef().getDeclaration().getName(), 1L, Long::sum);
+                reader.advance();
+            }
+        }
+
+        Map<String, Long> actual = new ConcurrentHashMap<>();
+        AtomicLong nbPackets = new AtomicLong();
+        CTFPacketParallelReader parallelReader = new CTFPacketParallelReader(trace);
+        parallelReader.readPackets((streamInput, packet, packetReader) -> {
+            nbPackets.incrementAndGet();
+            while (packetReader.hasMoreEvents()) {
+                IEventDefinition event = packetReader.readNextEvent();
+                actual.merge(event.getDeclaration().getName(), 1L, Long::sum);
+            }
+        });
+        assertTrue(nbPackets.get() > 1);
+        assertFalse(parallelReader.isCanceled());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Cancel the reading before it starts, no packet should be read
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testCancel() throws CTFException {
+        CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+        AtomicLong nbPackets = new AtomicLong();
+        CTFPacketParallelReader parallelReader = new CTFPacketParallelReader(trace);
+        parallelReader.cancel();
+        parallelReader.readPackets((streamInput, packet, packetReader) -> nbPackets.incrementAndGet());
+        assertTrue(parallelReader.isCanceled());
+        assertEquals(0, nbPackets.get());
+    }
+}
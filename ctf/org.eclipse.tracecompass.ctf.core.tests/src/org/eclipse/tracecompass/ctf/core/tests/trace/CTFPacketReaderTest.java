@@ -14,9 +14,11 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Collections;
 import java.util.List;
 
@@ -24,16 +26,21 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.ICTFEventCursor;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderCompactDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.junit.Test;
@@ -226,4 +233,109 @@ public class CTFPacketReaderTest {
         assertFalse(cpr.hasMoreEvents());
     }
 
+    /**
+     * Test reading a packet with the event cursor, without creating the
+     * definitions
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testPacketCursor() throws CTFException {
+        // step 1: create in memory CTF trace, with compact event headers
+        byte[] bytes = {
+                (byte) 0x40, (byte) 0x01, (byte) 0x00, (byte) 0x00, (byte) 0x02, (byte) 0x61, (byte) 0x62, (byte) 0x00,
+                (byte) 0x01, (byte) 0x00, (byte) 0x02, (byte) 0x00, (byte) 0x2a, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x80, (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x07, (byte) 0x00,
+                (byte) 0x00, (byte) 0x00 };
+        // step 2, create the packet context
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), bytes.length, 0, 0);
+        // step 3 create the event header
+        IDeclaration eventHeaderDeclaration = EventHeaderCompactDeclaration.getEventHeader(ByteOrder.LITTLE_ENDIAN);
+        // step 4 create an event declaration, and only one!
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("len", IntegerDeclaration.UINT_8_DECL);
+        fields.addField("str", StringDeclaration.getStringDeclaration());
+        fields.addField("seq", new SequenceDeclaration("len", IntegerDeclaration.UINT_16L_DECL));
+        fields.addField("value", IntegerDeclaration.UINT_32L_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        // step 5: read the packet with a cursor and with the definitions
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        CTFPacketReader reference = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+
+        assertTrue(cpr.hasMoreEvents());
+        ICTFEventCursor cursor = cpr.readNextEventCursor();
+        EventDefinition event = reference.readNextEvent();
+        assertEquals(eventDec, cursor.getDeclaration());
+        assertEquals(10L, cursor.getTimestamp());
+        assertEquals(event.getTimestamp(), cursor.getTimestamp());
+        int len = cursor.getFieldIndex("len");
+        int str = cursor.getFieldIndex("str");
+        int value = cursor.getFieldIndex("value");
+        assertEquals(-1, cursor.getFieldIndex("other"));
+        assertEquals(2L, cursor.getIntegerField(len));
+        assertEquals("ab", cursor.getStringField(str));
+        assertEquals(42L, cursor.getIntegerField(value));
+        assertNull(cursor.getStringField(value));
+        assertEquals(event.getFields().toString(), cursor.getDefinition().getFields().toString());
+        assertEquals(event.getTimestamp(), cursor.getDefinition().getTimestamp());
+
+        assertTrue(cpr.hasMoreEvents());
+        cursor = cpr.readNextEventCursor();
+        event = reference.readNextEvent();
+        assertEquals(20L, cursor.getTimestamp());
+        assertEquals(event.getTimestamp(), cursor.getTimestamp());
+        assertEquals(0L, cursor.getIntegerField(len));
+        assertEquals("", cursor.getStringField(str));
+        assertEquals(7L, cursor.getIntegerField(value));
+        assertEquals(event.getFields().toString(), cursor.getDefinition().getFields().toString());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test reading with the event cursor a packet that is read with the
+     * definitions, with a struct event header
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testPacketCursorDefinitions() throws CTFException {
+        // step 1: create in memory CTF trace
+        byte[] bytes = { (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xa5 };
+        BitBuffer input = createBitBuffer(bytes);
+        // step 2, create the packet context
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), 8, 0, 0);
+        // step 3 create the event header
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.INT_8_DECL);
+        // step 4 create an event declaration, and only one!
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field1", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("field2", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        // step 5: read the packet with a cursor
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(input, packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        assertTrue(cpr.hasMoreEvents());
+        ICTFEventCursor cursor = cpr.readNextEventCursor();
+        assertEquals(0L, cursor.getTimestamp());
+        assertEquals(0L, cursor.getIntegerField(cursor.getFieldIndex("field1")));
+        assertEquals(0L, cursor.getIntegerField(cursor.getFieldIndex("field2")));
+        assertTrue(cpr.hasMoreEvents());
+        cursor = cpr.readNextEventCursor();
+        assertEquals(1L, cursor.getTimestamp());
+        assertEquals(65535L, cursor.getIntegerField(cursor.getFieldIndex("field1")));
+        assertEquals(0xa5, cursor.getIntegerField(cursor.getFieldIndex("field2")));
+        assertEquals(1L, cursor.getDefinition().getTimestamp());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
 }
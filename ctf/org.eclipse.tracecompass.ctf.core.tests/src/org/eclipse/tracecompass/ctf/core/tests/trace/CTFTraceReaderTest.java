@@ -16,6 +16,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
@@ -298,6 +301,51 @@ public class CTFTraceReaderTest {
         assertTrue(result);
     }
 
+    /**
+     * Read the trace with the events of each trace file decoded ahead by other
+     * threads, and check that the events are read in the same order as with
+     * the fixture, also after seeking.
+     *
+     * @throws CTFException
+     *             error
+     */
+    @Test
+    public void testPrefetch() throws CTFException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (CTFTraceReader reader = new CTFTraceReader(fixture.getTrace(), executor);) {
+            assertEquals(fixture.getStartTime(), reader.getStartTime());
+            long middle = 0;
+            long count = 0;
+            while (fixture.hasMoreEvents()) {
+                assertSameEvent(fixture.getCurrentEventDef(), reader.getCurrentEventDef());
+                if (count++ == 10000) {
+                    middle = fixture.getCurrentEventDef().getTimestamp();
+                }
+                fixture.advance();
+                assertEquals(fixture.hasMoreEvents(), reader.advance());
+            }
+            assertFalse(reader.hasMoreEvents());
+
+            assertTrue(fixture.seek(middle));
+            assertTrue(reader.seek(middle));
+            for (int i = 0; i < 1000; i++) {
+                assertSameEvent(fixture.getCurrentEventDef(), reader.getCurrentEventDef());
+                fixture.advance();
+                reader.advance();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameEvent(IEventDefinition expected, IEventDefinition actual) {
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getCPU(), actual.getCPU());
+        assertEquals(expected.getDeclaration().getName(), actual.getDeclaration().getName());
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.SimpleDatatypeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructLayout;
+import org.junit.Test;
+
+/**
+ * Test the struct layouts against the definitions created by the declarations
+ */
+public class StructLayoutTest {
+
+    private static IntegerDeclaration integer(int length, boolean signed, int alignment) {
+        return IntegerDeclaration.createDeclaration(length, signed, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", alignment);
+    }
+
+    private static StructDeclaration createStruct() {
+        StructDeclaration nested = new StructDeclaration(1);
+        nested.addField("x", integer(3, false, 1));
+        nested.addField("y", integer(5, true, 1));
+        EnumDeclaration enumDeclaration = new EnumDeclaration(integer(16, false, 16));
+        enumDeclaration.add(0, 10, "low");
+
+        StructDeclaration struct = new StructDeclaration(8);
+        struct.addField("a", integer(8, false, 8));
+        struct.addField("b", integer(32, true, 32));
+        struct.addField("c", enumDeclaration);
+        struct.addField("d", nested);
+        struct.addField("e", new ArrayDeclaration(3, integer(16, false, 16)));
+        struct.addField("f", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        struct.addField("len", integer(8, false, 8));
+        struct.addField("g", new SequenceDeclaration("len", integer(32, false, 32)));
+        struct.addField("h", integer(64, true, 64));
+        struct.addField("i", new FloatDeclaration(8, 24, ByteOrder.LITTLE_ENDIAN, 32));
+        struct.addField("j", integer(7, false, 1));
+        return struct;
+    }
+
+    private static BitBuffer createBuffer() {
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 37 + 1);
+        }
+        /* The string "hi" at byte 18, then a sequence of 2 elements */
+        bytes[18] = 'h';
+        bytes[19] = 'i';
+        bytes[20] = 0;
+        bytes[21] = 2;
+        return new BitBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Test reading the fields of a struct with the layout
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testRead() throws CTFException {
+        StructDeclaration struct = createStruct();
+        StructLayout layout = StructLayout.create(struct);
+        assertTrue(layout.isSupported());
+        assertEquals(11, layout.size());
+
+        BitBuffer expectedInput = createBuffer();
+        StructDefinition definition = struct.createDefinition(null, "", expectedInput);
+
+        BitBuffer input = createBuffer();
+        long[] positions = new long[layout.size()];
+        layout.read(input, positions);
+        assertEquals(expectedInput.position(), input.position());
+
+        for (String name : new String[] { "a", "b", "c", "len", "h", "j" }) {
+            int index = layout.indexOf(name);
+            long value = layout.readInteger(input, positions, index);
+            assertEquals(name, ((SimpleDatatypeDefinition) definition.getDefinition(name)).getIntegerValue().longValue(), value);
+        }
+        assertEquals(((StringDefinition) definition.getDefinition("f")).getValue(), layout.readString(input, positions, layout.indexOf("f")));
+        assertNull(layout.readString(input, positions, layout.indexOf("a")));
+        assertEquals(-1, layout.indexOf("z"));
+        /* Reading the values leaves the buffer where it was */
+        assertEquals(expectedInput.position(), input.position());
+    }
+
+    /**
+     * Test reading a struct with the layout from an unaligned position
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testReadUnaligned() throws CTFException {
+        StructDeclaration struct = new StructDeclaration(1);
+        struct.addField("a", integer(3, false, 1));
+        struct.addField("b", integer(16, false, 8));
+        struct.addField("c", integer(4, false, 1));
+        struct.addField("d", integer(32, false, 32));
+        StructLayout layout = StructLayout.create(struct);
+
+        BitBuffer expectedInput = createBuffer();
+        expectedInput.position(5);
+        StructDefinition definition = struct.createDefinition(null, "", expectedInput);
+
+        BitBuffer input = createBuffer();
+        input.position(5);
+        long[] positions = new long[layout.size()];
+        layout.read(input, positions);
+        assertEquals(expectedInput.position(), input.position());
+        for (String name : new String[] { "a", "b", "c", "d" }) {
+            assertEquals(name, ((IntegerDefinition) definition.getDefinition(name)).getValue(), layout.readInteger(input, positions, layout.indexOf(name)));
+        }
+    }
+
+    /**
+     * Test the structs that cannot be read with a layout
+     */
+    @Test
+    public void testUnsupported() {
+        assertTrue(StructLayout.create(null).isSupported());
+        assertEquals(0, StructLayout.create(null).size());
+
+        StructDeclaration variant = new StructDeclaration(8);
+        variant.addField("tag", new EnumDeclaration(integer(8, false, 8)));
+        variant.addField("v", new VariantDeclaration());
+        assertFalse(StructLayout.create(variant).isSupported());
+
+        StructDeclaration sequence = new StructDeclaration(8);
+        sequence.addField("seq", new SequenceDeclaration("other.len", integer(8, false, 8)));
+        assertFalse(StructLayout.create(sequence).isSupported());
+
+        StructDeclaration signedLength = new StructDeclaration(8);
+        signedLength.addField("len", integer(8, true, 8));
+        signedLength.addField("seq", new SequenceDeclaration("len", integer(8, false, 8)));
+        assertFalse(StructLayout.create(signedLength).isSupported());
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.event;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+
+/**
+ * A cursor over the event just read by a packet reader, giving access to the
+ * payload fields without creating the event definition. The fields are read
+ * from the packet buffer when they are queried, so reading the events of a
+ * packet with a cursor allocates almost nothing.
+ *
+ * A cursor is reused by its packet reader, it is only valid until the next
+ * call to {@link IPacketReader#readNextEventCursor()}. Call
+ * {@link #getDefinition()} to keep an event.
+ *
+ * @since 2.1
+ */
+public interface ICTFEventCursor {
+
+    /**
+     * Gets the declaration of the current event
+     *
+     * @return the event declaration
+     */
+    IEventDeclaration getDeclaration();
+
+    /**
+     * Gets the timestamp of the current event, in cycles
+     *
+     * @return the timestamp
+     */
+    long getTimestamp();
+
+    /**
+     * Gets the CPU of the current event
+     *
+     * @return the CPU, or {@link IEventDefinition#UNKNOWN_CPU}
+     */
+    int getCPU();
+
+    /**
+     * Gets the index of a payload field. The index depends only on the event
+     * declaration, it can be looked up once per event type.
+     *
+     * @param name
+     *            the name of the field
+     * @return the index of the field, or -1 if the event has no such field
+     */
+    int getFieldIndex(String name);
+
+    /**
+     * Reads an integer or enum payload field of the current event
+     *
+     * @param index
+     *            the index of the field, from {@link #getFieldIndex(String)}
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field could not be read
+     * @throws IllegalArgumentException
+     *             if the field is not an integer or enum
+     */
+    long getIntegerField(int index) throws CTFException;
+
+    /**
+     * Reads a string payload field of the current event
+     *
+     * @param index
+     *            the index of the field, from {@link #getFieldIndex(String)}
+     * @return the value of the field, or null if it is not a string
+     * @throws CTFException
+     *             if the field could not be read
+     */
+    @Nullable String getStringField(int index) throws CTFException;
+
+    /**
+     * Creates the full definition of the current event. The definition stays
+     * valid after the cursor moves.
+     *
+     * @return the event definition
+     * @throws CTFException
+     *             if the event could not be read
+     */
+    IEventDefinition getDefinition() throws CTFException;
+}
@@ -149,6 +149,12 @@ public final class BitBuffer {
         if (length > BIT_LONG) {
             throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
+        if (length == BIT_LONG && (fPosition & (BIT_CHAR - 1)) == 0 && canRead(BIT_LONG)) {
+            /* Fast read of a byte-aligned long, no sign extension needed */
+            long retVal = fBuffer.getLong((int) (fPosition / BIT_CHAR));
+            fPosition += BIT_LONG;
+            return retVal;
+        }
         if (length > BIT_INT) {
             final int highShift = length - BIT_INT;
             long a = getInt();
@@ -43,7 +43,6 @@ public class VariantDeclaration extends Declaration {
     private String fTag = null;
     private static final long ALIGNMENT = 1;
     private final Map<String, IDeclaration> fFields = Collections.synchronizedMap(new HashMap<String, IDeclaration>());
-    private IDeclaration fDeclarationToPopulate;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -128,12 +127,12 @@ public class VariantDeclaration extends Declaration {
             throw new CTFException("Undefined enum selector for variant " + //$NON-NLS-1$
                     definitionScope.getScopePath().getPath());
         }
-        fDeclarationToPopulate = fFields.get(varFieldName);
-        if (fDeclarationToPopulate == null) {
+        IDeclaration declarationToPopulate = fFields.get(varFieldName);
+        if (declarationToPopulate == null) {
             throw new CTFException("Unknown enum selector for variant " + //$NON-NLS-1$
                     definitionScope.getScopePath().getPath());
         }
-        Definition fieldValue = fDeclarationToPopulate.createDefinition(definitionScope, fieldName, input);
+        Definition fieldValue = declarationToPopulate.createDefinition(definitionScope, fieldName, input);
         return new VariantDefinition(this, definitionScope, varFieldName, fieldName, fieldValue);
     }
 
@@ -175,7 +174,6 @@ public class VariantDeclaration extends Declaration {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((fDeclarationToPopulate == null) ? 0 : fDeclarationToPopulate.hashCode());
         if (fFields == null) {
             result = prime * result;
         } else {
@@ -200,9 +198,6 @@ public class VariantDeclaration extends Declaration {
         }
         VariantDeclaration other = (VariantDeclaration) obj;
 
-        if (!Objects.equals(fDeclarationToPopulate, other.fDeclarationToPopulate)) {
-            return false;
-        }
         // do not check the order of the fields
         if (!Objects.equals(fFields, other.fFields)) {
             return false;
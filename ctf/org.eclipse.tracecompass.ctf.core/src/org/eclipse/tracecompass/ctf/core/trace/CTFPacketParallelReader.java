@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
+
+/**
+ * Reads all the packets of a trace concurrently, for the consumers that do not
+ * need the events in timestamp order, like statistics or event type counts.
+ *
+ * The packets of each stream input are indexed, then each packet is decoded
+ * by a task of a fork/join pool and given to an {@link ICTFPacketHandler}.
+ * The events of one packet are read in order by one thread, but different
+ * packets, of the same stream input or not, are read at the same time and in
+ * no particular order.
+ *
+ * @since 2.1
+ */
+@NonNullByDefault
+public class CTFPacketParallelReader {
+
+    private final CTFTrace fTrace;
+    private final ForkJoinPool fPool;
+    private volatile boolean fCanceled = false;
+
+    /**
+     * Constructor, using the common fork/join pool
+     *
+     * @param trace
+     *            The trace to read
+     */
+    public CTFPacketParallelReader(CTFTrace trace) {
+        this(trace, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace to read
+     * @param pool
+     *            The pool running the tasks reading the packets
+     */
+    public CTFPacketParallelReader(CTFTrace trace, ForkJoinPool pool) {
+        fTrace = trace;
+        fPool = pool;
+    }
+
+    /**
+     * Read all the packets of the trace, and wait until they are all handled.
+     *
+     * @param handler
+     *            The handler of the packets, called concurrently
+     * @throws CTFException
+     *             If a packet cannot be indexed or read, or if the handler
+     *             failed. The remaining packets are not read.
+     */
+    public void readPackets(ICTFPacketHandler handler) throws CTFException {
+        List<CTFStreamInput> streamInputs = new ArrayList<>();
+        for (ICTFStream stream : fTrace.getStreams()) {
+            streamInputs.addAll(stream.getStreamInputs());
+        }
+        AtomicReference<@Nullable Exception> error = new AtomicReference<>();
+        List<StreamInputTask> tasks = new ArrayList<>();
+        for (CTFStreamInput streamInput : streamInputs) {
+            tasks.add(new StreamInputTask(streamInput, handler, error));
+        }
+        fPool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        Exception e = error.get();
+        if (e instanceof CTFException) {
+            throw (CTFException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Stop reading the trace. The packets already being handled are read
+     * until their end, and {@link #readPackets} returns when they are done.
+     */
+    public void cancel() {
+        fCanceled = true;
+    }
+
+    /**
+     * Whether the reading was canceled
+     *
+     * @return true if {@link #cancel()} was called
+     */
+    public boolean isCanceled() {
+        return fCanceled;
+    }
+
+    // ------------------------------------------------------------------------
+    // Tasks
+    // ------------------------------------------------------------------------
+
+    /**
+     * Index the packets of a stream input, then read them with sub-tasks
+     */
+    private final class StreamInputTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 7315236394218725393L;
+
+        private final CTFStreamInput fStreamInput;
+        private final ICTFPacketHandler fHandler;
+        private final AtomicReference<@Nullable Exception> fError;
+
+        public StreamInputTask(CTFStreamInput streamInput, ICTFPacketHandler handler, AtomicReference<@Nullable Exception> error) {
+            fStreamInput = streamInput;
+            fHandler = handler;
+            fError = error;
+        }
+
+        @Override
+        protected void compute() {
+            try (FileChannel fileChannel = FileChannel.open(fStreamInput.getFile().toPath(), StandardOpenOption.READ)) {
+                while (!isStopped() && fStreamInput.addPacketHeaderIndex()) {
+                    /* Index all the packets */
+                }
+                StreamInputPacketIndex index = fStreamInput.getIndex();
+                PacketTask task = new PacketTask(this, fileChannel, index, 0, index.size());
+                /* Read the packets while the file is open */
+                task.invoke();
+            } catch (IOException e) {
+                fail(new CTFIOException(e));
+            } catch (CTFException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private boolean isStopped() {
+            return fCanceled || fError.get() != null;
+        }
+
+        private void fail(Exception e) {
+            fError.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Read a range of packets of a stream input, splitting it in two sub-tasks
+     * if there are more than one packet
+     */
+    private static final class PacketTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -4107390163236564785L;
+
+        private final StreamInputTask fParent;
+        private final FileChannel fFileChannel;
+        private final StreamInputPacketIndex fIndex;
+        private final int fStart;
+        private final int fEnd;
+
+        public PacketTask(StreamInputTask parent, FileChannel fileChannel, StreamInputPacketIndex index, int start, int end) {
+            fParent = parent;
+            fFileChannel = fileChannel;
+            fIndex = index;
+            fStart = start;
+            fEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (fEnd - fStart > 1) {
+                int middle = (fStart + fEnd) >>> 1;
+                invokeAll(new PacketTask(fParent, fFileChannel, fIndex, fStart, middle),
+                        new PacketTask(fParent, fFileChannel, fIndex, middle, fEnd));
+                return;
+            }
+            if (fStart == fEnd || fParent.isStopped()) {
+                return;
+            }
+            try {
+                ICTFPacketDescriptor packet = fIndex.getElement(fStart);
+                CTFStreamInput streamInput = fParent.fStreamInput;
+                IPacketReader reader = CTFStreamInputReader.createPacketReader(streamInput, fFileChannel, packet);
+                fParent.fHandler.handlePacket(streamInput, packet, reader);
+            } catch (CTFException | RuntimeException e) {
+                fParent.fail(e);
+            }
+        }
+    }
+}
@@ -18,7 +18,13 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -46,6 +52,16 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
 
+    /**
+     * Number of events decoded by each prefetch task
+     */
+    private static final int PREFETCH_BATCH_SIZE = 256;
+
+    /**
+     * Maximum number of decoded batches waiting to be read, per stream
+     */
+    private static final int PREFETCH_MAX_BATCHES = 4;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -62,7 +78,7 @@ public class CTFStreamInputReader implements AutoCloseable {
     /**
      * The packet reader used to read packets from this trace file.
      */
-    private IPacketReader fPacketReader;
+    private volatile IPacketReader fPacketReader;
 
     /**
      * Iterator on the packet index
@@ -80,7 +96,13 @@ public class CTFStreamInputReader implements AutoCloseable {
     /**
      * Live trace reading
      */
-    private boolean fLive = false;
+    private volatile boolean fLive = false;
+
+    /**
+     * Decodes the events ahead of time, null if the events are decoded when
+     * they are read
+     */
+    private @Nullable Prefetcher fPrefetcher;
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -94,6 +116,26 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             If the file cannot be opened
      */
     public CTFStreamInputReader(CTFStreamInput streamInput) throws CTFException {
+        this(streamInput, null);
+    }
+
+    /**
+     * Constructs a StreamInputReader that reads a StreamInput. If an executor
+     * is given, the events are decoded ahead of time by tasks running on that
+     * executor, into a bounded buffer. {@link #readNextEvent()} then only
+     * takes the next event from the buffer, and the order of the events is the
+     * same as when they are decoded in the calling thread.
+     *
+     * @param streamInput
+     *            The StreamInput to read.
+     * @param prefetchExecutor
+     *            The executor decoding the events ahead, or null to decode
+     *            them in the thread reading them
+     * @throws CTFException
+     *             If the file cannot be opened
+     * @since 2.1
+     */
+    public CTFStreamInputReader(CTFStreamInput streamInput, @Nullable Executor prefetchExecutor) throws CTFException {
         fStreamInput = streamInput;
         fFile = fStreamInput.getFile();
         try {
@@ -119,6 +161,7 @@ public class CTFStreamInputReader implements AutoCloseable {
             }
             ICTFPacketDescriptor packet = getPacket();
             fPacketReader = getCurrentPacketReader(packet);
+            fPrefetcher = (prefetchExecutor != null) ? new Prefetcher(prefetchExecutor) : null;
         } catch (Exception e) {
             try {
                 close();
@@ -132,19 +175,37 @@ public class CTFStreamInputReader implements AutoCloseable {
     private IPacketReader getCurrentPacketReader(@Nullable ICTFPacketDescriptor packet) throws CTFException {
         IPacketReader ctfPacketReader = NullPacketReader.INSTANCE;
         if (packet != null) {
-            long size = packet.getContentSizeBits();
-            if (size < 0) {
-                throw new CTFIOException("Cannot have negative sized buffers."); //$NON-NLS-1$
-            }
-            BitBuffer bitBuffer = new BitBuffer(getByteBufferAt(packet.getOffsetBits(), size));
-            bitBuffer.position(packet.getPayloadStartBits());
-            IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
-            CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            ctfPacketReader = createPacketReader(fStreamInput, fFileChannel, packet);
         }
         return ctfPacketReader;
     }
 
+    /**
+     * Create a reader for the events of a packet
+     *
+     * @param streamInput
+     *            the stream input containing the packet
+     * @param fileChannel
+     *            the opened file of the stream input
+     * @param packet
+     *            the packet to read
+     * @return the packet reader
+     * @throws CTFException
+     *             if the packet cannot be mapped
+     */
+    static IPacketReader createPacketReader(CTFStreamInput streamInput, @Nullable FileChannel fileChannel, ICTFPacketDescriptor packet) throws CTFException {
+        long size = packet.getContentSizeBits();
+        if (size < 0) {
+            throw new CTFIOException("Cannot have negative sized buffers."); //$NON-NLS-1$
+        }
+        BitBuffer bitBuffer = new BitBuffer(map(fileChannel, packet.getOffsetBits(), size));
+        bitBuffer.position(packet.getPayloadStartBits());
+        ICTFStream stream = streamInput.getStream();
+        IDeclaration eventHeaderDeclaration = stream.getEventHeaderDeclaration();
+        CTFTrace trace = stream.getTrace();
+        return new CTFPacketReader(bitBuffer, packet, stream.getEventDeclarations(), eventHeaderDeclaration, stream.getEventContextDecl(), trace.getPacketHeaderDef(), trace);
+    }
+
     /**
      * Get a bytebuffer map of the file
      *
@@ -159,9 +220,13 @@ public class CTFStreamInputReader implements AutoCloseable {
      * @since 2.0
      */
     public ByteBuffer getByteBufferAt(long position, long size) throws CTFException {
+        return map(fFileChannel, position, size);
+    }
+
+    private static ByteBuffer map(@Nullable FileChannel fileChannel, long position, long size) throws CTFException {
         ByteBuffer map;
         try {
-            map = SafeMappedByteBuffer.map(fFileChannel, MapMode.READ_ONLY, position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
+            map = SafeMappedByteBuffer.map(fileChannel, MapMode.READ_ONLY, position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
         } catch (IOException e) {
             throw new CTFIOException(e.getMessage(), e);
         }
@@ -180,10 +245,20 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
-        if (fFileChannel != null) {
-            fFileChannel.close();
+        Prefetcher prefetcher = fPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.pause();
+        }
+        try {
+            if (fFileChannel != null) {
+                fFileChannel.close();
+            }
+            fPacketReader = NullPacketReader.INSTANCE;
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.resume();
+            }
         }
-        fPacketReader = NullPacketReader.INSTANCE;
     }
 
     // ------------------------------------------------------------------------
@@ -295,6 +370,23 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFResponse readNextEvent() throws CTFException {
+        Prefetcher prefetcher = fPrefetcher;
+        IEventDefinition event = (prefetcher != null) ? prefetcher.next() : decodeNextEvent();
+        setCurrentEvent(event);
+        if (event != null) {
+            return CTFResponse.OK;
+        }
+        return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+    }
+
+    /**
+     * Decode the next event of the stream
+     *
+     * @return the event, or null if there are no more events for now
+     * @throws CTFException
+     *             if an error occurs
+     */
+    private @Nullable IEventDefinition decodeNextEvent() throws CTFException {
 
         /*
          * Change packet if needed
@@ -311,11 +403,9 @@ public class CTFStreamInputReader implements AutoCloseable {
          * If an event is available, read it.
          */
         if (fPacketReader.hasMoreEvents()) {
-            setCurrentEvent(fPacketReader.readNextEvent());
-            return CTFResponse.OK;
+            return fPacketReader.readNextEvent();
         }
-        this.setCurrentEvent(null);
-        return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+        return null;
     }
 
     /**
@@ -360,6 +450,26 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public long seek(long timestamp) throws CTFException {
+        Prefetcher prefetcher = fPrefetcher;
+        if (prefetcher == null) {
+            return seekEvent(timestamp);
+        }
+        /*
+         * Discard the events decoded ahead, and decode the events read during
+         * the seek in this thread. The decoding resumes after the new current
+         * event.
+         */
+        prefetcher.pause();
+        fPrefetcher = null;
+        try {
+            return seekEvent(timestamp);
+        } finally {
+            fPrefetcher = prefetcher;
+            prefetcher.resume();
+        }
+    }
+
+    private long seekEvent(long timestamp) throws CTFException {
         long offset = 0;
 
         gotoPacket(timestamp);
@@ -421,6 +531,22 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public void goToLastEvent() throws CTFException {
+        Prefetcher prefetcher = fPrefetcher;
+        if (prefetcher == null) {
+            goToLastEventInternal();
+            return;
+        }
+        prefetcher.pause();
+        fPrefetcher = null;
+        try {
+            goToLastEventInternal();
+        } finally {
+            fPrefetcher = prefetcher;
+            prefetcher.resume();
+        }
+    }
+
+    private void goToLastEventInternal() throws CTFException {
 
         /*
          * Go to the beginning of the trace
@@ -503,7 +629,8 @@ public class CTFStreamInputReader implements AutoCloseable {
     }
 
     /**
-     * Get the current packet reader
+     * Get the current packet reader. If the events are decoded ahead, it may
+     * be the reader of a packet after the one of the current event.
      *
      * @return the packetReader
      * @since 2.0
@@ -546,4 +673,212 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fId + ' ' + NonNullUtils.nullToEmptyString(fCurrentEvent);
     }
 
+    // ------------------------------------------------------------------------
+    // Prefetching
+    // ------------------------------------------------------------------------
+
+    /**
+     * Events decoded by a prefetch task. The last batch of a run of the
+     * decoder, when it reached the end of the stream or failed, may hold less
+     * events, or none.
+     */
+    private static final class Batch {
+
+        private final @Nullable IEventDefinition[] fEvents;
+        private final int fSize;
+        private final boolean fLast;
+        private final @Nullable Throwable fError;
+
+        public Batch(@Nullable IEventDefinition[] events, int size, boolean last, @Nullable Throwable error) {
+            fEvents = events;
+            fSize = size;
+            fLast = last;
+            fError = error;
+        }
+
+        public void throwError() throws CTFException {
+            Throwable error = fError;
+            if (error instanceof CTFException) {
+                throw (CTFException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+        }
+    }
+
+    /**
+     * Decodes the events of the stream ahead of time, one batch per task, and
+     * keeps up to {@link #PREFETCH_MAX_BATCHES} batches for the reading
+     * thread. Only one task is scheduled at a time, so the state of the
+     * decoder is only modified by one thread at a time.
+     */
+    private final class Prefetcher implements Runnable {
+
+        private final Executor fExecutor;
+
+        /**
+         * Held while decoding a batch and queuing it, and by the reading
+         * thread while it moves the decoder. Always taken before fQueueLock.
+         */
+        private final ReentrantLock fDecodeLock = new ReentrantLock();
+
+        private final ReentrantLock fQueueLock = new ReentrantLock();
+        private final Condition fNotEmpty = fQueueLock.newCondition();
+        /* The decoded batches and whether a task is scheduled, guarded by fQueueLock */
+        private final Deque<Batch> fBatches = new ArrayDeque<>();
+        private boolean fScheduled = false;
+
+        /* The batch being read and the position in it, reading thread only */
+        private @Nullable Batch fCurrent = null;
+        private int fPosition = 0;
+
+        public Prefetcher(Executor executor) {
+            fExecutor = executor;
+        }
+
+        @Override
+        public void run() {
+            boolean more = false;
+            fDecodeLock.lock();
+            try {
+                Batch batch = decodeBatch();
+                fQueueLock.lock();
+                try {
+                    fBatches.add(batch);
+                    more = !batch.fLast && fBatches.size() < PREFETCH_MAX_BATCHES;
+                } finally {
+                    fQueueLock.unlock();
+                }
+            } finally {
+                /*
+                 * Even if no batch could be queued, the reading thread must
+                 * not keep waiting for this task. It schedules a new one.
+                 */
+                fQueueLock.lock();
+                try {
+                    fScheduled = more;
+                    fNotEmpty.signalAll();
+                } finally {
+                    fQueueLock.unlock();
+                }
+                fDecodeLock.unlock();
+            }
+            if (more) {
+                schedule();
+            }
+        }
+
+        private Batch decodeBatch() {
+            @Nullable IEventDefinition[] events = new @Nullable IEventDefinition[PREFETCH_BATCH_SIZE];
+            int size = 0;
+            try {
+                FileChannel fileChannel = fFileChannel;
+                while (size < PREFETCH_BATCH_SIZE && fileChannel != null && fileChannel.isOpen()) {
+                    IEventDefinition event = decodeNextEvent();
+                    if (event == null) {
+                        return new Batch(events, size, true, null);
+                    }
+                    events[size++] = event;
+                }
+                return new Batch(events, size, size < PREFETCH_BATCH_SIZE, null);
+            } catch (CTFException | RuntimeException | Error e) {
+                /* The reading thread gets the failure with the last batch */
+                return new Batch(events, size, true, e);
+            }
+        }
+
+        private void schedule() {
+            try {
+                fExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                /* The executor is shut down, decode in this thread */
+                run();
+            }
+        }
+
+        /**
+         * Get the next decoded event, waiting for it if needed
+         *
+         * @return the event, or null if the decoder reached the end of the
+         *         stream
+         * @throws CTFException
+         *             if the decoder failed
+         */
+        public @Nullable IEventDefinition next() throws CTFException {
+            Batch batch = fCurrent;
+            if (batch == null) {
+                batch = take();
+                fCurrent = batch;
+                fPosition = 0;
+            }
+            if (fPosition < batch.fSize) {
+                IEventDefinition event = batch.fEvents[fPosition];
+                /* Do not keep a reference to the events already read */
+                batch.fEvents[fPosition++] = null;
+                if (fPosition == batch.fSize && !batch.fLast) {
+                    fCurrent = null;
+                }
+                return event;
+            }
+            /*
+             * The decoder stopped after this batch, the next call decodes
+             * again, to read the events appended to a live trace.
+             */
+            fCurrent = null;
+            batch.throwError();
+            return null;
+        }
+
+        private Batch take() {
+            while (true) {
+                Batch batch;
+                boolean schedule;
+                fQueueLock.lock();
+                try {
+                    while (fBatches.isEmpty() && fScheduled) {
+                        fNotEmpty.awaitUninterruptibly();
+                    }
+                    batch = fBatches.poll();
+                    /* Keep decoding while the batch is read */
+                    schedule = !fScheduled && (batch == null || !batch.fLast);
+                    fScheduled |= schedule;
+                } finally {
+                    fQueueLock.unlock();
+                }
+                if (schedule) {
+                    schedule();
+                }
+                if (batch != null) {
+                    return batch;
+                }
+            }
+        }
+
+        /**
+         * Wait for the current task, if any, and discard the decoded events,
+         * so the calling thread can move the decoder. The decoding restarts at
+         * the new position after {@link #resume()}.
+         */
+        public void pause() {
+            fDecodeLock.lock();
+            fQueueLock.lock();
+            try {
+                fBatches.clear();
+            } finally {
+                fQueueLock.unlock();
+            }
+            fCurrent = null;
+        }
+
+        /**
+         * Let the tasks decode again after {@link #pause()}
+         */
+        public void resume() {
+            fDecodeLock.unlock();
+        }
+    }
 }
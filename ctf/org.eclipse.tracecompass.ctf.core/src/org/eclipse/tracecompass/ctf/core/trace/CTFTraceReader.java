@@ -22,6 +22,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.eclipse.jdt.annotation.Nullable;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -51,6 +54,12 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private final CTFTrace fTrace;
 
+    /**
+     * The executor decoding the events of the trace files ahead, null if they
+     * are decoded when read
+     */
+    private final @Nullable Executor fPrefetchExecutor;
+
     /**
      * Vector of all the trace file readers.
      */
@@ -94,7 +103,31 @@ public class CTFTraceReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFTraceReader(CTFTrace trace) throws CTFException {
+        this(trace, null);
+    }
+
+    /**
+     * Constructs a TraceReader to read a trace, decoding the events of each
+     * trace file ahead of time on an executor. The reading thread then only
+     * merges the decoded events by timestamp, in the same order as the events
+     * read by a reader decoding them itself.
+     *
+     * Each trace file keeps a bounded number of decoded events, and only one
+     * decoding task at a time, so a trace with many trace files can use all
+     * the threads of the executor without one file getting too far ahead.
+     *
+     * @param trace
+     *            The trace to read from.
+     * @param prefetchExecutor
+     *            The executor decoding the events, or null to decode them in
+     *            the reading thread
+     * @throws CTFException
+     *             if an error occurs
+     * @since 2.1
+     */
+    public CTFTraceReader(CTFTrace trace, @Nullable Executor prefetchExecutor) throws CTFException {
         fTrace = trace;
+        fPrefetchExecutor = prefetchExecutor;
         fStreamInputReaders.clear();
 
         /**
@@ -128,7 +161,7 @@ public class CTFTraceReader implements AutoCloseable {
     public CTFTraceReader copyFrom() throws CTFException {
         CTFTraceReader newReader = null;
 
-        newReader = new CTFTraceReader(fTrace);
+        newReader = new CTFTraceReader(fTrace, fPrefetchExecutor);
         newReader.fStartTime = fStartTime;
         newReader.setEndTime(fEndTime);
         return newReader;
@@ -212,7 +245,7 @@ public class CTFTraceReader implements AutoCloseable {
                 /*
                  * Create a reader and add it to the group.
                  */
-                fStreamInputReaders.add(new CTFStreamInputReader(checkNotNull(streamInput)));
+                fStreamInputReaders.add(new CTFStreamInputReader(checkNotNull(streamInput), fPrefetchExecutor));
             }
         }
 
@@ -248,7 +281,7 @@ public class CTFTraceReader implements AutoCloseable {
                  */
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
-                        CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput), fPrefetchExecutor);
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.trace;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+
+/**
+ * Handler of the packets read by a {@link CTFPacketParallelReader}. It is
+ * called concurrently by different threads, for different packets, so it
+ * must be thread-safe.
+ *
+ * @since 2.1
+ */
+@NonNullByDefault
+@FunctionalInterface
+public interface ICTFPacketHandler {
+
+    /**
+     * Handle the events of a packet, by reading them with the packet reader
+     * until it has no more events. The packet reader is only valid during this
+     * call.
+     *
+     * @param streamInput
+     *            The stream input containing the packet
+     * @param packet
+     *            The descriptor of the packet
+     * @param reader
+     *            The reader of the events of the packet, before its first
+     *            event
+     * @throws CTFException
+     *             If an event cannot be read, the reading of the trace is
+     *             then stopped
+     */
+    void handlePacket(CTFStreamInput streamInput, ICTFPacketDescriptor packet, IPacketReader reader) throws CTFException;
+}
@@ -13,8 +13,10 @@
 package org.eclipse.tracecompass.ctf.core.trace;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.ICTFEventCursor;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.trace.CTFEventCursor;
 
 /**
  * Packet reader interface, allows for more flexible packet readers. A packet
@@ -63,6 +65,23 @@ public interface IPacketReader {
      */
     IEventDefinition readNextEvent() throws CTFException;
 
+    /**
+     * Reads the next event of the packet into a reusable cursor, without
+     * creating its definition when possible. The cursor is only valid until
+     * the next call to this method.
+     *
+     * The default implementation wraps the definition from
+     * {@link #readNextEvent()}.
+     *
+     * @return The cursor pointing to the event that was just read
+     * @throws CTFException
+     *             If there was a problem reading the trace
+     * @since 2.1
+     */
+    default ICTFEventCursor readNextEventCursor() throws CTFException {
+        return new CTFEventCursor().setDefinition(readNextEvent());
+    }
+
     /**
      * Get the packet being read
      *
@@ -33,6 +33,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructLayout;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
 
@@ -76,6 +77,12 @@ public class EventDeclaration implements IEventDeclaration {
 
     private int fId = (int) UNSET_EVENT_ID;
 
+    /**
+     * Layouts of the context and fields, created on demand
+     */
+    private volatile @Nullable StructLayout fContextLayout = null;
+    private volatile @Nullable StructLayout fFieldsLayout = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -207,6 +214,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setContext(StructDeclaration context) {
         fContext = context;
+        fContextLayout = null;
     }
 
     /**
@@ -217,6 +225,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setFields(StructDeclaration fields) {
         fFields = fields;
+        fFieldsLayout = null;
     }
 
     @Override
@@ -229,6 +238,36 @@ public class EventDeclaration implements IEventDeclaration {
         return fContext;
     }
 
+    /**
+     * Gets the layout of the event context, to read it without creating its
+     * definition
+     *
+     * @return the layout of the context
+     */
+    public StructLayout getContextLayout() {
+        StructLayout layout = fContextLayout;
+        if (layout == null) {
+            layout = StructLayout.create(fContext);
+            fContextLayout = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Gets the layout of the event fields, to read them without creating
+     * their definitions
+     *
+     * @return the layout of the fields
+     */
+    public StructLayout getFieldsLayout() {
+        StructLayout layout = fFieldsLayout;
+        if (layout == null) {
+            layout = StructLayout.create(fFields);
+            fFieldsLayout = layout;
+        }
+        return layout;
+    }
+
     /**
      * Sets the id of an event declaration
      *
@@ -368,7 +407,19 @@ public class EventDeclaration implements IEventDeclaration {
         return calculateTimestamp(value, len, lastTimestamp);
     }
 
-    private static long calculateTimestamp(final long value, int len, long prevTimestamp) {
+    /**
+     * Calculates the timestamp value of an event from a timestamp of a given
+     * length, possibly using the timestamp from the last event.
+     *
+     * @param value
+     *            the value of the timestamp field
+     * @param len
+     *            the length in bits of the timestamp field
+     * @param prevTimestamp
+     *            the timestamp of the previous event
+     * @return The calculated timestamp value.
+     */
+    public static long calculateTimestamp(final long value, int len, long prevTimestamp) {
         long newval;
         long majorasbitmask;
         long lastTimestamp = prevTimestamp;
@@ -13,6 +13,8 @@
 package org.eclipse.tracecompass.internal.ctf.core.event.types;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -24,7 +26,6 @@ import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 
@@ -55,9 +56,10 @@ public final class ArrayDeclaration extends CompoundDeclaration {
      * ex: field &#8594; &lbrace;field&lbrack;0&rbrack;, field&lbrack;1&rbrack;, &hellip; field&lbrack;n&rbrack;&rbrace;
      * </pre>
      *
-     * TODO: investigate performance
+     * The lists are immutable, the cache is shared by the readers of the
+     * trace.
      */
-    private final transient ArrayListMultimap<String, String> fChildrenNames = ArrayListMultimap.create();
+    private final transient Map<String, List<String>> fChildrenNames = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -123,12 +125,15 @@ public final class ArrayDeclaration extends CompoundDeclaration {
 
     private @NonNull List<@NonNull Definition> read(@NonNull BitBuffer input, @Nullable IDefinitionScope definitionScope, String fieldName) throws CTFException {
         Builder<@NonNull Definition> definitions = new ImmutableList.Builder<>();
-        if (!fChildrenNames.containsKey(fieldName)) {
+        List<String> elemNames = fChildrenNames.get(fieldName);
+        if (elemNames == null) {
+            Builder<String> names = new ImmutableList.Builder<>();
             for (int i = 0; i < fLength; i++) {
-                fChildrenNames.put(fieldName, fieldName + '[' + i + ']');
+                names.add(fieldName + '[' + i + ']');
             }
+            elemNames = names.build();
+            fChildrenNames.put(fieldName, elemNames);
         }
-        List<String> elemNames = fChildrenNames.get(fieldName);
         for (int i = 0; i < fLength; i++) {
             String name = elemNames.get(i);
             if (name == null) {
@@ -13,8 +13,9 @@ package org.eclipse.tracecompass.internal.ctf.core.event.types;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -28,10 +29,8 @@ import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.Multimap;
 
 /**
  * A CTF sequence declaration.
@@ -49,7 +48,12 @@ public class SequenceDeclaration extends CompoundDeclaration {
 
     private final IDeclaration fElemType;
     private final String fLengthName;
-    private final transient Multimap<String, String> fPaths = ArrayListMultimap.create();
+    /*
+     * Immutable lists of the element names, replaced by longer lists when
+     * longer sequences are read. The cache is shared by the readers of the
+     * trace.
+     */
+    private final transient Map<String, List<String>> fPaths = new ConcurrentHashMap<>();
 
     // ------------------------------------------------------------------------
     // Constructors
@@ -124,11 +128,16 @@ public class SequenceDeclaration extends CompoundDeclaration {
             input.get(data);
             return new ByteArrayDefinition(this, definitionScope, fieldName, data);
         }
-        Collection<String> collection = fPaths.get(fieldName);
-        while (collection.size() < length) {
-            fPaths.put(fieldName, fieldName + '[' + collection.size() + ']');
+        List<String> paths = fPaths.get(fieldName);
+        if (paths == null || paths.size() < length) {
+            int size = (int) Math.max(length, paths == null ? 0 : 2L * paths.size());
+            Builder<String> names = new ImmutableList.Builder<>();
+            for (int i = 0; i < size; i++) {
+                names.add(fieldName + '[' + i + ']');
+            }
+            paths = names.build();
+            fPaths.put(fieldName, paths);
         }
-        List<String> paths = (List<String>) fPaths.get(fieldName);
         Builder<@NonNull Definition> definitions = new ImmutableList.Builder<>();
         for (int i = 0; i < length; i++) {
             /* We should not have inserted any null values */
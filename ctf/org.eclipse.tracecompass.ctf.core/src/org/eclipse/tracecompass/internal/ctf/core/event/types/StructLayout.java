@@ -0,0 +1,488 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Flat layout of the fields of a struct declaration, used to go through an
+ * event without creating its definitions. Reading a struct with a layout only
+ * records the position of each of its top-level fields in a <code>long</code>
+ * array, the value of a field is then read from the buffer on demand.
+ *
+ * The layout is compiled once per declaration, the metadata being fixed for a
+ * trace. Consecutive fields of a fixed size, where no field is more aligned
+ * than the first one, form a group whose field offsets are computed in
+ * advance: reading a group is a single alignment and position move instead of
+ * going through the declaration tree field by field. Only strings, sequences
+ * and the compound fields containing them are read one by one.
+ *
+ * Only the declarations with a size known from the buffer and the previous
+ * fields are supported: integers up to 64 bits, enums, floats, strings,
+ * nested structs and arrays of those, and sequences whose length is an
+ * earlier integer field of the same struct. Variants and sequences referring
+ * to other scopes make the layout unsupported, and these events must be read
+ * with the definitions.
+ *
+ * A layout is immutable and can be shared between threads.
+ */
+@NonNullByDefault
+public final class StructLayout {
+
+    private static final int BITS_PER_BYTE = 8;
+    private static final int MAX_INTEGER_LENGTH = 64;
+    private static final long VARIABLE_SIZE = -1;
+
+    /** Layout of a missing struct, no fields to read */
+    private static final StructLayout EMPTY = new StructLayout(1, new String[0], new IDeclaration[0], new int[0], true);
+
+    private final long fAlignment;
+    private final String[] fNames;
+    private final IDeclaration[] fDeclarations;
+    /** Index of the length field of each sequence field, -1 otherwise */
+    private final int[] fLengthIndexes;
+    private final boolean fSupported;
+
+    /* The compiled plan, per field */
+    private final @Nullable IntegerDeclaration[] fIntegers;
+    private final long[] fAlignments;
+    /** Size in bits of the fixed size fields, of the elements of sequences */
+    private final long[] fSizes;
+    /** Offset of the fixed size fields from the start of their group */
+    private final long[] fOffsets;
+    /** End of the group starting at a field, 0 if no group starts there */
+    private final int[] fGroupEnds;
+    private final long[] fGroupSizes;
+
+    private StructLayout(long alignment, String[] names, IDeclaration[] declarations, int[] lengthIndexes, boolean supported) {
+        fAlignment = alignment;
+        fNames = names;
+        fDeclarations = declarations;
+        fLengthIndexes = lengthIndexes;
+        fSupported = supported;
+
+        int size = declarations.length;
+        fIntegers = new @Nullable IntegerDeclaration[size];
+        fAlignments = new long[size];
+        fSizes = new long[size];
+        fOffsets = new long[size];
+        fGroupEnds = new int[size];
+        fGroupSizes = new long[size];
+        for (int i = 0; i < size; i++) {
+            IDeclaration declaration = declarations[i];
+            if (declaration instanceof IntegerDeclaration) {
+                fIntegers[i] = (IntegerDeclaration) declaration;
+            } else if (declaration instanceof EnumDeclaration) {
+                fIntegers[i] = ((EnumDeclaration) declaration).getContainerType();
+            }
+            fAlignments[i] = declaration.getAlignment();
+            if (lengthIndexes[i] >= 0) {
+                /* A fixed size element is skipped with its array */
+                IDeclaration element = ((CompoundDeclaration) declaration).getElementType();
+                long elementSize = getFixedSize(element);
+                fSizes[i] = (elementSize >= 0 && elementSize % element.getAlignment() == 0) ? elementSize : VARIABLE_SIZE;
+            } else {
+                fSizes[i] = getFixedSize(declaration);
+            }
+        }
+        int i = 0;
+        while (i < size) {
+            if (lengthIndexes[i] >= 0 || fSizes[i] < 0) {
+                i++;
+                continue;
+            }
+            long groupAlignment = fAlignments[i];
+            long offset = 0;
+            int j = i;
+            while (j < size && lengthIndexes[j] < 0 && fSizes[j] >= 0 && fAlignments[j] <= groupAlignment) {
+                offset = alignUp(offset, fAlignments[j]);
+                fOffsets[j] = offset;
+                offset += fSizes[j];
+                j++;
+            }
+            fGroupEnds[i] = j;
+            fGroupSizes[i] = offset;
+            i = j;
+        }
+    }
+
+    /**
+     * Create the layout of a struct declaration
+     *
+     * @param declaration
+     *            The struct declaration, can be null if the struct is not in
+     *            the trace
+     * @return The layout, check {@link #isSupported()} before reading with it
+     */
+    public static StructLayout create(@Nullable StructDeclaration declaration) {
+        if (declaration == null) {
+            return EMPTY;
+        }
+        int size = Iterables.size(declaration.getFieldsList());
+        String[] names = new String[size];
+        IDeclaration[] declarations = new IDeclaration[size];
+        int[] lengthIndexes = new int[size];
+        boolean supported = true;
+        int i = 0;
+        for (String name : declaration.getFieldsList()) {
+            IDeclaration field = declaration.getField(name);
+            names[i] = name;
+            declarations[i] = field;
+            lengthIndexes[i] = -1;
+            if (field instanceof SequenceDeclaration) {
+                SequenceDeclaration sequence = (SequenceDeclaration) field;
+                int lengthIndex = indexOf(names, i, sequence.getLengthName());
+                if (lengthIndex < 0 || !isUnsignedInteger(declarations[lengthIndex])) {
+                    supported = false;
+                }
+                lengthIndexes[i] = lengthIndex;
+                supported &= isSkippable(sequence.getElementType());
+            } else {
+                supported &= isSkippable(field);
+            }
+            i++;
+        }
+        return new StructLayout(declaration.getAlignment(), names, declarations, lengthIndexes, supported);
+    }
+
+    private static int indexOf(String[] names, int count, String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isUnsignedInteger(IDeclaration declaration) {
+        return declaration instanceof IntegerDeclaration && !((IntegerDeclaration) declaration).isSigned();
+    }
+
+    private static boolean isSkippable(@Nullable IDeclaration declaration) {
+        if (declaration instanceof IntegerDeclaration) {
+            return ((IntegerDeclaration) declaration).getLength() <= MAX_INTEGER_LENGTH;
+        }
+        if (declaration instanceof EnumDeclaration) {
+            return isSkippable(((EnumDeclaration) declaration).getContainerType());
+        }
+        if (declaration instanceof FloatDeclaration || declaration instanceof StringDeclaration) {
+            return true;
+        }
+        if (declaration instanceof ArrayDeclaration) {
+            return isSkippable(((ArrayDeclaration) declaration).getElementType());
+        }
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String name : struct.getFieldsList()) {
+                if (!isSkippable(struct.getField(name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the size in bits of a declaration when it does not depend on the
+     * data, assuming it starts aligned
+     */
+    private static long getFixedSize(IDeclaration declaration) {
+        if (declaration instanceof IntegerDeclaration) {
+            return ((IntegerDeclaration) declaration).getLength();
+        }
+        if (declaration instanceof EnumDeclaration) {
+            return getFixedSize(((EnumDeclaration) declaration).getContainerType());
+        }
+        if (declaration instanceof FloatDeclaration) {
+            FloatDeclaration floatDeclaration = (FloatDeclaration) declaration;
+            int length = floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+            /* Other sizes are not read by the float declaration */
+            return (length == Integer.SIZE || length == Long.SIZE) ? length : 0;
+        }
+        if (declaration instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) declaration;
+            if (array.isAlignedBytes()) {
+                return (long) array.getLength() * BITS_PER_BYTE;
+            }
+            IDeclaration element = array.getElementType();
+            long elementSize = getFixedSize(element);
+            if (elementSize < 0 || elementSize % element.getAlignment() != 0) {
+                return VARIABLE_SIZE;
+            }
+            return array.getLength() * elementSize;
+        }
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            long offset = 0;
+            for (String name : struct.getFieldsList()) {
+                IDeclaration field = struct.getField(name);
+                long fieldSize = field == null ? VARIABLE_SIZE : getFixedSize(field);
+                if (fieldSize < 0) {
+                    return VARIABLE_SIZE;
+                }
+                offset = alignUp(offset, field.getAlignment()) + fieldSize;
+            }
+            return offset;
+        }
+        return VARIABLE_SIZE;
+    }
+
+    private static long alignUp(long value, long alignment) {
+        long mask = alignment - 1;
+        return (value + mask) & ~mask;
+    }
+
+    // ------------------------------------------------------------------------
+    // Accessors
+    // ------------------------------------------------------------------------
+
+    /**
+     * Whether all the fields of the struct can be read with this layout
+     *
+     * @return true if the layout can be used
+     */
+    public boolean isSupported() {
+        return fSupported;
+    }
+
+    /**
+     * Get the number of top-level fields, the size of the positions arrays
+     *
+     * @return the number of fields
+     */
+    public int size() {
+        return fNames.length;
+    }
+
+    /**
+     * Get the index of a field
+     *
+     * @param name
+     *            the name of the field
+     * @return the index of the field in the declaration order, -1 if there is
+     *         no such field
+     */
+    public int indexOf(String name) {
+        return indexOf(fNames, fNames.length, name);
+    }
+
+    /**
+     * Get the declaration of a field
+     *
+     * @param index
+     *            the index of the field
+     * @return the declaration of the field
+     */
+    public IDeclaration getDeclaration(int index) {
+        return fDeclarations[index];
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Go through the struct at the current position of the buffer, recording
+     * the position of each field. The buffer is left after the struct, like
+     * after creating its definition.
+     *
+     * @param input
+     *            the buffer
+     * @param positions
+     *            the array receiving the positions, of at least
+     *            {@link #size()} elements
+     * @throws CTFException
+     *             if the struct goes beyond the end of the buffer
+     */
+    public void read(BitBuffer input, long[] positions) throws CTFException {
+        align(input, fAlignment);
+        int i = 0;
+        while (i < fDeclarations.length) {
+            int groupEnd = fGroupEnds[i];
+            if (groupEnd > i) {
+                /* Fixed size fields, at known offsets from the first one */
+                align(input, fAlignments[i]);
+                long start = input.position();
+                for (int j = i; j < groupEnd; j++) {
+                    positions[j] = start + fOffsets[j];
+                }
+                input.position(start + fGroupSizes[i]);
+                i = groupEnd;
+            } else {
+                positions[i] = input.position();
+                if (fLengthIndexes[i] >= 0) {
+                    skipSequence(input, positions, i);
+                } else {
+                    skip(input, fDeclarations[i]);
+                }
+                i++;
+            }
+        }
+    }
+
+    private void skipSequence(BitBuffer input, long[] positions, int index) throws CTFException {
+        CompoundDeclaration sequence = (CompoundDeclaration) fDeclarations[index];
+        IDeclaration element = sequence.getElementType();
+        long length = readInteger(input, positions, fLengthIndexes[index]);
+        if ((length > Integer.MAX_VALUE) || (!input.canRead((int) length * element.getMaximumSize()))) {
+            throw new CTFException("Sequence length too long " + length); //$NON-NLS-1$
+        }
+        long elementSize = fSizes[index];
+        if (sequence.isAlignedBytes() || elementSize < 0 || length == 0) {
+            skipElements(input, sequence, length);
+            return;
+        }
+        /* Only the first element needs to be aligned */
+        align(input, element.getAlignment());
+        input.position(input.position() + length * elementSize);
+    }
+
+    /**
+     * Read the value of an integer or enum field recorded by
+     * {@link #read(BitBuffer, long[])}. The position and byte order of the
+     * buffer are preserved.
+     *
+     * @param input
+     *            the buffer
+     * @param positions
+     *            the positions recorded when reading the struct
+     * @param index
+     *            the index of the field
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field could not be read
+     */
+    public long readInteger(BitBuffer input, long[] positions, int index) throws CTFException {
+        IntegerDeclaration integer = fIntegers[index];
+        if (integer == null) {
+            throw new IllegalArgumentException("Field " + fNames[index] + " is not an integer"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        long position = input.position();
+        ByteOrder byteOrder = input.getByteOrder();
+        try {
+            input.position(positions[index]);
+            align(input, integer.getAlignment());
+            input.setByteOrder(integer.getByteOrder());
+            return input.get(integer.getLength(), integer.isSigned());
+        } finally {
+            input.setByteOrder(byteOrder);
+            input.position(position);
+        }
+    }
+
+    /**
+     * Read the value of a string field recorded by
+     * {@link #read(BitBuffer, long[])}. The position of the buffer is
+     * preserved.
+     *
+     * @param input
+     *            the buffer
+     * @param positions
+     *            the positions recorded when reading the struct
+     * @param index
+     *            the index of the field
+     * @return the value of the field, or null if it is not a string
+     * @throws CTFException
+     *             if the field could not be read
+     */
+    public @Nullable String readString(BitBuffer input, long[] positions, int index) throws CTFException {
+        if (!(fDeclarations[index] instanceof StringDeclaration)) {
+            return null;
+        }
+        long position = input.position();
+        try {
+            input.position(positions[index]);
+            align(input, BITS_PER_BYTE);
+            StringBuilder sb = new StringBuilder();
+            char c = (char) input.get(BITS_PER_BYTE, false);
+            while (c != 0) {
+                sb.append(c);
+                c = (char) input.get(BITS_PER_BYTE, false);
+            }
+            return sb.toString();
+        } finally {
+            input.position(position);
+        }
+    }
+
+    private static void align(BitBuffer input, long alignment) throws CTFException {
+        long mask = alignment - 1;
+        long pos = input.position();
+        if ((pos & mask) != 0) {
+            input.position((pos + mask) & ~mask);
+        }
+    }
+
+    /**
+     * Move the buffer after a field, the same way creating its definition
+     * would
+     */
+    private static void skip(BitBuffer input, IDeclaration declaration) throws CTFException {
+        if (declaration instanceof IntegerDeclaration) {
+            align(input, declaration.getAlignment());
+            input.position(input.position() + ((IntegerDeclaration) declaration).getLength());
+        } else if (declaration instanceof EnumDeclaration) {
+            skip(input, ((EnumDeclaration) declaration).getContainerType());
+        } else if (declaration instanceof FloatDeclaration) {
+            FloatDeclaration floatDeclaration = (FloatDeclaration) declaration;
+            align(input, declaration.getAlignment());
+            int length = floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+            /* Other sizes are not read by the float declaration */
+            if (length == Integer.SIZE || length == Long.SIZE) {
+                input.position(input.position() + length);
+            }
+        } else if (declaration instanceof StringDeclaration) {
+            align(input, BITS_PER_BYTE);
+            while (input.get(BITS_PER_BYTE, false) != 0) {
+                /* Skip to the null character */
+            }
+        } else if (declaration instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) declaration;
+            align(input, array.getAlignment());
+            skipElements(input, array, array.getLength());
+        } else if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            align(input, struct.getAlignment());
+            for (String name : struct.getFieldsList()) {
+                skip(input, checkNotNull(struct.getField(name)));
+            }
+        } else {
+            throw new IllegalStateException("Unsupported declaration " + declaration); //$NON-NLS-1$
+        }
+    }
+
+    private static void skipElements(BitBuffer input, CompoundDeclaration declaration, long length) throws CTFException {
+        if (declaration.isAlignedBytes()) {
+            input.position(input.position() + length * BITS_PER_BYTE);
+            return;
+        }
+        IDeclaration elementType = declaration.getElementType();
+        for (long i = 0; i < length; i++) {
+            skip(input, elementType);
+        }
+    }
+}
@@ -150,6 +150,23 @@ public final class EventHeaderCompactDeclaration extends Declaration implements
 
     @Override
     public EventHeaderDefinition createDefinition(@Nullable IDefinitionScope definitionScope, String fieldName, BitBuffer input) throws CTFException {
+        long[] header = new long[3];
+        readHeader(input, header);
+        return new EventHeaderDefinition(this, (int) header[0], header[1], (int) header[2]);
+    }
+
+    /**
+     * Read an event header without creating its definition
+     *
+     * @param input
+     *            the buffer, at the start of the event header
+     * @param header
+     *            array receiving the id, the timestamp and the length in bits
+     *            of the timestamp
+     * @throws CTFException
+     *             if the header could not be read
+     */
+    public void readHeader(BitBuffer input, long[] header) throws CTFException {
         alignRead(input);
         ByteOrder bo = input.getByteOrder();
         input.setByteOrder(fByteOrder);
@@ -157,7 +174,10 @@ public final class EventHeaderCompactDeclaration extends Declaration implements
         if (enumId != EXTENDED_VALUE) {
             long timestamp2 = input.get(COMPACT_TS, false);
             input.setByteOrder(bo);
-            return new EventHeaderDefinition(this, enumId, timestamp2, COMPACT_TS);
+            header[0] = enumId;
+            header[1] = timestamp2;
+            header[2] = COMPACT_TS;
+            return;
         }
         // needed since we read 5 bits
         input.position(input.position() + 3);
@@ -167,8 +187,9 @@ public final class EventHeaderCompactDeclaration extends Declaration implements
         }
         long timestampLong = input.get(FULL_TS, false);
         input.setByteOrder(bo);
-        return new EventHeaderDefinition(this, (int) id, timestampLong, FULL_TS);
-
+        header[0] = id;
+        header[1] = timestampLong;
+        header[2] = FULL_TS;
     }
 
     @Override
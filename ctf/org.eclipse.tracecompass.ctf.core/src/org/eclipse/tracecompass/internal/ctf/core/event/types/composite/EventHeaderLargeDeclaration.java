@@ -177,6 +177,23 @@ public final class EventHeaderLargeDeclaration extends Declaration implements IE
 
     @Override
     public EventHeaderDefinition createDefinition(@Nullable IDefinitionScope definitionScope, String fieldName, BitBuffer input) throws CTFException {
+        long[] header = new long[3];
+        readHeader(input, header);
+        return new EventHeaderDefinition(this, (int) header[0], header[1], (int) header[2]);
+    }
+
+    /**
+     * Read an event header without creating its definition
+     *
+     * @param input
+     *            the buffer, at the start of the event header
+     * @param header
+     *            array receiving the id, the timestamp and the length in bits
+     *            of the timestamp
+     * @throws CTFException
+     *             if the header could not be read
+     */
+    public void readHeader(BitBuffer input, long[] header) throws CTFException {
         alignRead(input);
         ByteOrder bo = input.getByteOrder();
         input.setByteOrder(fByteOrder);
@@ -184,14 +201,19 @@ public final class EventHeaderLargeDeclaration extends Declaration implements IE
         long second = input.get(COMPACT_TS, false);
         if (first != EXTENDED_VALUE) {
             input.setByteOrder(bo);
-            return new EventHeaderDefinition(this, first, second, COMPACT_TS);
+            header[0] = first;
+            header[1] = second;
+            header[2] = COMPACT_TS;
+            return;
         }
         long timestampLong = input.get(FULL_TS, false);
         input.setByteOrder(bo);
         if (second > Integer.MAX_VALUE) {
             throw new CTFException("ID " + second + " larger than " + Integer.MAX_VALUE + " is currently unsupported by the parser"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
         }
-        return new EventHeaderDefinition(this, (int) second, timestampLong, FULL_TS);
+        header[0] = second;
+        header[1] = timestampLong;
+        header[2] = FULL_TS;
     }
 
     @Override
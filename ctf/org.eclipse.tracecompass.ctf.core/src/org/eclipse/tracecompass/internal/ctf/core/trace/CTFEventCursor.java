@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.ICTFEventCursor;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.SimpleDatatypeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructLayout;
+
+/**
+ * Event cursor of a packet reader. The cursor either points to the payload
+ * fields in the packet buffer, as recorded by a {@link StructLayout}, or
+ * wraps an event definition when the event could not be read with the
+ * layouts.
+ */
+@NonNullByDefault
+public final class CTFEventCursor implements ICTFEventCursor {
+
+    private final @Nullable CTFPacketReader fReader;
+    private final @Nullable BitBuffer fInput;
+
+    private @Nullable IEventDefinition fDefinition;
+    private boolean fFromBuffer;
+
+    /* Current event when it is read from the buffer */
+    private @Nullable IEventDeclaration fDeclaration;
+    private @Nullable StructLayout fLayout;
+    private long[] fPositions = new long[0];
+    private long fTimestamp;
+    private int fCPU;
+    private long fStart;
+    private long fPrevTimestamp;
+
+    /**
+     * Constructor of a cursor only wrapping event definitions
+     */
+    public CTFEventCursor() {
+        fReader = null;
+        fInput = null;
+    }
+
+    /**
+     * Constructor of the cursor of a packet reader
+     *
+     * @param reader
+     *            the packet reader, to create the definitions on demand
+     * @param input
+     *            the buffer of the packet reader
+     */
+    CTFEventCursor(CTFPacketReader reader, BitBuffer input) {
+        fReader = reader;
+        fInput = input;
+    }
+
+    /**
+     * Point the cursor to an event definition
+     *
+     * @param definition
+     *            the event definition
+     * @return this cursor
+     */
+    public CTFEventCursor setDefinition(IEventDefinition definition) {
+        fDefinition = definition;
+        fFromBuffer = false;
+        fDeclaration = null;
+        fLayout = null;
+        return this;
+    }
+
+    /**
+     * Get the array to fill with the positions of the payload fields
+     *
+     * @param size
+     *            the number of fields
+     * @return an array of at least size elements
+     */
+    long[] getPositions(int size) {
+        if (fPositions.length < size) {
+            fPositions = new long[Math.max(size, fPositions.length * 2)];
+        }
+        return fPositions;
+    }
+
+    /**
+     * Point the cursor to an event read from the buffer, the positions of its
+     * payload fields being in the array from {@link #getPositions(int)}
+     *
+     * @param declaration
+     *            the event declaration
+     * @param layout
+     *            the layout of the payload fields
+     * @param timestamp
+     *            the timestamp of the event
+     * @param cpu
+     *            the cpu of the event
+     * @param start
+     *            the position of the event header in the buffer
+     * @param prevTimestamp
+     *            the timestamp of the previous event
+     * @return this cursor
+     */
+    CTFEventCursor setEvent(IEventDeclaration declaration, StructLayout layout, long timestamp, int cpu, long start, long prevTimestamp) {
+        fDefinition = null;
+        fFromBuffer = true;
+        fDeclaration = declaration;
+        fLayout = layout;
+        fTimestamp = timestamp;
+        fCPU = cpu;
+        fStart = start;
+        fPrevTimestamp = prevTimestamp;
+        return this;
+    }
+
+    @Override
+    public IEventDeclaration getDeclaration() {
+        IEventDeclaration declaration = fDeclaration;
+        if (fFromBuffer && declaration != null) {
+            return declaration;
+        }
+        return getCurrentDefinition().getDeclaration();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return fFromBuffer ? fTimestamp : getCurrentDefinition().getTimestamp();
+    }
+
+    @Override
+    public int getCPU() {
+        return fFromBuffer ? fCPU : getCurrentDefinition().getCPU();
+    }
+
+    @Override
+    public int getFieldIndex(String name) {
+        StructLayout layout = fLayout;
+        if (fFromBuffer && layout != null) {
+            return layout.indexOf(name);
+        }
+        return getFieldNames().indexOf(name);
+    }
+
+    @Override
+    public long getIntegerField(int index) throws CTFException {
+        StructLayout layout = fLayout;
+        BitBuffer input = fInput;
+        if (fFromBuffer && layout != null && input != null) {
+            return layout.readInteger(input, fPositions, index);
+        }
+        IDefinition field = getField(index);
+        if (field instanceof SimpleDatatypeDefinition) {
+            Long value = ((SimpleDatatypeDefinition) field).getIntegerValue();
+            if (value != null) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Field " + index + " is not an integer"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Override
+    public @Nullable String getStringField(int index) throws CTFException {
+        StructLayout layout = fLayout;
+        BitBuffer input = fInput;
+        if (fFromBuffer && layout != null && input != null) {
+            return layout.readString(input, fPositions, index);
+        }
+        IDefinition field = getField(index);
+        return field instanceof StringDefinition ? ((StringDefinition) field).getValue() : null;
+    }
+
+    @Override
+    public IEventDefinition getDefinition() throws CTFException {
+        IEventDefinition definition = fDefinition;
+        if (definition != null) {
+            return definition;
+        }
+        CTFPacketReader reader = fReader;
+        if (reader == null) {
+            throw new IllegalStateException("No current event"); //$NON-NLS-1$
+        }
+        definition = reader.readDefinitionAt(fStart, fPrevTimestamp);
+        fDefinition = definition;
+        return definition;
+    }
+
+    private IEventDefinition getCurrentDefinition() {
+        IEventDefinition definition = fDefinition;
+        if (definition == null) {
+            throw new IllegalStateException("No current event"); //$NON-NLS-1$
+        }
+        return definition;
+    }
+
+    private List<String> getFieldNames() {
+        ICompositeDefinition fields = getCurrentDefinition().getFields();
+        return fields == null ? Collections.emptyList() : fields.getFieldNames();
+    }
+
+    private IDefinition getField(int index) {
+        ICompositeDefinition fields = getCurrentDefinition().getFields();
+        List<String> names = getFieldNames();
+        if (fields == null || index < 0 || index >= names.size()) {
+            throw new IllegalArgumentException("No field at index " + index); //$NON-NLS-1$
+        }
+        return fields.getDefinition(names.get(index));
+    }
+}
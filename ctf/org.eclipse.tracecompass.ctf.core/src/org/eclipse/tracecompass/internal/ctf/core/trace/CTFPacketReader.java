@@ -18,6 +18,7 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.ICTFEventCursor;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
@@ -38,7 +39,10 @@ import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.event.LostEventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructLayout;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderCompactDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderLargeDeclaration;
 
 /**
  * Packet reader with a fixed bit buffer, should be the fast and easily
@@ -75,6 +79,12 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     private @Nullable ICompositeDefinition fEventHeader;
 
+    /* Reading without definitions */
+    private final CTFEventCursor fCursor;
+    private final long[] fHeader = new long[3];
+    private @Nullable StructLayout fStreamContextLayout;
+    private long[] fContextPositions = new long[0];
+
     /**
      * Constructor
      *
@@ -105,6 +115,7 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         fStreamEventHeaderDecl = eventHeaderDeclaration;
         fStreamContext = streamContext;
         fTracePacketHeader = packetHeader;
+        fCursor = new CTFEventCursor(this, input);
     }
 
     @Override
@@ -194,6 +205,86 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         return eventDef;
     }
 
+    /**
+     * Reads the next event of the packet into the cursor. The events with a
+     * compact or large event header, and whose contexts and fields are
+     * supported by {@link StructLayout}, are read without creating any
+     * definition, the other ones are read with {@link #readNextEvent()}.
+     */
+    @Override
+    public ICTFEventCursor readNextEventCursor() throws CTFException {
+        final long posStart = fInput.position();
+        final IDeclaration streamEventHeaderDecl = fStreamEventHeaderDecl;
+        if ((fHasLost && (posStart >= fPacketContext.getContentSizeBits())) ||
+                !(streamEventHeaderDecl instanceof EventHeaderCompactDeclaration || streamEventHeaderDecl instanceof EventHeaderLargeDeclaration)) {
+            return fCursor.setDefinition(readNextEvent());
+        }
+
+        long[] header = fHeader;
+        if (streamEventHeaderDecl instanceof EventHeaderCompactDeclaration) {
+            ((EventHeaderCompactDeclaration) streamEventHeaderDecl).readHeader(fInput, header);
+        } else {
+            ((EventHeaderLargeDeclaration) streamEventHeaderDecl).readHeader(fInput, header);
+        }
+        int eventID = (int) header[0];
+        IEventDeclaration eventDeclaration = fDeclarations.get(eventID);
+        if (!(eventDeclaration instanceof EventDeclaration)) {
+            throw new CTFIOException("Incorrect event id : " + eventID); //$NON-NLS-1$
+        }
+        EventDeclaration declaration = (EventDeclaration) eventDeclaration;
+        StructLayout streamContextLayout = fStreamContextLayout;
+        if (streamContextLayout == null) {
+            streamContextLayout = StructLayout.create(fStreamContext);
+            fStreamContextLayout = streamContextLayout;
+        }
+        StructLayout contextLayout = declaration.getContextLayout();
+        StructLayout fieldsLayout = declaration.getFieldsLayout();
+        if (!streamContextLayout.isSupported() || !contextLayout.isSupported() || !fieldsLayout.isSupported()) {
+            fInput.position(posStart);
+            return fCursor.setDefinition(readNextEvent());
+        }
+
+        fEventHeader = null;
+        streamContextLayout.read(fInput, getContextPositions(streamContextLayout.size()));
+        contextLayout.read(fInput, getContextPositions(contextLayout.size()));
+        fieldsLayout.read(fInput, fCursor.getPositions(fieldsLayout.size()));
+        long prevTimestamp = fLastTimestamp;
+        fLastTimestamp = EventDeclaration.calculateTimestamp(header[1], (int) header[2], prevTimestamp);
+        return fCursor.setEvent(declaration, fieldsLayout, fLastTimestamp, getCPU(), posStart, prevTimestamp);
+    }
+
+    private long[] getContextPositions(int size) {
+        if (fContextPositions.length < size) {
+            fContextPositions = new long[size];
+        }
+        return fContextPositions;
+    }
+
+    /**
+     * Create the definition of an event read into the cursor, leaving the
+     * reader where it is
+     *
+     * @param start
+     *            the position of the event
+     * @param prevTimestamp
+     *            the timestamp of the event before it
+     * @return the event definition
+     * @throws CTFException
+     *             if the event could not be read
+     */
+    EventDefinition readDefinitionAt(long start, long prevTimestamp) throws CTFException {
+        long position = fInput.position();
+        long lastTimestamp = fLastTimestamp;
+        try {
+            fInput.position(start);
+            fLastTimestamp = prevTimestamp;
+            return readNextEvent();
+        } finally {
+            fInput.position(position);
+            fLastTimestamp = lastTimestamp;
+        }
+    }
+
     private EventDefinition createLostEvent(final ICTFPacketDescriptor currentPacket) {
         IEventDeclaration lostEventDeclaration = LostEventDeclaration.INSTANCE;
         StructDeclaration lostFields = lostEventDeclaration.getFields();
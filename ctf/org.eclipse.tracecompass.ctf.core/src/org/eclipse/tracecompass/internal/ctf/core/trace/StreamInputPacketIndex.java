@@ -17,11 +17,9 @@ package org.eclipse.tracecompass.internal.ctf.core.trace;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
 import java.util.TreeSet;
 
 import org.eclipse.core.runtime.IStatus;
@@ -33,7 +31,8 @@ import org.eclipse.tracecompass.internal.ctf.core.Activator;
  * <b><u>StreamInputPacketIndex</u></b>
  * <p>
  * This is a data structure containing entries, you may append to this and read
- * it. It is not thread safe.
+ * it. The appends are synchronized, and the entries can be read concurrently
+ * without locking, each read seeing the entries appended so far.
  */
 public class StreamInputPacketIndex {
 
@@ -41,11 +40,34 @@ public class StreamInputPacketIndex {
     // Attributes
     // ------------------------------------------------------------------------
 
+    private static final int INITIAL_CAPACITY = 16;
+
     /**
      * Entries of the index. They are sorted by increasing begin timestamp.
-     * index builder.
+     * Each append publishes a new snapshot.
+     */
+    private volatile Entries fEntries = new Entries(new ICTFPacketDescriptor[INITIAL_CAPACITY], 0);
+
+    /**
+     * The entries appended so far. The array can be shared with the next
+     * snapshots, but its elements before the size never change.
      */
-    private final List<ICTFPacketDescriptor> fEntries = new ArrayList<>();
+    private static final class Entries {
+        private final ICTFPacketDescriptor[] fArray;
+        private final int fSize;
+
+        public Entries(ICTFPacketDescriptor[] array, int size) {
+            fArray = array;
+            fSize = size;
+        }
+
+        public ICTFPacketDescriptor get(int index) {
+            if (index < 0 || index >= fSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            return checkNotNull(fArray[index]);
+        }
+    }
 
     // ------------------------------------------------------------------------
     // Operations
@@ -59,7 +81,7 @@ public class StreamInputPacketIndex {
      * @return the number of elements in this data structure
      */
     public int size() {
-        return fEntries.size();
+        return fEntries.fSize;
     }
 
     /**
@@ -68,7 +90,7 @@ public class StreamInputPacketIndex {
      * @return {@code true} if this data structure contains no elements
      */
     public boolean isEmpty() {
-        return fEntries.isEmpty();
+        return fEntries.fSize == 0;
     }
 
     /**
@@ -103,11 +125,18 @@ public class StreamInputPacketIndex {
          * Validate entries are inserted in monotonic increasing timestamp
          * order.
          */
-        if (!fEntries.isEmpty() && (entryToAdd.getTimestampBegin() < lastElement().getTimestampBegin())) {
+        Entries entries = fEntries;
+        int size = entries.fSize;
+        if (size > 0 && (entryToAdd.getTimestampBegin() < entries.get(size - 1).getTimestampBegin())) {
             return false;
         }
 
-        fEntries.add(entryToAdd);
+        ICTFPacketDescriptor[] array = entries.fArray;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = entryToAdd;
+        fEntries = new Entries(array, size + 1);
         return true;
     }
 
@@ -127,7 +156,8 @@ public class StreamInputPacketIndex {
          * needs to be one too. We are looking for a timestamp though, so we use
          * the dataOffset which is a long and use it as a timestamp holder.
          */
-        int index = Collections.binarySearch(fEntries, new StreamInputPacketIndexEntry(timestamp, 0), new FindTimestamp());
+        Entries entries = fEntries;
+        int index = Arrays.binarySearch(entries.fArray, 0, entries.fSize, new StreamInputPacketIndexEntry(timestamp, 0), new FindTimestamp());
         if (index < 0) {
             index = -index - 1;
         }
@@ -140,7 +170,8 @@ public class StreamInputPacketIndex {
      * @return the last element in the index
      */
     public ICTFPacketDescriptor lastElement() {
-        return fEntries.get(fEntries.size() - 1);
+        Entries entries = fEntries;
+        return entries.get(entries.fSize - 1);
     }
 
     /**
@@ -183,7 +214,8 @@ public class StreamInputPacketIndex {
     public int indexOf(ICTFPacketDescriptor element) {
         int indexOf = -1;
         if (element != null) {
-            indexOf = Collections.binarySearch(fEntries, element, new MonotonicComparator());
+            Entries entries = fEntries;
+            indexOf = Arrays.binarySearch(entries.fArray, 0, entries.fSize, element, new MonotonicComparator());
         }
         return (indexOf < 0) ? -1 : indexOf;
     }
@@ -15,6 +15,7 @@ package org.eclipse.tracecompass.tmf.ctf.core.tests.perf.experiment;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -55,6 +56,7 @@ public class ExperimentBenchmark {
     }
     private static final int SAMPLE_SIZE_SLOW = 20;
     private static final int SAMPLE_SIZE = 100;
+    private static final int[] READ_SIZES = { 10, 100, 500 };
 
     private TmfExperimentStub fExperiment;
 
@@ -106,6 +108,33 @@ public class ExperimentBenchmark {
         }
     }
 
+    /**
+     * Benchmark reading experiments of 10, 100 and 500 traces, with only the
+     * experiment request, to measure the merge of the traces' events
+     */
+    @Test
+    public void benchmarkExperimentRead() {
+        Performance perf = Performance.getDefault();
+
+        for (int numTraces : READ_SIZES) {
+            PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "read " + numTraces + " traces");
+            perf.tagAsSummary(pm, "Experiment Benchmark:read " + numTraces + " traces", Dimension.CPU_TIME);
+
+            for (int s = 0; s < SAMPLE_SIZE_SLOW; s++) {
+                initReusingTraces(numTraces);
+                InnerEventRequest expReq = new InnerEventRequest(ITmfEvent.class, 0, ITmfEventRequest.ALL_DATA, ExecutionType.BACKGROUND);
+
+                pm.start();
+                fExperiment.sendRequest(expReq);
+                waitForRequest(expReq, new InnerEventRequest[0]);
+                pm.stop();
+
+                fExperiment.dispose();
+            }
+            pm.commit();
+        }
+    }
+
     /**
      * Initialization
      *
@@ -139,6 +168,36 @@ public class ExperimentBenchmark {
         }
     }
 
+    /**
+     * Initialization of an experiment with a given number of traces, opening
+     * the same traces several times if the directory does not have enough
+     *
+     * @param numTraces
+     *            number of traces to open
+     */
+    private void initReusingTraces(int numTraces) {
+        List<String> paths = new ArrayList<>();
+        for (File traceFile : new File(TRACES_ROOT_PATH).listFiles()) {
+            String absolutePath = traceFile.getAbsolutePath();
+            if (new CtfTmfTrace().validate(null, absolutePath).isOK()) {
+                paths.add(absolutePath);
+            }
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalStateException("No valid traces in directory");
+        }
+        try {
+            ITmfTrace[] traces = new CtfTmfTrace[numTraces];
+            for (int i = 0; i < numTraces; i++) {
+                traces[i] = new CtfTmfTrace();
+                traces[i].initTrace(null, paths.get(i % paths.size()), ITmfEvent.class);
+            }
+            fExperiment = new TmfExperimentStub("MegaExperiment", traces, BLOCK_SIZE);
+        } catch (TmfTraceException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static void waitForRequest(InnerEventRequest expReq, InnerEventRequest[] traceReqs) {
         try {
             expReq.waitForCompletion();
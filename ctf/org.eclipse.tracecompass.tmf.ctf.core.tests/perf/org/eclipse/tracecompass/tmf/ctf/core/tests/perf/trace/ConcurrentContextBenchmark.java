@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.perf.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.Test;
+
+/**
+ * Benchmark reading a {@link CtfTmfTrace} with several contexts at the same
+ * time, each one in its own thread, compared to reading it with a single
+ * context.
+ */
+public class ConcurrentContextBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF TMF Concurrent Context Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 25;
+
+    /**
+     * Benchmark reading the trace "kernel" with one context
+     */
+    @Test
+    public void testKernelTraceOneContext() {
+        readTrace(CtfTestTrace.KERNEL, "trace-kernel-1-context", 1);
+    }
+
+    /**
+     * Benchmark reading the trace "kernel" with one context per core
+     */
+    @Test
+    public void testKernelTraceConcurrentContexts() {
+        int nbContexts = Runtime.getRuntime().availableProcessors();
+        readTrace(CtfTestTrace.KERNEL, "trace-kernel-" + nbContexts + "-contexts", nbContexts);
+    }
+
+    /**
+     * Benchmark reading the bigger trace "kernel_vm" with one context
+     */
+    @Test
+    public void testKernelVmTraceOneContext() {
+        readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-1-context", 1);
+    }
+
+    /**
+     * Benchmark reading the bigger trace "kernel_vm" with one context per core
+     */
+    @Test
+    public void testKernelVmTraceConcurrentContexts() {
+        int nbContexts = Runtime.getRuntime().availableProcessors();
+        readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-" + nbContexts + "-contexts", nbContexts);
+    }
+
+    private static void readTrace(CtfTestTrace testTrace, String testName, int nbContexts) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.ELAPSED_PROCESS);
+
+        CtfTmfTrace trace = CtfTmfTestTraceUtils.getTrace(testTrace);
+        ExecutorService executor = Executors.newFixedThreadPool(nbContexts);
+        try {
+            long expected = -1;
+            for (int loop = 0; loop < LOOP_COUNT; loop++) {
+                List<Future<Long>> readers = new ArrayList<>(nbContexts);
+                pm.start();
+                for (int i = 0; i < nbContexts; i++) {
+                    readers.add(executor.submit(() -> readAll(trace)));
+                }
+                try {
+                    for (Future<Long> reader : readers) {
+                        long nbEvents = reader.get();
+                        if (expected < 0) {
+                            expected = nbEvents;
+                        }
+                        assertEquals(expected, nbEvents);
+                    }
+                } catch (ExecutionException | InterruptedException e) {
+                    fail("Test failed at iteration " + loop + ':' + e.getMessage());
+                }
+                pm.stop();
+            }
+        } finally {
+            executor.shutdown();
+            CtfTmfTestTraceUtils.dispose(testTrace);
+        }
+        pm.commit();
+    }
+
+    /**
+     * Read the whole trace with a new context
+     *
+     * @return The number of events read
+     */
+    private static long readAll(CtfTmfTrace trace) {
+        ITmfContext context = trace.seekEvent(0L);
+        long nbEvents = 0;
+        try {
+            CtfTmfEvent event = trace.getNext(context);
+            while (event != null) {
+                /* Do something with the event */
+                event.getCPU();
+                nbEvents++;
+                event = trace.getNext(context);
+            }
+        } finally {
+            context.dispose();
+        }
+        return nbEvents;
+    }
+}
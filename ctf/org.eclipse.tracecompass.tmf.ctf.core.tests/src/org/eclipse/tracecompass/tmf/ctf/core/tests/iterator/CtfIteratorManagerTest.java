@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIteratorManager;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link CtfIteratorManager}
+ */
+public class CtfIteratorManagerTest {
+
+    private static final @NonNull CtfTestTrace testTrace = CtfTestTrace.KERNEL;
+    private static final int MAX_SIZE = 4;
+
+    private CtfTmfTrace fTrace;
+    private CtfIteratorManager fManager;
+
+    /**
+     * Perform pre-test initialization.
+     */
+    @Before
+    public void setUp() {
+        fTrace = CtfTmfTestTraceUtils.getTrace(testTrace);
+        fManager = new CtfIteratorManager(fTrace, MAX_SIZE);
+    }
+
+    /**
+     * Perform post-test clean-up.
+     */
+    @After
+    public void tearDown() {
+        if (fManager != null) {
+            fManager.dispose();
+        }
+        if (fTrace != null) {
+            fTrace.dispose();
+        }
+    }
+
+    /**
+     * Test that a context keeps its iterator and the hit and miss counters
+     */
+    @Test
+    public void testHitMiss() {
+        CtfTmfContext context = new CtfTmfContext(fTrace);
+        CtfIterator iterator = fManager.getIterator(context);
+        assertSame(context, iterator.getOwner());
+        assertEquals(0, fManager.getHitCount());
+        assertEquals(1, fManager.getMissCount());
+
+        assertSame(iterator, fManager.getIterator(context));
+        assertSame(iterator, fManager.getIterator(context));
+        assertEquals(2, fManager.getHitCount());
+        assertEquals(1, fManager.getMissCount());
+        assertEquals(0, fManager.getEvictionCount());
+    }
+
+    /**
+     * Test that the iterator of a removed context is used by the next context
+     */
+    @Test
+    public void testPool() {
+        CtfTmfContext context = new CtfTmfContext(fTrace);
+        CtfIterator iterator = fManager.getIterator(context);
+        fManager.removeIterator(context);
+        assertNull(iterator.getOwner());
+
+        CtfTmfContext other = new CtfTmfContext(fTrace);
+        assertSame(iterator, fManager.getIterator(other));
+        assertSame(other, iterator.getOwner());
+        assertEquals(2, fManager.getMissCount());
+        assertEquals(0, fManager.getEvictionCount());
+    }
+
+    /**
+     * Test that the least recently used iterator is evicted when all the
+     * iterators are in use
+     */
+    @Test
+    public void testEviction() {
+        CtfTmfContext[] contexts = new CtfTmfContext[MAX_SIZE];
+        CtfIterator[] iterators = new CtfIterator[MAX_SIZE];
+        for (int i = 0; i < MAX_SIZE; i++) {
+            contexts[i] = new CtfTmfContext(fTrace);
+            iterators[i] = fManager.getIterator(contexts[i]);
+        }
+        /* Use all the contexts but the second one */
+        for (int i = 0; i < MAX_SIZE; i++) {
+            if (i != 1) {
+                fManager.getIterator(contexts[i]);
+            }
+        }
+
+        CtfTmfContext context = new CtfTmfContext(fTrace);
+        CtfIterator iterator = fManager.getIterator(context);
+        assertSame(iterators[1], iterator);
+        assertSame(context, iterator.getOwner());
+        assertEquals(1, fManager.getEvictionCount());
+
+        /* The evicted context gets another iterator */
+        CtfIterator evicted = fManager.getIterator(contexts[1]);
+        assertNotSame(iterator, evicted);
+        assertSame(contexts[1], evicted.getOwner());
+        assertEquals(2, fManager.getEvictionCount());
+    }
+}
@@ -28,6 +28,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocationInfo;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
 import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
 
@@ -53,6 +54,9 @@ public class CtfIterator extends CTFTraceReader
     private CtfLocation fPreviousLocation;
     private CtfTmfEvent fPreviousEvent;
 
+    /* The context currently using this iterator, guarded by this iterator */
+    private CtfTmfContext fOwner;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -138,6 +142,27 @@ public class CtfIterator extends CTFTraceReader
         return fTrace;
     }
 
+    /**
+     * Get the context this iterator is currently assigned to. The iterator
+     * manager can reassign an iterator to another context, so a context must
+     * check it still owns the iterator while holding the iterator's lock.
+     *
+     * @return The owner context, or null if the iterator is not assigned
+     */
+    public synchronized CtfTmfContext getOwner() {
+        return fOwner;
+    }
+
+    /**
+     * Assign this iterator to a context
+     *
+     * @param owner
+     *            The new owner context, or null to unassign the iterator
+     */
+    public synchronized void setOwner(CtfTmfContext owner) {
+        fOwner = owner;
+    }
+
     /**
      * Return the current event pointed to by the iterator.
      *
@@ -14,14 +14,18 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.Activator;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocationInfo;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
@@ -43,20 +47,44 @@ public class CtfIteratorManager {
      */
     private static final int MAX_SIZE = 100;
 
-    /** The map of the cache */
-    private final Map<CtfTmfContext, CtfIterator> fMap;
+    /*
+     * Fraction of the least recently used iterators among which the one that
+     * is the cheapest to seek again is evicted.
+     */
+    private static final int EVICTION_CANDIDATES_RATIO = 4;
+
+    /** An iterator assigned to a context */
+    private static final class Assignment {
+        private final CtfIterator fIterator;
+        /* Time of the last access, written without the lock */
+        private volatile long fLastAccess;
+        /* Time it took to seek the iterator at the context's location */
+        private long fSeekCost;
+
+        private Assignment(CtfIterator iterator) {
+            fIterator = iterator;
+            fLastAccess = System.nanoTime();
+        }
+    }
 
-    /** An array pointing to the same cache. this allows fast "random" accesses */
-    private final List<CtfTmfContext> fRandomAccess;
+    /** The map of the cache, read without the lock */
+    private final Map<CtfTmfContext, Assignment> fMap = new ConcurrentHashMap<>();
 
-    /** Lock for when we access the two previous data structures */
+    /** The iterators released by their context, ready to be seeked again */
+    private final Deque<CtfIterator> fPool = new ArrayDeque<>();
+
+    /** Lock for when we assign or release iterators */
     private final Lock fAccessLock = new ReentrantLock();
 
     /** The parent trace */
     private final CtfTmfTrace fTrace;
 
-    /** Random number generator */
-    private final Random fRnd;
+    /** The maximum number of iterators, assigned or pooled */
+    private final int fMaxSize;
+
+    private final LongAdder fHits = new LongAdder();
+    private final LongAdder fMisses = new LongAdder();
+    private final LongAdder fEvictions = new LongAdder();
 
     /**
      * Constructor
@@ -65,22 +93,44 @@ public class CtfIteratorManager {
      *            The trace whose iterators this manager will manage
      */
     public CtfIteratorManager(CtfTmfTrace trace) {
-        fMap = new HashMap<>();
-        fRandomAccess = new ArrayList<>();
-        fRnd = new Random(System.nanoTime());
+        this(trace, MAX_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace whose iterators this manager will manage
+     * @param maxSize
+     *            The maximum number of iterators opened at the same time
+     */
+    public CtfIteratorManager(CtfTmfTrace trace, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The manager needs at least one iterator"); //$NON-NLS-1$
+        }
         fTrace = trace;
+        fMaxSize = maxSize;
     }
 
     /**
      * This needs explaining: the iterator table is effectively a cache.
      * Originally the contexts had a 1 to 1 structure with the file handles of a
      * trace. This failed since there is a limit to how many file handles we can
-     * have opened simultaneously. Then a round-robin scheme was implemented,
-     * this lead up to a two competing contexts syncing up and using the same
-     * file handler, causing horrible slowdowns. Now a random replacement
-     * algorithm is selected. This is the same as used by arm processors, and it
-     * works quite well when many cores so this looks promising for very
-     * multi-threaded systems.
+     * have opened simultaneously, so the number of iterators is bounded.
+     *
+     * When a context does not have an iterator, it takes a released iterator
+     * from the pool, preferably one that is already at the context's location
+     * so the seek is free. Otherwise a new iterator is created, until the
+     * maximum is reached. Then an iterator is taken from another context: a
+     * random replacement lead the iterators of the contexts being actively
+     * read, like the events table's, to be evicted and seeked again from a
+     * checkpoint. Now the victim is the cheapest to seek again, as measured
+     * the last time it was seeked, among the least recently used iterators.
+     *
+     * The iterator is shared with the manager: it can be given to another
+     * context at any time. Lock the iterator and check its
+     * {@link CtfIterator#getOwner() owner} is still the context before using
+     * it.
      *
      * @param context
      *            the context to look up
@@ -90,40 +140,52 @@ public class CtfIteratorManager {
         /*
          * if the element is in the map, we don't need to do anything else.
          */
-        CtfIterator iter = fMap.get(context);
-        if (iter == null) {
-
-            fAccessLock.lock();
-            try {
-                /*
-                 * Assign an iterator to a context.
-                 */
-                if (fRandomAccess.size() < MAX_SIZE) {
-                    /*
-                     * if we're not full yet, just add an element.
-                     */
-                    iter = (CtfIterator) fTrace.createIterator();
-                    addElement(context, iter);
+        Assignment assignment = fMap.get(context);
+        if (assignment != null) {
+            assignment.fLastAccess = System.nanoTime();
+            fHits.increment();
+            return assignment.fIterator;
+        }
+
+        fAccessLock.lock();
+        try {
+            assignment = fMap.get(context);
+            if (assignment != null) {
+                fHits.increment();
+                return assignment.fIterator;
+            }
+            fMisses.increment();
 
+            final CtfLocationInfo location = context.getLocation() == null ? null : (CtfLocationInfo) context.getLocation().getLocationInfo();
+            CtfIterator iter = takeFromPool(location);
+            if (iter == null) {
+                if (fMap.size() < fMaxSize) {
+                    iter = createIterator();
                 } else {
-                    /*
-                     * if we're full, randomly replace an element
-                     */
-                    iter = replaceRandomElement(context);
+                    iter = evict();
                 }
-                if (context.getLocation() != null) {
-                    final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
-                    iter.seek(location);
-                }
-            } finally {
-                fAccessLock.unlock();
             }
+            /*
+             * An evicted context may be reading with the iterator in another
+             * thread, it will see it lost the iterator once it is done.
+             */
+            iter.setOwner(context);
+            assignment = new Assignment(iter);
+            if (location != null) {
+                long start = System.nanoTime();
+                iter.seek(location);
+                assignment.fSeekCost = System.nanoTime() - start;
+            }
+            fMap.put(context, assignment);
+            return iter;
+        } finally {
+            fAccessLock.unlock();
         }
-        return iter;
     }
 
     /**
-     * Remove an iterator from this manager
+     * Remove an iterator from this manager. The iterator is kept in the pool
+     * to be used by another context.
      *
      * @param context
      *            The context of the iterator to remove
@@ -131,77 +193,106 @@ public class CtfIteratorManager {
     public void removeIterator(CtfTmfContext context) {
         fAccessLock.lock();
         try {
-            /* The try below is only to auto-call CtfIterator.close() */
-            try (CtfIterator removed = fMap.remove(context)) {
-                // try with resource
+            Assignment removed = fMap.remove(context);
+            if (removed != null) {
+                CtfIterator iterator = removed.fIterator;
+                /* Wait for the owner to be done with the iterator */
+                synchronized (iterator) {
+                    iterator.setOwner(null);
+                }
+                if (!iterator.isClosed()) {
+                    fPool.push(iterator);
+                }
             }
-            fRandomAccess.remove(context);
-
         } finally {
             fAccessLock.unlock();
         }
     }
 
     /**
-     * Add a pair of context and element to the hashmap and the arraylist.
+     * Get the number of times a context found its iterator
      *
-     * @param context
-     *            the context
-     * @param elem
-     *            the iterator
+     * @return The number of hits
      */
-    private void addElement(final CtfTmfContext context,
-            final CtfIterator elem) {
-        fAccessLock.lock();
-        try {
-            fMap.put(context, elem);
-            fRandomAccess.add(context);
+    public long getHitCount() {
+        return fHits.sum();
+    }
 
-        } finally {
-            fAccessLock.unlock();
+    /**
+     * Get the number of times an iterator had to be assigned to a context and
+     * seeked at its location
+     *
+     * @return The number of misses
+     */
+    public long getMissCount() {
+        return fMisses.sum();
+    }
+
+    /**
+     * Get the number of times an iterator was taken from another context
+     *
+     * @return The number of evictions
+     */
+    public long getEvictionCount() {
+        return fEvictions.sum();
+    }
+
+    /**
+     * Take an iterator from the pool, preferably one at the given location.
+     * Must be called with the lock.
+     */
+    private @Nullable CtfIterator takeFromPool(@Nullable CtfLocationInfo location) {
+        CtfIterator iterator = null;
+        if (location != null) {
+            for (CtfIterator pooled : fPool) {
+                if (location.equals(pooled.getLocation().getLocationInfo())) {
+                    iterator = pooled;
+                    break;
+                }
+            }
+        }
+        if (iterator != null) {
+            fPool.remove(iterator);
+            return iterator;
         }
+        return fPool.poll();
+    }
+
+    private CtfIterator createIterator() {
+        return (CtfIterator) checkNotNull(fTrace.createIterator());
     }
 
     /**
-     * Replace a random element
+     * Take the iterator of another context. Must be called with the lock.
      *
-     * @param context
-     *            the context to swap in
-     * @return the iterator of the removed elements.
+     * @return the iterator of the evicted context
      */
-    private CtfIterator replaceRandomElement(final CtfTmfContext context) {
-        /*
-         * This needs some explanation too: We need to select a random victim
-         * and remove it. The order of the elements is not important, so instead
-         * of just calling arraylist.remove(element) which has an O(n)
-         * complexity, we pick an random number. The element is swapped out of
-         * the array and removed and replaced in the hashmap.
-         */
-        fAccessLock.lock(); // just in case, should only be called when already locked
-        try {
-            final int size = fRandomAccess.size();
-            final int pos = fRnd.nextInt(size);
-            final CtfTmfContext victim = fRandomAccess.get(pos);
-            fRandomAccess.set(pos, context);
-            CtfIterator elem = checkNotNull(fMap.remove(victim));
-            if (elem.isClosed()) {
-                /*
-                 * In case the iterator streams have been closed, we need to
-                 * replace it by a fresh new one to access the trace. We also
-                 * report that as an error as it should not happen.
-                 */
-                Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.getTrace()); //$NON-NLS-1$
-
-                elem.dispose();
-                elem = (CtfIterator) fTrace.createIterator();
+    private CtfIterator evict() {
+        List<Map.Entry<CtfTmfContext, Assignment>> entries = new ArrayList<>(fMap.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().fLastAccess));
+        int candidates = Math.max(1, entries.size() / EVICTION_CANDIDATES_RATIO);
+        Map.Entry<CtfTmfContext, Assignment> victim = entries.get(0);
+        for (Map.Entry<CtfTmfContext, Assignment> candidate : entries.subList(1, candidates)) {
+            if (candidate.getValue().fSeekCost < victim.getValue().fSeekCost) {
+                victim = candidate;
             }
-            fMap.put(context, elem);
-            victim.dispose();
-            return elem;
+        }
+        fMap.remove(victim.getKey());
+        fEvictions.increment();
 
-        } finally {
-            fAccessLock.unlock();
+        CtfIterator elem = victim.getValue().fIterator;
+        if (elem.isClosed()) {
+            /*
+             * In case the iterator streams have been closed, we need to
+             * replace it by a fresh new one to access the trace. We also
+             * report that as an error as it should not happen.
+             */
+            Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.getKey().getTrace()); //$NON-NLS-1$
+
+            elem.dispose();
+            elem = createIterator();
         }
+        return elem;
     }
 
     /**
@@ -211,14 +302,21 @@ public class CtfIteratorManager {
     public void dispose() {
         fAccessLock.lock();
         try {
-            for (CtfIterator iterator : fMap.values()) {
+            for (Assignment assignment : fMap.values()) {
+                CtfIterator iterator = assignment.fIterator;
+                synchronized (iterator) {
+                    iterator.setOwner(null);
+                    iterator.dispose();
+                }
+            }
+            for (CtfIterator iterator : fPool) {
                 iterator.dispose();
             }
             fMap.clear();
-            fRandomAccess.clear();
+            fPool.clear();
 
         } finally {
             fAccessLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
@@ -13,6 +13,8 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.function.Function;
+
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -77,9 +79,10 @@ public class CtfTmfContext implements ITmfContext {
             if (location.getLocationInfo().equals(CtfLocation.INVALID_LOCATION)) {
                 fCurLocation = ctfLocation;
             } else {
-                CtfIterator iterator = getIterator();
-                iterator.seek(ctfLocation.getLocationInfo());
-                fCurLocation = iterator.getLocation();
+                fCurLocation = withIterator(iterator -> {
+                    iterator.seek(ctfLocation.getLocationInfo());
+                    return iterator.getLocation();
+                });
             }
         } else {
             fCurLocation = null;
@@ -118,7 +121,7 @@ public class CtfTmfContext implements ITmfContext {
      * @return The event or null
      */
     public synchronized CtfTmfEvent getCurrentEvent() {
-        return getIterator().getCurrentEvent();
+        return withIterator(CtfIterator::getCurrentEvent);
     }
 
     /**
@@ -128,22 +131,23 @@ public class CtfTmfContext implements ITmfContext {
      */
     public synchronized boolean advance() {
         final CtfLocationInfo curLocationData = fCurLocation.getLocationInfo();
-        CtfIterator iterator = getIterator();
-        boolean retVal = iterator.advance();
-        CtfTmfEvent currentEvent = iterator.getCurrentEvent();
-
-        if (currentEvent != null) {
-            final long timestampValue = iterator.getCurrentTimestamp();
-            if (curLocationData.getTimestamp() == timestampValue) {
-                fCurLocation = new CtfLocation(timestampValue, curLocationData.getIndex() + 1);
+        return withIterator(iterator -> {
+            boolean retVal = iterator.advance();
+            CtfTmfEvent currentEvent = iterator.getCurrentEvent();
+
+            if (currentEvent != null) {
+                final long timestampValue = iterator.getCurrentTimestamp();
+                if (curLocationData.getTimestamp() == timestampValue) {
+                    fCurLocation = new CtfLocation(timestampValue, curLocationData.getIndex() + 1);
+                } else {
+                    fCurLocation = new CtfLocation(timestampValue, 0L);
+                }
             } else {
-                fCurLocation = new CtfLocation(timestampValue, 0L);
+                fCurLocation = new CtfLocation(CtfLocation.INVALID_LOCATION);
             }
-        } else {
-            fCurLocation = new CtfLocation(CtfLocation.INVALID_LOCATION);
-        }
 
-        return retVal;
+            return retVal;
+        });
     }
 
     @Override
@@ -159,10 +163,11 @@ public class CtfTmfContext implements ITmfContext {
      * @return success or not
      */
     public synchronized boolean seek(final long timestamp) {
-        CtfIterator iterator = getIterator();
-        boolean ret = iterator.seek(timestamp);
-        fCurLocation = iterator.getLocation();
-        return ret;
+        return withIterator(iterator -> {
+            boolean ret = iterator.seek(timestamp);
+            fCurLocation = iterator.getLocation();
+            return ret;
+        });
     }
 
     /**
@@ -174,7 +179,7 @@ public class CtfTmfContext implements ITmfContext {
      */
     public synchronized boolean seek(final CtfLocationInfo location) {
         fCurLocation = new CtfLocation(location);
-        return getIterator().seek(location);
+        return withIterator(iterator -> iterator.seek(location));
     }
 
     // -------------------------------------------
@@ -190,4 +195,28 @@ public class CtfTmfContext implements ITmfContext {
     private CtfIterator getIterator() {
         return (CtfIterator) fTrace.createIteratorFromContext(this);
     }
+
+    /**
+     * Run an operation on the iterator of this context. The iterator is locked
+     * during the operation, so that the iterator manager does not give it to
+     * another context in the meantime. If the iterator was given to another
+     * context before it could be locked, a new one is taken.
+     *
+     * Only the iterator is locked, the contexts of a trace can be read
+     * concurrently.
+     *
+     * @param operation
+     *            the operation to run on the iterator
+     * @return the result of the operation
+     */
+    private <T> T withIterator(Function<CtfIterator, T> operation) {
+        while (true) {
+            CtfIterator iterator = getIterator();
+            synchronized (iterator) {
+                if (iterator.getOwner() == this) {
+                    return operation.apply(iterator);
+                }
+            }
+        }
+    }
 }
@@ -149,7 +149,7 @@ public class CtfTmfTrace extends TmfTrace
     private final @NonNull CtfTmfEventFactory fEventFactory;
 
     /** Reference to the CTF Trace */
-    private CTFTrace fTrace;
+    private volatile CTFTrace fTrace;
 
     // -------------------------------------------
     // Constructor
@@ -365,7 +365,7 @@ public class CtfTmfTrace extends TmfTrace
      * @return ITmfContext
      */
     @Override
-    public synchronized ITmfContext seekEvent(final ITmfLocation location) {
+    public ITmfContext seekEvent(final ITmfLocation location) {
         CtfLocation currentLocation = (CtfLocation) location;
         CtfTmfContext context = new CtfTmfContext(this);
         if (fTrace == null) {
@@ -390,7 +390,7 @@ public class CtfTmfTrace extends TmfTrace
     }
 
     @Override
-    public synchronized ITmfContext seekEvent(double ratio) {
+    public ITmfContext seekEvent(double ratio) {
         CtfTmfContext context = new CtfTmfContext(this);
         if (fTrace == null) {
             context.setLocation(null);
@@ -409,13 +409,16 @@ public class CtfTmfTrace extends TmfTrace
     /**
      * Method readNextEvent.
      *
+     * Only the context is locked while reading, the contexts of this trace can
+     * be read concurrently.
+     *
      * @param context
      *            ITmfContext
      * @return CtfTmfEvent
      * @see org.eclipse.tracecompass.tmf.core.trace.ITmfTrace#getNext(ITmfContext)
      */
     @Override
-    public synchronized CtfTmfEvent getNext(final ITmfContext context) {
+    public CtfTmfEvent getNext(final ITmfContext context) {
         if (fTrace == null) {
             return null;
         }
@@ -649,10 +652,11 @@ public class CtfTmfTrace extends TmfTrace
         return TmfTimestamp.fromNanos(getTimestampTransform().transform(ts));
     }
 
-    private static int fCheckpointSize = -1;
+    private static volatile int fCheckpointSize = -1;
 
     @Override
-    public synchronized int getCheckpointSize() {
+    public int getCheckpointSize() {
+        /* Concurrent callers may compute it more than once, to the same value */
         if (fCheckpointSize == -1) {
             TmfCheckpoint c = new TmfCheckpoint(TmfTimestamp.fromNanos(0), new CtfLocation(0, 0), 0);
             ByteBuffer b = ByteBuffer.allocate(ITmfCheckpoint.MAX_SERIALIZE_SIZE);
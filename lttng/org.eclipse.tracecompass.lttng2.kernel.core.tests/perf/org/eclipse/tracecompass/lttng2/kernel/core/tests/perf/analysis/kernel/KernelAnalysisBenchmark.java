@@ -50,6 +50,7 @@ public class KernelAnalysisBenchmark {
      */
     public static final String TEST_ID = "org.eclipse.linuxtools#LTTng kernel analysis#";
     private static final int LOOP_COUNT = 25;
+    private static final String MEMORY = " (memory)";
 
     private final TestModule fTestModule;
 
@@ -132,6 +133,14 @@ public class KernelAnalysisBenchmark {
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName + testModule.getTestNameString());
         perf.tagAsSummary(pm, "LTTng Kernel Analysis: " + testName + testModule.getTestNameString(), Dimension.CPU_TIME);
 
+        /*
+         * Heap growth while building the state system. The garbage is not
+         * collected at the end of the run, so that it reflects the objects
+         * allocated by the analysis.
+         */
+        PerformanceMeter pmMemory = perf.createPerformanceMeter(TEST_ID + testName + testModule.getTestNameString() + MEMORY);
+        perf.tagAsSummary(pmMemory, "LTTng Kernel Analysis: " + testName + testModule.getTestNameString() + MEMORY, Dimension.USED_JAVA_HEAP);
+
         if ((testTrace == CtfTestTrace.TRACE2) && (testModule == TestModule.NORMAL_EXECUTION)) {
             /* Do not show all traces in the global summary */
             perf.tagAsGlobalSummary(pm, "LTTng Kernel Analysis" + testModule.getTestNameString() + ": " + testName, Dimension.CPU_TIME);
@@ -151,9 +160,12 @@ public class KernelAnalysisBenchmark {
                 trace.initTrace(null, path, CtfTmfEvent.class);
                 module.setTrace(trace);
 
+                System.gc();
+                pmMemory.start();
                 pm.start();
                 TmfTestHelper.executeAnalysis(module);
                 pm.stop();
+                pmMemory.stop();
 
                 /*
                  * Delete the supplementary files, so that the next iteration
@@ -176,6 +188,7 @@ public class KernelAnalysisBenchmark {
             }
         }
         pm.commit();
+        pmMemory.commit();
         CtfTmfTestTraceUtils.dispose(testTrace);
     }
 }
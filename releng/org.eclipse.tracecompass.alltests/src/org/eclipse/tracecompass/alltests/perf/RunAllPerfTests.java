@@ -40,7 +40,8 @@ import org.junit.runners.Suite;
 
     org.eclipse.tracecompass.tmf.core.tests.perf.synchronization.TimestampTransformBenchmark.class,
 
-    org.eclipse.tracecompass.tmf.ctf.core.tests.perf.experiment.ExperimentBenchmark.class
+    org.eclipse.tracecompass.tmf.ctf.core.tests.perf.experiment.ExperimentBenchmark.class,
+    org.eclipse.tracecompass.tmf.ctf.core.tests.perf.trace.ConcurrentContextBenchmark.class
 })
 public class RunAllPerfTests {
 
@@ -10,6 +10,7 @@
 package org.eclipse.tracecompass.analysis.timing.core.tests.store;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Comparator;
@@ -21,6 +22,8 @@ import org.eclipse.test.performance.Performance;
 import org.eclipse.test.performance.PerformanceMeter;
 import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.ArrayListStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.LazyArrayListStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.concurrent.ConcurrentSegmentStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.intervaltree.IntervalTreeStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.treemap.TreeMapStore;
 import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
@@ -50,6 +53,9 @@ public class SegmentStoreBenchmark {
 
     private static final int DEFAULT_SAMPLE = 1000;
     private static final int DEFAULT_LOOP_COUNT = 10;
+    private static final int NB_WINDOWED_QUERIES = 100;
+    private static final long[] QUERY_WINDOWS = { 100, 10000, 1000000 };
+    private static final int NB_LONG_SEGMENTS = 10;
 
     private final ISegmentStore<@NonNull ISegment> fSegStore;
     private final String fName;
@@ -64,6 +70,8 @@ public class SegmentStoreBenchmark {
                 { "Array list store", new ArrayListStore<>() },
                 { "Lazy array list store", new LazyArrayListStore<>() },
                 { "Treemap store", new TreeMapStore<>() },
+                { "Interval tree store", new IntervalTreeStore<>() },
+                { "Concurrent store", new ConcurrentSegmentStore<>() },
         });
     }
 
@@ -148,6 +156,35 @@ public class SegmentStoreBenchmark {
         insertIterTwice(DEFAULT_SAMPLE, fuzz, "Random");
     }
 
+    /**
+     * Add elements almost in order, with a few segments spanning most of the
+     * store, then query windows of several sizes spread over the store.
+     */
+    @Test
+    public void test6WindowedQueries() {
+        int[] fuzz = fuzzyArray(DEFAULT_SAMPLE);
+        long size = getSegmentStoreSize();
+        fSegStore.clear();
+        populate(DEFAULT_SAMPLE, fuzz, fSegStore, 0, size);
+        for (int i = 0; i < NB_LONG_SEGMENTS; i++) {
+            fSegStore.add(new BasicSegment(i, size - i));
+        }
+
+        for (long window : QUERY_WINDOWS) {
+            PerformanceMeter pMquery = fPerf.createPerformanceMeter("Windowed Query (" + window + "): " + fName);
+            for (int i = 0; i < DEFAULT_LOOP_COUNT; i++) {
+                pMquery.start();
+                for (int j = 0; j < NB_WINDOWED_QUERIES; j++) {
+                    long start = (size - window) * j / NB_WINDOWED_QUERIES;
+                    int count = iterate(fSegStore.getIntersectingElements(start, start + window));
+                    assertTrue(count >= NB_LONG_SEGMENTS);
+                }
+                pMquery.stop();
+            }
+            pMquery.commit();
+        }
+    }
+
     private static int[] randomArray(int size) {
         int[] fuzz = new int[DEFAULT_SAMPLE];
         Random rng = new Random(10);
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.segmentstore.core.concurrent.ConcurrentSegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+/**
+ * Unit tests for the segment store that can be read while it is built
+ */
+public class ConcurrentSegmentStoreTest extends AbstractTestSegmentStore {
+
+    /* Small buffer, so that the test segments span several chunks */
+    private static final int BUFFER_SIZE = 2;
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore() {
+        return new ConcurrentSegmentStore<>(BUFFER_SIZE);
+    }
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore(@NonNull ISegment @NonNull [] data) {
+        return new ConcurrentSegmentStore<>(data);
+    }
+
+    /**
+     * Test that the chunks are merged, and compare the intersection queries
+     * with a linear scan
+     */
+    @Test
+    public void testManyChunks() {
+        ConcurrentSegmentStore<@NonNull ISegment> store = new ConcurrentSegmentStore<>(16);
+        List<@NonNull ISegment> segments = new ArrayList<>();
+        Random rnd = new Random(1234);
+        for (int i = 0; i < 5000; i++) {
+            long start = rnd.nextInt(50000);
+            long length = (i % 1000 == 0) ? 100000 : rnd.nextInt(30);
+            ISegment segment = new BasicSegment(start, start + length);
+            segments.add(segment);
+            store.add(segment);
+        }
+        assertTrue(store.getNbChunks() < 20);
+        List<@NonNull ISegment> expected = new ArrayList<>(segments);
+        expected.sort(null);
+        /* Segments with the same times may come in any order */
+        assertEquals(Lists.transform(expected, ISegment::toString), Lists.transform(ImmutableList.copyOf(store), ISegment::toString));
+        for (int i = 0; i < 20; i++) {
+            long start = rnd.nextInt(52000);
+            long end = start + rnd.nextInt(500);
+            List<ISegment> expectedIntersecting = segments.stream()
+                    .filter(s -> s.getStart() <= end && s.getEnd() >= start)
+                    .collect(Collectors.toList());
+            Collection<ISegment> actual = Lists.newArrayList(store.getIntersectingElements(start, end));
+            assertEquals(expectedIntersecting.size(), actual.size());
+            assertEquals(new HashSet<>(expectedIntersecting), new HashSet<>(actual));
+        }
+        store.dispose();
+    }
+
+    /**
+     * Test reading the store while several threads are adding segments
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testConcurrentReadWrite() throws InterruptedException {
+        ISegmentStore<@NonNull ISegment> store = new ConcurrentSegmentStore<>(64);
+        int nbThreads = 4;
+        int nbSegments = 20000;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < nbThreads; t++) {
+            final int offset = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < nbSegments; i++) {
+                    long start = i * nbThreads + offset;
+                    store.add(new BasicSegment(start, start + 10));
+                }
+            });
+            writer.setUncaughtExceptionHandler((thread, e) -> error.set(e));
+            writers.add(writer);
+            writer.start();
+        }
+
+        boolean done = false;
+        while (!done) {
+            done = writers.stream().noneMatch(Thread::isAlive);
+            int size = store.size();
+            List<@NonNull ISegment> snapshot = ImmutableList.copyOf(store);
+            assertTrue(snapshot.size() >= size);
+            assertTrue(Ordering.natural().isOrdered(snapshot));
+            Iterables.size(store.getIntersectingElements(size / 2, size / 2 + 100));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertNull(error.get());
+        assertEquals(nbThreads * nbSegments, store.size());
+        assertEquals(nbThreads * nbSegments, Iterables.size(store));
+        assertEquals(31, Iterables.size(store.getIntersectingElements(1000, 1020)));
+        store.dispose();
+    }
+}
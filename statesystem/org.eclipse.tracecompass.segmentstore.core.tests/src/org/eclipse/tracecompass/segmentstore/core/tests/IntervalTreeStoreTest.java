@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.segmentstore.core.intervaltree.IntervalTreeStore;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for intersecting elements in an IntervalTreeStore
+ */
+public class IntervalTreeStoreTest extends AbstractTestSegmentStore {
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore() {
+        return new IntervalTreeStore<>();
+    }
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore(@NonNull ISegment @NonNull [] data) {
+        return new IntervalTreeStore<>(data);
+    }
+
+    /**
+     * Compare the intersection queries with a linear scan, with a few long
+     * segments among many short ones, inserted in and out of order
+     */
+    @Test
+    public void testLongSegments() {
+        ISegmentStore<@NonNull ISegment> store = getSegmentStore();
+        List<@NonNull ISegment> segments = new ArrayList<>();
+        Random rnd = new Random(1234);
+        for (int i = 0; i < 5000; i++) {
+            long start = i * 10 + rnd.nextInt(20);
+            long length = (i % 1000 == 0) ? 100000 : rnd.nextInt(30);
+            segments.add(new BasicSegment(start, start + length));
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            store.add(segments.get(i));
+            if (i % 1000 == 999) {
+                /* Query while building, after in order insertions */
+                assertIntersecting(segments.subList(0, i + 1), store, i * 5, i * 5 + 100);
+            }
+        }
+        /* Out of order insertion */
+        BasicSegment outOfOrder = new BasicSegment(7, 49000);
+        segments.add(outOfOrder);
+        store.add(outOfOrder);
+        for (int i = 0; i < 20; i++) {
+            long start = rnd.nextInt(52000);
+            assertIntersecting(segments, store, start, start + rnd.nextInt(500));
+        }
+        store.dispose();
+    }
+
+    private static void assertIntersecting(List<@NonNull ISegment> segments, ISegmentStore<@NonNull ISegment> store, long start, long end) {
+        List<ISegment> expected = segments.stream()
+                .filter(s -> s.getStart() <= end && s.getEnd() >= start)
+                .collect(Collectors.toList());
+        Collection<ISegment> actual = Lists.newArrayList(store.getIntersectingElements(start, end));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+    }
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.segmentstore.core.ondisk.OnDiskSegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentSerializer;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+/**
+ * Unit tests for the segment store kept on disk
+ */
+public class OnDiskSegmentStoreTest extends AbstractTestSegmentStore {
+
+    /* Small pages, so that the test segments span several pages */
+    private static final int PAGE_SIZE = 2;
+    private static final int CACHE_SIZE = 2;
+
+    /*
+     * Serializer that reads back the instances that were written, since the
+     * segments compare by identity. The start and end times kept by the store
+     * are checked against the ones of the instances.
+     */
+    private static final ISegmentSerializer<@NonNull ISegment> SERIALIZER = new ISegmentSerializer<@NonNull ISegment>() {
+        private final List<@NonNull ISegment> fWritten = new ArrayList<>();
+
+        @Override
+        public synchronized void writeSegment(ISegment segment, DataOutput out) throws IOException {
+            out.writeInt(fWritten.size());
+            fWritten.add(segment);
+        }
+
+        @Override
+        public synchronized ISegment readSegment(long start, long end, DataInput in) throws IOException {
+            int index = in.readInt();
+            ISegment segment = fWritten.get(index);
+            if (segment.getStart() != start || segment.getEnd() != end) {
+                throw new IOException("Wrong times for segment " + index + ": " + start + ", " + end);
+            }
+            return segment;
+        }
+    };
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore() {
+        try {
+            Path file = Files.createTempFile("segmentStoreTest", ".dat");
+            file.toFile().deleteOnExit();
+            return OnDiskSegmentStore.createNew(file, SERIALIZER, PAGE_SIZE, CACHE_SIZE);
+        } catch (IOException e) {
+            fail(e.getMessage());
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected ISegmentStore<@NonNull ISegment> getSegmentStore(@NonNull ISegment @NonNull [] data) {
+        ISegmentStore<@NonNull ISegment> store = getSegmentStore();
+        for (ISegment segment : data) {
+            store.add(segment);
+        }
+        return store;
+    }
+
+    /**
+     * Test reopening a segment store from its file once it is closed
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testReopen() throws IOException {
+        Path file = Files.createTempFile("segmentStoreTest", ".dat");
+        try {
+            OnDiskSegmentStore<@NonNull ISegment> store = OnDiskSegmentStore.createNew(file, SERIALIZER, PAGE_SIZE, CACHE_SIZE);
+            store.addAll(SEGMENTS);
+            store.close(false);
+            store.dispose();
+            assertTrue(Files.exists(file));
+
+            OnDiskSegmentStore<@NonNull ISegment> reopened = OnDiskSegmentStore.openExisting(file, SERIALIZER, CACHE_SIZE);
+            assertEquals(SEGMENTS.size(), reopened.size());
+            assertEquals(SEGMENTS, ImmutableList.copyOf(reopened));
+            assertEquals(4, Iterables.size(reopened.getIntersectingElements(6)));
+            reopened.dispose();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that a reopened file reads the same segments whether its pages are
+     * mapped in memory or not
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testMappedRead() throws IOException {
+        String previous = System.getProperty(OnDiskSegmentStore.MAPPED_READ_PROPERTY);
+        Path file = Files.createTempFile("segmentStoreTest", ".dat");
+        try {
+            OnDiskSegmentStore<@NonNull ISegment> store = OnDiskSegmentStore.createNew(file, SERIALIZER, PAGE_SIZE, CACHE_SIZE);
+            store.addAll(SEGMENTS);
+            store.close(false);
+            store.dispose();
+
+            for (boolean mapped : new boolean[] { false, true }) {
+                System.setProperty(OnDiskSegmentStore.MAPPED_READ_PROPERTY, String.valueOf(mapped));
+                OnDiskSegmentStore<@NonNull ISegment> reopened = OnDiskSegmentStore.openExisting(file, SERIALIZER, CACHE_SIZE);
+                assertEquals(mapped, reopened.isMapped());
+                assertEquals(SEGMENTS, ImmutableList.copyOf(reopened));
+                assertEquals(4, Iterables.size(reopened.getIntersectingElements(6)));
+                reopened.dispose();
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty(OnDiskSegmentStore.MAPPED_READ_PROPERTY);
+            } else {
+                System.setProperty(OnDiskSegmentStore.MAPPED_READ_PROPERTY, previous);
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that a file that was not closed cannot be reopened
+     *
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    @Test(expected = IOException.class)
+    public void testReopenUnfinished() throws IOException {
+        Path file = Files.createTempFile("segmentStoreTest", ".dat");
+        try {
+            OnDiskSegmentStore<@NonNull ISegment> store = OnDiskSegmentStore.createNew(file, SERIALIZER, PAGE_SIZE, CACHE_SIZE);
+            store.addAll(SEGMENTS);
+            OnDiskSegmentStore.openExisting(file, SERIALIZER, CACHE_SIZE);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test the intersection queries and the iteration order with many more
+     * pages than the cache can hold
+     */
+    @Test
+    public void testManyPages() {
+        ISegmentStore<@NonNull ISegment> store = getSegmentStore();
+        List<@NonNull ISegment> expected = new ArrayList<>();
+        /* Segments are added by end time, like the system calls are */
+        for (int i = 0; i < 1000; i++) {
+            long start = (i * 7919) % 1000;
+            ISegment segment = new BasicSegment(start, 1000 + i);
+            expected.add(segment);
+            store.add(segment);
+        }
+        expected.sort(null);
+        assertEquals(expected, ImmutableList.copyOf(store));
+        assertEquals(750, Iterables.size(store.getIntersectingElements(1250, 1600)));
+        assertEquals(10, Iterables.size(store.getIntersectingElements(0, 9)));
+        store.dispose();
+    }
+
+    /**
+     * Test the intersection queries against the expected segments, with pages
+     * that are not written by order of start time, and with segments still
+     * buffered
+     */
+    @Test
+    public void testIntersectingPages() {
+        ISegmentStore<@NonNull ISegment> store = getSegmentStore();
+        List<@NonNull ISegment> segments = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            long start = (i * 7919) % 500;
+            ISegment segment = new BasicSegment(start, start + (i % 13) * 10);
+            segments.add(segment);
+            store.add(segment);
+        }
+        for (long start = -10; start < 650; start += 17) {
+            for (long end = start; end < start + 100; end += 23) {
+                final long rangeStart = start;
+                final long rangeEnd = end;
+                long expected = segments.stream()
+                        .filter(segment -> segment.getStart() <= rangeEnd && segment.getEnd() >= rangeStart)
+                        .count();
+                Iterable<@NonNull ISegment> result = store.getIntersectingElements(rangeStart, rangeEnd);
+                assertEquals("Range " + start + ", " + end, expected, Iterables.size(result));
+                /* The result can be iterated again */
+                assertEquals(expected, Iterables.size(result));
+            }
+        }
+        store.dispose();
+    }
+
+    /**
+     * Test that the fields written by the serializer, including the strings
+     * shared by the segments of a page, are read back from a reopened file
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testSerializerFields() throws IOException {
+        ISegmentSerializer<@NonNull NamedSegment> serializer = new ISegmentSerializer<@NonNull NamedSegment>() {
+            @Override
+            public void writeSegment(NamedSegment segment, DataOutput out) throws IOException {
+                out.writeUTF(segment.getName());
+                out.writeInt(segment.getValue());
+            }
+
+            @Override
+            public NamedSegment readSegment(long start, long end, DataInput in) throws IOException {
+                String name = in.readUTF();
+                return new NamedSegment(start, end, name, in.readInt());
+            }
+        };
+        String[] names = { "read", "write", "open" };
+        List<@NonNull NamedSegment> expected = new ArrayList<>();
+        Path file = Files.createTempFile("segmentStoreTest", ".dat");
+        try {
+            OnDiskSegmentStore<@NonNull NamedSegment> store = OnDiskSegmentStore.createNew(file, serializer, 16, CACHE_SIZE);
+            for (int i = 0; i < 100; i++) {
+                NamedSegment segment = new NamedSegment(i * 10, i * 10 + i % 7, names[i % names.length], -i);
+                expected.add(segment);
+                store.add(segment);
+            }
+            store.close(false);
+            store.dispose();
+
+            OnDiskSegmentStore<@NonNull NamedSegment> reopened = OnDiskSegmentStore.openExisting(file, serializer, CACHE_SIZE);
+            List<@NonNull NamedSegment> actual = ImmutableList.copyOf(reopened);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                NamedSegment segment = actual.get(i);
+                assertEquals(expected.get(i).getStart(), segment.getStart());
+                assertEquals(expected.get(i).getEnd(), segment.getEnd());
+                assertEquals(expected.get(i).getName(), segment.getName());
+                assertEquals(expected.get(i).getValue(), segment.getValue());
+            }
+            /* Segments of the same page share their names */
+            assertSame(actual.get(0).getName(), actual.get(3).getName());
+            reopened.dispose();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that the segments saved with Java serialization in a temporary
+     * store are read back from the pages
+     */
+    @Test
+    public void testTemporary() {
+        ISegmentStore<@NonNull NamedSegment> store;
+        try {
+            store = OnDiskSegmentStore.createTemporary();
+        } catch (IOException e) {
+            fail(e.getMessage());
+            return;
+        }
+        for (int i = 0; i < OnDiskSegmentStore.DEFAULT_PAGE_SIZE + 10; i++) {
+            store.add(new NamedSegment(i, i + 5, "segment", i));
+        }
+        int i = 0;
+        for (NamedSegment segment : store) {
+            assertEquals(i, segment.getStart());
+            assertEquals(i + 5, segment.getEnd());
+            assertEquals("segment", segment.getName());
+            assertEquals(i, segment.getValue());
+            i++;
+        }
+        assertEquals(OnDiskSegmentStore.DEFAULT_PAGE_SIZE + 10, i);
+        store.dispose();
+    }
+
+    private static class NamedSegment extends BasicSegment {
+        private static final long serialVersionUID = 1L;
+
+        private final String fName;
+        private final int fValue;
+
+        public NamedSegment(long start, long end, String name, int value) {
+            super(start, end);
+            fName = name;
+            fValue = value;
+        }
+
+        public String getName() {
+            return fName;
+        }
+
+        public int getValue() {
+            return fValue;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory;
 import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory.SegmentStoreType;
 import org.junit.Test;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Segment Store factory test
  *
@@ -58,6 +60,36 @@ public class SegmentStoreFactoryTest {
         assertNotNull(SegmentStoreFactory.createSegmentStore(SegmentStoreType.Stable));
     }
 
+    /**
+     * Create a segment store indexed for intersection queries
+     */
+    @Test
+    public void createIndexed() {
+        assertNotNull(SegmentStoreFactory.createSegmentStore(SegmentStoreType.Indexed));
+    }
+
+    /**
+     * Create a segment store that can be read while it is built
+     */
+    @Test
+    public void createConcurrent() {
+        assertNotNull(SegmentStoreFactory.createSegmentStore(SegmentStoreType.Concurrent));
+    }
+
+    /**
+     * Create a segment store kept on disk
+     */
+    @Test
+    public void createOnDisk() {
+        ISegmentStore<@NonNull ISegment> fixture = SegmentStoreFactory.createSegmentStore(SegmentStoreType.OnDisk);
+        assertNotNull(fixture);
+        fixture.add(new BasicSegment(0, 2));
+        fixture.add(new BasicSegment(1, 3));
+        assertEquals(2, fixture.size());
+        assertEquals(1, Iterables.size(fixture.getIntersectingElements(3)));
+        fixture.dispose();
+    }
+
     /**
      * Create a "set" like segment store
      */
@@ -149,6 +181,12 @@ public class SegmentStoreFactoryTest {
         segmentStore = SegmentStoreFactory.createSegmentStore(data, SegmentStoreType.Distinct);
         assertNotNull(segmentStore);
         assertEquals(1, segmentStore.size());
+        segmentStore = SegmentStoreFactory.createSegmentStore(data, SegmentStoreType.Indexed);
+        assertNotNull(segmentStore);
+        assertEquals(1, segmentStore.size());
+        segmentStore = SegmentStoreFactory.createSegmentStore(data, SegmentStoreType.Concurrent);
+        assertNotNull(segmentStore);
+        assertEquals(1, segmentStore.size());
     }
 
     private static void testDistinct(ISegmentStore<@NonNull ISegment> fixture) {
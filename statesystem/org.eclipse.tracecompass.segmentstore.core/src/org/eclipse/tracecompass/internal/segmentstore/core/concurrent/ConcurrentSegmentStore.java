@@ -0,0 +1,479 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+
+/**
+ * Implementation of an {@link ISegmentStore} meant to be read while it is
+ * being built, by one or more threads.
+ *
+ * The segments are added to a small append buffer. When the buffer is full,
+ * it is sorted into an immutable chunk, which holds an interval tree like the
+ * one of the IntervalTreeStore. The writing thread then merges the smaller
+ * chunks together, outside of any lock the readers need, so that there are
+ * never more than a logarithmic number of chunks. The readers only lock the
+ * store to take a snapshot of the list of chunks and to copy the buffer, they
+ * never sort the whole store and never wait for a merge.
+ *
+ * The iteration order is by ascending order of start times, then end times.
+ * The chunks are merged on the fly while iterating.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class ConcurrentSegmentStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    /** Default number of segments buffered before they are sorted in a chunk */
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    /** Number of segments in each leaf of the chunk trees */
+    private static final int BLOCK_SIZE = 32;
+
+    private static final Comparator<ISegment> COMPARATOR = Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR)
+            .compound(SegmentComparators.INTERVAL_END_COMPARATOR);
+
+    /** Guards the buffer and the replacement of the list of chunks */
+    private final ReentrantLock fLock = new ReentrantLock(false);
+
+    /** Held by the thread merging the chunks */
+    private final ReentrantLock fMergeLock = new ReentrantLock(false);
+
+    private final int fBufferSize;
+
+    private volatile List<Chunk<E>> fChunks = ImmutableList.of();
+    private List<E> fBuffer = new ArrayList<>();
+    private volatile int fSize = 0;
+
+    /**
+     * Immutable sorted chunk of segments, with an implicit binary tree over
+     * blocks of segments holding the largest end time of each subtree. The
+     * root is at index 1, the children of node i are at 2i and 2i+1, and the
+     * leaves start at index fNbLeaves.
+     */
+    private static final class Chunk<@NonNull T extends ISegment> {
+
+        private final List<T> fSegments;
+        private final long[] fMaxEnds;
+        private final int fNbLeaves;
+
+        public Chunk(List<T> sortedSegments) {
+            fSegments = sortedSegments;
+            int nbBlocks = (sortedSegments.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int nbLeaves = 1;
+            while (nbLeaves < nbBlocks) {
+                nbLeaves *= 2;
+            }
+            long[] maxEnds = new long[2 * nbLeaves];
+            Arrays.fill(maxEnds, Long.MIN_VALUE);
+            for (int i = 0; i < sortedSegments.size(); i++) {
+                int leaf = nbLeaves + i / BLOCK_SIZE;
+                maxEnds[leaf] = Math.max(maxEnds[leaf], sortedSegments.get(i).getEnd());
+            }
+            for (int node = nbLeaves - 1; node > 0; node--) {
+                maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+            }
+            fMaxEnds = maxEnds;
+            fNbLeaves = nbLeaves;
+        }
+
+        public static <@NonNull T extends ISegment> Chunk<T> merge(Chunk<T> first, Chunk<T> second) {
+            List<T> a = first.fSegments;
+            List<T> b = second.fSegments;
+            List<T> merged = new ArrayList<>(a.size() + b.size());
+            int i = 0;
+            int j = 0;
+            while (i < a.size() && j < b.size()) {
+                if (COMPARATOR.compare(a.get(i), b.get(j)) <= 0) {
+                    merged.add(a.get(i++));
+                } else {
+                    merged.add(b.get(j++));
+                }
+            }
+            merged.addAll(a.subList(i, a.size()));
+            merged.addAll(b.subList(j, b.size()));
+            return new Chunk<>(merged);
+        }
+
+        public int size() {
+            return fSegments.size();
+        }
+
+        public void collect(long start, long end, List<T> result) {
+            /* Number of segments starting at or before the end of the range */
+            int low = 0;
+            int high = fSegments.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fSegments.get(mid).getStart() <= end) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low > 0) {
+                collect(1, 0, fNbLeaves, low, start, result);
+            }
+        }
+
+        private void collect(int node, int firstBlock, int nbBlocks, int limit, long start, List<T> result) {
+            if (fMaxEnds[node] < start || firstBlock * BLOCK_SIZE >= limit) {
+                return;
+            }
+            if (nbBlocks == 1) {
+                int last = Math.min(limit, (firstBlock + 1) * BLOCK_SIZE);
+                for (int i = firstBlock * BLOCK_SIZE; i < last; i++) {
+                    T segment = fSegments.get(i);
+                    if (segment.getEnd() >= start) {
+                        result.add(segment);
+                    }
+                }
+                return;
+            }
+            int half = nbBlocks / 2;
+            collect(2 * node, firstBlock, half, limit, start, result);
+            collect(2 * node + 1, firstBlock + half, half, limit, start, result);
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public ConcurrentSegmentStore() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param bufferSize
+     *            The number of segments buffered before they are sorted in a
+     *            chunk
+     */
+    public ConcurrentSegmentStore(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize); //$NON-NLS-1$
+        }
+        fBufferSize = bufferSize;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param array
+     *            an array of elements to wrap in the segment store
+     */
+    public ConcurrentSegmentStore(Object[] array) {
+        this(DEFAULT_BUFFER_SIZE);
+        List<E> segments = new ArrayList<>(array.length);
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] instanceof ISegment) {
+                segments.add((E) array[i]);
+            }
+        }
+        if (!segments.isEmpty()) {
+            segments.sort(COMPARATOR);
+            fChunks = ImmutableList.of(new Chunk<>(segments));
+            fSize = segments.size();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Chunks
+    // ------------------------------------------------------------------------
+
+    /**
+     * Sort the buffered segments into a new chunk. DO NOT CALL FROM OUTSIDE
+     * OF THE LOCK!
+     */
+    private void flushBuffer() {
+        List<E> buffer = fBuffer;
+        buffer.sort(COMPARATOR);
+        fChunks = ImmutableList.<Chunk<E>> builder().addAll(fChunks).add(new Chunk<>(buffer)).build();
+        fBuffer = new ArrayList<>();
+    }
+
+    /**
+     * Merge the chunks until each one is more than twice as big as the next
+     * one. Only one thread merges at a time, the other writers just go on.
+     */
+    private void mergeChunks() {
+        if (!fMergeLock.tryLock()) {
+            return;
+        }
+        try {
+            while (true) {
+                List<Chunk<E>> chunks = fChunks;
+                int index = chunks.size() - 2;
+                while (index >= 0 && chunks.get(index).size() > 2 * chunks.get(index + 1).size()) {
+                    index--;
+                }
+                if (index < 0) {
+                    return;
+                }
+                Chunk<E> first = chunks.get(index);
+                Chunk<E> second = chunks.get(index + 1);
+                Chunk<E> merged = Chunk.merge(first, second);
+
+                fLock.lock();
+                try {
+                    /* Chunks may have been added, or the store cleared, meanwhile */
+                    List<Chunk<E>> current = fChunks;
+                    if (!Iterables.any(current, chunk -> chunk == first)) {
+                        return;
+                    }
+                    ImmutableList.Builder<Chunk<E>> builder = ImmutableList.builder();
+                    for (Chunk<E> chunk : current) {
+                        if (chunk == first) {
+                            builder.add(merged);
+                        } else if (chunk != second) {
+                            builder.add(chunk);
+                        }
+                    }
+                    fChunks = builder.build();
+                } finally {
+                    fLock.unlock();
+                }
+            }
+        } finally {
+            fMergeLock.unlock();
+        }
+    }
+
+    /**
+     * Get the current chunks, including one holding the buffered segments
+     */
+    private List<Chunk<E>> getSnapshot() {
+        List<Chunk<E>> chunks;
+        List<E> buffer;
+        fLock.lock();
+        try {
+            chunks = fChunks;
+            buffer = new ArrayList<>(fBuffer);
+        } finally {
+            fLock.unlock();
+        }
+        if (buffer.isEmpty()) {
+            return chunks;
+        }
+        buffer.sort(COMPARATOR);
+        return ImmutableList.<Chunk<E>> builder().addAll(chunks).add(new Chunk<>(buffer)).build();
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        return new SortedIterator(getSnapshot());
+    }
+
+    /**
+     * Iterator merging the sorted chunks
+     */
+    private class SortedIterator implements Iterator<E> {
+
+        private final PriorityQueue<Cursor> fCursors = new PriorityQueue<>((a, b) -> COMPARATOR.compare(a.current(), b.current()));
+
+        private final class Cursor {
+            private final List<E> fSegments;
+            private int fIndex = 0;
+
+            public Cursor(List<E> segments) {
+                fSegments = segments;
+            }
+
+            public E current() {
+                return fSegments.get(fIndex);
+            }
+        }
+
+        public SortedIterator(List<Chunk<E>> chunks) {
+            for (Chunk<E> chunk : chunks) {
+                if (chunk.size() > 0) {
+                    fCursors.add(new Cursor(chunk.fSegments));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !fCursors.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            Cursor cursor = fCursors.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            E segment = cursor.current();
+            cursor.fIndex++;
+            if (cursor.fIndex < cursor.fSegments.size()) {
+                fCursors.add(cursor);
+            }
+            return segment;
+        }
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+        }
+
+        boolean flushed = false;
+        fLock.lock();
+        try {
+            fBuffer.add(val);
+            fSize++;
+            if (fBuffer.size() >= fBufferSize) {
+                flushBuffer();
+                flushed = true;
+            }
+        } finally {
+            fLock.unlock();
+        }
+        if (flushed) {
+            mergeChunks();
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return fSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (fSize == 0);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        if (!(o instanceof ISegment)) {
+            return false;
+        }
+        long start = ((ISegment) o).getStart();
+        return Iterables.contains(getIntersectingElements(start, start), o);
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return ImmutableList.copyOf(iterator()).toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return ImmutableList.copyOf(iterator()).toArray(a);
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+
+        boolean changed = false;
+        for (E elem : c) {
+            if (add(elem)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        fLock.lock();
+        try {
+            fChunks = ImmutableList.of();
+            fBuffer = new ArrayList<>();
+            fSize = 0;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        List<Chunk<E>> chunks;
+        List<E> result = new ArrayList<>();
+        fLock.lock();
+        try {
+            chunks = fChunks;
+            for (E segment : fBuffer) {
+                if (segment.getStart() <= end && segment.getEnd() >= start) {
+                    result.add(segment);
+                }
+            }
+        } finally {
+            fLock.unlock();
+        }
+        /* The chunks are immutable, they are queried outside of the lock */
+        for (Chunk<E> chunk : chunks) {
+            chunk.collect(start, end, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+
+    /**
+     * Get the number of sorted chunks, not counting the buffered segments
+     *
+     * @return The number of chunks
+     */
+    public int getNbChunks() {
+        return fChunks.size();
+    }
+}
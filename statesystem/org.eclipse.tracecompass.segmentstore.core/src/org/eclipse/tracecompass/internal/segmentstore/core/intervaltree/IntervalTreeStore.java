@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.intervaltree;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+/**
+ * Implementation of an {@link ISegmentStore} using an augmented interval tree.
+ * The segments are kept in an {@link ArrayList} sorted by start times, like in
+ * the LazyArrayListStore, and an implicit binary tree over blocks of this list
+ * holds the largest end time of each subtree.
+ *
+ * An intersection query finds the last segment starting before the end of the
+ * range by binary search, then walks down the tree, skipping the subtrees
+ * whose segments all end before the start of the range. Querying a small
+ * window is then O(log n + k), even near the end of a trace with a few very
+ * long segments, instead of filtering all the segments that start before the
+ * window.
+ *
+ * Segments added in order of start times update the tree in O(log n). Out of
+ * order insertions are sorted lazily, and the tree rebuilt, at the next read.
+ *
+ * The iteration order is by ascending order of start times, then end times.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class IntervalTreeStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    /** Number of segments in each leaf of the tree */
+    private static final int BLOCK_SIZE = 32;
+
+    private static final Comparator<ISegment> COMPARATOR = Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR)
+            .compound(SegmentComparators.INTERVAL_END_COMPARATOR);
+
+    private final ReentrantLock fLock = new ReentrantLock(false);
+
+    private final List<E> fStore = new ArrayList<>();
+
+    private @Nullable transient Iterable<E> fLastSnapshot = null;
+
+    private volatile boolean fDirty = false;
+
+    /**
+     * Max end times of the tree nodes. The root is at index 1, the children
+     * of node i are at 2i and 2i+1, and the leaves, one per block of segments,
+     * start at index fNbLeaves.
+     */
+    private long[] fMaxEnds = new long[0];
+    private int fNbLeaves = 0;
+    private boolean fIndexValid = false;
+
+    /**
+     * Constructor
+     */
+    public IntervalTreeStore() {
+        // do nothing
+    }
+
+    /**
+     * Constructor
+     *
+     * @param array
+     *            an array of elements to wrap in the segment store
+     */
+    public IntervalTreeStore(Object[] array) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] instanceof ISegment) {
+                E element = (E) array[i];
+                setDirtyIfNeeded(element);
+                fStore.add(element);
+            }
+        }
+        if (fDirty) {
+            sortStore();
+        }
+    }
+
+    private void setDirtyIfNeeded(@NonNull E value) {
+        if (!fStore.isEmpty() && COMPARATOR.compare(fStore.get(fStore.size() - 1), value) > 0) {
+            fDirty = true;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Index
+    // ------------------------------------------------------------------------
+
+    /**
+     * DO NOT CALL FROM OUTSIDE OF A LOCK!
+     */
+    private void sortStore() {
+        fStore.sort(COMPARATOR);
+        fDirty = false;
+        fIndexValid = false;
+    }
+
+    /**
+     * Make sure the store is sorted and the tree up to date. DO NOT CALL FROM
+     * OUTSIDE OF A LOCK!
+     */
+    private void ensureIndex() {
+        if (fDirty) {
+            sortStore();
+        }
+        if (fIndexValid) {
+            return;
+        }
+        int nbBlocks = (fStore.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        /* Leave room for the segments appended later */
+        int nbLeaves = Integer.highestOneBit(Math.max(1, nbBlocks)) * 2;
+        long[] maxEnds = new long[2 * nbLeaves];
+        Arrays.fill(maxEnds, Long.MIN_VALUE);
+        for (int i = 0; i < fStore.size(); i++) {
+            int leaf = nbLeaves + i / BLOCK_SIZE;
+            maxEnds[leaf] = Math.max(maxEnds[leaf], fStore.get(i).getEnd());
+        }
+        for (int node = nbLeaves - 1; node > 0; node--) {
+            maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+        }
+        fMaxEnds = maxEnds;
+        fNbLeaves = nbLeaves;
+        fIndexValid = true;
+    }
+
+    /**
+     * Update the tree for a segment appended in order. DO NOT CALL FROM
+     * OUTSIDE OF A LOCK!
+     */
+    private void appendToIndex(int position, long end) {
+        int node = fNbLeaves + position / BLOCK_SIZE;
+        if (node >= fMaxEnds.length) {
+            /* The tree is full, it will be rebuilt bigger at the next read */
+            fIndexValid = false;
+            return;
+        }
+        long[] maxEnds = fMaxEnds;
+        while (node > 0 && maxEnds[node] < end) {
+            maxEnds[node] = end;
+            node /= 2;
+        }
+    }
+
+    /**
+     * Number of segments starting at or before the given time. DO NOT CALL
+     * FROM OUTSIDE OF A LOCK!
+     */
+    private int countStartingBefore(long time) {
+        int low = 0;
+        int high = fStore.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fStore.get(mid).getStart() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Collect the segments of the subtree at node that end at or after start,
+     * among the first 'limit' segments. DO NOT CALL FROM OUTSIDE OF A LOCK!
+     */
+    private void collect(int node, int firstBlock, int nbBlocks, int limit, long start, List<E> result) {
+        if (fMaxEnds[node] < start || firstBlock * BLOCK_SIZE >= limit) {
+            return;
+        }
+        if (nbBlocks == 1) {
+            int last = Math.min(limit, (firstBlock + 1) * BLOCK_SIZE);
+            for (int i = firstBlock * BLOCK_SIZE; i < last; i++) {
+                E segment = fStore.get(i);
+                if (segment.getEnd() >= start) {
+                    result.add(segment);
+                }
+            }
+            return;
+        }
+        int half = nbBlocks / 2;
+        collect(2 * node, firstBlock, half, limit, start, result);
+        collect(2 * node + 1, firstBlock + half, half, limit, start, result);
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        fLock.lock();
+        try {
+            if (fDirty) {
+                sortStore();
+            }
+            Iterable<E> lastSnapshot = fLastSnapshot;
+            if (lastSnapshot == null) {
+                lastSnapshot = ImmutableList.copyOf(fStore);
+                fLastSnapshot = lastSnapshot;
+            }
+            return checkNotNull(lastSnapshot.iterator());
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+        }
+
+        fLock.lock();
+        try {
+            setDirtyIfNeeded(val);
+            fStore.add(val);
+            if (fDirty) {
+                fIndexValid = false;
+            } else if (fIndexValid) {
+                appendToIndex(fStore.size() - 1, val.getEnd());
+            }
+            fLastSnapshot = null;
+            return true;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        fLock.lock();
+        try {
+            return fStore.size();
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        fLock.lock();
+        try {
+            return fStore.isEmpty();
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        fLock.lock();
+        try {
+            return fStore.contains(o);
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        fLock.lock();
+        try {
+            return fStore.containsAll(c);
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        fLock.lock();
+        try {
+            if (fDirty) {
+                sortStore();
+            }
+            return fStore.toArray();
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        fLock.lock();
+        try {
+            if (fDirty) {
+                sortStore();
+            }
+            return fStore.toArray(a);
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.lock();
+        try {
+            boolean changed = false;
+            for (E elem : c) {
+                if (add(elem)) {
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fLock.lock();
+        try {
+            fStore.clear();
+            fLastSnapshot = null;
+            fDirty = false;
+            fIndexValid = false;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        fLock.lock();
+        try {
+            ensureIndex();
+            List<E> result = new ArrayList<>();
+            int limit = countStartingBefore(end);
+            if (limit > 0) {
+                collect(1, 0, fNbLeaves, limit, start, result);
+            }
+            return result;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        fLock.lock();
+        try {
+            fStore.clear();
+            fDirty = false;
+            fIndexValid = false;
+            fMaxEnds = new long[0];
+        } finally {
+            fLock.unlock();
+        }
+    }
+}
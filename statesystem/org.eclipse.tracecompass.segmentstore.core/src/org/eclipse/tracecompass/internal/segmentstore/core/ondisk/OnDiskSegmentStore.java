@@ -0,0 +1,895 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.ondisk;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentSerializer;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentComparators;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Implementation of an {@link ISegmentStore} that keeps its segments in a
+ * file, so that the number of segments it can hold is not limited by the size
+ * of the heap.
+ *
+ * The segments are accumulated in memory until a page is full, then the page
+ * is sorted and written at the end of the file. A summary of each page (its
+ * position in the file, smallest and largest start times and largest end
+ * time) is kept in memory, so that the intersection queries only read the
+ * pages that can contain matching segments, found by binary search. The
+ * matching segments are read one page at a time, as the result is iterated.
+ * The pages read from disk are kept in a cache of bounded size.
+ *
+ * Each page is stored by columns: the start times, as deltas from the previous
+ * one, then the durations, both as variable-length integers, then a table of
+ * the strings used in the page, the object stream of the segments saved with
+ * Java serialization, if any, and the other fields written by the serializer.
+ * The strings the serializer writes with {@link java.io.DataOutput#writeUTF}
+ * are replaced by their index in the table, so a name repeated by all the
+ * segments of a page is stored once.
+ *
+ * When the store is closed, the page summaries are written at the end of the
+ * file, which can then be reopened later without rebuilding the segments. The
+ * pages of a closed file are memory-mapped, and only decoded when a query or
+ * an iteration reaches them.
+ *
+ * The iteration order is by ascending order of start times, then end times.
+ * The pages are merged on the fly while iterating, a page being read only when
+ * the iteration reaches its first start time.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class OnDiskSegmentStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    private static final int SEGMENT_FILE_MAGIC_NUMBER = 0x05E65707;
+    private static final int FILE_VERSION = 3;
+
+    /** Magic number, version, segment count, page index position */
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    /** Position, length, count, min start, max start, max end */
+    private static final int PAGE_ENTRY_SIZE = Long.BYTES + 2 * Integer.BYTES + 3 * Long.BYTES;
+
+    /** Default number of segments per page */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /** Default maximum number of pages kept in memory */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    /**
+     * System property to enable or disable the memory-mapped read path of
+     * closed files. It is disabled by default on Windows, where mapped files
+     * cannot be deleted until the mapping is garbage-collected.
+     */
+    public static final String MAPPED_READ_PROPERTY = "org.eclipse.tracecompass.segmentstore.core.onDiskMappedRead"; //$NON-NLS-1$
+
+    /** Maximum size of each region of the file mapped in memory */
+    private static final long MAX_MAPPING_SIZE = 1L << 30;
+
+    private static final Comparator<ISegment> COMPARATOR = Ordering.from(SegmentComparators.INTERVAL_START_COMPARATOR)
+            .compound(SegmentComparators.INTERVAL_END_COMPARATOR);
+
+    private final ReadWriteLock fLock = new ReentrantReadWriteLock(false);
+
+    private final Path fFile;
+    private final FileChannel fChannel;
+    private final ISegmentSerializer<E> fSerializer;
+    private final int fPageSize;
+    private final boolean fTemporary;
+    /* Pages read from disk, by generation and page index, see #pageKey */
+    private final LoadingCache<Long, List<E>> fPageCache;
+
+    /* Page index, sorted by position in the file */
+    private long[] fPagePositions = new long[16];
+    private int[] fPageLengths = new int[16];
+    private int[] fPageCounts = new int[16];
+    private long[] fPageMinStarts = new long[16];
+    private long[] fPageMaxStarts = new long[16];
+    private long[] fPageMaxEnds = new long[16];
+    /*
+     * Page indices sorted by min start, and the largest max end of the pages
+     * up to each position in this order
+     */
+    private int[] fPagesByStart = new int[16];
+    private long[] fPrefixMaxEnds = new long[16];
+    private volatile int fNbPages = 0;
+    /* Incremented when the pages are cleared, so the cached ones are not reused */
+    private int fGeneration = 0;
+
+    /* Contents of the pages of a closed file, mapped in memory */
+    private ByteBuffer[] fMappedPages = new ByteBuffer[0];
+
+    /** Segments not written yet */
+    private List<E> fBuffer = new ArrayList<>();
+
+    private long fEndOfPages = HEADER_SIZE;
+    private volatile long fSize = 0;
+    private boolean fClosed = false;
+    private boolean fDisposed = false;
+
+    private OnDiskSegmentStore(Path file, FileChannel channel, ISegmentSerializer<E> serializer,
+            int pageSize, int cacheSize, boolean temporary) {
+        if (pageSize <= 0 || cacheSize <= 0) {
+            throw new IllegalArgumentException("Invalid page or cache size: " + pageSize + ", " + cacheSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        fFile = file;
+        fChannel = channel;
+        fSerializer = serializer;
+        fPageSize = pageSize;
+        fTemporary = temporary;
+        fPageCache = checkNotNull(CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .build(new CacheLoader<Long, List<E>>() {
+                    @Override
+                    public List<E> load(Long key) throws IOException {
+                        return readPage((int) (key >>> 32), key.intValue());
+                    }
+                }));
+    }
+
+    /**
+     * Create a new segment store in the given file. Any existing file is
+     * overwritten.
+     *
+     * @param file
+     *            The file in which to store the segments
+     * @param serializer
+     *            The serializer of the segments
+     * @param pageSize
+     *            The number of segments per page
+     * @param cacheSize
+     *            The maximum number of pages to keep in memory
+     * @return The new segment store
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public static <@NonNull E extends ISegment> OnDiskSegmentStore<E> createNew(Path file, ISegmentSerializer<E> serializer,
+            int pageSize, int cacheSize) throws IOException {
+        return createNew(file, serializer, pageSize, cacheSize, false);
+    }
+
+    /**
+     * Create a new segment store in a temporary file, which is deleted when
+     * the store is disposed, or when the virtual machine exits if the store is
+     * not disposed. The segments are saved using Java serialization.
+     *
+     * @return The new segment store
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public static <@NonNull E extends ISegment> OnDiskSegmentStore<E> createTemporary() throws IOException {
+        Path file = checkNotNull(Files.createTempFile("segmentStore", ".dat")); //$NON-NLS-1$ //$NON-NLS-2$
+        file.toFile().deleteOnExit();
+        return createNew(file, new SerializableSegmentSerializer<>(), DEFAULT_PAGE_SIZE, DEFAULT_CACHE_SIZE, true);
+    }
+
+    private static <@NonNull E extends ISegment> OnDiskSegmentStore<E> createNew(Path file, ISegmentSerializer<E> serializer,
+            int pageSize, int cacheSize, boolean temporary) throws IOException {
+        FileChannel channel = checkNotNull(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        OnDiskSegmentStore<E> store = new OnDiskSegmentStore<>(file, channel, serializer, pageSize, cacheSize, temporary);
+        try {
+            store.writeHeader(0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Reopen a segment store from a file that was written and closed by a
+     * previous segment store.
+     *
+     * @param file
+     *            The file of the segment store
+     * @param serializer
+     *            The serializer of the segments
+     * @param cacheSize
+     *            The maximum number of pages to keep in memory
+     * @return The segment store
+     * @throws IOException
+     *             If the file cannot be read, or was not closed properly
+     */
+    public static <@NonNull E extends ISegment> OnDiskSegmentStore<E> openExisting(Path file, ISegmentSerializer<E> serializer,
+            int cacheSize) throws IOException {
+        FileChannel channel = checkNotNull(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        OnDiskSegmentStore<E> store = new OnDiskSegmentStore<>(file, channel, serializer, DEFAULT_PAGE_SIZE, cacheSize, false);
+        try {
+            store.readIndex();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    // ------------------------------------------------------------------------
+    // File I/O
+    // ------------------------------------------------------------------------
+
+    private void writeHeader(long indexPosition) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(SEGMENT_FILE_MAGIC_NUMBER);
+        buffer.putInt(FILE_VERSION);
+        buffer.putLong(fSize);
+        buffer.putLong(indexPosition);
+        buffer.flip();
+        writeFully(buffer, 0);
+    }
+
+    private void readIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, 0);
+        buffer.flip();
+        if (buffer.getInt() != SEGMENT_FILE_MAGIC_NUMBER) {
+            throw new IOException("Wrong magic number"); //$NON-NLS-1$
+        }
+        if (buffer.getInt() != FILE_VERSION) {
+            throw new IOException("Mismatching segment store file format versions"); //$NON-NLS-1$
+        }
+        long size = buffer.getLong();
+        long indexPosition = buffer.getLong();
+        if (indexPosition < HEADER_SIZE) {
+            throw new IOException("Segment store file was not closed properly"); //$NON-NLS-1$
+        }
+
+        ByteBuffer countBuffer = ByteBuffer.allocate(Integer.BYTES);
+        countBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(countBuffer, indexPosition);
+        countBuffer.flip();
+        int nbPages = countBuffer.getInt();
+
+        ByteBuffer index = ByteBuffer.allocate(nbPages * PAGE_ENTRY_SIZE);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(index, indexPosition + Integer.BYTES);
+        index.flip();
+        for (int i = 0; i < nbPages; i++) {
+            addPageEntry(index.getLong(), index.getInt(), index.getInt(), index.getLong(), index.getLong(), index.getLong());
+        }
+        fSize = size;
+        fEndOfPages = indexPosition;
+        fClosed = true;
+        mapPages();
+    }
+
+    /**
+     * Map the pages of the closed file in memory, in regions that each hold
+     * whole pages, if the mapped read path is enabled. DO NOT CALL FROM
+     * OUTSIDE OF THE WRITE LOCK!
+     */
+    private void mapPages() throws IOException {
+        if (!isMappedReadEnabled()) {
+            fMappedPages = new ByteBuffer[0];
+            return;
+        }
+        int nbPages = fNbPages;
+        ByteBuffer[] mappedPages = new ByteBuffer[nbPages];
+        int first = 0;
+        while (first < nbPages) {
+            long regionStart = fPagePositions[first];
+            int last = first + 1;
+            while (last < nbPages && fPagePositions[last] + fPageLengths[last] - regionStart <= MAX_MAPPING_SIZE) {
+                last++;
+            }
+            long regionEnd = fPagePositions[last - 1] + fPageLengths[last - 1];
+            ByteBuffer region = fChannel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart);
+            for (int i = first; i < last; i++) {
+                ByteBuffer page = region.duplicate();
+                page.position((int) (fPagePositions[i] - regionStart));
+                page.limit(page.position() + fPageLengths[i]);
+                mappedPages[i] = page.slice();
+            }
+            first = last;
+        }
+        fMappedPages = mappedPages;
+    }
+
+    /**
+     * Get whether the pages of closed files are read through a memory mapping,
+     * as set by the {@link #MAPPED_READ_PROPERTY} system property.
+     *
+     * @return true if the mapped read path is enabled
+     */
+    public static boolean isMappedReadEnabled() {
+        return Boolean.parseBoolean(System.getProperty(MAPPED_READ_PROPERTY,
+                String.valueOf(!System.getProperty("os.name", "").startsWith("Windows")))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * Get whether the pages of this store are read through a memory mapping.
+     *
+     * @return true if the pages of the closed file are mapped
+     */
+    public boolean isMapped() {
+        fLock.readLock().lock();
+        try {
+            return fMappedPages.length > 0;
+        } finally {
+            fLock.readLock().unlock();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        int nbPages = fNbPages;
+        ByteBuffer index = ByteBuffer.allocate(Integer.BYTES + nbPages * PAGE_ENTRY_SIZE);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(nbPages);
+        for (int i = 0; i < nbPages; i++) {
+            index.putLong(fPagePositions[i]);
+            index.putInt(fPageLengths[i]);
+            index.putInt(fPageCounts[i]);
+            index.putLong(fPageMinStarts[i]);
+            index.putLong(fPageMaxStarts[i]);
+            index.putLong(fPageMaxEnds[i]);
+        }
+        index.flip();
+        fChannel.truncate(fEndOfPages);
+        writeFully(index, fEndOfPages);
+        writeHeader(fEndOfPages);
+        fChannel.force(false);
+    }
+
+    /**
+     * Sort the buffered segments and write them in a new page. DO NOT CALL
+     * FROM OUTSIDE OF THE WRITE LOCK!
+     */
+    private void flushBuffer() throws IOException {
+        List<E> page = fBuffer;
+        if (page.isEmpty()) {
+            return;
+        }
+        if (fClosed) {
+            /* The page will overwrite the index, invalidate it */
+            writeHeader(0);
+            fClosed = false;
+            fMappedPages = new ByteBuffer[0];
+        }
+        page.sort(COMPARATOR);
+
+        PageWriter fields = new PageWriter();
+        for (E segment : page) {
+            fSerializer.writeSegment(segment, fields);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long maxEnd = Long.MIN_VALUE;
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            long previousStart = page.get(0).getStart();
+            for (E segment : page) {
+                PageWriter.writeVarLong(out, segment.getStart() - previousStart);
+                previousStart = segment.getStart();
+            }
+            for (E segment : page) {
+                PageWriter.writeVarLong(out, segment.getEnd() - segment.getStart());
+                maxEnd = Math.max(maxEnd, segment.getEnd());
+            }
+            fields.writeTo(out);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int length = buffer.remaining();
+        writeFully(buffer, fEndOfPages);
+
+        int pageIndex = fNbPages;
+        addPageEntry(fEndOfPages, length, page.size(), page.get(0).getStart(), page.get(page.size() - 1).getStart(), maxEnd);
+        fEndOfPages += length;
+        /* The page was just written, it is probably the next one to be read */
+        fPageCache.put(pageKey(fGeneration, pageIndex), ImmutableList.copyOf(page));
+        fBuffer = new ArrayList<>();
+    }
+
+    private void addPageEntry(long position, int length, int count, long minStart, long maxStart, long maxEnd) {
+        int nbPages = fNbPages;
+        if (nbPages == fPagePositions.length) {
+            int newLength = nbPages * 2;
+            fPagePositions = Arrays.copyOf(fPagePositions, newLength);
+            fPageLengths = Arrays.copyOf(fPageLengths, newLength);
+            fPageCounts = Arrays.copyOf(fPageCounts, newLength);
+            fPageMinStarts = Arrays.copyOf(fPageMinStarts, newLength);
+            fPageMaxStarts = Arrays.copyOf(fPageMaxStarts, newLength);
+            fPageMaxEnds = Arrays.copyOf(fPageMaxEnds, newLength);
+            fPagesByStart = Arrays.copyOf(fPagesByStart, newLength);
+            fPrefixMaxEnds = Arrays.copyOf(fPrefixMaxEnds, newLength);
+        }
+        fPagePositions[nbPages] = position;
+        fPageLengths[nbPages] = length;
+        fPageCounts[nbPages] = count;
+        fPageMinStarts[nbPages] = minStart;
+        fPageMaxStarts[nbPages] = maxStart;
+        fPageMaxEnds[nbPages] = maxEnd;
+
+        /* The pages mostly come by increasing start times */
+        int pos = nbPages;
+        while (pos > 0 && fPageMinStarts[fPagesByStart[pos - 1]] > minStart) {
+            pos--;
+        }
+        System.arraycopy(fPagesByStart, pos, fPagesByStart, pos + 1, nbPages - pos);
+        fPagesByStart[pos] = nbPages;
+        for (int i = pos; i <= nbPages; i++) {
+            long pageMaxEnd = fPageMaxEnds[fPagesByStart[i]];
+            fPrefixMaxEnds[i] = (i == 0 ? pageMaxEnd : Math.max(fPrefixMaxEnds[i - 1], pageMaxEnd));
+        }
+        fNbPages = nbPages + 1;
+    }
+
+    private static long pageKey(int generation, int page) {
+        return ((long) generation << 32) | (page & 0xFFFFFFFFL);
+    }
+
+    private List<E> readPage(int generation, int page) throws IOException {
+        long position;
+        int length;
+        int count;
+        long minStart;
+        ByteBuffer mapped = null;
+        fLock.readLock().lock();
+        try {
+            if (generation != fGeneration || page >= fNbPages) {
+                /* The store was cleared since the page was looked up */
+                return ImmutableList.of();
+            }
+            position = fPagePositions[page];
+            length = fPageLengths[page];
+            count = fPageCounts[page];
+            minStart = fPageMinStarts[page];
+            if (page < fMappedPages.length) {
+                mapped = fMappedPages[page].duplicate();
+            }
+        } finally {
+            fLock.readLock().unlock();
+        }
+
+        byte[] bytes = new byte[length];
+        if (mapped != null) {
+            mapped.get(bytes);
+        } else {
+            readFully(ByteBuffer.wrap(bytes), position);
+        }
+        List<E> segments = new ArrayList<>(count);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long[] starts = new long[count];
+            long start = minStart;
+            for (int i = 0; i < count; i++) {
+                start += PageReader.readVarLong(in);
+                starts[i] = start;
+            }
+            long[] ends = new long[count];
+            for (int i = 0; i < count; i++) {
+                ends[i] = starts[i] + PageReader.readVarLong(in);
+            }
+            PageReader fields = new PageReader(in);
+            for (int i = 0; i < count; i++) {
+                segments.add(fSerializer.readSegment(starts[i], ends[i], fields));
+            }
+        }
+        return checkNotNull(ImmutableList.copyOf(segments));
+    }
+
+    private List<E> getPage(int generation, int page) {
+        try {
+            return checkNotNull(fPageCache.getUnchecked(pageKey(generation, page)));
+        } catch (UncheckedExecutionException e) {
+            throw new IllegalStateException("Cannot read page " + page + " of segment store file " + fFile, e.getCause()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += fChannel.write(buffer, pos);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int read = fChannel.read(buffer, pos);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment store file " + fFile); //$NON-NLS-1$
+            }
+            pos += read;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        fLock.readLock().lock();
+        try {
+            List<E> buffer = new ArrayList<>(fBuffer);
+            buffer.sort(COMPARATOR);
+            int nbPages = fNbPages;
+            Integer[] order = new Integer[nbPages];
+            for (int i = 0; i < nbPages; i++) {
+                order[i] = i;
+            }
+            long[] minStarts = Arrays.copyOf(fPageMinStarts, nbPages);
+            Arrays.sort(order, (a, b) -> Long.compare(minStarts[a], minStarts[b]));
+            return new SortedIterator(buffer, order, minStarts, fGeneration);
+        } finally {
+            fLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Iterator merging the sorted pages and the buffered segments
+     */
+    private class SortedIterator implements Iterator<E> {
+
+        private final PriorityQueue<Cursor> fCursors = new PriorityQueue<>((a, b) -> COMPARATOR.compare(a.current(), b.current()));
+        private final Integer[] fPageOrder;
+        private final long[] fMinStarts;
+        private final int fIterGeneration;
+        private int fNextPage = 0;
+
+        private final class Cursor {
+            private final List<E> fSegments;
+            private int fIndex = 0;
+
+            public Cursor(List<E> segments) {
+                fSegments = segments;
+            }
+
+            public E current() {
+                return fSegments.get(fIndex);
+            }
+        }
+
+        public SortedIterator(List<E> buffer, Integer[] pageOrder, long[] minStarts, int generation) {
+            fPageOrder = pageOrder;
+            fMinStarts = minStarts;
+            fIterGeneration = generation;
+            if (!buffer.isEmpty()) {
+                fCursors.add(new Cursor(buffer));
+            }
+        }
+
+        /**
+         * Open the pages whose first segment may come before the smallest
+         * segment of the pages already opened
+         */
+        private void openPages() {
+            while (fNextPage < fPageOrder.length) {
+                Cursor first = fCursors.peek();
+                int page = fPageOrder[fNextPage];
+                if (first != null && fMinStarts[page] > first.current().getStart()) {
+                    return;
+                }
+                List<E> segments = getPage(fIterGeneration, page);
+                if (!segments.isEmpty()) {
+                    fCursors.add(new Cursor(segments));
+                }
+                fNextPage++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            openPages();
+            return !fCursors.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            openPages();
+            Cursor cursor = fCursors.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            E segment = cursor.current();
+            cursor.fIndex++;
+            if (cursor.fIndex < cursor.fSegments.size()) {
+                fCursors.add(cursor);
+            }
+            return segment;
+        }
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+        }
+
+        fLock.writeLock().lock();
+        try {
+            fBuffer.add(val);
+            fSize++;
+            if (fBuffer.size() >= fPageSize) {
+                flushBuffer();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write to segment store file " + fFile, e); //$NON-NLS-1$
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return Ints.saturatedCast(fSize);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (fSize == 0);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        if (!(o instanceof ISegment)) {
+            return false;
+        }
+        long start = ((ISegment) o).getStart();
+        return Iterables.contains(getIntersectingElements(start, start), o);
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return ImmutableList.copyOf(iterator()).toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return ImmutableList.copyOf(iterator()).toArray(a);
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+
+        fLock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (E elem : c) {
+                if (add(elem)) {
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fLock.writeLock().lock();
+        try {
+            fBuffer = new ArrayList<>();
+            fNbPages = 0;
+            fGeneration++;
+            fSize = 0;
+            fEndOfPages = HEADER_SIZE;
+            fMappedPages = new ByteBuffer[0];
+            fPageCache.invalidateAll();
+            if (!fDisposed) {
+                fChannel.truncate(HEADER_SIZE);
+                writeHeader(0);
+                fClosed = false;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot clear segment store file " + fFile, e); //$NON-NLS-1$
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        List<E> buffered = new ArrayList<>();
+        int[] pages;
+        int generation;
+        fLock.readLock().lock();
+        try {
+            for (E segment : fBuffer) {
+                if (segment.getStart() <= end && segment.getEnd() >= start) {
+                    buffered.add(segment);
+                }
+            }
+            /*
+             * Select the pages under the lock, they are read outside of it. If
+             * the store is cleared in between, the pages of this generation
+             * are read as empty.
+             */
+            generation = fGeneration;
+            int nbPages = fNbPages;
+            /* Skip the first pages that all end before the range... */
+            int first = 0;
+            int last = nbPages;
+            while (first < last) {
+                int mid = (first + last) >>> 1;
+                if (fPrefixMaxEnds[mid] < start) {
+                    first = mid + 1;
+                } else {
+                    last = mid;
+                }
+            }
+            /* ...and the last pages that start after it */
+            last = nbPages;
+            int low = first;
+            while (low < last) {
+                int mid = (low + last) >>> 1;
+                if (fPageMinStarts[fPagesByStart[mid]] <= end) {
+                    low = mid + 1;
+                } else {
+                    last = mid;
+                }
+            }
+            int nbSelected = 0;
+            pages = new int[last - first];
+            for (int i = first; i < last; i++) {
+                int page = fPagesByStart[i];
+                if (fPageMaxEnds[page] >= start) {
+                    pages[nbSelected++] = page;
+                }
+            }
+            pages = Arrays.copyOf(pages, nbSelected);
+        } finally {
+            fLock.readLock().unlock();
+        }
+
+        final int[] selectedPages = pages;
+        final int pagesGeneration = generation;
+        return () -> new AbstractIterator<E>() {
+            private Iterator<E> fCurrent = buffered.iterator();
+            private int fNextPage = 0;
+
+            @Override
+            protected @Nullable E computeNext() {
+                while (true) {
+                    while (fCurrent.hasNext()) {
+                        E segment = fCurrent.next();
+                        if (segment.getStart() > end) {
+                            /* The pages are sorted by start time */
+                            fCurrent = Collections.emptyIterator();
+                        } else if (segment.getEnd() >= start) {
+                            return segment;
+                        }
+                    }
+                    if (fNextPage >= selectedPages.length) {
+                        return endOfData();
+                    }
+                    fCurrent = getPage(pagesGeneration, selectedPages[fNextPage++]).iterator();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close(boolean deleteFiles) {
+        fLock.writeLock().lock();
+        try {
+            if (fDisposed) {
+                return;
+            }
+            if (deleteFiles) {
+                dispose();
+                return;
+            }
+            flushBuffer();
+            writeIndex();
+            fClosed = true;
+            mapPages();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write segment store file " + fFile, e); //$NON-NLS-1$
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        fLock.writeLock().lock();
+        try {
+            fBuffer = new ArrayList<>();
+            fNbPages = 0;
+            fGeneration++;
+            fSize = 0;
+            fMappedPages = new ByteBuffer[0];
+            fPageCache.invalidateAll();
+            if (fDisposed) {
+                return;
+            }
+            fDisposed = true;
+            fChannel.close();
+            if (fTemporary || !fClosed) {
+                /* An unfinished file cannot be reopened anyway */
+                Files.deleteIfExists(fFile);
+            }
+        } catch (IOException e) {
+            /* Nothing more we can do about it */
+        } finally {
+            fLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the file in which the segments are stored
+     *
+     * @return The segment store file
+     */
+    public Path getFile() {
+        return fFile;
+    }
+
+    /**
+     * Get the number of pages written to the file so far
+     *
+     * @return The number of pages
+     */
+    public int getNbPages() {
+        return fNbPages;
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.ondisk;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Input given to the segment serializers when reading a page written with a
+ * {@link PageWriter}. The strings read with {@link #readUTF} come from the
+ * string table of the page, so the segments of a page share their string
+ * instances. The segments serialized with Java serialization are read from
+ * the object stream of the page, see {@link #getObjectInput}.
+ */
+class PageReader implements DataInput {
+
+    private final DataInput fIn;
+    private final String[] fStrings;
+    private final byte[] fObjectBytes;
+    private @Nullable ObjectInputStream fObjectIn = null;
+
+    /**
+     * Constructor, reads the string table and the object stream of the page
+     *
+     * @param in
+     *            The input, positioned at the string table
+     * @throws IOException
+     *             If the input cannot be read
+     */
+    public PageReader(DataInput in) throws IOException {
+        fIn = in;
+        fStrings = new String[(int) readVarLong(in)];
+        for (int i = 0; i < fStrings.length; i++) {
+            fStrings[i] = in.readUTF();
+        }
+        fObjectBytes = new byte[(int) readVarLong(in)];
+        in.readFully(fObjectBytes);
+    }
+
+    /**
+     * Get the object stream of the page, created when first used
+     *
+     * @return The object stream
+     * @throws IOException
+     *             If the page has no object stream
+     */
+    public ObjectInputStream getObjectInput() throws IOException {
+        ObjectInputStream objectIn = fObjectIn;
+        if (objectIn == null) {
+            objectIn = new ObjectInputStream(new ByteArrayInputStream(fObjectBytes));
+            fObjectIn = objectIn;
+        }
+        return objectIn;
+    }
+
+    /**
+     * Read a value written by {@link PageWriter#writeVarLong}
+     *
+     * @param in
+     *            The input
+     * @return The value
+     * @throws IOException
+     *             If the input cannot be read
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length value"); //$NON-NLS-1$
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        int index = (int) readVarLong(fIn);
+        if (index < 0 || index >= fStrings.length) {
+            throw new IOException("Invalid string index: " + index); //$NON-NLS-1$
+        }
+        return fStrings[index];
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        fIn.readFully(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        fIn.readFully(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        return fIn.skipBytes(n);
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return fIn.readBoolean();
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return fIn.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return fIn.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return fIn.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return fIn.readUnsignedShort();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return fIn.readChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return fIn.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return fIn.readLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return fIn.readFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return fIn.readDouble();
+    }
+
+    @Deprecated
+    @Override
+    public String readLine() throws IOException {
+        return fIn.readLine();
+    }
+}
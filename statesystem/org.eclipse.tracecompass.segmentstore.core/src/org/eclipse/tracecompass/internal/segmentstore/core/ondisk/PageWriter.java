@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.ondisk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Output given to the segment serializers when writing a page. The strings
+ * written with {@link #writeUTF} are stored only once per page, in a string
+ * table written before the segments, the segments only keep their index in the
+ * table. This is meant for the segment types and names, which are repeated
+ * many times.
+ *
+ * The segments serialized with Java serialization share one object stream per
+ * page, see {@link #getObjectOutput}, so that the stream header and the class
+ * descriptors are written once per page.
+ */
+class PageWriter implements DataOutput {
+
+    private final ByteArrayOutputStream fBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fOut = new DataOutputStream(fBytes);
+    private final Map<String, Integer> fStringIndex = new HashMap<>();
+    private final List<String> fStrings = new ArrayList<>();
+    private final ByteArrayOutputStream fObjectBytes = new ByteArrayOutputStream();
+    private @Nullable ObjectOutputStream fObjectOut = null;
+
+    /**
+     * Get the object stream of the page, created when first used
+     *
+     * @return The object stream
+     * @throws IOException
+     *             If the stream cannot be created
+     */
+    public ObjectOutputStream getObjectOutput() throws IOException {
+        ObjectOutputStream objectOut = fObjectOut;
+        if (objectOut == null) {
+            objectOut = new ObjectOutputStream(fObjectBytes);
+            fObjectOut = objectOut;
+        }
+        return objectOut;
+    }
+
+    /**
+     * Write the string table, the object stream, then the segments, to the
+     * given output
+     *
+     * @param out
+     *            The output
+     * @throws IOException
+     *             If the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeVarLong(out, fStrings.size());
+        for (String string : fStrings) {
+            out.writeUTF(string);
+        }
+        ObjectOutputStream objectOut = fObjectOut;
+        if (objectOut != null) {
+            objectOut.close();
+        }
+        writeVarLong(out, fObjectBytes.size());
+        out.write(fObjectBytes.toByteArray());
+        fOut.flush();
+        out.write(fBytes.toByteArray());
+    }
+
+    /**
+     * Write a positive value using 7 bits per byte, least significant bits
+     * first, the last byte having its high bit cleared. Small values take
+     * less space than with a fixed-size encoding.
+     *
+     * @param out
+     *            The output
+     * @param value
+     *            The value to write
+     * @throws IOException
+     *             If the output cannot be written
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+        Integer index = fStringIndex.get(s);
+        if (index == null) {
+            index = fStrings.size();
+            fStrings.add(s);
+            fStringIndex.put(s, index);
+        }
+        writeVarLong(fOut, index);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        fOut.write(b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        fOut.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        fOut.write(b, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        fOut.writeBoolean(v);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        fOut.writeByte(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        fOut.writeShort(v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        fOut.writeChar(v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        fOut.writeInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        fOut.writeLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        fOut.writeFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        fOut.writeDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        fOut.writeBytes(s);
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        fOut.writeChars(s);
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.ondisk;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentSerializer;
+
+/**
+ * Serializer using Java serialization, for the segments that do not provide
+ * their own serializer. It works with any segment, but is slower and bigger
+ * than a dedicated serializer. The segments of a page are written to a single
+ * object stream, which belongs to the page.
+ *
+ * This serializer only works with the {@link PageWriter} and
+ * {@link PageReader} of the pages.
+ *
+ * @param <E>
+ *            The type of segment to serialize
+ */
+class SerializableSegmentSerializer<@NonNull E extends ISegment> implements ISegmentSerializer<E> {
+
+    @Override
+    public void writeSegment(E segment, DataOutput out) throws IOException {
+        if (!(out instanceof PageWriter)) {
+            throw new IOException("Segments can only be serialized in a page"); //$NON-NLS-1$
+        }
+        ((PageWriter) out).getObjectOutput().writeObject(segment);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E readSegment(long start, long end, DataInput in) throws IOException {
+        if (!(in instanceof PageReader)) {
+            throw new IOException("Segments can only be deserialized from a page"); //$NON-NLS-1$
+        }
+        try {
+            return (E) ((PageReader) in).getObjectInput().readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(e);
+        }
+    }
+}
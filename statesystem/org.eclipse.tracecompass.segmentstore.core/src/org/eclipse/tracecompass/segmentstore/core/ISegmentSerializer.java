@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes segments to, and reads them from, the files of the segment stores
+ * kept on disk. The start and end times of the segments are saved by the
+ * segment store itself, the serializer only needs to take care of the other
+ * fields of the segment.
+ *
+ * @param <E>
+ *            The type of segment to serialize
+ * @since 1.1
+ */
+public interface ISegmentSerializer<E extends ISegment> {
+
+    /**
+     * Write the fields of a segment, other than its start and end times.
+     *
+     * @param segment
+     *            The segment to write
+     * @param out
+     *            The output to write to
+     * @throws IOException
+     *             If the segment cannot be written
+     */
+    void writeSegment(E segment, DataOutput out) throws IOException;
+
+    /**
+     * Read back a segment written by {@link #writeSegment}.
+     *
+     * @param start
+     *            The start time of the segment
+     * @param end
+     *            The end time of the segment
+     * @param in
+     *            The input to read from
+     * @return The segment
+     * @throws IOException
+     *             If the segment cannot be read
+     */
+    E readSegment(long start, long end, DataInput in) throws IOException;
+}
@@ -12,13 +12,19 @@
 
 package org.eclipse.tracecompass.segmentstore.core;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.segmentstore.core.Activator;
 import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.ArrayListStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.LazyArrayListStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.concurrent.ConcurrentSegmentStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.intervaltree.IntervalTreeStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.ondisk.OnDiskSegmentStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.treemap.TreeMapStore;
 
 /**
@@ -53,7 +59,28 @@ public final class SegmentStoreFactory<E> {
         /**
          * Segment Store should contain no duplicate segments
          */
-        Distinct
+        Distinct,
+        /**
+         * Segment Store should keep its segments on disk instead of on the
+         * heap, so that it can hold more segments than would fit in memory.
+         * When created with this flag only, the store uses a temporary file
+         * and Java serialization. Use
+         * {@link SegmentStoreFactory#createOnDiskSegmentStore} to choose the
+         * file and the serializer of the segments.
+         */
+        OnDisk,
+        /**
+         * Segment Store should answer the intersection queries on small
+         * ranges quickly, without going through all the segments starting
+         * before the range, even when some segments are very long.
+         */
+        Indexed,
+        /**
+         * Segment Store should be read while it is being built, possibly by
+         * several threads, without the readers slowing down the writers. The
+         * intersection queries are also indexed.
+         */
+        Concurrent
     }
 
     private SegmentStoreFactory() {
@@ -74,6 +101,19 @@ public final class SegmentStoreFactory<E> {
         if (segments.contains(SegmentStoreType.Distinct)) {
             return createTreeMapStore();
         }
+        if (segments.contains(SegmentStoreType.OnDisk)) {
+            try {
+                return OnDiskSegmentStore.createTemporary();
+            } catch (IOException e) {
+                Activator.instance().logError("Cannot create an on-disk segment store, keeping the segments in memory", e); //$NON-NLS-1$
+            }
+        }
+        if (segments.contains(SegmentStoreType.Concurrent)) {
+            return new ConcurrentSegmentStore<>();
+        }
+        if (segments.contains(SegmentStoreType.Indexed)) {
+            return createIntervalTreeStore();
+        }
         if (segments.contains(SegmentStoreType.Stable)) {
             return createArrayListStore();
         }
@@ -106,6 +146,21 @@ public final class SegmentStoreFactory<E> {
             }
             return store;
         }
+        if (segments.contains(SegmentStoreType.OnDisk)) {
+            ISegmentStore<E> store = createSegmentStore(SegmentStoreType.OnDisk);
+            for (Object elem : array) {
+                if (elem instanceof ISegment) {
+                    store.add((E) elem);
+                }
+            }
+            return store;
+        }
+        if (segments.contains(SegmentStoreType.Concurrent)) {
+            return new ConcurrentSegmentStore<>(array);
+        }
+        if (segments.contains(SegmentStoreType.Indexed)) {
+            return new IntervalTreeStore<>(array);
+        }
         if (segments.contains(SegmentStoreType.Stable)) {
             return new ArrayListStore<>(array);
         }
@@ -113,6 +168,42 @@ public final class SegmentStoreFactory<E> {
         return new LazyArrayListStore<>(array);
     }
 
+    /**
+     * New on-disk SegmentStore factory method. The segments are stored in the
+     * given file, which can be reopened later with
+     * {@link #openOnDiskSegmentStore}, once the segment store has been closed.
+     *
+     * @param segmentFile
+     *            The file in which to store the segments. It is overwritten if
+     *            it already exists.
+     * @param serializer
+     *            The serializer used to write the segments to the file and
+     *            read them back
+     * @return The new segment store
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    public static <@NonNull E extends ISegment> ISegmentStore<E> createOnDiskSegmentStore(Path segmentFile, ISegmentSerializer<E> serializer) throws IOException {
+        return OnDiskSegmentStore.createNew(segmentFile, serializer, OnDiskSegmentStore.DEFAULT_PAGE_SIZE, OnDiskSegmentStore.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Reopen an on-disk SegmentStore from the file of a segment store that was
+     * previously built and closed.
+     *
+     * @param segmentFile
+     *            The file of the segment store
+     * @param serializer
+     *            The serializer used to read the segments from the file
+     * @return The segment store
+     * @throws IOException
+     *             If the file cannot be read or is not a complete segment
+     *             store file
+     */
+    public static <@NonNull E extends ISegment> ISegmentStore<E> openOnDiskSegmentStore(Path segmentFile, ISegmentSerializer<E> serializer) throws IOException {
+        return OnDiskSegmentStore.openExisting(segmentFile, serializer, OnDiskSegmentStore.DEFAULT_CACHE_SIZE);
+    }
+
     private static Set<@NonNull SegmentStoreType> getListOfFlags(SegmentStoreType... segmentTypes) {
         Set<@NonNull SegmentStoreType> segments = new HashSet<>();
         for(@Nullable SegmentStoreType segmentType : segmentTypes ) {
@@ -132,6 +223,15 @@ public final class SegmentStoreFactory<E> {
         return new TreeMapStore<>();
     }
 
+    /**
+     * New {@link IntervalTreeStore} factory method
+     *
+     * @return the new Segment Store
+     */
+    private static <E extends ISegment> ISegmentStore<E> createIntervalTreeStore() {
+        return new IntervalTreeStore<>();
+    }
+
     /**
      * New {@link ArrayListStore} factory method
      *
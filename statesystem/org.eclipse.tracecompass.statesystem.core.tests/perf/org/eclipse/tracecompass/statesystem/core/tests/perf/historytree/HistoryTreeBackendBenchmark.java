@@ -13,11 +13,17 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jdt.annotation.NonNull;
@@ -26,6 +32,7 @@ import org.eclipse.test.performance.Performance;
 import org.eclipse.test.performance.PerformanceMeter;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
 import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
@@ -57,11 +64,14 @@ public class HistoryTreeBackendBenchmark {
     private static final @NonNull String TEST_SINGLE_QUERY_ID = "Single Queries: ";
     private static final @NonNull String TEST_FULL_QUERY_ID = "Full Queries: ";
     private static final @NonNull String TEST_QUERY_RANGE_ID = "Query History Range: ";
+    private static final @NonNull String TEST_CONCURRENT_QUERY_ID = "Concurrent Queries (%d threads): ";
     private static final @NonNull String ROOT_NODE = "root";
     private static final int QUEUE_SIZE = 10000;
     private static final long SEED = 5575784704147L;
     private static final int QUERY_COUNT = 100;
     private static final int INTERVAL_AVG_TIME = 1000;
+    /* Number of threads querying the state system at the same time */
+    private static final int[] QUERY_THREADS = { 1, 4, 16 };
 
     /* Values for the average case */
     private static final int DEFAULT_NB_ATTRIB = 1500;
@@ -268,6 +278,13 @@ public class HistoryTreeBackendBenchmark {
         PerformanceMeter pmRangeQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_QUERY_RANGE_ID + fName);
         perf.tagAsSummary(pmRangeQuery, TEST_QUERY_RANGE_ID + fShortName, Dimension.CPU_TIME);
 
+        PerformanceMeter[] pmConcurrentQueries = new PerformanceMeter[QUERY_THREADS.length];
+        for (int i = 0; i < QUERY_THREADS.length; i++) {
+            String id = String.format(TEST_CONCURRENT_QUERY_ID, QUERY_THREADS[i]);
+            pmConcurrentQueries[i] = perf.createPerformanceMeter(TEST_PREFIX + id + fName);
+            perf.tagAsSummary(pmConcurrentQueries[i], id + fShortName, Dimension.ELAPSED_PROCESS);
+        }
+
         for (int i = 0; i < fNbLoops; i++) {
             try {
                 /* Create the state system */
@@ -334,6 +351,14 @@ public class HistoryTreeBackendBenchmark {
                 }
                 pmFullQuery.stop();
 
+                /*
+                 * Benchmark the same amount of queries per thread, done by an
+                 * increasing number of threads at the same time
+                 */
+                for (int j = 0; j < QUERY_THREADS.length; j++) {
+                    runConcurrentQueries(ss, subAttributes, totalTime, QUERY_THREADS[j], pmConcurrentQueries[j]);
+                }
+
                 /* Output some data on the file */
                 if (i == 0) {
                     if (backend instanceof HistoryTreeBackend) {
@@ -353,6 +378,42 @@ public class HistoryTreeBackendBenchmark {
         pmSingleQuery.commit();
         pmFullQuery.commit();
         pmRangeQuery.commit();
+        for (PerformanceMeter pm : pmConcurrentQueries) {
+            pm.commit();
+        }
+    }
+
+    /**
+     * Have a number of threads each do a series of single and full queries on
+     * the state system at the same time.
+     */
+    private static void runConcurrentQueries(ITmfStateSystem ss, List<Integer> attributes, long totalTime, int nbThreads, PerformanceMeter pm) {
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                Random randomGenerator = new Random(SEED + i);
+                tasks.add(() -> {
+                    for (int j = 0; j < QUERY_COUNT; j++) {
+                        long ts = getNextRandomValue(randomGenerator, totalTime);
+                        int attrib = (int) getNextRandomValue(randomGenerator, attributes.size());
+                        ss.querySingleState(ts, attrib);
+                        ss.queryFullState(ts);
+                    }
+                    return null;
+                });
+            }
+            pm.start();
+            List<Future<Void>> results = executor.invokeAll(tasks);
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            pm.stop();
+        } catch (InterruptedException | ExecutionException e) {
+            fail(e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -19,6 +19,15 @@ import static org.junit.Assert.assertNotEquals;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.tracecompass.internal.statesystem.core.AttributeTree;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
@@ -123,4 +132,82 @@ public class AttributeTreeTest {
             file.delete();
         }
     }
+
+    /**
+     * Test that the sub-attributes are listed in creation order, including the
+     * ones added after a previous listing.
+     */
+    @Test
+    public void testSubAttributesOrder() {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createNullBackend("test");
+        StateSystem ss = new StateSystem(backend);
+        try {
+            AttributeTree attributeTree = new AttributeTree(ss);
+            int threads = attributeTree.getQuarkAndAdd(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS);
+            List<Integer> expected = new ArrayList<>();
+            for (String name : NAMES) {
+                expected.add(attributeTree.getQuarkAndAdd(threads, name));
+                assertEquals(expected, attributeTree.getSubAttributes(threads, false));
+                assertEquals(expected, attributeTree.getSubAttributes(threads, false));
+            }
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * Test that attributes added and looked up by many threads at the same
+     * time end up with one quark per path.
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     * @throws ExecutionException
+     *             if one of the threads failed
+     */
+    @Test
+    public void testConcurrentQuarkAdd() throws InterruptedException, ExecutionException {
+        final int nbThreads = 8;
+        final int nbNames = 500;
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createNullBackend("test");
+        StateSystem ss = new StateSystem(backend);
+        AttributeTree attributeTree = new AttributeTree(ss);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            /* Every thread adds the same paths, in a different order */
+            List<Callable<int[]>> tasks = new ArrayList<>();
+            for (int i = 0; i < nbThreads; i++) {
+                final int offset = i * nbNames / nbThreads;
+                tasks.add(() -> {
+                    int[] quarks = new int[nbNames];
+                    for (int j = 0; j < nbNames; j++) {
+                        int name = (j + offset) % nbNames;
+                        int quark = attributeTree.getQuarkAndAdd(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS, String.valueOf(name), STATUS);
+                        assertEquals(STATUS, attributeTree.getAttributeName(quark));
+                        quarks[name] = quark;
+                    }
+                    return quarks;
+                });
+            }
+            List<Future<int[]>> results = executor.invokeAll(tasks);
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+
+            /* "Threads", then one attribute and its "Status" per name */
+            assertEquals(1 + 2 * nbNames, attributeTree.getNbAttributes());
+            Set<Integer> quarks = new HashSet<>();
+            for (int j = 0; j < nbNames; j++) {
+                String[] path = new String[] { THREADS, String.valueOf(j), STATUS };
+                int quark = attributeTree.getQuarkDontAdd(ITmfStateSystem.ROOT_ATTRIBUTE, path);
+                assertEquals(expected[j], quark);
+                assertArrayEquals(path, attributeTree.getFullAttributePathArray(quark));
+                quarks.add(quark);
+            }
+            assertEquals(nbNames, quarks.size());
+        } finally {
+            executor.shutdown();
+            ss.dispose();
+        }
+    }
 }
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.tracecompass.internal.statesystem.core.TransientState;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the storage of the ongoing values of the {@link TransientState}
+ */
+public class TransientStateTest {
+
+    private static final long START_TIME = 1;
+
+    private static final ITmfStateValue[][] VALUES = {
+            { TmfStateValue.newValueInt(-5), TmfStateValue.newValueInt(Integer.MAX_VALUE) },
+            { TmfStateValue.newValueLong(Long.MIN_VALUE), TmfStateValue.newValueLong(12L) },
+            { TmfStateValue.newValueDouble(1.5), TmfStateValue.newValueDouble(Double.NaN) },
+            { TmfStateValue.newValueString("running"), TmfStateValue.newValueString("blocked") }
+    };
+
+    private IStateHistoryBackend fBackend;
+    private TransientState fTransientState;
+
+    /**
+     * Create the transient state, with one attribute per type of value
+     */
+    @Before
+    public void setUp() {
+        fBackend = StateHistoryBackendFactory.createInMemoryBackend("test-ssid", START_TIME);
+        fTransientState = new TransientState(fBackend);
+        for (int i = 0; i < VALUES.length; i++) {
+            fTransientState.addEmptyEntry();
+        }
+    }
+
+    /**
+     * Test that the values of each type are stored and materialized back, and
+     * that the intervals inserted in the backend have the replaced values.
+     *
+     * @throws StateSystemDisposedException
+     *             If the backend was disposed
+     */
+    @Test
+    public void testValues() throws StateSystemDisposedException {
+        for (int quark = 0; quark < VALUES.length; quark++) {
+            assertEquals(TmfStateValue.nullValue(), fTransientState.getOngoingStateValue(quark));
+            fTransientState.processStateChange(10, VALUES[quark][0], quark);
+            assertEquals(VALUES[quark][0], fTransientState.getOngoingStateValue(quark));
+            fTransientState.processStateChange(20, VALUES[quark][1], quark);
+            assertEquals(VALUES[quark][1], fTransientState.getOngoingStateValue(quark));
+            assertEquals(20, fTransientState.getOngoingStartTime(quark));
+        }
+        fTransientState.closeTransientState(30);
+
+        for (int quark = 0; quark < VALUES.length; quark++) {
+            ITmfStateInterval interval = fBackend.doSingularQuery(15, quark);
+            assertEquals(VALUES[quark][0], interval.getStateValue());
+            assertEquals(10, interval.getStartTime());
+            assertEquals(19, interval.getEndTime());
+            interval = fBackend.doSingularQuery(25, quark);
+            assertEquals(VALUES[quark][1], interval.getStateValue());
+            assertEquals(30, interval.getEndTime());
+        }
+    }
+
+    /**
+     * Test that setting an attribute to an equal value, from another object,
+     * keeps the ongoing state going.
+     */
+    @Test
+    public void testSameValue() {
+        int quark = 3;
+        fTransientState.processStateChange(10, TmfStateValue.newValueString("running"), quark);
+        fTransientState.processStateChange(20, TmfStateValue.newValueString(new String("running")), quark);
+        assertEquals(10, fTransientState.getOngoingStartTime(quark));
+
+        quark = 2;
+        fTransientState.processStateChange(10, TmfStateValue.newValueDouble(Double.NaN), quark);
+        fTransientState.processStateChange(20, TmfStateValue.newValueDouble(Double.NaN), quark);
+        assertEquals(10, fTransientState.getOngoingStartTime(quark));
+        assertNull(fTransientState.getIntervalAt(5, quark));
+    }
+
+    /**
+     * Test that the strings are only kept while they are ongoing values, and
+     * that the intervals pushed to the backend keep their values.
+     *
+     * @throws StateSystemDisposedException
+     *             If the backend was disposed
+     */
+    @Test
+    public void testStringsReleased() throws StateSystemDisposedException {
+        int quark = 3;
+        for (int i = 0; i < 100; i++) {
+            fTransientState.processStateChange(10 * (i + 1), TmfStateValue.newValueString("value" + i), quark);
+            assertEquals(1, fTransientState.getStringCount());
+        }
+        fTransientState.processStateChange(2000, TmfStateValue.nullValue(), quark);
+        assertEquals(0, fTransientState.getStringCount());
+
+        assertEquals(TmfStateValue.newValueString("value0"), fBackend.doSingularQuery(15, quark).getStateValue());
+        assertEquals(TmfStateValue.newValueString("value99"), fBackend.doSingularQuery(1999, quark).getStateValue());
+    }
+
+    /**
+     * Test that a string shared by several attributes is kept until none of
+     * them has it.
+     */
+    @Test
+    public void testSharedString() {
+        fTransientState.addEmptyEntry();
+        fTransientState.processStateChange(10, TmfStateValue.newValueString("running"), 3);
+        fTransientState.processStateChange(10, TmfStateValue.newValueString("running"), 4);
+        assertEquals(1, fTransientState.getStringCount());
+        fTransientState.processStateChange(20, TmfStateValue.newValueString("blocked"), 3);
+        assertEquals(2, fTransientState.getStringCount());
+        assertEquals(TmfStateValue.newValueString("running"), fTransientState.getOngoingStateValue(4));
+        fTransientState.processStateChange(30, TmfStateValue.nullValue(), 4);
+        assertEquals(1, fTransientState.getStringCount());
+        assertEquals(TmfStateValue.newValueString("blocked"), fTransientState.getOngoingStateValue(3));
+    }
+
+    /**
+     * Test that the ongoing value is materialized once until it changes
+     */
+    @Test
+    public void testValueReused() {
+        int quark = 1;
+        fTransientState.processStateChange(10, TmfStateValue.newValueLong(42L), quark);
+        ITmfStateValue value = fTransientState.getOngoingStateValue(quark);
+        assertSame(value, fTransientState.getOngoingStateValue(quark));
+        assertSame(value, fTransientState.getOngoingInterval(quark).getStateValue());
+    }
+
+    /**
+     * Test that an attribute keeps its type once it is set
+     */
+    @Test(expected = StateValueTypeException.class)
+    public void testTypeMismatch() {
+        fTransientState.processStateChange(10, TmfStateValue.newValueInt(1), 0);
+        fTransientState.processStateChange(20, TmfStateValue.nullValue(), 0);
+        fTransientState.processStateChange(30, TmfStateValue.newValueLong(1), 0);
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ShardedHistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.Test;
+
+/**
+ * Test the {@link ShardedHistoryTreeBackend} class.
+ */
+public class ShardedHistoryTreeBackendTest extends HistoryTreeBackendTest {
+
+    private static final int QUEUE_SIZE = 10;
+    private static final int NB_SHARDS = 3;
+
+    /**
+     * Constructor
+     *
+     * @param reOpen
+     *            True if the backend should be disposed and re-opened as a new
+     *            backend from the file, or false to use the backend as-is
+     */
+    public ShardedHistoryTreeBackendTest(Boolean reOpen) {
+        super(reOpen);
+    }
+
+    @Override
+    protected IStateHistoryBackend getBackendForBuilding(long startTime) throws IOException {
+        File historyTreeFile = File.createTempFile("ShardedHistoryTreeBackendTest", ".ht");
+        for (int i = 0; i < NB_SHARDS; i++) {
+            fHistoryTreeFiles.add(ShardedHistoryTreeBackend.getShardFile(historyTreeFile, i));
+        }
+        ShardedHistoryTreeBackend backend = new ShardedHistoryTreeBackend(SSID, historyTreeFile, PROVIDER_VERSION, startTime, QUEUE_SIZE, NB_SHARDS, fBlockSize, fMaxChildren);
+        fBackendMap.put(backend, historyTreeFile);
+        return backend;
+    }
+
+    @Override
+    protected IStateHistoryBackend getBackendForQuerying(IStateHistoryBackend backend) throws IOException {
+        if (!fReOpen) {
+            return backend;
+        }
+
+        File historyTreeFile = fBackendMap.remove(backend);
+
+        if (historyTreeFile == null) {
+            throw new IllegalStateException();
+        }
+
+        backend.dispose();
+        ShardedHistoryTreeBackend reOpenedBackend = new ShardedHistoryTreeBackend(SSID, historyTreeFile, PROVIDER_VERSION);
+        fBackendMap.put(reOpenedBackend, historyTreeFile);
+        return reOpenedBackend;
+    }
+
+    @Override
+    @Test
+    public void testIntervalBeforeStart() {
+        // Exception is thrown in a thread, so we can't catch it
+    }
+
+    /**
+     * Test querying the shards while they are being built, from another
+     * thread. The intervals inserted so far must be found, whether they are in
+     * a tree or still in a queue, and the attributes of a shard that ends
+     * earlier must not make the query fail.
+     *
+     * @throws Exception
+     *             If the test failed
+     */
+    @Test
+    public void testQueryDuringBuild() throws Exception {
+        final int nbAttributes = 2 * NB_SHARDS;
+        final int nbSteps = 2000;
+        /* The attributes of the second shard only change at the beginning */
+        final int lastStepOfSecondShard = 10;
+        IStateHistoryBackend backend = getBackendForBuilding(0);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long[] insertedTime = { -1 };
+            Future<Integer> reader = executor.submit(() -> {
+                int nbQueries = 0;
+                long end;
+                do {
+                    synchronized (insertedTime) {
+                        end = insertedTime[0];
+                    }
+                    if (end >= 0) {
+                        checkQuery(backend, end, nbAttributes, lastStepOfSecondShard);
+                        nbQueries++;
+                    }
+                } while (end < nbSteps * 10 - 1);
+                return nbQueries;
+            });
+
+            for (int step = 0; step < nbSteps; step++) {
+                for (int quark = 0; quark < nbAttributes; quark++) {
+                    if (quark % NB_SHARDS != 1 || step < lastStepOfSecondShard) {
+                        backend.insertPastState(step * 10, step * 10 + 9, quark, TmfStateValue.newValueInt(step));
+                    }
+                }
+                synchronized (insertedTime) {
+                    insertedTime[0] = step * 10 + 9;
+                }
+            }
+            assertNotNull(reader.get());
+        } catch (ExecutionException e) {
+            throw new AssertionError(e.getCause());
+        } finally {
+            executor.shutdown();
+            backend.finishedBuilding(nbSteps * 10);
+        }
+    }
+
+    private static void checkQuery(IStateHistoryBackend backend, long t, int nbAttributes, int lastStepOfSecondShard)
+            throws StateSystemDisposedException {
+        List<ITmfStateInterval> intervals = new ArrayList<>(Collections.nCopies(nbAttributes, null));
+        backend.doQuery(intervals, t);
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            ITmfStateInterval interval = backend.doSingularQuery(t, quark);
+            if (quark % NB_SHARDS == 1 && t >= lastStepOfSecondShard * 10) {
+                assertNull(intervals.get(quark));
+                assertNull(interval);
+            } else {
+                assertNotNull("Quark " + quark + " at " + t, intervals.get(quark));
+                assertEquals(TmfStateValue.newValueInt((int) (t / 10)), intervals.get(quark).getStateValue());
+                assertNotNull("Quark " + quark + " at " + t, interval);
+                assertEquals(TmfStateValue.newValueInt((int) (t / 10)), interval.getStateValue());
+            }
+        }
+    }
+
+}
@@ -16,8 +16,12 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
@@ -257,6 +261,69 @@ public abstract class StateHistoryBackendTestBase {
         buildAndQueryFullRange(startTime, endTime, nbAttr, intervals, false);
     }
 
+    /**
+     * Test the 2D query method with the "stair-like" intervals of
+     * {@link #testCascadingIntervals()}, for a subset of the attributes and
+     * with various resolutions, making sure all, and only, the intervals
+     * containing a sampled timestamp are returned.
+     */
+    @Test
+    public void testQuery2D() {
+        final int nbAttr = 10;
+        final long duration = 10;
+        final long startTime = 0;
+        final long endTime = 1000;
+
+        List<ITmfStateInterval> intervals = new ArrayList<>();
+        for (long t = startTime + 1; t <= endTime + duration; t++) {
+            intervals.add(new TmfStateInterval(
+                    Math.max(startTime, t - duration),
+                    Math.min(endTime, t - 1),
+                    (int) t % nbAttr,
+                    TmfStateValue.newValueLong(t)));
+        }
+        IStateHistoryBackend backend = prepareBackend(startTime, endTime, intervals);
+        assertNotNull(backend);
+
+        List<@NonNull Integer> quarks = ImmutableList.of(1, 4, 5, 8);
+        try {
+            for (long resolution : new long[] { 1, 3, 25, 2000 }) {
+                for (long[] range : new long[][] { { 0, 1000 }, { 100, 350 }, { 997, 2000 }, { -50, 3 } }) {
+                    long start = range[0];
+                    long end = range[1];
+                    /* Compute the sampled timestamps within the history */
+                    List<Long> samples = new ArrayList<>();
+                    for (long t = start; t <= end; t += resolution) {
+                        samples.add(t);
+                    }
+                    samples.add(Math.min(end, endTime));
+
+                    Set<String> expected = new HashSet<>();
+                    for (ITmfStateInterval interval : intervals) {
+                        if (quarks.contains(interval.getAttribute()) &&
+                                samples.stream().anyMatch(interval::intersects)) {
+                            expected.add(toKey(interval));
+                        }
+                    }
+
+                    List<String> actual = new ArrayList<>();
+                    for (ITmfStateInterval interval : backend.query2D(quarks, start, end, resolution)) {
+                        actual.add(toKey(interval));
+                    }
+                    String msg = "range=" + Arrays.toString(range) + ", resolution=" + resolution;
+                    assertEquals(msg, expected.size(), actual.size());
+                    assertEquals(msg, expected, new HashSet<>(actual));
+                }
+            }
+        } catch (StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static String toKey(ITmfStateInterval interval) {
+        return interval.getAttribute() + ":[" + interval.getStartTime() + ", " + interval.getEndTime() + "]";
+    }
+
     /**
      * Test inserting values of different types and querying them right after
      */
@@ -10,18 +10,22 @@
 package org.eclipse.tracecompass.statesystem.core.tests.backend.historytree;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HT_IO;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.tests.stubs.backend.HistoryTreeClassicStub;
@@ -320,4 +324,146 @@ public class HistoryTreeTest {
         assertEquals( 5, branch.get(2).getSequenceNumber());
         assertEquals( 4, branch.get(2).getParentSequenceNumber());
     }
+
+    /**
+     * Test the accounting of the nodes of a tree in the node cache, once the
+     * tree is reopened from its file.
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testNodeCacheAccounting() throws IOException {
+        long start = 1;
+
+        HistoryTreeClassicStub ht = setupSmallTree(2);
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        ht.closeTree(start);
+        ht.closeFile();
+
+        File file = fTempFile;
+        assertNotNull(file);
+        HistoryTreeClassicStub reopened = new HistoryTreeClassicStub(file, 1);
+        HT_IO io = reopened.getTreeIO();
+        long misses = io.getCacheMisses();
+        long hits = io.getCacheHits();
+
+        /* Node 0 is not on the latest branch, it has to be read from disk */
+        HTNode node = reopened.readNode(0);
+        assertEquals(0, node.getSequenceNumber());
+        assertEquals(misses + 1, io.getCacheMisses());
+        assertEquals(hits, io.getCacheHits());
+        assertEquals((misses + 1) * BLOCK_SIZE, io.getCachedBytes());
+
+        /* The second read is served by the cache */
+        node = reopened.readNode(0);
+        assertEquals(0, node.getSequenceNumber());
+        assertEquals(misses + 1, io.getCacheMisses());
+        assertEquals(hits + 1, io.getCacheHits());
+
+        /* Closing the file releases its nodes */
+        reopened.closeFile();
+        assertEquals(0, io.getCachedBytes());
+    }
+
+    /**
+     * Test that the nodes of a reopened tree are the same whether they are read
+     * through a memory mapping of the file or with the file channel.
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testMappedRead() throws IOException {
+        long start = 1;
+
+        HistoryTreeClassicStub ht = setupSmallTree(2);
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        start = fillValues(ht, STRING_VALUE, 1, start);
+        start = fillNextLeafNode(ht, start);
+        ht.closeTree(start);
+        ht.closeFile();
+        int nodeCount = ht.getNodeCount();
+
+        File file = fTempFile;
+        assertNotNull(file);
+        String previous = System.getProperty(HT_IO.MAPPED_READ_PROPERTY);
+        try {
+            List<String> expected = null;
+            for (boolean mapped : new boolean[] { false, true }) {
+                System.setProperty(HT_IO.MAPPED_READ_PROPERTY, String.valueOf(mapped));
+                HistoryTreeClassicStub reopened = new HistoryTreeClassicStub(file, 1);
+                assertEquals(mapped, reopened.getTreeIO().isMapped());
+
+                List<String> nodes = new ArrayList<>();
+                for (int i = 0; i < nodeCount; i++) {
+                    HTNode node = reopened.getTreeIO().readNode(i);
+                    assertEquals(i, node.getSequenceNumber());
+                    nodes.add(node.toString() + ' ' + node.getNodeFreeSpace() + ' ' +
+                            node.getRelevantInterval(1, node.getNodeStart()));
+                }
+                if (expected == null) {
+                    expected = nodes;
+                } else {
+                    assertEquals(expected, nodes);
+                }
+                reopened.closeFile();
+                assertFalse(reopened.getTreeIO().isMapped());
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty(HT_IO.MAPPED_READ_PROPERTY);
+            } else {
+                System.setProperty(HT_IO.MAPPED_READ_PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * Test that the trees using the fixed-size and the compact interval
+     * layouts can both be reopened from their file, and that the compact one
+     * uses less space for the same intervals.
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testIntervalLayouts() throws IOException {
+        File file = fTempFile;
+        assertNotNull(file);
+        HTInterval[] intervals = {
+                new HTInterval(1, 5, 1, TmfStateValue.nullValue()),
+                new HTInterval(1, 1000000, 2, TmfStateValue.newValueInt(-5)),
+                new HTInterval(2, 9, 300, TmfStateValue.newValueLong(Long.MIN_VALUE)),
+                new HTInterval(3, 4, 4, TmfStateValue.newValueDouble(1.5)),
+                new HTInterval(6, 40, 1, STRING_VALUE)
+        };
+
+        int[] freeSpace = new int[2];
+        boolean[] layouts = { false, true };
+        for (int i = 0; i < layouts.length; i++) {
+            HistoryTreeClassicStub ht = new HistoryTreeClassicStub(new HTConfig(file, BLOCK_SIZE, 3, 1, 1, layouts[i]));
+            for (HTInterval interval : intervals) {
+                ht.insertInterval(interval);
+            }
+            freeSpace[i] = ht.getLatestLeaf().getNodeFreeSpace();
+            ht.closeTree(1000000);
+            ht.closeFile();
+
+            HistoryTreeClassicStub reopened = new HistoryTreeClassicStub(file, 1);
+            HTNode node = reopened.readNode(0);
+            assertEquals(freeSpace[i], node.getNodeFreeSpace());
+            for (HTInterval interval : intervals) {
+                assertEquals(interval, node.getRelevantInterval(interval.getAttribute(), interval.getStartTime()));
+            }
+            reopened.closeFile();
+        }
+        assertTrue(freeSpace[1] > freeSpace[0]);
+    }
 }
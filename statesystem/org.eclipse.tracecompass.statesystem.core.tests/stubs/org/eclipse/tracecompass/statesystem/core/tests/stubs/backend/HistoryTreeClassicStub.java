@@ -24,6 +24,7 @@ import java.util.List;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HT_IO;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ParentNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.classic.CoreNode;
@@ -85,6 +86,12 @@ public class HistoryTreeClassicStub extends HistoryTreeClassic {
         return checkNotNull(super.getLatestBranch());
     }
 
+    @Override
+    public HT_IO getTreeIO() {
+        /* Super method is not public */
+        return super.getTreeIO();
+    }
+
     /**
      * Get the latest leaf of the tree
      *
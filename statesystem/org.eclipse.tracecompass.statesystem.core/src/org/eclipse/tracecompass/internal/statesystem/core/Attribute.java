@@ -18,15 +18,17 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.eclipse.tracecompass.statesystem.core.ITmfStateSystem.INVALID_ATTRIBUTE;
 
 import java.io.PrintWriter;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
 
 /**
  * An Attribute is a "node" in the Attribute Tree. It represents a smallest
@@ -40,6 +42,8 @@ import com.google.common.collect.ImmutableList;
  */
 public final class Attribute {
 
+    private static final Ordering<Attribute> QUARK_ORDER = Ordering.from(Comparator.comparingInt(Attribute::getQuark));
+
     private final Attribute parent;
     private final @NonNull String name;
     private final int quark;
@@ -47,6 +51,20 @@ public final class Attribute {
     /** The sub-attributes (<basename, attribute>) of this attribute */
     private final Map<String, Attribute> subAttributes;
 
+    /**
+     * The last sub-attribute that was looked up. State providers tend to
+     * resolve the same path many times in a row (the same thread for
+     * consecutive events for example), so it is checked before the map.
+     */
+    private volatile @Nullable Attribute lastSubAttribute = null;
+
+    /**
+     * The sub-attributes sorted by quark, rebuilt when sub-attributes were
+     * added since. Sub-attributes are never removed, so a snapshot of the
+     * current size is up to date.
+     */
+    private volatile @Nullable List<Attribute> sortedSubAttributes = null;
+
     /**
      * Constructor
      *
@@ -62,7 +80,7 @@ public final class Attribute {
         this.parent = parent;
         this.quark = quark;
         this.name = name;
-        this.subAttributes = Collections.synchronizedMap(new LinkedHashMap<String, Attribute>());
+        this.subAttributes = new ConcurrentHashMap<>();
     }
 
     // ------------------------------------------------------------------------
@@ -93,7 +111,16 @@ public final class Attribute {
      * @return The child attributes.
      */
     public Iterable<Attribute> getSubAttributes() {
-        return ImmutableList.copyOf(subAttributes.values());
+        /*
+         * Quarks are assigned in increasing order, so this returns the
+         * sub-attributes in the order they were added.
+         */
+        List<Attribute> sorted = sortedSubAttributes;
+        if (sorted == null || sorted.size() != subAttributes.size()) {
+            sorted = QUARK_ORDER.immutableSortedCopy(subAttributes.values());
+            sortedSubAttributes = sorted;
+        }
+        return sorted;
     }
 
     /**
@@ -180,11 +207,18 @@ public final class Attribute {
      * @return The requested attribute
      */
     private Attribute getSubAttributeNode(String[] path, int index) {
-        final Attribute nextNode = subAttributes.get(path[index]);
-
-        if (nextNode == null) {
-            /* We don't have the expected child => the attribute does not exist */
-            return null;
+        final String childName = path[index];
+        Attribute nextNode = lastSubAttribute;
+        if (nextNode == null || !nextNode.name.equals(childName)) {
+            nextNode = subAttributes.get(childName);
+            if (nextNode == null) {
+                /* We don't have the expected child => the attribute does not exist */
+                return null;
+            }
+            /* Avoid writing the shared field when another thread already did */
+            if (lastSubAttribute != nextNode) {
+                lastSubAttribute = nextNode;
+            }
         }
         if (index == path.length - 1) {
             /* It's our job to process this request */
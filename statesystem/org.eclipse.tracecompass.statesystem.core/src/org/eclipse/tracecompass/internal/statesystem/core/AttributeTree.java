@@ -29,6 +29,7 @@ import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -39,6 +40,10 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
  * Each node of this tree is both like a file and a directory in the
  * "file system".
  *
+ * Looking up attributes never blocks. Only the creation of new attributes is
+ * serialized: attributes are published in the attribute array before being
+ * linked in the tree, so any quark found in the tree is already valid.
+ *
  * @author alexmont
  *
  */
@@ -53,10 +58,20 @@ public final class AttributeTree {
      */
     private static final String SERIALIZATION_WILDCARD = "*"; //$NON-NLS-1$
 
+    private static final int INITIAL_CAPACITY = 64;
+
     private final StateSystem ss;
-    private final List<Attribute> attributeList;
     private final Attribute attributeTreeRoot;
 
+    /*
+     * The attributes, indexed by quark. This array is only appended to, while
+     * holding the lock of this tree. An attribute is always written before the
+     * volatile count is increased, so readers can access any quark lower than
+     * the count without locking.
+     */
+    private volatile Attribute[] attributeArray;
+    private volatile int nbAttributes;
+
     /**
      * Standard constructor, create a new empty Attribute Tree
      *
@@ -65,7 +80,8 @@ public final class AttributeTree {
      */
     public AttributeTree(StateSystem ss) {
         this.ss = ss;
-        this.attributeList = new ArrayList<>();
+        this.attributeArray = new Attribute[INITIAL_CAPACITY];
+        this.nbAttributes = 0;
         this.attributeTreeRoot = new Attribute(null, "root", ROOT_ATTRIBUTE); //$NON-NLS-1$
     }
 
@@ -131,9 +147,10 @@ public final class AttributeTree {
                 oos.writeInt(ATTRIB_TREE_MAGIC_NUMBER);
 
                 /* Compute the serialized list of attributes and write it */
-                List<String[]> list = new ArrayList<>(attributeList.size());
+                int size = nbAttributes;
+                List<String[]> list = new ArrayList<>(size);
                 String[] prevFullAttribute = null, curFullAttribute = null, curEncodedAttribute = null;
-                for (Attribute entry : this.attributeList) {
+                for (Attribute entry : Arrays.asList(attributeArray).subList(0, size)) {
                     curFullAttribute = entry.getFullAttribute();
                     curEncodedAttribute = encodeFullAttribute(prevFullAttribute, entry.getFullAttribute());
                     list.add(curEncodedAttribute);
@@ -208,8 +225,41 @@ public final class AttributeTree {
      *
      * @return The current number of attributes in the tree
      */
-    public synchronized int getNbAttributes() {
-        return attributeList.size();
+    public int getNbAttributes() {
+        return nbAttributes;
+    }
+
+    /**
+     * Get the attribute of a given quark, without locking.
+     *
+     * @param quark
+     *            The quark of the attribute
+     * @return The attribute
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     */
+    private Attribute getAttribute(int quark) {
+        /* Read the count first, the array has at least that many attributes */
+        int size = nbAttributes;
+        if (quark < 0 || quark >= size) {
+            throw new IndexOutOfBoundsException("Index: " + quark + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return attributeArray[quark];
+    }
+
+    /**
+     * Append a new attribute to the attribute array. Must be called with the
+     * lock of this tree.
+     */
+    private void addAttribute(Attribute attribute) {
+        int size = nbAttributes;
+        Attribute[] array = attributeArray;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+            attributeArray = array;
+        }
+        array[size] = attribute;
+        nbAttributes = size + 1;
     }
 
     /**
@@ -229,7 +279,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the starting node quark is out of range
      */
-    public synchronized int getQuarkDontAdd(int startingNodeQuark, String... subPath) {
+    public int getQuarkDontAdd(int startingNodeQuark, String... subPath) {
         Attribute prevNode;
 
         /* If subPath is empty, simply return the starting quark */
@@ -241,7 +291,7 @@ public final class AttributeTree {
         if (startingNodeQuark == ROOT_ATTRIBUTE) {
             prevNode = attributeTreeRoot;
         } else {
-            prevNode = attributeList.get(startingNodeQuark);
+            prevNode = getAttribute(startingNodeQuark);
         }
 
         return prevNode.getSubAttributeQuark(subPath);
@@ -262,44 +312,51 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the starting node quark is out of range
      */
-    public synchronized int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
-        // FIXME synchronized here is probably quite costly... maybe only locking
-        // the "for" would be enough?
-
-        Attribute nextNode = null;
+    public int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
         Attribute prevNode;
 
         /* Get the "starting node" */
         if (startingNodeQuark == ROOT_ATTRIBUTE) {
             prevNode = attributeTreeRoot;
         } else {
-            prevNode = attributeList.get(startingNodeQuark);
+            prevNode = getAttribute(startingNodeQuark);
         }
 
         int knownQuark = prevNode.getSubAttributeQuark(subPath);
-        if (knownQuark == INVALID_ATTRIBUTE) {
+        if (knownQuark != INVALID_ATTRIBUTE) {
             /*
-             * The attribute was not in the table previously, and we want to add
-             * it
+             * The attribute was already existing, return the quark of that
+             * attribute
              */
+            return knownQuark;
+        }
+
+        /*
+         * The attribute was not in the table previously, and we want to add
+         * it. Another thread may be adding it at the same time, so the path
+         * is walked again while holding the lock.
+         */
+        synchronized (this) {
+            Attribute nextNode = prevNode;
             for (String curDirectory : subPath) {
                 nextNode = prevNode.getSubAttributeNode(curDirectory);
                 if (nextNode == null) {
                     /* This is where we need to start adding */
-                    nextNode = new Attribute(prevNode, checkNotNull(curDirectory), attributeList.size());
-                    prevNode.addSubAttribute(nextNode);
-                    attributeList.add(nextNode);
+                    nextNode = new Attribute(prevNode, checkNotNull(curDirectory), nbAttributes);
+                    /*
+                     * Grow the transient state first, so that concurrent full
+                     * queries never see more attributes than it has entries,
+                     * then make the quark valid before linking the attribute
+                     * in the tree, where lookups can find it.
+                     */
                     ss.addEmptyAttribute();
+                    addAttribute(nextNode);
+                    prevNode.addSubAttribute(nextNode);
                 }
                 prevNode = nextNode;
             }
-            return attributeList.size() - 1;
+            return nextNode.getQuark();
         }
-        /*
-         * The attribute was already existing, return the quark of that
-         * attribute
-         */
-        return knownQuark;
     }
 
     /**
@@ -315,7 +372,7 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the attribute quark is out of range
      */
-    public synchronized @NonNull List<@NonNull Integer> getSubAttributes(int attributeQuark, boolean recursive) {
+    public @NonNull List<@NonNull Integer> getSubAttributes(int attributeQuark, boolean recursive) {
         List<@NonNull Integer> listOfChildren = new ArrayList<>();
         Attribute startingAttribute;
 
@@ -323,7 +380,7 @@ public final class AttributeTree {
         if (attributeQuark == ROOT_ATTRIBUTE) {
             startingAttribute = attributeTreeRoot;
         } else {
-            startingAttribute = attributeList.get(attributeQuark);
+            startingAttribute = getAttribute(attributeQuark);
         }
 
         /* Iterate through the sub-attributes and add them to the list */
@@ -343,11 +400,11 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized int getParentAttributeQuark(int quark) {
+    public int getParentAttributeQuark(int quark) {
         if (quark == ROOT_ATTRIBUTE) {
             return quark;
         }
-        return attributeList.get(quark).getParentAttributeQuark();
+        return getAttribute(quark).getParentAttributeQuark();
     }
 
     private void addSubAttributes(List<Integer> list, Attribute curAttribute,
@@ -369,8 +426,8 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized @NonNull String getAttributeName(int quark) {
-        return attributeList.get(quark).getName();
+    public @NonNull String getAttributeName(int quark) {
+        return getAttribute(quark).getName();
     }
 
     /**
@@ -382,8 +439,8 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized @NonNull String getFullAttributeName(int quark) {
-        return attributeList.get(quark).getFullAttributeName();
+    public @NonNull String getFullAttributeName(int quark) {
+        return getAttribute(quark).getFullAttributeName();
     }
 
     /**
@@ -396,8 +453,8 @@ public final class AttributeTree {
      * @throws IndexOutOfBoundsException
      *             If the quark is out of range
      */
-    public synchronized String @NonNull [] getFullAttributePathArray(int quark) {
-        return attributeList.get(quark).getFullAttribute();
+    public String @NonNull [] getFullAttributePathArray(int quark) {
+        return getAttribute(quark).getFullAttribute();
     }
 
     /**
@@ -406,7 +463,7 @@ public final class AttributeTree {
      * @param writer
      *            The writer where to print the output
      */
-    public synchronized void debugPrint(PrintWriter writer) {
+    public void debugPrint(PrintWriter writer) {
         attributeTreeRoot.debugPrint(writer);
     }
 
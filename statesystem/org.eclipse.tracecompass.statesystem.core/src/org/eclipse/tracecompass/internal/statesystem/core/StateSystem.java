@@ -19,8 +19,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -28,6 +30,7 @@ import java.util.logging.Logger;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -41,6 +44,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 import com.google.common.collect.ImmutableCollection.Builder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 
 /**
  * This is the core class of the Generic State System. It contains all the
@@ -72,7 +76,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
     private final CountDownLatch finishedLatch = new CountDownLatch(1);
 
     private boolean buildCancelled = false;
-    private boolean isDisposed = false;
+    private volatile boolean isDisposed = false;
 
     /**
      * New-file constructor. For when you build a state system with a new file,
@@ -533,7 +537,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
     //--------------------------------------------------------------------------
 
     @Override
-    public synchronized List<ITmfStateInterval> queryFullState(long t)
+    public List<ITmfStateInterval> queryFullState(long t)
             throws TimeRangeException, StateSystemDisposedException {
         if (isDisposed) {
             throw new StateSystemDisposedException();
@@ -552,6 +556,13 @@ public class StateSystem implements ITmfStateSystemBuilder {
         /*
          * If we are currently building the history, also query the "ongoing"
          * states for stuff that might not yet be written to the history.
+         *
+         * This method is not synchronized, so the state can keep changing
+         * while we query. The transient state is read as one consistent
+         * snapshot, and it is read before the backend: an ongoing state that
+         * gets written to the backend in the meantime will be found in the
+         * backend, which then overwrites the ongoing interval with the
+         * complete one.
          */
         if (transState.isActive()) {
             transState.doQuery(stateInfo, t);
@@ -565,6 +576,10 @@ public class StateSystem implements ITmfStateSystemBuilder {
          */
         for (ITmfStateInterval interval : stateInfo) {
             if (interval == null) {
+                if (isDisposed) {
+                    /* The state system was disposed during the query */
+                    throw new StateSystemDisposedException();
+                }
                 throw new IllegalStateException("Incoherent interval storage"); //$NON-NLS-1$
             }
         }
@@ -601,6 +616,46 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return ret;
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end)
+            throws StateSystemDisposedException, TimeRangeException {
+        return query2D(quarks, start, end, 1);
+    }
+
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks, long start, long end, long resolution)
+            throws StateSystemDisposedException, TimeRangeException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+
+        LOGGER.info(() -> "[StateSystem:Query2D] ssid=" + this.getSSID() + ", start=" + start + ", end=" + end + ", resolution=" + resolution + ", nbAttributes=" + quarks.size());  //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+        SampledTimeRange range = new SampledTimeRange(start, end, resolution);
+        final int nbAttr = getNbAttributes();
+        for (int quark : quarks) {
+            if (quark < 0 || quark >= nbAttr) {
+                throw new IndexOutOfBoundsException(getSSID() + " Quark:" + quark + ", NbAttributes:" + nbAttr); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        /*
+         * Look in the transient state first, the ongoing intervals it returns
+         * take precedence over the ones that get inserted in the backend while
+         * we query it.
+         */
+        Map<Integer, ITmfStateInterval> ongoing = transState.getOngoingIntervals(quarks, range);
+        Iterable<@NonNull ITmfStateInterval> past = backend.query2D(quarks, start, end, resolution);
+        if (ongoing.isEmpty()) {
+            return past;
+        }
+        Iterable<@NonNull ITmfStateInterval> stored = Iterables.filter(past, interval -> {
+            ITmfStateInterval current = ongoing.get(interval.getAttribute());
+            return (current == null || interval.getStartTime() < current.getStartTime());
+        });
+        return Iterables.concat(stored, ongoing.values());
+    }
+
     @Override
     public void removeFiles() {
         backend.removeFiles();
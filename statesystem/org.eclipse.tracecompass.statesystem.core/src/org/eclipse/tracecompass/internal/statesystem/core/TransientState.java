@@ -16,12 +16,20 @@
 package org.eclipse.tracecompass.internal.statesystem.core;
 
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
@@ -31,6 +39,8 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
+import com.google.common.annotations.VisibleForTesting;
+
 /**
  * The Transient State is used to build intervals from punctual state changes.
  * It contains a "state info" vector similar to the "current state", except here
@@ -54,10 +64,35 @@ public class TransientState {
     private volatile boolean fIsActive;
     private volatile long fLatestTime;
 
-    /* A method accessing these arrays will have to go through the lock */
-    private List<ITmfStateValue> fOngoingStateInfo;
-    private List<Long> fOngoingStateStartTimes;
-    private List<Type> fStateValueTypes;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /*
+     * A method accessing these arrays will have to go through the lock. They
+     * are indexed by quark, and only the first fSize entries are used.
+     *
+     * The ongoing values are kept in columns rather than as state value
+     * objects: the type of the value, and a payload holding the int or long
+     * value, the bits of the double value or the id of the string value. Only
+     * the custom values are kept as objects. The other state value objects are
+     * materialized when they are queried or inserted in the backend, and kept
+     * until the value of the attribute changes.
+     */
+    private @NonNull Type[] fOngoingTypes;
+    private long[] fOngoingValues;
+    private @Nullable ITmfStateValue[] fOngoingValueObjects;
+    private long[] fOngoingStateStartTimes;
+    private @NonNull Type[] fStateValueTypes;
+    private int fSize;
+
+    /*
+     * The string values, by id, and the ids of the strings. A string is only
+     * kept while it is the ongoing value of at least one attribute, its id is
+     * then reused.
+     */
+    private final List<@Nullable String> fStrings = new ArrayList<>();
+    private final Map<String, Integer> fStringIds = new HashMap<>();
+    private int[] fStringRefCounts = new int[INITIAL_CAPACITY];
+    private final Deque<Integer> fFreeStringIds = new ArrayDeque<>();
 
     /**
      * Constructor
@@ -68,9 +103,12 @@ public class TransientState {
     public TransientState(IStateHistoryBackend backend) {
         fBackend = backend;
         fIsActive = true;
-        fOngoingStateInfo = new ArrayList<>();
-        fOngoingStateStartTimes = new ArrayList<>();
-        fStateValueTypes = new ArrayList<>();
+        fOngoingTypes = new @NonNull Type[INITIAL_CAPACITY];
+        fOngoingValues = new long[INITIAL_CAPACITY];
+        fOngoingValueObjects = new @Nullable ITmfStateValue[INITIAL_CAPACITY];
+        fOngoingStateStartTimes = new long[INITIAL_CAPACITY];
+        fStateValueTypes = new @NonNull Type[INITIAL_CAPACITY];
+        fSize = 0;
 
         fLatestTime = backend.getStartTime();
     }
@@ -96,7 +134,8 @@ public class TransientState {
     public ITmfStateValue getOngoingStateValue(int quark) {
         fRWLock.readLock().lock();
         try {
-            return fOngoingStateInfo.get(quark);
+            checkQuark(quark);
+            return getValue(quark);
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -114,7 +153,8 @@ public class TransientState {
     public long getOngoingStartTime(int quark) {
         fRWLock.readLock().lock();
         try {
-            return fOngoingStateStartTimes.get(quark);
+            checkQuark(quark);
+            return fOngoingStateStartTimes[quark];
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -134,7 +174,8 @@ public class TransientState {
     public void changeOngoingStateValue(int quark, ITmfStateValue newValue) {
         fRWLock.writeLock().lock();
         try {
-            fOngoingStateInfo.set(quark, newValue);
+            checkQuark(quark);
+            setValue(quark, newValue);
         } finally {
             fRWLock.writeLock().unlock();
         }
@@ -154,8 +195,9 @@ public class TransientState {
     public ITmfStateInterval getOngoingInterval(int quark) {
         fRWLock.readLock().lock();
         try {
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark), fLatestTime,
-                    quark, fOngoingStateInfo.get(quark));
+            checkQuark(quark);
+            return new TmfStateInterval(fOngoingStateStartTimes[quark], fLatestTime,
+                    quark, getValue(quark));
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -178,11 +220,49 @@ public class TransientState {
     public @Nullable ITmfStateInterval getIntervalAt(long time, int quark) {
         fRWLock.readLock().lock();
         try {
-            if (!isActive() || time < fOngoingStateStartTimes.get(quark)) {
+            if (!isActive()) {
                 return null;
             }
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark),
-                    fLatestTime, quark, fOngoingStateInfo.get(quark));
+            checkQuark(quark);
+            if (time < fOngoingStateStartTimes[quark]) {
+                return null;
+            }
+            return new TmfStateInterval(fOngoingStateStartTimes[quark],
+                    fLatestTime, quark, getValue(quark));
+        } finally {
+            fRWLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the ongoing intervals of the given attributes that contain at least
+     * one of the timestamps sampled by the given range. The end time of the
+     * returned intervals is the current latest time.
+     *
+     * @param quarks
+     *            The attributes to look for
+     * @param range
+     *            The sampled time range
+     * @return The matching intervals, indexed by quark. Empty if this
+     *         transient state is not active.
+     * @throws IndexOutOfBoundsException
+     *             If one of the quarks is out of range
+     */
+    public Map<Integer, ITmfStateInterval> getOngoingIntervals(Collection<Integer> quarks, SampledTimeRange range) {
+        Map<Integer, ITmfStateInterval> intervals = new HashMap<>();
+        fRWLock.readLock().lock();
+        try {
+            if (!isActive()) {
+                return intervals;
+            }
+            for (Integer quark : quarks) {
+                checkQuark(quark);
+                long start = fOngoingStateStartTimes[quark];
+                if (range.intersects(start, fLatestTime)) {
+                    intervals.put(quark, new TmfStateInterval(start, fLatestTime, quark, getValue(quark)));
+                }
+            }
+            return intervals;
         } finally {
             fRWLock.readLock().unlock();
         }
@@ -204,14 +284,20 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            fOngoingStateInfo = new ArrayList<>(size);
-            fOngoingStateStartTimes = new ArrayList<>(size);
-            fStateValueTypes = new ArrayList<>(size);
-
-            for (ITmfStateInterval interval : newStateIntervals) {
-                fOngoingStateInfo.add(interval.getStateValue());
-                fOngoingStateStartTimes.add(interval.getStartTime());
-                fStateValueTypes.add(interval.getStateValue().getType());
+            int capacity = Math.max(size, INITIAL_CAPACITY);
+            fOngoingTypes = new @NonNull Type[capacity];
+            fOngoingValues = new long[capacity];
+            fOngoingValueObjects = new @Nullable ITmfStateValue[capacity];
+            fOngoingStateStartTimes = new long[capacity];
+            fStateValueTypes = new @NonNull Type[capacity];
+            fSize = size;
+            clearStrings();
+
+            for (int i = 0; i < size; i++) {
+                ITmfStateInterval interval = newStateIntervals.get(i);
+                setValue(i, interval.getStateValue());
+                fOngoingStateStartTimes[i] = interval.getStartTime();
+                fStateValueTypes[i] = interval.getStateValue().getType();
             }
         } finally {
             fRWLock.writeLock().unlock();
@@ -232,10 +318,20 @@ public class TransientState {
              * covering for all timestamps). A null interval will then get added
              * at the first state change.
              */
-            fOngoingStateInfo.add(TmfStateValue.nullValue());
-            fStateValueTypes.add(Type.NULL);
+            if (fSize == fOngoingTypes.length) {
+                int capacity = fSize * 2;
+                fOngoingTypes = Arrays.copyOf(fOngoingTypes, capacity);
+                fOngoingValues = Arrays.copyOf(fOngoingValues, capacity);
+                fOngoingValueObjects = Arrays.copyOf(fOngoingValueObjects, capacity);
+                fOngoingStateStartTimes = Arrays.copyOf(fOngoingStateStartTimes, capacity);
+                fStateValueTypes = Arrays.copyOf(fStateValueTypes, capacity);
+            }
+            fOngoingTypes[fSize] = Type.NULL;
+            fOngoingValueObjects[fSize] = null;
+            fStateValueTypes[fSize] = Type.NULL;
 
-            fOngoingStateStartTimes.add(fBackend.getStartTime());
+            fOngoingStateStartTimes[fSize] = fBackend.getStartTime();
+            fSize++;
         } finally {
             fRWLock.writeLock().unlock();
         }
@@ -266,7 +362,8 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            Type expectedSvType = fStateValueTypes.get(quark);
+            checkQuark(quark);
+            Type expectedSvType = fStateValueTypes[quark];
 
             /*
              * Make sure the state value type we're inserting is the same as the
@@ -277,7 +374,7 @@ public class TransientState {
                  * The value hasn't been used yet, set it to the value we're
                  * currently inserting (which might be null/-1 again).
                  */
-                fStateValueTypes.set(quark, value.getType());
+                fStateValueTypes[quark] = value.getType();
             } else if ((value.getType() != Type.NULL) && (value.getType() != expectedSvType)) {
                 /*
                  * We authorize inserting null values in any type of attribute,
@@ -287,7 +384,7 @@ public class TransientState {
                 throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + value.getType() + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             }
 
-            if (fOngoingStateInfo.get(quark).equals(value)) {
+            if (isValue(quark, value)) {
                 /*
                  * This is the case where the new value and the one already
                  * present in the Builder are the same. We do not need to create
@@ -296,19 +393,19 @@ public class TransientState {
                 return;
             }
 
-            if (fOngoingStateStartTimes.get(quark) < eventTime) {
+            if (fOngoingStateStartTimes[quark] < eventTime) {
                 /*
                  * These two conditions are necessary to create an interval and
                  * update ongoingStateInfo.
                  */
-                fBackend.insertPastState(fOngoingStateStartTimes.get(quark),
+                fBackend.insertPastState(fOngoingStateStartTimes[quark],
                         eventTime - 1, /* End Time */
                         quark, /* attribute quark */
-                        fOngoingStateInfo.get(quark)); /* StateValue */
+                        getValue(quark)); /* StateValue */
 
-                fOngoingStateStartTimes.set(quark, eventTime);
+                fOngoingStateStartTimes[quark] = eventTime;
             }
-            fOngoingStateInfo.set(quark, value);
+            setValue(quark, value);
 
             /* Update the Transient State's lastestTime, if needed */
             if (fLatestTime < eventTime) {
@@ -335,7 +432,7 @@ public class TransientState {
             if (!this.fIsActive) {
                 return;
             }
-            if (stateInfo.size() > fOngoingStateInfo.size()) {
+            if (stateInfo.size() > fSize) {
                 throw new IllegalArgumentException();
             }
 
@@ -372,8 +469,8 @@ public class TransientState {
 
         fRWLock.writeLock().lock();
         try {
-            for (int i = 0; i < fOngoingStateInfo.size(); i++) {
-                if (fOngoingStateStartTimes.get(i) > endTime) {
+            for (int i = 0; i < fSize; i++) {
+                if (fOngoingStateStartTimes[i] > endTime) {
                     /*
                      * Handle the cases where trace end > timestamp of last
                      * state change. This can happen when inserting "future"
@@ -382,10 +479,10 @@ public class TransientState {
                     continue;
                 }
                 try {
-                    fBackend.insertPastState(fOngoingStateStartTimes.get(i),
+                    fBackend.insertPastState(fOngoingStateStartTimes[i],
                             endTime, /* End Time */
                             i, /* attribute quark */
-                            fOngoingStateInfo.get(i)); /* StateValue */
+                            getValue(i)); /* StateValue */
 
                 } catch (TimeRangeException e) {
                     /*
@@ -396,8 +493,8 @@ public class TransientState {
                 }
             }
 
-            fOngoingStateInfo.clear();
-            fOngoingStateStartTimes.clear();
+            fSize = 0;
+            clearStrings();
             this.fIsActive = false;
 
         } finally {
@@ -405,6 +502,187 @@ public class TransientState {
         }
     }
 
+    /**
+     * Check that a quark is within the attributes known to this transient
+     * state. Must be called with the lock.
+     */
+    private void checkQuark(int quark) {
+        if (quark < 0 || quark >= fSize) {
+            throw new IndexOutOfBoundsException("Index: " + quark + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Store the ongoing value of an attribute in the columns. The string of
+     * the previous value, which was already inserted in the backend, is
+     * released. Must be called with the write lock.
+     */
+    private void setValue(int quark, ITmfStateValue value) {
+        Type type = value.getType();
+        boolean hadString = (fOngoingTypes[quark] == Type.STRING);
+        int previousStringId = (int) fOngoingValues[quark];
+        fOngoingTypes[quark] = type;
+        fOngoingValueObjects[quark] = null;
+        switch (type) {
+        case INTEGER:
+            fOngoingValues[quark] = value.unboxInt();
+            break;
+        case LONG:
+            fOngoingValues[quark] = value.unboxLong();
+            break;
+        case DOUBLE:
+            fOngoingValues[quark] = Double.doubleToLongBits(value.unboxDouble());
+            break;
+        case STRING:
+            fOngoingValues[quark] = getStringId(value.unboxStr());
+            break;
+        case CUSTOM:
+            fOngoingValueObjects[quark] = value;
+            break;
+        case NULL:
+        default:
+            break;
+        }
+        if (hadString) {
+            releaseStringId(previousStringId);
+        }
+    }
+
+    /**
+     * Check if the ongoing value of an attribute is equal to a value, without
+     * materializing it. Must be called with the lock.
+     */
+    private boolean isValue(int quark, ITmfStateValue value) {
+        Type type = value.getType();
+        if (fOngoingTypes[quark] != type) {
+            return false;
+        }
+        switch (type) {
+        case INTEGER:
+            return fOngoingValues[quark] == value.unboxInt();
+        case LONG:
+            return fOngoingValues[quark] == value.unboxLong();
+        case DOUBLE:
+            return fOngoingValues[quark] == Double.doubleToLongBits(value.unboxDouble());
+        case STRING:
+            return getString((int) fOngoingValues[quark]).equals(value.unboxStr());
+        case CUSTOM:
+            return value.equals(fOngoingValueObjects[quark]);
+        case NULL:
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Get the ongoing value of an attribute, materializing it if it was not
+     * yet since its last change. Must be called with the lock.
+     *
+     * The materialized value is cached under the read lock too: concurrent
+     * readers can only store equal immutable values, so a reader sees either
+     * no value or a complete one.
+     */
+    private ITmfStateValue getValue(int quark) {
+        ITmfStateValue stateValue = fOngoingValueObjects[quark];
+        if (stateValue != null) {
+            return stateValue;
+        }
+        long value = fOngoingValues[quark];
+        switch (fOngoingTypes[quark]) {
+        case INTEGER:
+            stateValue = TmfStateValue.newValueInt((int) value);
+            break;
+        case LONG:
+            stateValue = TmfStateValue.newValueLong(value);
+            break;
+        case DOUBLE:
+            stateValue = TmfStateValue.newValueDouble(Double.longBitsToDouble(value));
+            break;
+        case STRING:
+            stateValue = TmfStateValue.newValueString(getString((int) value));
+            break;
+        case CUSTOM:
+        case NULL:
+        default:
+            return TmfStateValue.nullValue();
+        }
+        fOngoingValueObjects[quark] = stateValue;
+        return stateValue;
+    }
+
+    /**
+     * Get the id of a string value and count one more reference to it, the
+     * strings are stored once per transient state. Must be called with the
+     * write lock.
+     */
+    private int getStringId(String value) {
+        Integer id = fStringIds.get(value);
+        if (id == null) {
+            id = fFreeStringIds.poll();
+            if (id == null) {
+                id = fStrings.size();
+                fStrings.add(value);
+                if (id == fStringRefCounts.length) {
+                    fStringRefCounts = Arrays.copyOf(fStringRefCounts, id * 2);
+                }
+            } else {
+                fStrings.set(id, value);
+            }
+            fStringIds.put(value, id);
+        }
+        fStringRefCounts[id]++;
+        return id;
+    }
+
+    /**
+     * Count one less reference to a string id, and drop the string once no
+     * attribute has it as ongoing value. Must be called with the write lock.
+     */
+    private void releaseStringId(int id) {
+        if (--fStringRefCounts[id] == 0) {
+            fStringIds.remove(getString(id));
+            fStrings.set(id, null);
+            fFreeStringIds.push(id);
+        }
+    }
+
+    /**
+     * Get the string value of an id in use. Must be called with the lock.
+     */
+    private String getString(int id) {
+        String value = fStrings.get(id);
+        if (value == null) {
+            throw new IllegalStateException("No string for id " + id); //$NON-NLS-1$
+        }
+        return value;
+    }
+
+    /**
+     * Drop all the string values. Must be called with the write lock.
+     */
+    private void clearStrings() {
+        fStrings.clear();
+        fStringIds.clear();
+        fStringRefCounts = new int[INITIAL_CAPACITY];
+        fFreeStringIds.clear();
+    }
+
+    /**
+     * Get the number of string values currently stored by this transient
+     * state.
+     *
+     * @return The number of strings
+     */
+    @VisibleForTesting
+    public int getStringCount() {
+        fRWLock.readLock().lock();
+        try {
+            return fStringIds.size();
+        } finally {
+            fRWLock.readLock().unlock();
+        }
+    }
+
     /**
      * Simply returns if this Transient State is currently being used or not
      *
@@ -437,10 +715,10 @@ public class TransientState {
             return;
         }
         writer.println("\nAttribute\tStateValue\tValid since time"); //$NON-NLS-1$
-        for (int i = 0; i < fOngoingStateInfo.size(); i++) {
+        for (int i = 0; i < fSize; i++) {
             writer.format("%d\t\t", i); //$NON-NLS-1$
-            writer.print(fOngoingStateInfo.get(i).toString() + "\t\t"); //$NON-NLS-1$
-            writer.println(fOngoingStateStartTimes.get(i).toString());
+            writer.print(getValue(i).toString() + "\t\t"); //$NON-NLS-1$
+            writer.println(fOngoingStateStartTimes[i]);
         }
         writer.println('\n');
         return;
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * Time condition used by the 2D queries. It represents the timestamps
+ * <code>start, start + resolution, start + 2 * resolution, ...</code> up to,
+ * and including, <code>end</code>. This is the same sampling as the one done
+ * by the range queries of the StateSystemUtils.
+ *
+ * An interval is considered to be part of the range if it contains at least
+ * one of the sampled timestamps. A resolution of 1 will thus select every
+ * interval intersecting [start, end].
+ */
+public final class SampledTimeRange {
+
+    private final long fStart;
+    private final long fEnd;
+    private final long fResolution;
+
+    /**
+     * Constructor
+     *
+     * @param start
+     *            The first sampled timestamp
+     * @param end
+     *            The last sampled timestamp
+     * @param resolution
+     *            The step between two sampled timestamps
+     * @throws TimeRangeException
+     *             If end < start, or if the resolution is not greater than 0
+     */
+    public SampledTimeRange(long start, long end, long resolution) {
+        if (end < start || resolution <= 0) {
+            throw new TimeRangeException("Start:" + start + ", End:" + end + ", Resolution:" + resolution); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        fStart = start;
+        fEnd = end;
+        fResolution = resolution;
+    }
+
+    /**
+     * Get the first sampled timestamp
+     *
+     * @return The start of the range
+     */
+    public long getStart() {
+        return fStart;
+    }
+
+    /**
+     * Get the last sampled timestamp
+     *
+     * @return The end of the range
+     */
+    public long getEnd() {
+        return fEnd;
+    }
+
+    /**
+     * Get the step between two sampled timestamps
+     *
+     * @return The resolution
+     */
+    public long getResolution() {
+        return fResolution;
+    }
+
+    /**
+     * Get the first sampled timestamp which is greater than or equal to the
+     * given time.
+     *
+     * @param t
+     *            The timestamp
+     * @return The next sampled timestamp, or {@link Long#MAX_VALUE} if t is
+     *         after the end of the range
+     */
+    public long nextSample(long t) {
+        if (t <= fStart) {
+            return fStart;
+        }
+        if (t > fEnd) {
+            return Long.MAX_VALUE;
+        }
+        long sample = fStart + ((t - fStart + fResolution - 1) / fResolution) * fResolution;
+        return Math.min(sample, fEnd);
+    }
+
+    /**
+     * Check if the time range [start, end] contains at least one of the
+     * sampled timestamps.
+     *
+     * @param start
+     *            The start of the time range (inclusive)
+     * @param end
+     *            The end of the time range (inclusive)
+     * @return True if one of the samples is in [start, end]
+     */
+    public boolean intersects(long start, long end) {
+        if (end < fStart || start > fEnd) {
+            return false;
+        }
+        return nextSample(start) <= end;
+    }
+
+    /**
+     * Get the part of this range that is within the given bounds. The
+     * timestamps sampled by the returned range are aligned with the ones of
+     * this range, except for its end, which can be the upper bound.
+     *
+     * @param lower
+     *            The lower bound
+     * @param upper
+     *            The upper bound
+     * @return The clamped range, or null if this range is completely outside
+     *         of the bounds
+     */
+    public @Nullable SampledTimeRange clamp(long lower, long upper) {
+        if (upper < fStart || lower > fEnd || upper < lower) {
+            return null;
+        }
+        if (lower <= fStart && fEnd <= upper) {
+            return this;
+        }
+        long end = Math.min(fEnd, upper);
+        long start = Math.min(nextSample(Math.max(fStart, lower)), end);
+        return new SampledTimeRange(start, end, fResolution);
+    }
+
+    /**
+     * Run a 2D query on a backend by walking every attribute from one sample
+     * to the next with single queries. This can be used by backends that do
+     * not have a more efficient way to resolve 2D queries.
+     *
+     * @param backend
+     *            The backend to query
+     * @param quarks
+     *            The attributes to query
+     * @return The list of intervals, grouped by attribute and sorted by time
+     *         for each attribute
+     * @throws StateSystemDisposedException
+     *             If the backend is disposed while the query is ongoing
+     */
+    public List<@NonNull ITmfStateInterval> queryEachAttribute(IStateHistoryBackend backend,
+            Collection<@NonNull Integer> quarks) throws StateSystemDisposedException {
+        List<@NonNull ITmfStateInterval> intervals = new ArrayList<>();
+        SampledTimeRange range = clamp(backend.getStartTime(), backend.getEndTime());
+        if (range == null) {
+            return intervals;
+        }
+        for (int quark : quarks) {
+            long t = range.getStart();
+            while (t <= range.getEnd()) {
+                ITmfStateInterval interval = backend.doSingularQuery(t, quark);
+                if (interval == null) {
+                    break;
+                }
+                intervals.add(interval);
+                if (interval.getEndTime() >= range.getEnd()) {
+                    break;
+                }
+                t = range.nextSample(interval.getEndTime() + 1);
+            }
+        }
+        return intervals;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + fStart + ", " + fEnd + "] / " + fResolution; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+}
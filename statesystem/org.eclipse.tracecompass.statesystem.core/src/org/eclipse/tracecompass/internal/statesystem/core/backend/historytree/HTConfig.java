@@ -29,6 +29,7 @@ public final class HTConfig {
     private final int maxChildren;
     private final int providerVersion;
     private final long treeStart;
+    private final boolean compactIntervals;
 
     /**
      * Full constructor.
@@ -47,14 +48,42 @@ public final class HTConfig {
      *            uselessly.
      * @param startTime
      *            The start time of the history
+     * @param compactIntervals
+     *            Whether the intervals are stored in the compact layout, with
+     *            variable-length times and quarks, instead of the fixed-size
+     *            one
      */
     public HTConfig(File newStateFile, int blockSize, int maxChildren,
-            int providerVersion, long startTime) {
+            int providerVersion, long startTime, boolean compactIntervals) {
         this.stateFile = newStateFile;
         this.blockSize = blockSize;
         this.maxChildren = maxChildren;
         this.providerVersion = providerVersion;
         this.treeStart = startTime;
+        this.compactIntervals = compactIntervals;
+    }
+
+    /**
+     * Constructor for trees storing their intervals in the fixed-size layout.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime, false);
     }
 
     /**
@@ -122,4 +151,13 @@ public final class HTConfig {
     public long getTreeStart() {
         return treeStart;
     }
+
+    /**
+     * Get whether the intervals are stored in the compact layout
+     *
+     * @return True for the compact layout, false for the fixed-size one
+     */
+    public boolean isCompact() {
+        return compactIntervals;
+    }
 }
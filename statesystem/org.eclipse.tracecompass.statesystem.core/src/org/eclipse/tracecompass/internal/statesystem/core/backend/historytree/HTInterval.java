@@ -50,6 +50,12 @@ public final class HTInterval implements ITmfStateInterval {
     private static final byte TYPE_DOUBLE = 3;
     private static final byte TYPE_CUSTOM = 20;
 
+    /**
+     * Size of the fixed-size part of an interval: 2x long (start and end), 1x
+     * int (attribute) and 1x byte (value type)
+     */
+    private static final int FIXED_HEADER_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+
     private final long start;
     private final long end;
     private final int attribute;
@@ -91,11 +97,7 @@ public final class HTInterval implements ITmfStateInterval {
      * form on disk. This is dependent on its state value.
      */
     private static int computeSizeOnDisk(ITmfStateValue sv) {
-        /*
-         * Minimum size is 2x long (start and end), 1x int (attribute) and 1x
-         * byte (value type).
-         */
-        int minSize = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+        int minSize = FIXED_HEADER_SIZE;
 
         switch (sv.getType()) {
         case NULL:
@@ -304,6 +306,217 @@ public final class HTInterval implements ITmfStateInterval {
         }
     }
 
+    /**
+     * Reader factory method for the compact layout, see
+     * {@link #writeCompactInterval}.
+     *
+     * @param buffer
+     *            The ByteBuffer from which to read the information
+     * @param nodeStart
+     *            The start time of the node containing the interval
+     * @return The interval object
+     * @throws IOException
+     *             If there was an error reading from the buffer
+     */
+    public static final HTInterval readCompactFrom(ByteBuffer buffer, long nodeStart) throws IOException {
+        TmfStateValue value;
+        int valueSize;
+
+        long intervalStart = nodeStart + getVarLong(buffer);
+        long intervalEnd = intervalStart + getVarLong(buffer);
+        int attribute = (int) getVarLong(buffer);
+
+        byte valueType = buffer.get();
+        switch (valueType) {
+
+        case TYPE_NULL:
+            value = TmfStateValue.nullValue();
+            valueSize = 0;
+            break;
+
+        case TYPE_INTEGER:
+            value = TmfStateValue.newValueInt((int) decodeZigZag(getVarLong(buffer)));
+            valueSize = Integer.BYTES;
+            break;
+
+        case TYPE_STRING: {
+            int strLength = (int) getVarLong(buffer);
+            byte[] array = new byte[strLength];
+            buffer.get(array);
+            value = TmfStateValue.newValueString(new String(array, CHARSET));
+            valueSize = strLength + 3;
+            break;
+        }
+
+        case TYPE_LONG:
+            value = TmfStateValue.newValueLong(decodeZigZag(getVarLong(buffer)));
+            valueSize = Long.BYTES;
+            break;
+
+        case TYPE_DOUBLE:
+            value = TmfStateValue.newValueDouble(buffer.getDouble());
+            valueSize = Double.BYTES;
+            break;
+
+        case TYPE_CUSTOM: {
+            int customSize = (int) getVarLong(buffer);
+            ISafeByteBufferReader safeBuffer = SafeByteBufferFactory.wrapReader(buffer, customSize);
+            value = CustomStateValue.readSerializedValue(safeBuffer);
+            valueSize = Short.BYTES + customSize;
+            break;
+        }
+        default:
+            throw new IOException(errMsg);
+        }
+
+        try {
+            /* Keep the size of the fixed-size layout, it is the reference */
+            return new HTInterval(intervalStart, intervalEnd, attribute, value, FIXED_HEADER_SIZE + valueSize);
+        } catch (TimeRangeException e) {
+            throw new IOException(errMsg);
+        }
+    }
+
+    /**
+     * Write this interval in the compact layout. The times and the attribute
+     * are stored as variable-length integers, the start time relative to the
+     * start of the node and the end time relative to the start time, so that
+     * the short intervals of a node close to its start only take a few bytes.
+     * <ul>
+     * <li>start - nodeStart (varint)</li>
+     * <li>end - start (varint)</li>
+     * <li>attribute (varint)</li>
+     * <li>sv type (1 byte)</li>
+     * <li>sv (0 bytes for null, zigzag varint for int and long, 8 bytes for
+     * double, varint length then the bytes for strings and custom
+     * values)</li>
+     * </ul>
+     *
+     * @param buffer
+     *            The already-allocated ByteBuffer corresponding to a SHT Node
+     * @param nodeStart
+     *            The start time of the node containing the interval
+     */
+    public void writeCompactInterval(ByteBuffer buffer, long nodeStart) {
+        final byte byteFromType = getByteFromType(sv.getType());
+
+        putVarLong(buffer, start - nodeStart);
+        putVarLong(buffer, end - start);
+        putVarLong(buffer, attribute);
+        buffer.put(byteFromType);
+
+        switch (byteFromType) {
+        case TYPE_NULL:
+            break;
+        case TYPE_INTEGER:
+            putVarLong(buffer, encodeZigZag(sv.unboxInt()));
+            break;
+
+        case TYPE_STRING: {
+            byte[] strArray = sv.unboxStr().getBytes(CHARSET);
+            putVarLong(buffer, strArray.length);
+            buffer.put(strArray);
+            break;
+        }
+
+        case TYPE_LONG:
+            putVarLong(buffer, encodeZigZag(sv.unboxLong()));
+            break;
+
+        case TYPE_DOUBLE:
+            buffer.putDouble(sv.unboxDouble());
+            break;
+
+        case TYPE_CUSTOM: {
+            int size = ((CustomStateValue) sv).getSerializedSize();
+            putVarLong(buffer, size);
+            ISafeByteBufferWriter safeBuffer = SafeByteBufferFactory.wrapWriter(buffer, size);
+            ((CustomStateValue) sv).serialize(safeBuffer);
+            break;
+        }
+
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Number of bytes used by this interval when it is written in the compact
+     * layout, see {@link #writeCompactInterval}.
+     *
+     * @param nodeStart
+     *            The start time of the node containing the interval
+     * @return The interval size
+     */
+    public int getCompactSizeOnDisk(long nodeStart) {
+        int size = getVarLongSize(start - nodeStart)
+                + getVarLongSize(end - start)
+                + getVarLongSize(attribute)
+                + Byte.BYTES;
+        /* Size of the value in the fixed-size layout */
+        int valueSize = fSizeOnDisk - FIXED_HEADER_SIZE;
+
+        switch (sv.getType()) {
+        case NULL:
+            return size;
+        case INTEGER:
+            return size + getVarLongSize(encodeZigZag(sv.unboxInt()));
+        case LONG:
+            return size + getVarLongSize(encodeZigZag(sv.unboxLong()));
+        case DOUBLE:
+            return size + Double.BYTES;
+        case STRING: {
+            /* Without the short length and the \0 at the end */
+            int strLength = valueSize - 3;
+            return size + getVarLongSize(strLength) + strLength;
+        }
+        case CUSTOM: {
+            int customSize = valueSize - Short.BYTES;
+            return size + getVarLongSize(customSize) + customSize;
+        }
+        default:
+            throw new IllegalStateException();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Variable-length integers, 7 bits per byte, least significant group first
+    // ------------------------------------------------------------------------
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(errMsg);
+    }
+
+    private static int getVarLongSize(long value) {
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return Math.max(1, (bits + 6) / 7);
+    }
+
+    private static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
     @Override
     public long getStartTime() {
         return start;
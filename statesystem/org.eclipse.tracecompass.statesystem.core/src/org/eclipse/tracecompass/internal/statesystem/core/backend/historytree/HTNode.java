@@ -20,12 +20,20 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
@@ -133,9 +141,53 @@ public abstract class HTNode {
     /* Vector containing all the intervals contained in this node */
     private final List<HTInterval> fIntervals;
 
-    /* Lock used to protect the accesses to intervals, nodeEnd and such */
+    /*
+     * Positions of the intervals in fIntervals, sorted by attribute then by end
+     * time, built lazily once the node is on disk
+     */
+    private volatile int @Nullable [] fAttributeIndex = null;
+
+    /*
+     * Lock used to protect the accesses to intervals, nodeEnd and such. It is
+     * only needed while the node is on the latest branch, see getReadLock().
+     */
     private final ReentrantReadWriteLock fRwl = new ReentrantReadWriteLock(false);
 
+    /**
+     * Lock that does nothing, used to read the nodes that are on disk.
+     */
+    private static final Lock NO_LOCK = new Lock() {
+        @Override
+        public void lock() {
+            // Nothing to do
+        }
+
+        @Override
+        public void lockInterruptibly() {
+            // Nothing to do
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            // Nothing to do
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    };
+
     /** Order of intervals in a HTNode: sorted by end times, then by start times. */
     private static final Comparator<ITmfStateInterval> NODE_ORDER = Comparator
             .comparingLong(ITmfStateInterval::getEndTime)
@@ -182,15 +234,34 @@ public abstract class HTNode {
      */
     public static final @NonNull HTNode readNode(HTConfig config, FileChannel fc, IHistoryTree.IHTNodeFactory nodeFactory)
             throws IOException {
-        HTNode newNode = null;
-        int res, i;
-
         ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSize());
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         buffer.clear();
-        res = fc.read(buffer);
+        int res = fc.read(buffer);
         assert (res == config.getBlockSize());
         buffer.flip();
+        return readNode(config, buffer, nodeFactory);
+    }
+
+    /**
+     * Reader factory method. Build a Node object (of the right type) from the
+     * content of a block that was already read from the file.
+     *
+     * @param config
+     *            Configuration of the History Tree
+     * @param buffer
+     *            Little-endian buffer containing the block of the node,
+     *            positioned at the start of the node
+     * @param nodeFactory
+     *            The factory to create the nodes for this tree
+     * @return The node object
+     * @throws IOException
+     *             If the content of the buffer is not a valid node
+     */
+    public static final @NonNull HTNode readNode(HTConfig config, ByteBuffer buffer, IHistoryTree.IHTNodeFactory nodeFactory)
+            throws IOException {
+        HTNode newNode = null;
+        int i;
 
         /* Read the common header part */
         byte typeByte = buffer.get();
@@ -225,10 +296,12 @@ public abstract class HTNode {
          * At this point, we should be done reading the header and 'buffer'
          * should only have the intervals left
          */
+        boolean compact = config.isCompact();
         for (i = 0; i < intervalCount; i++) {
-            HTInterval interval = HTInterval.readFrom(buffer);
+            int pos = buffer.position();
+            HTInterval interval = (compact ? HTInterval.readCompactFrom(buffer, start) : HTInterval.readFrom(buffer));
             newNode.fIntervals.add(interval);
-            newNode.fSizeOfIntervalSection += interval.getSizeOnDisk();
+            newNode.fSizeOfIntervalSection += buffer.position() - pos;
         }
 
         /* Assign the node's other information we have read previously */
@@ -273,7 +346,11 @@ public abstract class HTNode {
             writeSpecificHeader(buffer);
 
             /* Back to us, we write the intervals */
-            fIntervals.forEach(i -> i.writeInterval(buffer));
+            if (fConfig.isCompact()) {
+                fIntervals.forEach(i -> i.writeCompactInterval(buffer, fNodeStart));
+            } else {
+                fIntervals.forEach(i -> i.writeInterval(buffer));
+            }
             if (blockSize - buffer.position() != getNodeFreeSpace()) {
                 throw new IllegalStateException("Wrong free space: Actual: " + (blockSize - buffer.position()) + ", Expected: " + getNodeFreeSpace()); //$NON-NLS-1$ //$NON-NLS-2$
             }
@@ -369,6 +446,38 @@ public abstract class HTNode {
         return fIsOnDisk;
     }
 
+    /**
+     * Get the lock to take before reading data that is protected by the given
+     * lock. Once a node is on disk, it cannot be modified anymore, so there is
+     * no need to lock anything to read it. Its contents are made visible to
+     * all threads by the write of the volatile on-disk flag, which is done
+     * after the last modification of the node. Only the nodes of the latest
+     * branch still need the real read lock.
+     *
+     * @param rwl
+     *            The lock protecting the data to read
+     * @return The lock to take and release around the read
+     */
+    protected final Lock getReadLock(ReadWriteLock rwl) {
+        return fIsOnDisk ? NO_LOCK : rwl.readLock();
+    }
+
+    /**
+     * Get the number of bytes the given interval would use in this node. It
+     * depends on the interval layout of the tree, and for the compact one, on
+     * the start time of the node.
+     *
+     * @param interval
+     *            The interval
+     * @return The size of the interval in this node
+     */
+    public final int getSizeInNode(HTInterval interval) {
+        if (fConfig.isCompact()) {
+            return interval.getCompactSizeOnDisk(fNodeStart);
+        }
+        return interval.getSizeOnDisk();
+    }
+
     /**
      * Add an interval to this node
      *
@@ -379,7 +488,8 @@ public abstract class HTNode {
         fRwl.writeLock().lock();
         try {
             /* Just in case, should be checked before even calling this function */
-            assert (newInterval.getSizeOnDisk() <= getNodeFreeSpace());
+            int size = getSizeInNode(newInterval);
+            assert (size <= getNodeFreeSpace());
 
             /* Find the insert position to keep the list sorted */
             int index = 0;
@@ -393,7 +503,7 @@ public abstract class HTNode {
             }
 
             fIntervals.add(index, newInterval);
-            fSizeOfIntervalSection += newInterval.getSizeOnDisk();
+            fSizeOfIntervalSection += size;
 
         } finally {
             fRwl.writeLock().unlock();
@@ -451,7 +561,8 @@ public abstract class HTNode {
     public void writeInfoFromNode(List<ITmfStateInterval> stateInfo, long t)
             throws TimeRangeException {
         /* This is from a state system query, we are "reading" this node */
-        fRwl.readLock().lock();
+        Lock lock = getReadLock(fRwl);
+        lock.lock();
         try {
             for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
                 /*
@@ -469,7 +580,7 @@ public abstract class HTNode {
                 }
             }
         } finally {
-            fRwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -487,7 +598,11 @@ public abstract class HTNode {
      *             If 't' is invalid
      */
     public HTInterval getRelevantInterval(int key, long t) throws TimeRangeException {
-        fRwl.readLock().lock();
+        if (fIsOnDisk) {
+            return getIndexedInterval(key, t);
+        }
+        Lock lock = getReadLock(fRwl);
+        lock.lock();
         try {
             for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
                 HTInterval curInterval = fIntervals.get(i);
@@ -501,12 +616,106 @@ public abstract class HTNode {
             return null;
 
         } finally {
-            fRwl.readLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Find the interval of an attribute at a given time with a binary search in
+     * the attribute index. Only for nodes that are on disk, which do not change
+     * anymore.
+     */
+    private HTInterval getIndexedInterval(int key, long t) {
+        int[] index = getAttributeIndex();
+        /*
+         * The index is sorted by attribute, then by end time. Look for the
+         * first interval of the attribute that ends at or after t. The
+         * intervals of an attribute do not overlap, so it is the only one that
+         * can contain t.
+         */
+        int low = 0;
+        int high = index.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            HTInterval interval = fIntervals.get(index[mid]);
+            if (interval.getAttribute() < key
+                    || (interval.getAttribute() == key && interval.getEndTime() < t)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low < index.length) {
+            HTInterval interval = fIntervals.get(index[low]);
+            if (interval.getAttribute() == key && interval.getStartTime() <= t) {
+                return interval;
+            }
+        }
+        /* We didn't find the relevant information in this node */
+        return null;
+    }
+
+    /**
+     * Get the positions of the intervals of this node, sorted by attribute,
+     * then by end time. The index is built the first time it is needed, once
+     * the node is on disk.
+     */
+    private int[] getAttributeIndex() {
+        int[] index = fAttributeIndex;
+        if (index != null) {
+            return index;
+        }
+        /*
+         * The intervals are already sorted by end time, so sorting their
+         * positions by attribute, then by position, gives the right order.
+         * Both are packed in a long to use a primitive sort.
+         */
+        int size = fIntervals.size();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) fIntervals.get(i).getAttribute() << Integer.SIZE) | i;
+        }
+        Arrays.sort(keys);
+        index = new int[size];
+        for (int i = 0; i < size; i++) {
+            index[i] = (int) keys[i];
+        }
+        /* Many threads may build it at once, they all get the same result */
+        fAttributeIndex = index;
+        return index;
+    }
+
+    /**
+     * Get the intervals of this node that belong to the given attributes and
+     * that contain at least one of the timestamps sampled by the range.
+     *
+     * @param quarks
+     *            The attributes to look for, as a set of bits indexed by quark
+     * @param range
+     *            The sampled time range
+     * @return The matching intervals of this node, sorted by end time
+     */
+    public List<HTInterval> getMatchingIntervals(BitSet quarks, SampledTimeRange range) {
+        Lock lock = getReadLock(fRwl);
+        lock.lock();
+        try {
+            List<HTInterval> matching = new ArrayList<>();
+            /* Intervals ending before the start of the range are skipped */
+            for (int i = getStartIndexFor(range.getStart()); i < fIntervals.size(); i++) {
+                HTInterval curInterval = fIntervals.get(i);
+                if (quarks.get(curInterval.getAttribute())
+                        && range.intersects(curInterval.getStartTime(), curInterval.getEndTime())) {
+                    matching.add(curInterval);
+                }
+            }
+            return matching;
+        } finally {
+            lock.unlock();
         }
     }
 
     private int getStartIndexFor(long t) throws TimeRangeException {
-        /* Should only be called by methods with the readLock taken */
+        /* Should only be called by methods holding the lock from getReadLock() */
 
         if (fIntervals.isEmpty()) {
             return 0;
@@ -548,9 +757,10 @@ public abstract class HTNode {
      * @return The amount of free space in the node (in bytes)
      */
     public int getNodeFreeSpace() {
-        fRwl.readLock().lock();
+        Lock lock = getReadLock(fRwl);
+        lock.lock();
         int ret = fConfig.getBlockSize() - getDataSectionEndOffset();
-        fRwl.readLock().unlock();
+        lock.unlock();
 
         return ret;
     }
@@ -563,7 +773,8 @@ public abstract class HTNode {
      *         in this node.
      */
     public long getNodeUsagePercent() {
-        fRwl.readLock().lock();
+        Lock lock = getReadLock(fRwl);
+        lock.lock();
         try {
             final int blockSize = fConfig.getBlockSize();
             float freePercent = (float) getNodeFreeSpace()
@@ -572,7 +783,7 @@ public abstract class HTNode {
             return (long) (100L - freePercent);
 
         } finally {
-            fRwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -18,14 +18,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
-import java.util.logging.Logger;
-
-import org.eclipse.jdt.annotation.NonNull;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
 
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
@@ -34,6 +44,8 @@ import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IH
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 
 /**
  * This class abstracts inputs/outputs of the HistoryTree nodes.
@@ -86,11 +98,38 @@ public class HT_IO {
         }
     }
 
-    private static final int CACHE_SIZE = 256;
+    /**
+     * System property to set the heap budget of the node cache, in MiB. This
+     * budget is shared by all the history trees that are opened.
+     */
+    private static final String CACHE_SIZE_PROPERTY = "org.eclipse.tracecompass.statesystem.core.htNodeCacheSize"; //$NON-NLS-1$
+    private static final long DEFAULT_CACHE_SIZE = 64;
+    private static final long CACHE_SIZE = Math.max(1L, Long.getLong(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE)) * 1024 * 1024;
+
+    /**
+     * System property to enable or disable the memory-mapped read path of
+     * completed files. It is disabled by default on Windows, where mapped files
+     * cannot be deleted until the mapping is garbage-collected.
+     */
+    public static final String MAPPED_READ_PROPERTY = "org.eclipse.tracecompass.statesystem.core.htMappedRead"; //$NON-NLS-1$
+
+    /* Number of bytes currently in the cache, for all trees */
+    private static final AtomicLong CACHED_BYTES = new AtomicLong();
+    /* Number of trees that currently have nodes in the cache */
+    private static final AtomicInteger OPEN_TREES = new AtomicInteger();
+    /* Slack of the cache order queue of a tree before it is compacted */
+    private static final int MIN_ORDER_SIZE = 64;
 
     private static final LoadingCache<CacheKey, HTNode> NODE_CACHE =
         checkNotNull(CacheBuilder.newBuilder()
-            .maximumSize(CACHE_SIZE)
+            .maximumWeight(CACHE_SIZE)
+            .weigher((CacheKey key, HTNode node) -> key.fStateHistory.fConfig.getBlockSize())
+            .removalListener((RemovalNotification<CacheKey, HTNode> notification) -> {
+                CacheKey key = notification.getKey();
+                if (key != null && notification.getCause() != RemovalCause.REPLACED) {
+                    key.fStateHistory.nodeRemoved(key.fSeqNumber, notification.wasEvicted());
+                }
+            })
             .build(new CacheLoader<CacheKey, HTNode>() {
                 @Override
                 public HTNode load(CacheKey key) throws IOException {
@@ -99,10 +138,9 @@ public class HT_IO {
 
                     LOGGER.finest(() -> "[HtIo:CacheMiss] seqNum=" + seqNb); //$NON-NLS-1$
 
-                    synchronized (io) {
-                        io.seekFCToNodePos(io.fFileChannelIn, seqNb);
-                        return HTNode.readNode(io.fConfig, io.fFileChannelIn, key.fStateHistory.fNodeFactory);
-                    }
+                    HTNode node = io.readNodeFromDisk(seqNb);
+                    io.nodeAdded(seqNb);
+                    return node;
                 }
             }));
 
@@ -122,6 +160,32 @@ public class HT_IO {
 
     private final IHTNodeFactory fNodeFactory;
 
+    /* Accounting of this tree's nodes in the global cache */
+    private final Set<Integer> fCachedNodes = ConcurrentHashMap.newKeySet();
+    /*
+     * The order in which the nodes were added to the cache. The nodes removed
+     * from the cache are left in it and skipped, and the queue is compacted
+     * when it gets much larger than the set of cached nodes.
+     */
+    private final Queue<Integer> fCacheOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger fCacheOrderSize = new AtomicInteger();
+    private final AtomicLong fCachedBytes = new AtomicLong();
+    private final LongAdder fLookups = new LongAdder();
+    private final LongAdder fMisses = new LongAdder();
+    private final LongAdder fEvictions = new LongAdder();
+    private volatile boolean fIsOpen = true;
+
+    /*
+     * Read-only mappings of the node section of the file, once it is complete.
+     * Each mapping covers fNodesPerMapping nodes, to stay under the 2 GiB
+     * limit of a single mapping. The mapping only replaces the read system
+     * call of a cache miss: the node is still decoded into heap objects and
+     * kept in the node cache, as the queries work on decoded intervals.
+     */
+    private volatile ByteBuffer @Nullable [] fMappings = null;
+    private int fNodesPerMapping;
+    private int fMappedNodeCount;
+
     // ------------------------------------------------------------------------
     // Methods
     // ------------------------------------------------------------------------
@@ -170,6 +234,7 @@ public class HT_IO {
         fFileChannelIn = fFileInputStream.getChannel();
         fFileChannelOut = fFileOutputStream.getChannel();
         fNodeFactory = nodeFactory;
+        OPEN_TREES.incrementAndGet();
     }
 
     /**
@@ -186,9 +251,12 @@ public class HT_IO {
     public @NonNull HTNode readNode(int seqNumber) throws ClosedChannelException {
         /* Do a cache lookup. If it's not present it will be loaded from disk */
         LOGGER.finest(() -> "[HtIo:CacheLookup] seqNum=" + seqNumber); //$NON-NLS-1$
+        fLookups.increment();
         CacheKey key = new CacheKey(this, seqNumber);
         try {
-            return checkNotNull(NODE_CACHE.get(key));
+            HTNode node = checkNotNull(NODE_CACHE.get(key));
+            enforceFairShare();
+            return node;
 
         } catch (ExecutionException e) {
             /* Get the inner exception that was generated */
@@ -204,6 +272,88 @@ public class HT_IO {
         }
     }
 
+    /**
+     * Read a node directly from the file. Positional reads are used, so nodes
+     * of the same file can be loaded concurrently without locking.
+     */
+    private @NonNull HTNode readNodeFromDisk(int seqNumber) throws IOException {
+        fMisses.increment();
+        ByteBuffer[] mappings = fMappings;
+        if (mappings != null && seqNumber < fMappedNodeCount) {
+            /* Decode the node from the mapped file, without a system call */
+            ByteBuffer block = mappings[seqNumber / fNodesPerMapping].duplicate();
+            int offset = (seqNumber % fNodesPerMapping) * fConfig.getBlockSize();
+            block.position(offset);
+            block.limit(offset + fConfig.getBlockSize());
+            return HTNode.readNode(fConfig, block.slice().order(ByteOrder.LITTLE_ENDIAN), fNodeFactory);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(fConfig.getBlockSize());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long position = getNodePosition(seqNumber);
+        while (buffer.hasRemaining()) {
+            int res = fFileChannelIn.read(buffer, position + buffer.position());
+            if (res < 0) {
+                throw new IOException("Unexpected end of file while reading node " + seqNumber); //$NON-NLS-1$
+            }
+        }
+        buffer.flip();
+        return HTNode.readNode(fConfig, buffer, fNodeFactory);
+    }
+
+    /**
+     * Switch to the read-only mode, once all the nodes of the file are
+     * written. The node section of the file is then memory-mapped, and nodes
+     * missing from the cache are decoded from the mapped region instead of
+     * being read with the file channel. This is a no-op if mapped reads are
+     * disabled or if the file cannot be mapped.
+     *
+     * @param nodeCount
+     *            The number of nodes in the file, none of which should be
+     *            modified afterwards
+     */
+    public synchronized void mapNodes(int nodeCount) {
+        if (!isMappedReadEnabled() || !fIsOpen || nodeCount <= 0) {
+            return;
+        }
+        int blockSize = fConfig.getBlockSize();
+        int nodesPerMapping = Integer.MAX_VALUE / blockSize;
+        int nbMappings = (nodeCount + nodesPerMapping - 1) / nodesPerMapping;
+        ByteBuffer[] mappings = new ByteBuffer[nbMappings];
+        try {
+            for (int i = 0; i < nbMappings; i++) {
+                int nbNodes = Math.min(nodesPerMapping, nodeCount - i * nodesPerMapping);
+                mappings[i] = fFileChannelIn.map(FileChannel.MapMode.READ_ONLY,
+                        getNodePosition(i * nodesPerMapping), (long) nbNodes * blockSize);
+            }
+        } catch (IOException e) {
+            LOGGER.warning(() -> "[HtIo:MapFailed] file=" + fConfig.getStateFile().getName() + ", error=" + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+            return;
+        }
+        fNodesPerMapping = nodesPerMapping;
+        fMappedNodeCount = nodeCount;
+        fMappings = mappings;
+    }
+
+    /**
+     * Get whether the completed files are read through a memory mapping, as
+     * set by the {@link #MAPPED_READ_PROPERTY} system property.
+     *
+     * @return true if the mapped read path is enabled
+     */
+    public static boolean isMappedReadEnabled() {
+        return Boolean.parseBoolean(System.getProperty(MAPPED_READ_PROPERTY,
+                String.valueOf(!System.getProperty("os.name", "").startsWith("Windows")))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * Get whether the nodes of this file are read through a memory mapping.
+     *
+     * @return true if the file was mapped by {@link #mapNodes(int)}
+     */
+    public boolean isMapped() {
+        return fMappings != null;
+    }
+
     /**
      * Write the given node to disk.
      *
@@ -216,7 +366,10 @@ public class HT_IO {
 
             /* "Write-back" the node into the cache */
             CacheKey key = new CacheKey(this, seqNumber);
-            NODE_CACHE.put(key, node);
+            if (NODE_CACHE.asMap().put(key, node) == null) {
+                nodeAdded(seqNumber);
+                enforceFairShare();
+            }
 
             /* Position ourselves at the start of the node and write it */
             synchronized (this) {
@@ -229,6 +382,127 @@ public class HT_IO {
         }
     }
 
+    // ------------------------------------------------------------------------
+    // Cache accounting
+    // ------------------------------------------------------------------------
+
+    /**
+     * Account for a node of this tree that was added to the cache.
+     */
+    private void nodeAdded(int seqNumber) {
+        int blockSize = fConfig.getBlockSize();
+        if (fCachedNodes.add(seqNumber)) {
+            fCachedBytes.addAndGet(blockSize);
+            CACHED_BYTES.addAndGet(blockSize);
+        }
+        fCacheOrder.add(seqNumber);
+        if (fCacheOrderSize.incrementAndGet() > 2 * fCachedNodes.size() + MIN_ORDER_SIZE) {
+            compactCacheOrder();
+        }
+    }
+
+    /**
+     * Remove the nodes that are no longer cached from the cache order. It is
+     * linear in the size of the queue, but only done once the queue doubled.
+     */
+    private synchronized void compactCacheOrder() {
+        if (fCacheOrderSize.get() <= 2 * fCachedNodes.size() + MIN_ORDER_SIZE) {
+            /* Another thread compacted it */
+            return;
+        }
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Integer> iter = fCacheOrder.iterator();
+        while (iter.hasNext()) {
+            Integer seqNumber = iter.next();
+            /* Keep the oldest entry of each cached node */
+            if (!fCachedNodes.contains(seqNumber) || !seen.add(seqNumber)) {
+                iter.remove();
+                fCacheOrderSize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * If the cache is full and this tree uses more than its share of it, evict
+     * its own oldest nodes, instead of letting the LRU policy of the cache
+     * flush the nodes of all the other trees when this one is scanned.
+     */
+    private void enforceFairShare() {
+        if (CACHED_BYTES.get() + fConfig.getBlockSize() <= CACHE_SIZE) {
+            return;
+        }
+        long fairShare = CACHE_SIZE / Math.max(1, OPEN_TREES.get());
+        while (fCachedBytes.get() > fairShare) {
+            Integer oldest = fCacheOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            fCacheOrderSize.decrementAndGet();
+            if (!fCachedNodes.contains(oldest)) {
+                /* Already removed from the cache */
+                continue;
+            }
+            fEvictions.increment();
+            NODE_CACHE.invalidate(new CacheKey(this, oldest));
+            /* In case the node was already removed by another thread */
+            if (fCachedNodes.remove(oldest)) {
+                fCachedBytes.addAndGet(-fConfig.getBlockSize());
+                CACHED_BYTES.addAndGet(-fConfig.getBlockSize());
+            }
+        }
+    }
+
+    /**
+     * Account for a node of this tree that was removed from the cache.
+     */
+    private void nodeRemoved(int seqNumber, boolean evicted) {
+        if (fCachedNodes.remove(seqNumber)) {
+            int blockSize = fConfig.getBlockSize();
+            fCachedBytes.addAndGet(-blockSize);
+            CACHED_BYTES.addAndGet(-blockSize);
+        }
+        if (evicted) {
+            fEvictions.increment();
+        }
+    }
+
+    /**
+     * Get the number of node lookups done by this tree that were served by the
+     * cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getCacheHits() {
+        return fLookups.sum() - fMisses.sum();
+    }
+
+    /**
+     * Get the number of nodes this tree had to read from the file.
+     *
+     * @return The number of cache misses
+     */
+    public long getCacheMisses() {
+        return fMisses.sum();
+    }
+
+    /**
+     * Get the number of nodes of this tree that were evicted from the cache.
+     *
+     * @return The number of evictions
+     */
+    public long getCacheEvictions() {
+        return fEvictions.sum();
+    }
+
+    /**
+     * Get the size occupied by the nodes of this tree in the cache.
+     *
+     * @return The size in bytes
+     */
+    public long getCachedBytes() {
+        return fCachedBytes.get();
+    }
+
     /**
      * Get the output file channel, used for writing.
      *
@@ -269,6 +543,19 @@ public class HT_IO {
         } catch (IOException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
+        if (fIsOpen) {
+            fIsOpen = false;
+            /* The mappings are released when they are garbage-collected */
+            fMappings = null;
+            LOGGER.info(() -> "[HtIo:CacheStats] file=" + fConfig.getStateFile().getName() + //$NON-NLS-1$
+                    ", hits=" + getCacheHits() + ", misses=" + getCacheMisses() + //$NON-NLS-1$ //$NON-NLS-2$
+                    ", evictions=" + getCacheEvictions() + ", cachedBytes=" + getCachedBytes()); //$NON-NLS-1$ //$NON-NLS-2$
+            /* The nodes of a closed file will never be read again */
+            for (Integer seqNumber : fCachedNodes) {
+                NODE_CACHE.invalidate(new CacheKey(this, seqNumber));
+            }
+            OPEN_TREES.decrementAndGet();
+        }
     }
 
     /**
@@ -297,12 +584,16 @@ public class HT_IO {
      */
     private void seekFCToNodePos(FileChannel fc, int seqNumber)
             throws IOException {
+        fc.position(getNodePosition(seqNumber));
+    }
+
+    private long getNodePosition(int seqNumber) {
         /*
          * Cast to (long) is needed to make sure the result is a long too and
          * doesn't get truncated
          */
-        fc.position(IHistoryTree.TREE_HEADER_SIZE
-                + ((long) seqNumber) * fConfig.getBlockSize());
+        return IHistoryTree.TREE_HEADER_SIZE
+                + ((long) seqNumber) * fConfig.getBlockSize();
     }
 
 }
@@ -19,14 +19,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
@@ -35,6 +41,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 
 /**
  * History Tree backend for storing a state history. This is the basic version
@@ -106,7 +113,7 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
             int maxChildren) throws IOException {
         fSsid = ssid;
         final HTConfig conf = new HTConfig(newStateFile, blockSize, maxChildren,
-                providerVersion, startTime);
+                providerVersion, startTime, true);
         fSht = initializeSHT(conf);
     }
 
@@ -309,6 +316,47 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         }
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution) throws TimeRangeException, StateSystemDisposedException {
+        SampledTimeRange range = new SampledTimeRange(start, end, resolution)
+                .clamp(getStartTime(), getEndTime());
+        if (range == null || quarks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        BitSet quarkSet = new BitSet();
+        quarks.forEach(quarkSet::set);
+
+        /*
+         * Walk down the tree once, reading each node intersecting the range
+         * only once. Nodes are read lazily, as the intervals are consumed.
+         */
+        return () -> new AbstractIterator<@NonNull ITmfStateInterval>() {
+            private final Deque<Integer> fQueue = new LinkedList<>(Collections.singleton(getSHT().getRootNode().getSequenceNumber()));
+            private Iterator<HTInterval> fCurrent = Collections.emptyIterator();
+
+            @Override
+            protected @Nullable ITmfStateInterval computeNext() {
+                while (!fCurrent.hasNext()) {
+                    if (fQueue.isEmpty()) {
+                        return endOfData();
+                    }
+                    HTNode currentNode;
+                    try {
+                        currentNode = getSHT().readNode(fQueue.pop());
+                    } catch (ClosedChannelException e) {
+                        throw new IllegalStateException(new StateSystemDisposedException(e));
+                    }
+                    if (currentNode.getNodeType() == HTNode.NodeType.CORE) {
+                        fQueue.addAll(((ParentNode) currentNode).selectNextChildren(range));
+                    }
+                    fCurrent = currentNode.getMatchingIntervals(quarkSet, range).iterator();
+                }
+                return fCurrent.next();
+            }
+        };
+    }
+
     private void checkValidTime(long t) {
         long startTime = getStartTime();
         long endTime = getEndTime();
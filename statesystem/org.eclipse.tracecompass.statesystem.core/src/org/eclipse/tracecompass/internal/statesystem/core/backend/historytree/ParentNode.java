@@ -11,6 +11,7 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.util.Collection;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 
 /**
@@ -93,4 +94,16 @@ public abstract class ParentNode extends HTNode {
      */
     public abstract @NonNull Collection<@NonNull Integer> selectNextChildren(long t);
 
+    /**
+     * Select the sequence numbers for the children of the current node whose
+     * time range contains at least one of the timestamps sampled by the given
+     * range. Used to move down the tree for 2D queries.
+     *
+     * @param range
+     *            The sampled time range of the query
+     * @return Collection of sequence numbers of the child nodes that intersect
+     *         the range, non-null empty collection if none do
+     */
+    public abstract @NonNull Collection<@NonNull Integer> selectNextChildren(@NonNull SampledTimeRange range);
+
 }
@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * History Tree backend that splits the attributes between several history
+ * trees, or shards, each one being built by its own thread. The attributes are
+ * assigned to the shards by quark, so that the insertion work is evenly spread
+ * over the threads, whatever the structure of the attribute tree is.
+ *
+ * The first shard is stored in the given state file, which also holds the
+ * attribute tree at the end. The other shards are stored in files next to it,
+ * see {@link #getShardFile}.
+ */
+public class ShardedHistoryTreeBackend implements IStateHistoryBackend {
+
+    private static final String SHARD_SUFFIX = ".shard"; //$NON-NLS-1$
+
+    /*
+     * Closes the shards at the same time, the threads mostly wait for the
+     * shard threads. They stop when there is nothing to close.
+     */
+    private static final ThreadPoolExecutor CLOSING_EXECUTOR;
+    static {
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        CLOSING_EXECUTOR = new ThreadPoolExecutor(nbThreads, nbThreads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "ShardedHistoryTreeBackend closing"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        CLOSING_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final @NonNull String fSsid;
+    private final List<IStateHistoryBackend> fShards;
+
+    /**
+     * Threaded history tree that only holds some of the attributes. It does
+     * not look for the intervals of the other attributes when they are missing
+     * from its tree. It can be queried after its own end time, which is
+     * earlier than the end time of the history when its attributes did not
+     * change lately.
+     */
+    private static final class Shard extends ThreadedHistoryTreeBackend {
+
+        private final int fIndex;
+        private final int fNbShards;
+
+        public Shard(@NonNull String ssid, File newStateFile, int providerVersion, long startTime,
+                int queueSize, int blockSize, int maxChildren, int index, int nbShards) throws IOException {
+            super(ssid, newStateFile, providerVersion, startTime, queueSize, blockSize, maxChildren);
+            fIndex = index;
+            fNbShards = nbShards;
+        }
+
+        @Override
+        public void doQuery(List<ITmfStateInterval> currentStateInfo, long t)
+                throws TimeRangeException, StateSystemDisposedException {
+            if (t <= getEndTime()) {
+                super.doQuery(currentStateInfo, t);
+                return;
+            }
+            if (isFinishedBuilding()) {
+                return;
+            }
+            /*
+             * The end time is updated after the insertion of an interval, so
+             * an interval for t may already be in the queue.
+             */
+            for (int i = fIndex; i < currentStateInfo.size(); i += fNbShards) {
+                if (currentStateInfo.get(i) == null) {
+                    currentStateInfo.set(i, searchQueue(t, i));
+                }
+            }
+        }
+
+        @Override
+        public ITmfStateInterval doSingularQuery(long t, int attributeQuark)
+                throws TimeRangeException, StateSystemDisposedException {
+            if (getShardIndex(attributeQuark, fNbShards) != fIndex) {
+                return null;
+            }
+            if (t > getEndTime()) {
+                /* Same as in doQuery */
+                return (isFinishedBuilding() ? null : searchQueue(t, attributeQuark));
+            }
+            return super.doSingularQuery(t, attributeQuark);
+        }
+    }
+
+    /**
+     * New state history constructor
+     *
+     * @param ssid
+     *            The state system's id
+     * @param newStateFile
+     *            The name of the history file of the first shard. Should end
+     *            in ".ht"
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest timestamp stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue of each shard. 2000 -
+     *            10000 usually works well
+     * @param nbShards
+     *            The number of shards, which is also the number of threads
+     *            building the history
+     * @param blockSize
+     *            The size of the blocks in the files
+     * @param maxChildren
+     *            The maximum number of children allowed for each core node
+     * @throws IOException
+     *             If there was a problem opening the history files for writing
+     */
+    public ShardedHistoryTreeBackend(@NonNull String ssid, File newStateFile, int providerVersion,
+            long startTime, int queueSize, int nbShards, int blockSize, int maxChildren) throws IOException {
+        if (nbShards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + nbShards); //$NON-NLS-1$
+        }
+        fSsid = ssid;
+        fShards = new ArrayList<>(nbShards);
+        try {
+            for (int i = 0; i < nbShards; i++) {
+                fShards.add(new Shard(ssid, getShardFile(newStateFile, i), providerVersion, startTime,
+                        queueSize, blockSize, maxChildren, i, nbShards));
+            }
+        } catch (IOException e) {
+            fShards.forEach(IStateHistoryBackend::dispose);
+            throw e;
+        }
+        /* Delete the extra shards of a previous history, if any */
+        File staleShard = getShardFile(newStateFile, nbShards);
+        for (int i = nbShards + 1; staleShard.exists(); i++) {
+            staleShard.delete();
+            staleShard = getShardFile(newStateFile, i);
+        }
+    }
+
+    /**
+     * New state history constructor. This version provides default values for
+     * blockSize and maxChildren.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param newStateFile
+     *            The name of the history file of the first shard. Should end
+     *            in ".ht"
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest timestamp stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue of each shard. 2000 -
+     *            10000 usually works well
+     * @param nbShards
+     *            The number of shards, which is also the number of threads
+     *            building the history
+     * @throws IOException
+     *             If there was a problem opening the history files for writing
+     */
+    public ShardedHistoryTreeBackend(@NonNull String ssid, File newStateFile, int providerVersion,
+            long startTime, int queueSize, int nbShards) throws IOException {
+        this(ssid, newStateFile, providerVersion, startTime, queueSize, nbShards, 64 * 1024, 50);
+    }
+
+    /**
+     * Existing state history constructor. The number of shards is found from
+     * the files present on disk.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param existingStateFile
+     *            Filename/location of the first shard of the history we want
+     *            to load
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @throws IOException
+     *             If we can't read one of the files, if they don't exist, are
+     *             not recognized, or if their version does not match the
+     *             expected providerVersion.
+     */
+    public ShardedHistoryTreeBackend(@NonNull String ssid, @NonNull File existingStateFile, int providerVersion)
+            throws IOException {
+        fSsid = ssid;
+        fShards = new ArrayList<>();
+        try {
+            File shardFile = existingStateFile;
+            while (fShards.isEmpty() || shardFile.exists()) {
+                fShards.add(new HistoryTreeBackend(ssid, shardFile, providerVersion));
+                shardFile = getShardFile(existingStateFile, fShards.size());
+            }
+        } catch (IOException e) {
+            fShards.forEach(IStateHistoryBackend::dispose);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the file in which a shard is stored.
+     *
+     * @param stateFile
+     *            The state file of the history, which stores the first shard
+     * @param index
+     *            The index of the shard
+     * @return The file of the shard
+     */
+    public static File getShardFile(File stateFile, int index) {
+        if (index == 0) {
+            return stateFile;
+        }
+        return new File(stateFile.getPath() + SHARD_SUFFIX + index);
+    }
+
+    private static int getShardIndex(int quark, int nbShards) {
+        return quark % nbShards;
+    }
+
+    private IStateHistoryBackend getShard(int quark) {
+        return fShards.get(getShardIndex(quark, fShards.size()));
+    }
+
+    /**
+     * Get the number of shards of this history
+     *
+     * @return The number of shards
+     */
+    public int getNbShards() {
+        return fShards.size();
+    }
+
+    @Override
+    public String getSSID() {
+        return fSsid;
+    }
+
+    @Override
+    public long getStartTime() {
+        return fShards.get(0).getStartTime();
+    }
+
+    @Override
+    public long getEndTime() {
+        /* Shards whose attributes did not change lately end earlier */
+        long endTime = Long.MIN_VALUE;
+        for (IStateHistoryBackend shard : fShards) {
+            endTime = Math.max(endTime, shard.getEndTime());
+        }
+        return endTime;
+    }
+
+    @Override
+    public void insertPastState(long stateStartTime, long stateEndTime,
+            int quark, ITmfStateValue value) throws TimeRangeException {
+        getShard(quark).insertPastState(stateStartTime, stateEndTime, quark, value);
+    }
+
+    @Override
+    public void finishedBuilding(long endTime) throws TimeRangeException {
+        /*
+         * Closing a shard waits for its thread to write its last nodes, so
+         * close them all at the same time.
+         */
+        List<CompletableFuture<Void>> closing = new ArrayList<>(fShards.size());
+        RuntimeException failure = null;
+        try {
+            for (int i = 1; i < fShards.size(); i++) {
+                IStateHistoryBackend shard = fShards.get(i);
+                closing.add(CompletableFuture.runAsync(() -> shard.finishedBuilding(endTime), CLOSING_EXECUTOR));
+            }
+            fShards.get(0).finishedBuilding(endTime);
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            /* Wait for every shard, even if one of them failed */
+            for (CompletableFuture<Void> future : closing) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    RuntimeException shardFailure = (cause instanceof RuntimeException ? (RuntimeException) cause : e);
+                    if (failure == null) {
+                        failure = shardFailure;
+                    } else {
+                        failure.addSuppressed(shardFailure);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public FileInputStream supplyAttributeTreeReader() {
+        return fShards.get(0).supplyAttributeTreeReader();
+    }
+
+    @Override
+    public File supplyAttributeTreeWriterFile() {
+        return fShards.get(0).supplyAttributeTreeWriterFile();
+    }
+
+    @Override
+    public long supplyAttributeTreeWriterFilePosition() {
+        return fShards.get(0).supplyAttributeTreeWriterFilePosition();
+    }
+
+    @Override
+    public void removeFiles() {
+        fShards.forEach(IStateHistoryBackend::removeFiles);
+    }
+
+    @Override
+    public void dispose() {
+        fShards.forEach(IStateHistoryBackend::dispose);
+    }
+
+    @Override
+    public void doQuery(List<ITmfStateInterval> currentStateInfo, long t)
+            throws TimeRangeException, StateSystemDisposedException {
+        checkValidTime(t);
+        for (IStateHistoryBackend shard : fShards) {
+            shard.doQuery(currentStateInfo, t);
+        }
+    }
+
+    @Override
+    public ITmfStateInterval doSingularQuery(long t, int attributeQuark)
+            throws TimeRangeException, StateSystemDisposedException {
+        checkValidTime(t);
+        return getShard(attributeQuark).doSingularQuery(t, attributeQuark);
+    }
+
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution) throws TimeRangeException, StateSystemDisposedException {
+        int nbShards = fShards.size();
+        List<Iterable<@NonNull ITmfStateInterval>> results = new ArrayList<>(nbShards);
+        for (int i = 0; i < nbShards; i++) {
+            final int index = i;
+            Collection<@NonNull Integer> shardQuarks = quarks.stream()
+                    .filter(quark -> getShardIndex(quark, nbShards) == index)
+                    .collect(Collectors.toList());
+            if (!shardQuarks.isEmpty()) {
+                results.add(fShards.get(i).query2D(shardQuarks, start, end, resolution));
+            }
+        }
+        return Iterables.concat(results);
+    }
+
+    private void checkValidTime(long t) {
+        long startTime = getStartTime();
+        long endTime = getEndTime();
+        if (t < startTime || t > endTime) {
+            throw new TimeRangeException(String.format("%s Time:%d, Start:%d, End:%d", //$NON-NLS-1$
+                    fSsid, t, startTime, endTime));
+        }
+    }
+
+    /**
+     * Return the total size of the history files
+     *
+     * @return The current size of the history files in bytes
+     */
+    public long getFileSize() {
+        long size = 0;
+        for (IStateHistoryBackend shard : fShards) {
+            size += ((HistoryTreeBackend) shard).getFileSize();
+        }
+        return size;
+    }
+
+}
@@ -16,11 +16,13 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -33,7 +35,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  *
  * @author Alexandre Montplaisir
  */
-public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
+public class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         implements Runnable {
 
     private static final int CHUNK_SIZE = 127;
@@ -43,7 +45,7 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
      * The backend tracks its end time separately from the tree, to take into
      * consideration intervals in the queue.
      */
-    private long fEndTime;
+    private volatile long fEndTime;
 
     /**
      * New state history constructor
@@ -256,6 +258,19 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         }
     }
 
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution) throws TimeRangeException, StateSystemDisposedException {
+        if (isFinishedBuilding()) {
+            return super.query2D(quarks, start, end, resolution);
+        }
+        /*
+         * Intervals can move from the queue to the tree while we walk it, so
+         * fall back to singular queries, which look at both.
+         */
+        return new SampledTimeRange(start, end, resolution).queryEachAttribute(this, quarks);
+    }
+
     @Override
     public ITmfStateInterval doSingularQuery(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException {
@@ -266,14 +281,11 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
 
         /*
          * We couldn't find the interval in the history tree. It's possible that
-         * it is currently in the intervalQueue. Look for it there. Note that
-         * BufferedBlockingQueue's iterator() is thread-safe (no need to lock
-         * the queue).
+         * it is currently in the intervalQueue. Look for it there.
          */
-        for (ITmfStateInterval interval : intervalQueue) {
-            if (interval.getAttribute() == attributeQuark && interval.intersects(t)) {
-                return interval;
-            }
+        ret = searchQueue(t, attributeQuark);
+        if (ret != null) {
+            return ret;
         }
 
         /*
@@ -288,4 +300,24 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         return super.doSingularQuery(t, attributeQuark);
     }
 
+    /**
+     * Look for an interval in the insertion queue only. Note that
+     * BufferedBlockingQueue's iterator() is thread-safe (no need to lock the
+     * queue).
+     *
+     * @param t
+     *            The timestamp of the interval
+     * @param attributeQuark
+     *            The quark of the attribute
+     * @return The queued interval, or null if it is not in the queue
+     */
+    protected ITmfStateInterval searchQueue(long t, int attributeQuark) {
+        for (ITmfStateInterval interval : intervalQueue) {
+            if (interval.getAttribute() == attributeQuark && interval.intersects(t)) {
+                return interval;
+            }
+        }
+        return null;
+    }
+
 }
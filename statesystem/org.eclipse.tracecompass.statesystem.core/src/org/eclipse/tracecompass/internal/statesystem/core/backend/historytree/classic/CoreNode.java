@@ -14,11 +14,15 @@
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.classic;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ParentNode;
@@ -47,7 +51,8 @@ public final class CoreNode extends ParentNode {
 
     /**
      * Lock used to gate the accesses to the children arrays. Meant to be a
-     * different lock from the one in {@link HTNode}.
+     * different lock from the one in {@link HTNode}. Like that one, it is only
+     * taken for reading while the node is not on disk.
      */
     private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(false);
 
@@ -129,41 +134,45 @@ public final class CoreNode extends ParentNode {
 
     @Override
     public int getNbChildren() {
-        rwl.readLock().lock();
+        Lock lock = getReadLock(rwl);
+        lock.lock();
         try {
             return nbChildren;
         } finally {
-            rwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
     @Override
     public int getChild(int index) {
-        rwl.readLock().lock();
+        Lock lock = getReadLock(rwl);
+        lock.lock();
         try {
             return children[index];
         } finally {
-            rwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
     @Override
     public int getLatestChild() {
-        rwl.readLock().lock();
+        Lock lock = getReadLock(rwl);
+        lock.lock();
         try {
             return children[nbChildren - 1];
         } finally {
-            rwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
     @Override
     public long getChildStart(int index) {
-        rwl.readLock().lock();
+        Lock lock = getReadLock(rwl);
+        lock.lock();
         try {
             return childStart[index];
         } finally {
-            rwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -174,11 +183,12 @@ public final class CoreNode extends ParentNode {
      *         there is no extension node.
      */
     public int getExtensionSequenceNumber() {
-        rwl.readLock().lock();
+        Lock lock = getReadLock(rwl);
+        lock.lock();
         try {
             return extension;
         } finally {
-            rwl.readLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -204,7 +214,8 @@ public final class CoreNode extends ParentNode {
         if (t < getNodeStart() || (isOnDisk() && t > getNodeEnd())) {
             throw new TimeRangeException("Requesting children outside the node's range: " + t); //$NON-NLS-1$
         }
-        rwl.readLock().lock();
+        Lock lock = getReadLock(rwl);
+        lock.lock();
         try {
             int potentialNextSeqNb = -1;
             for (int i = 0; i < nbChildren; i++) {
@@ -220,7 +231,31 @@ public final class CoreNode extends ParentNode {
             }
             return Collections.singleton(potentialNextSeqNb);
         } finally {
-            rwl.readLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Integer> selectNextChildren(SampledTimeRange range) {
+        Lock lock = getReadLock(rwl);
+        lock.lock();
+        try {
+            List<Integer> next = new ArrayList<>();
+            for (int i = 0; i < nbChildren; i++) {
+                long childEnd;
+                if (i + 1 < nbChildren) {
+                    childEnd = childStart[i + 1] - 1;
+                } else {
+                    /* The latest child may still be growing */
+                    childEnd = isOnDisk() ? getNodeEnd() : Long.MAX_VALUE;
+                }
+                if (range.intersects(childStart[i], childEnd)) {
+                    next.add(children[i]);
+                }
+            }
+            return next;
+        } finally {
+            lock.unlock();
         }
     }
 
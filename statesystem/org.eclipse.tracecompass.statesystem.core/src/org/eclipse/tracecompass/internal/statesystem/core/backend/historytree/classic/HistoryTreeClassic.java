@@ -52,8 +52,17 @@ public class HistoryTreeClassic implements IHistoryTree {
      */
     public static final int HISTORY_FILE_MAGIC_NUMBER = 0x05FFA900;
 
-    /** File format version. Increment when breaking compatibility. */
-    private static final int FILE_VERSION = 7;
+    /**
+     * File format version. Increment when breaking compatibility. Version 8
+     * stores the intervals in the compact layout, see {@link HTConfig#isCompact}.
+     */
+    private static final int FILE_VERSION = 8;
+
+    /**
+     * Previous file format version, with fixed-size intervals, which can still
+     * be read and written.
+     */
+    private static final int FIXED_INTERVALS_FILE_VERSION = 7;
 
     private static final IHTNodeFactory CLASSIC_NODE_FACTORY = new IHTNodeFactory() {
 
@@ -147,6 +156,7 @@ public class HistoryTreeClassic implements IHistoryTree {
         int rootNodeSeqNb, res;
         int bs, maxc;
         long startTime;
+        boolean compact;
 
         /* Java I/O mumbo jumbo... */
         if (!existingStateFile.exists()) {
@@ -180,7 +190,11 @@ public class HistoryTreeClassic implements IHistoryTree {
             }
 
             res = buffer.getInt(); /* File format version number */
-            if (res != FILE_VERSION) {
+            if (res == FILE_VERSION) {
+                compact = true;
+            } else if (res == FIXED_INTERVALS_FILE_VERSION) {
+                compact = false;
+            } else {
                 throw new IOException("Mismatching History Tree file format versions"); //$NON-NLS-1$
             }
 
@@ -204,7 +218,7 @@ public class HistoryTreeClassic implements IHistoryTree {
             rootNodeSeqNb = buffer.getInt();
             startTime = buffer.getLong();
 
-            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime);
+            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime, compact);
         }
 
         /*
@@ -213,6 +227,8 @@ public class HistoryTreeClassic implements IHistoryTree {
          * the SHT otherwise?
          */
         fTreeIO = new HT_IO(fConfig, false, CLASSIC_NODE_FACTORY);
+        /* The file is complete, it can be read through a memory mapping */
+        fTreeIO.mapNodes(fNodeCount);
 
         fLatestBranch = buildLatestBranch(rootNodeSeqNb);
         fTreeEnd = getRootNode().getNodeEnd();
@@ -281,7 +297,7 @@ public class HistoryTreeClassic implements IHistoryTree {
 
                 buffer.putInt(HISTORY_FILE_MAGIC_NUMBER);
 
-                buffer.putInt(FILE_VERSION);
+                buffer.putInt(fConfig.isCompact() ? FILE_VERSION : FIXED_INTERVALS_FILE_VERSION);
                 buffer.putInt(fConfig.getProviderVersion());
 
                 buffer.putInt(fConfig.getBlockSize());
@@ -307,6 +323,9 @@ public class HistoryTreeClassic implements IHistoryTree {
                  */
                 throw new RuntimeException("State system write error"); //$NON-NLS-1$
             }
+
+            /* All the nodes are on disk now, they will not change anymore */
+            fTreeIO.mapNodes(fNodeCount);
         }
     }
 
@@ -450,7 +469,7 @@ public class HistoryTreeClassic implements IHistoryTree {
         HTNode targetNode = fLatestBranch.get(indexOfNode);
 
         /* Verify if there is enough room in this node to store this interval */
-        if (interval.getSizeOnDisk() > targetNode.getNodeFreeSpace()) {
+        if (targetNode.getSizeInNode(interval) > targetNode.getNodeFreeSpace()) {
             /* Nope, not enough room. Insert in a new sibling instead. */
             addSiblingNode(indexOfNode);
             tryInsertAtNode(interval, fLatestBranch.size() - 1);
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.statesystem.core;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -433,4 +434,61 @@ public interface ITmfStateSystem {
      */
     @NonNull ITmfStateInterval querySingleState(long t, int attributeQuark)
             throws StateSystemDisposedException;
+
+    /**
+     * Bulk query method, returning all the intervals of the given attributes
+     * that intersect the time range [start, end]. The history is walked only
+     * once for all the attributes, so this should be preferred to calling
+     * querySingleState() in a loop over attributes and timestamps.
+     *
+     * The part of the time range that is outside of the history is ignored.
+     *
+     * @param quarks
+     *            The attributes to query
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The intervals, in no particular order. They are retrieved lazily
+     *         from the history as the iterable is consumed.
+     * @throws TimeRangeException
+     *             If end < start
+     * @throws IndexOutOfBoundsException
+     *             If one of the attribute quarks is out of range
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 2.2
+     */
+    @NonNull Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end) throws StateSystemDisposedException;
+
+    /**
+     * Bulk query method, returning the intervals of the given attributes that
+     * contain at least one of the timestamps <code>start, start + resolution,
+     * start + 2 * resolution, ...</code> up to <code>end</code>. This can be
+     * used to populate views, where it is useless to have more than one
+     * interval per pixel.
+     *
+     * The part of the time range that is outside of the history is ignored.
+     *
+     * @param quarks
+     *            The attributes to query
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @param resolution
+     *            The step between two sampled timestamps
+     * @return The intervals, in no particular order. They are retrieved lazily
+     *         from the history as the iterable is consumed.
+     * @throws TimeRangeException
+     *             If end < start, or if the resolution isn't greater than zero
+     * @throws IndexOutOfBoundsException
+     *             If one of the attribute quarks is out of range
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 2.2
+     */
+    @NonNull Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution) throws StateSystemDisposedException;
 }
\ No newline at end of file
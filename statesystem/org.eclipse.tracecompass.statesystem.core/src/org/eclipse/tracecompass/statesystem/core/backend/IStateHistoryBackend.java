@@ -14,10 +14,12 @@ package org.eclipse.tracecompass.statesystem.core.backend;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.SampledTimeRange;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -181,4 +183,38 @@ public interface IStateHistoryBackend {
     ITmfStateInterval doSingularQuery(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException;
 
+    /**
+     * Bulk query method, returning the intervals of the given attributes that
+     * contain at least one of the timestamps <code>start, start + resolution,
+     * start + 2 * resolution, ...</code> up to <code>end</code> (inclusively).
+     * Parts of the range outside of this backend's start and end times are
+     * ignored.
+     *
+     * The default implementation runs singular queries for each attribute.
+     * Backends that can find all the intervals in a single pass should
+     * override it.
+     *
+     * @param quarks
+     *            The attributes to query
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @param resolution
+     *            The step between two sampled timestamps. Use 1 to get all the
+     *            intervals intersecting [start, end].
+     * @return The intervals, in no particular order. The returned iterable may
+     *         be lazily evaluated.
+     * @throws TimeRangeException
+     *             If end < start, or if the resolution is not greater than 0
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed while a request is ongoing.
+     * @since 2.2
+     */
+    default Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks,
+            long start, long end, long resolution)
+            throws TimeRangeException, StateSystemDisposedException {
+        return new SampledTimeRange(start, end, resolution).queryEachAttribute(this, quarks);
+    }
+
 }
@@ -19,6 +19,7 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ShardedHistoryTreeBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
 
 /**
@@ -94,6 +95,62 @@ public final class StateHistoryBackendFactory {
         return new HistoryTreeBackend(ssid, stateFile, providerVersion, startTime);
     }
 
+    /**
+     * Create a new backend using several History Trees built in parallel. The
+     * attributes are split between the trees, each one being built by its own
+     * thread, so that building the history can use several cores.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            The filename/location where to store the state history (Should
+     *            end in .ht). The other trees are stored in files next to it.
+     * @param providerVersion
+     *            Version of of the state provider. We will only try to reopen
+     *            existing files if this version matches the one in the
+     *            framework.
+     * @param startTime
+     *            The earliest time stamp that will be stored in the history
+     * @param queueSize
+     *            The size of the interval insertion queue of each tree. 2000 -
+     *            10000 usually works well.
+     * @param nbTrees
+     *            The number of history trees to build in parallel
+     * @return The state system backend
+     * @throws IOException
+     *             Thrown if we can't create the files for some reason
+     * @since 2.2
+     */
+    public static IStateHistoryBackend createShardedHistoryTreeBackendNewFile(String ssid,
+            File stateFile, int providerVersion, long startTime, int queueSize, int nbTrees) throws IOException {
+        return new ShardedHistoryTreeBackend(ssid, stateFile, providerVersion, startTime, queueSize, nbTrees);
+    }
+
+    /**
+     * Open an existing history made of several History Trees, which was
+     * created with
+     * {@link #createShardedHistoryTreeBackendNewFile(String, File, int, long, int, int)}.
+     * If the files cannot be found or recognized, an IOException will be
+     * thrown.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            Filename/location of the history we want to load
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @return The state system backend
+     * @throws IOException
+     *             If we can't read the files, if they don't exist, are not
+     *             recognized, or if the version of the files does not match
+     *             the expected providerVersion.
+     * @since 2.2
+     */
+    public static IStateHistoryBackend createShardedHistoryTreeBackendExistingFile(String ssid, File stateFile,
+            int providerVersion) throws IOException {
+        return new ShardedHistoryTreeBackend(ssid, stateFile, providerVersion);
+    }
+
     /**
      * Create a new History Tree backend, but attempt to open an existing file
      * on disk. If the file cannot be found or recognized, an IOException will
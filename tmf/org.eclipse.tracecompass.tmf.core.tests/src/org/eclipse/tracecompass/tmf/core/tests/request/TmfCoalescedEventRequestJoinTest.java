@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test suite for the requests joining a running TmfCoalescedEventRequest.
+ */
+@SuppressWarnings("javadoc")
+public class TmfCoalescedEventRequestJoinTest {
+
+    @Rule
+    public TestRule globalTimeout = new Timeout(20, TimeUnit.SECONDS);
+
+    private static final int NB_EVENTS = 10000;
+    private static final int GATE_RANK = 4000;
+    /** The first event of the requests sent after the gate */
+    private static final int AHEAD_RANK = 5000;
+
+    private SyntheticTrace fTrace;
+
+    /**
+     * A trace of synthetic events. The first read stops at a given rank until
+     * the gate opens.
+     */
+    private static class SyntheticTrace extends TmfTraceStub {
+
+        private final CountDownLatch fReached = new CountDownLatch(1);
+        private final CountDownLatch fGate = new CountDownLatch(1);
+        private final AtomicBoolean fGateUsed = new AtomicBoolean();
+        private final AtomicInteger fNbArmed = new AtomicInteger();
+        private final AtomicInteger fNbParsed = new AtomicInteger();
+
+        public SyntheticTrace() {
+            super();
+            init("synthetic", ITmfEvent.class);
+        }
+
+        @Override
+        public ITmfContext armRequest(ITmfEventRequest request) {
+            fNbArmed.incrementAndGet();
+            return new TmfContext(new TmfLongLocation(request.getIndex()), request.getIndex());
+        }
+
+        @Override
+        public ITmfEvent getNext(ITmfContext context) {
+            long rank = context.getRank();
+            if (rank == GATE_RANK && fGateUsed.compareAndSet(false, true)) {
+                fReached.countDown();
+                try {
+                    fGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (rank >= NB_EVENTS) {
+                return null;
+            }
+            fNbParsed.incrementAndGet();
+            context.increaseRank();
+            return new TmfEvent(this, rank, TmfTimestamp.fromNanos(rank), null, null);
+        }
+    }
+
+    /**
+     * A request recording the ranks of the events it receives
+     */
+    private static class RecordingRequest extends TmfEventRequest {
+
+        private final List<Long> fRanks = new ArrayList<>();
+        private final boolean fOrderIndependent;
+
+        public RecordingRequest(boolean orderIndependent) {
+            this(orderIndependent, ExecutionType.FOREGROUND, 0);
+        }
+
+        public RecordingRequest(boolean orderIndependent, ExecutionType type, long startTime) {
+            super(ITmfEvent.class, new TmfTimeRange(TmfTimestamp.fromNanos(startTime), TmfTimestamp.BIG_CRUNCH),
+                    0, ITmfEventRequest.ALL_DATA, type);
+            fOrderIndependent = orderIndependent;
+        }
+
+        @Override
+        public boolean isOrderIndependent() {
+            return fOrderIndependent;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            synchronized (fRanks) {
+                fRanks.add(event.getRank());
+            }
+        }
+
+        public List<Long> getRanks() {
+            synchronized (fRanks) {
+                return new ArrayList<>(fRanks);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        fTrace = new SyntheticTrace();
+    }
+
+    @After
+    public void tearDown() {
+        fTrace.dispose();
+    }
+
+    /**
+     * Start a coalesced request, and wait until it stops at the gate
+     */
+    private RecordingRequest startFirstRequest() throws InterruptedException {
+        RecordingRequest request = new RecordingRequest(false);
+        fTrace.notifyPendingRequest(true);
+        fTrace.sendRequest(request);
+        fTrace.notifyPendingRequest(false);
+        fTrace.fReached.await();
+        return request;
+    }
+
+    private static void assertAllRanks(List<Long> ranks, boolean ordered) {
+        assertEquals(NB_EVENTS, ranks.size());
+        boolean[] seen = new boolean[NB_EVENTS];
+        for (int i = 0; i < ranks.size(); i++) {
+            int rank = ranks.get(i).intValue();
+            assertFalse("Duplicate rank " + rank, seen[rank]);
+            seen[rank] = true;
+            if (ordered) {
+                assertEquals(i, rank);
+            }
+        }
+    }
+
+    private static void assertRanksFrom(List<Long> ranks, int first) {
+        assertEquals(NB_EVENTS - first, ranks.size());
+        for (int i = 0; i < ranks.size(); i++) {
+            assertEquals(first + i, ranks.get(i).longValue());
+        }
+    }
+
+    /**
+     * Test that an order independent request whose range is ahead of the
+     * running request joins it
+     */
+    @Test
+    public void testJoin() throws InterruptedException {
+        RecordingRequest first = startFirstRequest();
+
+        RecordingRequest late = new RecordingRequest(true, ExecutionType.FOREGROUND, AHEAD_RANK);
+        fTrace.sendRequest(late);
+        assertTrue(late.isRunning());
+        fTrace.fGate.countDown();
+
+        first.waitForCompletion();
+        late.waitForCompletion();
+        assertFalse(late.isCancelled());
+        assertAllRanks(first.getRanks(), true);
+        assertRanksFrom(late.getRanks(), AHEAD_RANK);
+
+        /* The trace was read once */
+        assertEquals(1, fTrace.fNbArmed.get());
+        assertEquals(NB_EVENTS, fTrace.fNbParsed.get());
+    }
+
+    /**
+     * Test that a request whose range the running request already started to
+     * read does not join it
+     */
+    @Test
+    public void testNoJoinBehind() throws InterruptedException {
+        RecordingRequest first = startFirstRequest();
+
+        RecordingRequest late = new RecordingRequest(true);
+        fTrace.sendRequest(late);
+        fTrace.fGate.countDown();
+
+        first.waitForCompletion();
+        late.waitForCompletion();
+        assertAllRanks(first.getRanks(), true);
+        assertAllRanks(late.getRanks(), true);
+        assertEquals(2, fTrace.fNbArmed.get());
+        assertEquals(2 * NB_EVENTS, fTrace.fNbParsed.get());
+    }
+
+    /**
+     * Test that a request does not join a running request of another
+     * execution type
+     */
+    @Test
+    public void testNoJoinExecType() throws InterruptedException {
+        RecordingRequest first = startFirstRequest();
+
+        RecordingRequest late = new RecordingRequest(true, ExecutionType.BACKGROUND, AHEAD_RANK);
+        fTrace.sendRequest(late);
+        fTrace.fGate.countDown();
+
+        first.waitForCompletion();
+        late.waitForCompletion();
+        assertAllRanks(first.getRanks(), true);
+        assertRanksFrom(late.getRanks(), AHEAD_RANK);
+        assertEquals(2, fTrace.fNbArmed.get());
+    }
+
+    /**
+     * Test that a request needing its events in order does not join the
+     * running request
+     */
+    @Test
+    public void testNoJoinOrdered() throws InterruptedException {
+        RecordingRequest first = startFirstRequest();
+
+        RecordingRequest late = new RecordingRequest(false);
+        fTrace.sendRequest(late);
+        fTrace.fGate.countDown();
+
+        first.waitForCompletion();
+        late.waitForCompletion();
+        assertAllRanks(first.getRanks(), true);
+        assertAllRanks(late.getRanks(), true);
+        assertEquals(2, fTrace.fNbArmed.get());
+        assertEquals(2 * NB_EVENTS, fTrace.fNbParsed.get());
+    }
+
+    /**
+     * Test that cancelling the request that was running does not cancel the
+     * joined one, which still gets all its events
+     */
+    @Test
+    public void testCancelJoined() throws InterruptedException {
+        RecordingRequest first = startFirstRequest();
+
+        RecordingRequest late = new RecordingRequest(true, ExecutionType.FOREGROUND, AHEAD_RANK);
+        fTrace.sendRequest(late);
+        assertTrue(late.isRunning());
+        first.cancel();
+        fTrace.fGate.countDown();
+
+        first.waitForCompletion();
+        late.waitForCompletion();
+        assertTrue(first.isCancelled());
+        assertFalse(late.isCancelled());
+        assertRanksFrom(late.getRanks(), AHEAD_RANK);
+        assertEquals(1, fTrace.fNbArmed.get());
+    }
+}
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestExecutor;
+import org.eclipse.tracecompass.internal.tmf.core.request.TmfRequestScheduler;
+import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test suite for the TmfRequestScheduler class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfRequestSchedulerTest {
+
+    @Rule
+    public TestRule globalTimeout = new Timeout(20, TimeUnit.SECONDS);
+
+    private static final int NB_EVENTS = 1000;
+
+    private final List<TmfEventProvider> fProviders = new ArrayList<>();
+
+    /**
+     * A provider of synthetic events, which waits for a gate before returning
+     * its first event
+     */
+    private static class SyntheticProvider extends TmfEventProvider {
+
+        private final Runnable fGate;
+
+        public SyntheticProvider(String name, Runnable gate) {
+            super(name, ITmfEvent.class);
+            fGate = gate;
+        }
+
+        @Override
+        public ITmfContext armRequest(ITmfEventRequest request) {
+            return new TmfContext(new TmfLongLocation(0L), 0);
+        }
+
+        @Override
+        public ITmfEvent getNext(ITmfContext context) {
+            long rank = context.getRank();
+            if (rank == 0) {
+                fGate.run();
+            }
+            if (rank >= NB_EVENTS) {
+                return null;
+            }
+            context.increaseRank();
+            return new TmfEvent(null, rank, TmfTimestamp.fromNanos(rank), null, null);
+        }
+    }
+
+    /**
+     * A request recording the order in which the requests start
+     */
+    private static class RecordingRequest extends TmfEventRequest {
+
+        private final List<String> fStarted;
+        private final String fName;
+        private int fNbRead = 0;
+
+        public RecordingRequest(String name, ExecutionType type, List<String> started) {
+            super(ITmfEvent.class, 0, ITmfEventRequest.ALL_DATA, type);
+            fName = name;
+            fStarted = started;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            if (fNbRead++ == 0) {
+                fStarted.add(fName);
+            }
+        }
+    }
+
+    private SyntheticProvider createProvider(String name, Runnable gate) {
+        SyntheticProvider provider = new SyntheticProvider(name, gate);
+        fProviders.add(provider);
+        return provider;
+    }
+
+    private static Runnable await(CountDownLatch latch) {
+        return () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static void waitForIdle(TmfRequestScheduler scheduler) throws InterruptedException {
+        while (scheduler.getRunningCount() != 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (TmfEventProvider provider : fProviders) {
+            provider.dispose();
+        }
+        fProviders.clear();
+    }
+
+    /**
+     * Test that the requests of different providers run in parallel: each one
+     * waits for the other before reading its events.
+     */
+    @Test
+    public void testParallelProviders() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(2);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Runnable gate = () -> {
+            try {
+                barrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        RecordingRequest request1 = new RecordingRequest("1", ExecutionType.FOREGROUND, started);
+        RecordingRequest request2 = new RecordingRequest("2", ExecutionType.FOREGROUND, started);
+        SyntheticProvider provider1 = createProvider("provider1", gate);
+        SyntheticProvider provider2 = createProvider("provider2", gate);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(provider1, request1));
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(provider2, request2));
+
+        request1.waitForCompletion();
+        request2.waitForCompletion();
+        waitForIdle(scheduler);
+        assertFalse(request1.isFailed());
+        assertFalse(request2.isFailed());
+        assertEquals(NB_EVENTS, request1.getNbRead());
+        assertEquals(NB_EVENTS, request2.getNbRead());
+        assertEquals(2, scheduler.getCompletedCount(ExecutionType.FOREGROUND));
+        assertEquals(0, scheduler.getQueueDepth(ExecutionType.FOREGROUND));
+    }
+
+    /**
+     * Test that a foreground request queued after a background one runs first
+     */
+    @Test
+    public void testPriority() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        /* Occupy the only slice of the scheduler */
+        RecordingRequest blocker = new RecordingRequest("blocker", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("blocker", await(latch)), blocker));
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+
+        SyntheticProvider provider = createProvider("provider", () -> { });
+        TmfRequestExecutor executor = new TmfRequestExecutor(scheduler);
+        RecordingRequest background = new RecordingRequest("background", ExecutionType.BACKGROUND, started);
+        RecordingRequest foreground = new RecordingRequest("foreground", ExecutionType.FOREGROUND, started);
+        executor.execute(new TmfEventThread(provider, background));
+        executor.execute(new TmfEventThread(provider, foreground));
+        assertEquals(1, scheduler.getQueueDepth(ExecutionType.BACKGROUND));
+        assertEquals(1, scheduler.getQueueDepth(ExecutionType.FOREGROUND));
+
+        latch.countDown();
+        background.waitForCompletion();
+        foreground.waitForCompletion();
+        waitForIdle(scheduler);
+        assertEquals(3, started.size());
+        assertEquals("foreground", started.get(1));
+        assertEquals("background", started.get(2));
+        assertEquals(1, scheduler.getCompletedCount(ExecutionType.BACKGROUND));
+        assertTrue(scheduler.getMeanLatency(ExecutionType.BACKGROUND) >= scheduler.getMeanWaitTime(ExecutionType.BACKGROUND));
+    }
+
+    /**
+     * Test that a background request that waited long enough runs before a
+     * new foreground request
+     */
+    @Test
+    public void testAging() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingRequest blocker = new RecordingRequest("blocker", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("blocker", await(latch)), blocker));
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+
+        SyntheticProvider provider = createProvider("provider", () -> { });
+        TmfRequestExecutor executor = new TmfRequestExecutor(scheduler);
+        RecordingRequest background = new RecordingRequest("background", ExecutionType.BACKGROUND, started);
+        RecordingRequest foreground = new RecordingRequest("foreground", ExecutionType.FOREGROUND, started);
+        executor.execute(new TmfEventThread(provider, background));
+        Thread.sleep(500);
+        executor.execute(new TmfEventThread(provider, foreground));
+
+        latch.countDown();
+        background.waitForCompletion();
+        foreground.waitForCompletion();
+        assertEquals("background", started.get(1));
+        assertEquals("foreground", started.get(2));
+    }
+
+    /**
+     * Test that a request waiting for the request of another provider does
+     * not keep it from running, even when all the slices are taken
+     */
+    @Test
+    public void testBlockedSlice() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        RecordingRequest other = new RecordingRequest("other", ExecutionType.FOREGROUND, started);
+        Runnable gate = () -> {
+            try {
+                other.waitForCompletion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        RecordingRequest waiting = new RecordingRequest("waiting", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("waiting", gate), waiting));
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("other", () -> { }), other));
+
+        waiting.waitForCompletion();
+        assertEquals(NB_EVENTS, other.getNbRead());
+        assertEquals(NB_EVENTS, waiting.getNbRead());
+        assertEquals("other", started.get(0));
+        assertEquals("waiting", started.get(1));
+    }
+
+    /**
+     * Test that a slice that is busy for a long time, rather than waiting,
+     * keeps its place: the request of the other provider only runs after it
+     */
+    @Test
+    public void testBusySlice() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Runnable busy = () -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+            while (System.nanoTime() < end) {
+                /* Busy wait */
+            }
+        };
+
+        RecordingRequest slow = new RecordingRequest("slow", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("slow", busy), slow));
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+        RecordingRequest other = new RecordingRequest("other", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("other", () -> { }), other));
+
+        slow.waitForCompletion();
+        other.waitForCompletion();
+        assertEquals("slow", started.get(0));
+        assertEquals("other", started.get(1));
+    }
+
+    /**
+     * Test that a request whose processing throws an error fails, and that
+     * the scheduler keeps running the other requests
+     */
+    @Test
+    public void testError() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Runnable error = () -> {
+            throw new AssertionError("Provider error");
+        };
+
+        RecordingRequest failing = new RecordingRequest("failing", ExecutionType.FOREGROUND, started);
+        RecordingRequest other = new RecordingRequest("other", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("failing", error), failing));
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("other", () -> { }), other));
+
+        failing.waitForCompletion();
+        assertTrue(failing.isFailed());
+        other.waitForCompletion();
+        waitForIdle(scheduler);
+        assertFalse(other.isFailed());
+        assertEquals(NB_EVENTS, other.getNbRead());
+        assertEquals(0, scheduler.getQueueDepth(ExecutionType.FOREGROUND));
+    }
+
+    /**
+     * Test that the completion listeners get the wait time and latency of
+     * each request
+     */
+    @Test
+    public void testCompletionListener() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Map<ITmfEventRequest, long[]> times = new ConcurrentHashMap<>();
+        scheduler.addCompletionListener((request, waitTime, latency) -> times.put(request, new long[] { waitTime, latency }));
+
+        RecordingRequest blocker = new RecordingRequest("blocker", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("blocker", await(latch)), blocker));
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+        RecordingRequest request = new RecordingRequest("request", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("provider", () -> { }), request));
+        Thread.sleep(100);
+
+        latch.countDown();
+        blocker.waitForCompletion();
+        request.waitForCompletion();
+        waitForIdle(scheduler);
+        long[] blockerTimes = times.get(blocker);
+        long[] requestTimes = times.get(request);
+        assertTrue(blockerTimes[0] <= blockerTimes[1]);
+        assertTrue(requestTimes[0] <= requestTimes[1]);
+        /* The request waited for the blocker to complete */
+        assertTrue(requestTimes[0] >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    /**
+     * Test that stopping an executor cancels its queued requests
+     */
+    @Test
+    public void testStop() throws InterruptedException {
+        TmfRequestScheduler scheduler = new TmfRequestScheduler(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingRequest blocker = new RecordingRequest("blocker", ExecutionType.FOREGROUND, started);
+        new TmfRequestExecutor(scheduler).execute(new TmfEventThread(createProvider("blocker", await(latch)), blocker));
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+
+        SyntheticProvider provider = createProvider("provider", () -> { });
+        TmfRequestExecutor executor = new TmfRequestExecutor(scheduler);
+        RecordingRequest request = new RecordingRequest("request", ExecutionType.FOREGROUND, started);
+        executor.execute(new TmfEventThread(provider, request));
+        executor.stop();
+        assertTrue(executor.isShutdown());
+        assertFalse(executor.isTerminated());
+
+        RecordingRequest rejected = new RecordingRequest("rejected", ExecutionType.FOREGROUND, started);
+        executor.execute(new TmfEventThread(provider, rejected));
+        assertTrue(rejected.isCancelled());
+
+        latch.countDown();
+        request.waitForCompletion();
+        assertTrue(request.isCancelled());
+        assertEquals(0, request.getNbRead());
+        blocker.waitForCompletion();
+        while (!executor.isTerminated()) {
+            Thread.sleep(10);
+        }
+    }
+}
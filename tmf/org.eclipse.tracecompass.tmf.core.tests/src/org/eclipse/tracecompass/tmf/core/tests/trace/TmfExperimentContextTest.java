@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentLocation;
+import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfLocationArray;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.junit.Test;
+
+/**
+ * Test suite for the TmfExperimentContext class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfExperimentContextTest {
+
+    private static final int NB_TRACES = 50;
+
+    private static ITmfEvent createEvent(ITmfTimestamp timestamp) {
+        return new TmfEvent(null, ITmfContext.UNKNOWN_RANK, timestamp, null, null);
+    }
+
+    /**
+     * Find the next trace by scanning all the events, like the experiment did
+     * before the heap
+     */
+    private static int scanNextTrace(TmfExperimentContext context) {
+        int trace = TmfExperimentContext.NO_TRACE;
+        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
+        for (int i = 0; i < context.getNbTraces(); i++) {
+            ITmfEvent event = context.getEvent(i);
+            if (event != null && event.getTimestamp().compareTo(timestamp) < 0) {
+                trace = i;
+                timestamp = event.getTimestamp();
+            }
+        }
+        return trace;
+    }
+
+    @Test
+    public void testNextTraceEmpty() {
+        TmfExperimentContext context = new TmfExperimentContext(NB_TRACES);
+        assertEquals(TmfExperimentContext.NO_TRACE, context.getNextTrace());
+    }
+
+    @Test
+    public void testNextTrace() {
+        TmfExperimentContext context = new TmfExperimentContext(NB_TRACES);
+        Random random = new Random(42);
+        for (int i = 0; i < NB_TRACES; i++) {
+            context.setEvent(i, createEvent(TmfTimestamp.fromNanos(random.nextInt(100))));
+        }
+        /* Consume events, replacing them by later ones or ending the traces */
+        for (int i = 0; i < 10 * NB_TRACES; i++) {
+            int trace = context.getNextTrace();
+            assertEquals(scanNextTrace(context), trace);
+            ITmfEvent event = context.getEvent(trace);
+            if (random.nextInt(10) == 0) {
+                context.setEvent(trace, null);
+            } else {
+                long next = event.getTimestamp().toNanos() + random.nextInt(20);
+                context.setEvent(trace, createEvent(TmfTimestamp.fromNanos(next)));
+            }
+            /* Also move a random trace */
+            int other = random.nextInt(NB_TRACES);
+            context.setEvent(other, random.nextBoolean() ? null : createEvent(TmfTimestamp.fromNanos(random.nextInt(1000))));
+        }
+        while (context.getNextTrace() != TmfExperimentContext.NO_TRACE) {
+            int trace = context.getNextTrace();
+            assertEquals(scanNextTrace(context), trace);
+            context.setEvent(trace, null);
+        }
+        assertEquals(TmfExperimentContext.NO_TRACE, scanNextTrace(context));
+    }
+
+    @Test
+    public void testNextTraceScales() {
+        TmfExperimentContext context = new TmfExperimentContext(3);
+        /* Equal in nanoseconds, but not with the full precision */
+        context.setEvent(0, createEvent(TmfTimestamp.create(1001, -12)));
+        context.setEvent(1, createEvent(TmfTimestamp.create(1000, -12)));
+        context.setEvent(2, createEvent(TmfTimestamp.create(1, -9)));
+        assertEquals(1, context.getNextTrace());
+        context.setEvent(1, null);
+        assertEquals(2, context.getNextTrace());
+        /* Equal timestamps, the lowest trace index comes first */
+        context.setEvent(0, createEvent(TmfTimestamp.create(1000, -12)));
+        assertEquals(0, context.getNextTrace());
+    }
+
+    @Test
+    public void testTraceLocation() {
+        TmfExperimentContext context = new TmfExperimentContext(2);
+        ITmfLocation[] locations = { new TmfLongLocation(1L), new TmfLongLocation(2L) };
+        TmfExperimentLocation location = new TmfExperimentLocation(new TmfLocationArray(locations, new long[] { 1, 2 }));
+        context.setLocation(location);
+        assertSame(location, context.getLocation());
+
+        TmfLongLocation newLocation = new TmfLongLocation(3L);
+        context.setTraceLocation(1, newLocation, 3);
+        ITmfLocation updated = context.getLocation();
+        assertNotSame(location, updated);
+        assertEquals(new TmfExperimentLocation(new TmfLocationArray(location.getLocationInfo(), 1, newLocation, 3)), updated);
+        /* The location is only created again after an update */
+        assertSame(updated, context.getLocation());
+        /* The location of the original experiment location is unchanged */
+        assertEquals(2L, location.getLocationInfo().getRank(1));
+    }
+
+    @Test
+    public void testTraceLocationNotTracked() {
+        TmfExperimentContext context = new TmfExperimentContext(2);
+        context.setTraceLocation(0, new TmfLongLocation(3L), 3);
+        assertEquals(null, context.getLocation());
+    }
+}
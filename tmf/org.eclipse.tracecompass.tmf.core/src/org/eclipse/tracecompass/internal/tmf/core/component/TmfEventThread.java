@@ -14,8 +14,6 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.component;
 
-import java.util.concurrent.CountDownLatch;
-
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
@@ -26,8 +24,11 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 
 /**
- * Provides the core event request processor. It also has support for suspending
- * and resuming a request in a thread-safe manner.
+ * Provides the core event request processor.
+ *
+ * The request can also be processed in time slices with
+ * {@link #runSlice(long)}, the thread returning between the slices so that
+ * other requests can run.
  *
  * @author Francois Chouinard
  * @version 1.0
@@ -58,15 +59,22 @@ public class TmfEventThread implements Runnable {
      */
     private final TmfEventThread  fThread;
 
-    private volatile CountDownLatch fLatch = new CountDownLatch(1);
-
     /**
      * The thread execution state
      */
     private volatile boolean isCompleted = false;
 
-    /** The flag for suspending a thread */
-    private volatile boolean fIsPaused = false;
+    /** The end of the time slice is checked every 64 events */
+    private static final int SLICE_CHECK_MASK = 0x3F;
+
+    /*
+     * The state of the request processing between the time slices
+     */
+    private boolean fIsStarted = false;
+    private ITmfContext fContext;
+    private ITmfEvent fEvent;
+    private int fNbRequested;
+    private int fNbRead;
 
     // ------------------------------------------------------------------------
     // Constructor
@@ -135,14 +143,7 @@ public class TmfEventThread implements Runnable {
      * @return The request execution state
      */
     public boolean isRunning() {
-        return fRequest.isRunning() && !isPaused();
-    }
-
-    /**
-     * @return The request execution state
-     */
-    public boolean isPaused() {
-        return fIsPaused;
+        return fRequest.isRunning();
     }
 
     /**
@@ -158,48 +159,73 @@ public class TmfEventThread implements Runnable {
 
     @Override
     public void run() {
+        runSlice(Long.MAX_VALUE);
+    }
 
-        TmfCoreTracer.traceRequest(fRequest.getRequestId(), "is being serviced by " + fProvider.getName()); //$NON-NLS-1$
-
-        if (fRequest.isCancelled()) {
-            isCompleted = true;
-            return;
+    /**
+     * Process the request for a given time, then return so that another
+     * request can be processed. The next call continues where this one left
+     * off.
+     *
+     * @param sliceTime
+     *            the time to process the request, in nanoseconds
+     * @return true if the request is completed, false if there are events
+     *         left to read
+     */
+    public boolean runSlice(long sliceTime) {
+        if (isCompleted) {
+            return true;
         }
+        long start = System.nanoTime();
 
-        // Extract the generic information
-        fRequest.start();
-        int nbRequested = fRequest.getNbRequested();
-        int nbRead = 0;
+        if (!fIsStarted) {
+            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "is being serviced by " + fProvider.getName()); //$NON-NLS-1$
 
-        // Initialize the execution
-        ITmfContext context = fProvider.armRequest(fRequest);
-        if (context == null) {
-            isCompleted = true;
-            fRequest.cancel();
-            return;
+            if (fRequest.isCancelled()) {
+                isCompleted = true;
+                return true;
+            }
+
+            // Extract the generic information
+            fRequest.start();
+            fNbRequested = fRequest.getNbRequested();
+            fNbRead = 0;
+
+            // Initialize the execution
+            fContext = fProvider.armRequest(fRequest);
+            if (fContext == null) {
+                isCompleted = true;
+                fRequest.cancel();
+                return true;
+            }
+            fIsStarted = true;
         }
+        ITmfContext context = fContext;
 
         try {
-            // Get the ordered events
-            ITmfEvent event = fProvider.getNext(context);
-            TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+            if (fNbRead == 0 && fEvent == null) {
+                // Get the ordered events
+                fEvent = fProvider.getNext(context);
+                TmfCoreTracer.traceRequest(fRequest.getRequestId(), "read first event"); //$NON-NLS-1$
+            }
 
-            while (event != null && !fProvider.isCompleted(fRequest, event, nbRead)) {
+            ITmfEvent event = fEvent;
+            while (event != null && !fProvider.isCompleted(fRequest, event, fNbRead)) {
 
                 TmfCoreTracer.traceEvent(fProvider, fRequest, event);
                 if (fRequest.getDataType().isInstance(event)) {
                     fRequest.handleData(event);
                 }
 
-                // Pause execution if requested
-                while (fIsPaused) {
-                    CountDownLatch latch = fLatch;
-                    latch.await();
-                }
-
                 // To avoid an unnecessary read passed the last event requested
-                if (++nbRead < nbRequested) {
+                if (++fNbRead < fNbRequested) {
                     event = fProvider.getNext(context);
+                    fEvent = event;
+                }
+
+                // Give the hand to the other requests at the end of the slice
+                if ((fNbRead & SLICE_CHECK_MASK) == 0 && System.nanoTime() - start >= sliceTime) {
+                    return false;
                 }
             }
 
@@ -219,6 +245,9 @@ public class TmfEventThread implements Runnable {
 
         // Cleanup
         context.dispose();
+        fContext = null;
+        fEvent = null;
+        return true;
     }
 
     // ------------------------------------------------------------------------
@@ -226,32 +255,31 @@ public class TmfEventThread implements Runnable {
     // ------------------------------------------------------------------------
 
     /**
-     * Suspend the thread
-     */
-    public void suspend() {
-        fIsPaused = true;
-        TmfCoreTracer.traceRequest(fRequest.getRequestId(), "SUSPENDED"); //$NON-NLS-1$
-    }
-
-    /**
-     * Resume the thread
+     * Cancel the request
      */
-    public void resume() {
-        fIsPaused = false;
-
-        CountDownLatch oldLatch = fLatch;
-        fLatch = new CountDownLatch(1);
-        oldLatch.countDown();
-
-        TmfCoreTracer.traceRequest(fRequest.getRequestId(), "RESUMED"); //$NON-NLS-1$
+    public void cancel() {
+        if (!fRequest.isCompleted()) {
+            fRequest.cancel();
+        }
     }
 
     /**
-     * Cancel the request
+     * Fail the request after an error escaped {@link #runSlice(long)}, and
+     * release its context
+     *
+     * @param e
+     *            the cause of the failure
      */
-    public void cancel() {
+    public void fail(Exception e) {
+        isCompleted = true;
         if (!fRequest.isCompleted()) {
-            fRequest.cancel();
+            fRequest.fail(e);
+        }
+        ITmfContext context = fContext;
+        if (context != null) {
+            context.dispose();
         }
+        fContext = null;
+        fEvent = null;
     }
 }
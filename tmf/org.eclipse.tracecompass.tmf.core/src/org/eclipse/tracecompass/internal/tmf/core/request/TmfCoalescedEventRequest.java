@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2017 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,14 +15,17 @@
 package org.eclipse.tracecompass.internal.tmf.core.request;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -53,6 +56,19 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
      */
     private Map<String, Set<ITmfEventRequest>> fRequestsCache = new HashMap<>();
 
+    /**
+     * The requests that joined this one while it was running. The list is
+     * replaced, not modified, under this request's lock, so that the events
+     * are dispatched without holding it.
+     */
+    private List<JoinedRequest> fJoinedRequests = new ArrayList<>();
+
+    /** The index of the next event to dispatch, -1 before the first one */
+    private long fNextIndex = -1;
+
+    /** The timestamp of the last event dispatched */
+    private @Nullable ITmfTimestamp fLastTimestamp = null;
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -146,6 +162,57 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         return false;
     }
 
+    /**
+     * Let a request join this one while it is running. The request receives
+     * the events of its range from the current one on, and completes with
+     * this request.
+     *
+     * The request must handle its events in any order, want all the events
+     * of its range and have the same execution type as this request. This
+     * request must have dispatched its first event, but no event of the range
+     * of the joining request yet, and read to the end of that range. The
+     * joined requests keep this request running until they complete, even if
+     * its sub-requests are all canceled.
+     *
+     * @param request
+     *            The request joining this one
+     * @return true if the request joined, false if it cannot and must be sent
+     *         as a request of its own
+     */
+    public synchronized boolean join(ITmfEventRequest request) {
+        if (!request.isOrderIndependent() ||
+                request.getExecType() != getExecType() ||
+                fNextIndex < 0 || isCompleted() ||
+                request.getDependencyLevel() != getDependencyLevel() ||
+                request.getNbRequested() != ITmfEventRequest.ALL_DATA ||
+                getNbRequested() != ITmfEventRequest.ALL_DATA ||
+                request.getRange().getEndTime().compareTo(fRange.getEndTime()) > 0 ||
+                !isBefore(request)) {
+            return false;
+        }
+        long joinIndex = Math.max(fNextIndex, request.getIndex());
+        List<JoinedRequest> joinedRequests = new ArrayList<>(fJoinedRequests);
+        joinedRequests.add(new JoinedRequest(request, joinIndex));
+        fJoinedRequests = joinedRequests;
+        request.start();
+        if (TmfCoreTracer.isRequestTraced()) {
+            TmfCoreTracer.traceRequest(request.getRequestId(), "JOINED " + getRequestId() + " at index " + joinIndex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return true;
+    }
+
+    /**
+     * Check that no event of the range of a request was dispatched yet, by
+     * rank or by time. Must be called with this request's lock.
+     */
+    private boolean isBefore(ITmfEventRequest request) {
+        if (fNextIndex <= request.getIndex()) {
+            return true;
+        }
+        ITmfTimestamp lastTimestamp = fLastTimestamp;
+        return (lastTimestamp != null && lastTimestamp.compareTo(request.getRange().getStartTime()) < 0);
+    }
+
     private boolean ranksOverlap(ITmfEventRequest request) {
         long start = request.getIndex();
         long end = start + request.getNbRequested();
@@ -241,6 +308,17 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 }
             }
         }
+
+        // dispatch event to the requests that joined after the start
+        List<JoinedRequest> joinedRequests;
+        synchronized (this) {
+            fNextIndex = index + 1;
+            fLastTimestamp = data.getTimestamp();
+            joinedRequests = fJoinedRequests;
+        }
+        for (JoinedRequest joined : joinedRequests) {
+            joined.handleData(data, index);
+        }
     }
 
     @Override
@@ -254,13 +332,23 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
     }
 
     @Override
-    public synchronized void done() {
-        for (ITmfEventRequest request : fRequests) {
-            if (!request.isCompleted()) {
-                request.done();
+    public void done() {
+        List<JoinedRequest> joinedRequests;
+        synchronized (this) {
+            for (ITmfEventRequest request : fRequests) {
+                if (!request.isCompleted()) {
+                    request.done();
+                }
+            }
+            super.done();
+            joinedRequests = takeJoinedRequests();
+        }
+        // Complete the joined requests without holding the lock
+        for (JoinedRequest joined : joinedRequests) {
+            if (!joined.fRequest.isCompleted()) {
+                joined.fRequest.done();
             }
         }
-        super.done();
     }
 
     @Override
@@ -268,6 +356,9 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         for (ITmfEventRequest request : fRequests) {
             request.fail(e);
         }
+        for (JoinedRequest joined : takeJoinedRequests()) {
+            joined.fRequest.fail(e);
+        }
         super.fail(e);
     }
 
@@ -278,9 +369,23 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 request.cancel();
             }
         }
+        for (JoinedRequest joined : takeJoinedRequests()) {
+            if (!joined.fRequest.isCompleted()) {
+                joined.fRequest.cancel();
+            }
+        }
         super.cancel();
     }
 
+    private synchronized List<JoinedRequest> takeJoinedRequests() {
+        if (fJoinedRequests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<JoinedRequest> joinedRequests = fJoinedRequests;
+        fJoinedRequests = new ArrayList<>();
+        return joinedRequests;
+    }
+
     @Override
     public synchronized boolean isCompleted() {
         // Firstly, check if coalescing request is completed
@@ -288,6 +393,13 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
             return true;
         }
 
+        // A request that joined still needs the rest of the events
+        for (JoinedRequest joined : fJoinedRequests) {
+            if (!joined.fRequest.isCompleted()) {
+                return false;
+            }
+        }
+
         // Secondly, check if all sub-requests are finished
         if (fRequests.size() > 0) {
             // If all sub requests are completed the coalesced request is
@@ -311,6 +423,13 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
             return true;
         }
 
+        // A request that joined still needs the rest of the events
+        for (JoinedRequest joined : fJoinedRequests) {
+            if (!joined.fRequest.isCancelled()) {
+                return false;
+            }
+        }
+
         // Secondly, check if all sub-requests are canceled
         if (fRequests.size() > 0) {
             // If all sub requests are canceled the coalesced request is
@@ -328,6 +447,34 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     }
 
+    // ------------------------------------------------------------------------
+    // Helper classes
+    // ------------------------------------------------------------------------
+
+    /**
+     * A request that joined this one while it was running
+     */
+    private static class JoinedRequest {
+
+        private final ITmfEventRequest fRequest;
+        private final long fJoinIndex;
+
+        public JoinedRequest(ITmfEventRequest request, long joinIndex) {
+            fRequest = request;
+            fJoinIndex = joinIndex;
+        }
+
+        public void handleData(ITmfEvent data, long index) {
+            ITmfFilter filter = fRequest.getProviderFilter();
+            if (index >= fJoinIndex && !fRequest.isCompleted() &&
+                    fRequest.getDataType().isInstance(data) &&
+                    fRequest.getRange().contains(data.getTimestamp()) &&
+                    (filter == null || filter.matches(data))) {
+                fRequest.handleData(data);
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -0,0 +1,501 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Ericsson and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.request;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
+import org.eclipse.tracecompass.internal.tmf.core.component.TmfEventThread;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+
+/**
+ * Schedules the event requests of all the event providers on a shared pool of
+ * threads, running at most a given number of time slices at once.
+ *
+ * Each provider has its own {@link RequestQueue}. The requests of a provider
+ * are normally processed one time slice at a time, while the requests of
+ * different providers run in parallel.
+ *
+ * The requests are ordered by deadline: a foreground request is due when it
+ * is queued, a background request {@link #BACKGROUND_DELAY} later. A waiting
+ * background request thus ages until it runs before the new foreground
+ * requests, and it is never starved.
+ *
+ * If a slice does not return for {@link #BLOCKED_DELAY} and its thread is
+ * waiting, typically because a request waits for another request, it no
+ * longer counts against the number of slices running at once, and the next
+ * request of its provider is allowed to run alongside it. A slice that is
+ * merely slow keeps its place. At most {@link #MAX_RELEASED_PER_QUEUE} slices
+ * of a provider, and as many slices as the parallelism overall, are released
+ * at once, which bounds the threads. The requests of a provider may thus read
+ * it at the same time, each with its own context: every trace type must
+ * support reading several contexts concurrently.
+ */
+public class TmfRequestScheduler {
+
+    // ------------------------------------------------------------------------
+    // Constants
+    // ------------------------------------------------------------------------
+
+    /** The time a request runs before giving the hand to another, in ns */
+    private static final long SLICE_TIME = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** The head start of the foreground requests on the background ones, in ns */
+    private static final long BACKGROUND_DELAY = TimeUnit.MILLISECONDS.toNanos(400);
+
+    /** The time after which a waiting slice is considered blocked, in ms */
+    private static final long BLOCKED_DELAY = 1000;
+
+    /** The maximum number of blocked slices released per provider */
+    private static final int MAX_RELEASED_PER_QUEUE = 2;
+
+    private static final int NB_TYPES = ExecutionType.values().length;
+
+    private static @Nullable TmfRequestScheduler fInstance = null;
+
+    // ------------------------------------------------------------------------
+    // Attributes
+    // ------------------------------------------------------------------------
+
+    private final int fParallelism;
+    private final ExecutorService fPool;
+    private final ScheduledExecutorService fWatchdog;
+    private final List<ICompletionListener> fListeners = new CopyOnWriteArrayList<>();
+
+    /** The lock of the queues and the metrics counting the queued requests */
+    private final Object fLock = new Object();
+
+    /** The queues with a request ready to run, by the deadline of that request */
+    private final Queue<RequestQueue> fReadyQueues = new PriorityQueue<>();
+
+    private long fSequence = 0;
+    private int fRunningCount = 0;
+    /** The running slices that are not blocked */
+    private int fActiveCount = 0;
+    /** The running slices that are blocked */
+    private int fReleasedCount = 0;
+    private final int[] fQueueDepths = new int[NB_TYPES];
+
+    private final LongAdder[] fCompleted = newAdders();
+    private final LongAdder[] fTotalWaitTime = newAdders();
+    private final LongAdder[] fTotalLatency = newAdders();
+
+    // ------------------------------------------------------------------------
+    // Constructors
+    // ------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param parallelism
+     *            the maximum number of requests running at the same time,
+     *            not counting the blocked ones
+     */
+    public TmfRequestScheduler(int parallelism) {
+        fParallelism = parallelism;
+        /*
+         * One thread per active or released slice. A slice may be queued
+         * briefly, while the thread that dispatched it finishes its own slice.
+         */
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2 * parallelism, 2 * parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "TmfRequestScheduler worker"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        fPool = pool;
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "TmfRequestScheduler watchdog"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+        fWatchdog = watchdog;
+    }
+
+    /**
+     * Get the scheduler shared by the event providers. It runs as many
+     * requests at the same time as there are processors.
+     *
+     * @return the shared scheduler
+     */
+    public static synchronized TmfRequestScheduler getInstance() {
+        TmfRequestScheduler instance = fInstance;
+        if (instance == null) {
+            instance = new TmfRequestScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()));
+            fInstance = instance;
+        }
+        return instance;
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[NB_TYPES];
+        for (int i = 0; i < NB_TYPES; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param type
+     *            the execution type of the requests
+     * @return the number of requests of that type waiting to run
+     */
+    public int getQueueDepth(ExecutionType type) {
+        synchronized (fLock) {
+            return fQueueDepths[type.ordinal()];
+        }
+    }
+
+    /**
+     * @return the number of time slices currently running
+     */
+    public int getRunningCount() {
+        synchronized (fLock) {
+            return fRunningCount;
+        }
+    }
+
+    /**
+     * @param type
+     *            the execution type of the requests
+     * @return the number of requests of that type that were completed
+     */
+    public long getCompletedCount(ExecutionType type) {
+        return fCompleted[type.ordinal()].sum();
+    }
+
+    /**
+     * @param type
+     *            the execution type of the requests
+     * @return the mean time the completed requests of that type waited before
+     *         their first slice, in nanoseconds
+     */
+    public long getMeanWaitTime(ExecutionType type) {
+        long count = getCompletedCount(type);
+        return count == 0 ? 0 : fTotalWaitTime[type.ordinal()].sum() / count;
+    }
+
+    /**
+     * @param type
+     *            the execution type of the requests
+     * @return the mean time between the queuing and the completion of the
+     *         requests of that type, in nanoseconds
+     */
+    public long getMeanLatency(ExecutionType type) {
+        long count = getCompletedCount(type);
+        return count == 0 ? 0 : fTotalLatency[type.ordinal()].sum() / count;
+    }
+
+    /**
+     * Add a listener notified of the wait time and latency of each request
+     * when it completes
+     *
+     * @param listener
+     *            the listener
+     */
+    public void addCompletionListener(ICompletionListener listener) {
+        fListeners.add(listener);
+    }
+
+    /**
+     * Remove a completion listener
+     *
+     * @param listener
+     *            the listener
+     */
+    public void removeCompletionListener(ICompletionListener listener) {
+        fListeners.remove(listener);
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Create the queue of an event provider
+     *
+     * @return the new queue
+     */
+    public RequestQueue createQueue() {
+        return new RequestQueue();
+    }
+
+    private void schedule(RequestQueue queue, Task task, long now) {
+        task.fDeadline = now + (task.fType == ExecutionType.BACKGROUND ? BACKGROUND_DELAY : 0);
+        task.fSequence = fSequence++;
+        fQueueDepths[task.fType.ordinal()]++;
+        boolean ready = queue.fReady;
+        if (ready) {
+            /* The head of the queue may change, update its position */
+            fReadyQueues.remove(queue);
+        }
+        queue.fTasks.add(task);
+        if (ready) {
+            fReadyQueues.add(queue);
+        } else {
+            updateReady(queue);
+        }
+    }
+
+    /**
+     * Make a queue ready if it has a request to run and none running
+     */
+    private void updateReady(RequestQueue queue) {
+        if (!queue.fReady && queue.fCurrent == null && !queue.fTasks.isEmpty()) {
+            queue.fReady = true;
+            fReadyQueues.add(queue);
+        }
+    }
+
+    /**
+     * Start a slice of the most urgent requests, as long as fewer slices than
+     * the parallelism are active. DO NOT CALL FROM OUTSIDE OF THE LOCK!
+     */
+    private void dispatch() {
+        while (fActiveCount < fParallelism) {
+            RequestQueue queue = fReadyQueues.poll();
+            if (queue == null) {
+                return;
+            }
+            queue.fReady = false;
+            Task task = queue.fTasks.remove();
+            Slice slice = new Slice();
+            queue.fCurrent = slice;
+            queue.fRunning++;
+            fQueueDepths[task.fType.ordinal()]--;
+            fRunningCount++;
+            fActiveCount++;
+            fPool.execute(() -> runSlice(queue, task, slice));
+        }
+    }
+
+    /**
+     * Run one slice of a request
+     */
+    private void runSlice(RequestQueue queue, Task task, Slice slice) {
+        Thread worker = Thread.currentThread();
+        ScheduledFuture<?> watchdog = fWatchdog.scheduleWithFixedDelay(() -> release(queue, slice, worker),
+                BLOCKED_DELAY, BLOCKED_DELAY, TimeUnit.MILLISECONDS);
+
+        boolean completed = true;
+        try {
+            long start = System.nanoTime();
+            if (task.fStartTime == 0) {
+                task.fStartTime = start;
+                TmfCoreTracer.traceRequest(task.fThread.getRequest().getRequestId(), "STARTED after " + (start - task.fQueueTime) / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            try {
+                completed = task.fThread.runSlice(SLICE_TIME);
+            } catch (Throwable e) {
+                /* Fail the request on any error, so that no one waits for it */
+                completed = true;
+                task.fThread.fail(e instanceof Exception ? (Exception) e : new ExecutionException(e));
+                Activator.logError("Error in " + task.fThread.getProvider().getName() + " handling " + task.fThread.getRequest(), e); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            long end = System.nanoTime();
+
+            if (completed) {
+                int type = task.fType.ordinal();
+                long waitTime = task.fStartTime - task.fQueueTime;
+                long latency = end - task.fQueueTime;
+                fCompleted[type].increment();
+                fTotalWaitTime[type].add(waitTime);
+                fTotalLatency[type].add(latency);
+                TmfCoreTracer.traceRequest(task.fThread.getRequest().getRequestId(), "COMPLETED in " + latency / 1000000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+                for (ICompletionListener listener : fListeners) {
+                    listener.requestCompleted(task.fThread.getRequest(), waitTime, latency);
+                }
+            }
+        } finally {
+            watchdog.cancel(false);
+            synchronized (fLock) {
+                fRunningCount--;
+                queue.fRunning--;
+                if (slice.fBlocked) {
+                    queue.fReleased--;
+                    fReleasedCount--;
+                } else {
+                    fActiveCount--;
+                }
+                if (queue.fCurrent == slice) {
+                    queue.fCurrent = null;
+                }
+                if (!completed) {
+                    schedule(queue, task, System.nanoTime());
+                }
+                updateReady(queue);
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * Let the other requests run while a slice is blocked, that is while its
+     * thread waits. A slice that is busy keeps its place, and the number of
+     * released slices is bounded.
+     */
+    private void release(RequestQueue queue, Slice slice, Thread worker) {
+        Thread.State state = worker.getState();
+        if (state != Thread.State.WAITING && state != Thread.State.TIMED_WAITING && state != Thread.State.BLOCKED) {
+            return;
+        }
+        synchronized (fLock) {
+            if (queue.fCurrent == slice && queue.fReleased < MAX_RELEASED_PER_QUEUE && fReleasedCount < fParallelism) {
+                queue.fCurrent = null;
+                queue.fReleased++;
+                fReleasedCount++;
+                slice.fBlocked = true;
+                fActiveCount--;
+                updateReady(queue);
+                dispatch();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper classes
+    // ------------------------------------------------------------------------
+
+    /**
+     * Listener of the completion of the requests
+     */
+    @FunctionalInterface
+    public interface ICompletionListener {
+
+        /**
+         * A request was completed. This is called from the thread that ran
+         * the request.
+         *
+         * @param request
+         *            the completed request
+         * @param waitTime
+         *            the time the request waited before its first slice, in
+         *            nanoseconds
+         * @param latency
+         *            the time between the queuing and the completion of the
+         *            request, in nanoseconds
+         */
+        void requestCompleted(ITmfEventRequest request, long waitTime, long latency);
+    }
+
+    /**
+     * A slice of a request that is running
+     */
+    private static class Slice {
+        /** Whether the slice was released by the watchdog, guarded by fLock */
+        private boolean fBlocked = false;
+    }
+
+    /**
+     * A request in a queue
+     */
+    private static class Task implements Comparable<Task> {
+        private final TmfEventThread fThread;
+        private final ExecutionType fType;
+        private final long fQueueTime = System.nanoTime();
+        private long fStartTime = 0;
+        private long fDeadline;
+        private long fSequence;
+
+        public Task(TmfEventThread thread) {
+            fThread = thread;
+            fType = thread.getExecType();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            /* Compare the difference, the nano times may overflow */
+            int cmp = Long.signum(fDeadline - other.fDeadline);
+            return (cmp != 0) ? cmp : Long.signum(fSequence - other.fSequence);
+        }
+    }
+
+    /**
+     * The requests of an event provider. They run one at a time, in order of
+     * deadline.
+     */
+    public class RequestQueue implements Comparable<RequestQueue> {
+
+        private final Queue<Task> fTasks = new PriorityQueue<>();
+        private @Nullable Slice fCurrent = null;
+        private int fRunning = 0;
+        /** The running slices released while they were blocked */
+        private int fReleased = 0;
+        private boolean fReady = false;
+
+        private RequestQueue() {
+        }
+
+        /**
+         * Queue a request to run
+         *
+         * @param thread
+         *            the thread of the request
+         */
+        public void add(TmfEventThread thread) {
+            Task task = new Task(thread);
+            synchronized (fLock) {
+                schedule(this, task, task.fQueueTime);
+                dispatch();
+            }
+        }
+
+        /**
+         * Cancel the requests of the queue. They still run to release their
+         * resources, but stop at their first event.
+         */
+        public void cancelAll() {
+            synchronized (fLock) {
+                for (Task task : fTasks) {
+                    task.fThread.cancel();
+                }
+            }
+        }
+
+        /**
+         * @return true if no request of the queue is waiting or running
+         */
+        public boolean isIdle() {
+            synchronized (fLock) {
+                return fTasks.isEmpty() && fRunning == 0;
+            }
+        }
+
+        @Override
+        public int compareTo(RequestQueue other) {
+            Task task = fTasks.peek();
+            Task otherTask = other.fTasks.peek();
+            if (task == null || otherTask == null) {
+                return (task == null ? 1 : 0) - (otherTask == null ? 1 : 0);
+            }
+            return task.compareTo(otherTask);
+        }
+    }
+}
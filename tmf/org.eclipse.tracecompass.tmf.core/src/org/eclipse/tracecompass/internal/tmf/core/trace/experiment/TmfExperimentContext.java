@@ -15,12 +15,14 @@
 package org.eclipse.tracecompass.internal.tmf.core.trace.experiment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
  * The experiment context in TMF.
@@ -33,6 +35,12 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
  * <p>
  * The last trace refers to the trace from which the last event was "consumed"
  * at the experiment level.
+ * <p>
+ * The traces with a pending event are kept in a heap ordered by the timestamps
+ * of their events, so finding the next trace to read from does not depend on
+ * the number of traces. The experiment location is only created when it is
+ * queried, the locations of the traces are updated in place as events are
+ * read.
  */
 public final class TmfExperimentContext extends TmfContext {
 
@@ -53,6 +61,27 @@ public final class TmfExperimentContext extends TmfContext {
     private final List<ITmfEvent> fEvents;
     private int fLastTraceRead;
 
+    /*
+     * Binary min-heap of the indexes of the traces with a pending event,
+     * ordered by the timestamp of the event then by trace index. The keys are
+     * the timestamps in nanoseconds, the full timestamps are only compared
+     * when the keys are equal.
+     */
+    private final int[] fHeap;
+    private final int[] fHeapPositions;
+    private final long[] fKeys;
+    private int fHeapSize;
+
+    /*
+     * The locations and ranks of the traces, when the location of this
+     * context is an experiment location. The location is outdated when they
+     * changed since it was last created.
+     */
+    private final ITmfLocation[] fTraceLocations;
+    private final long[] fTraceRanks;
+    private boolean fTracksLocations;
+    private boolean fLocationOutdated;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -68,6 +97,12 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = NO_TRACE;
         fContexts = new ArrayList<>(nbTraces);
         fEvents = new ArrayList<>(nbTraces);
+        fHeap = new int[nbTraces];
+        fHeapPositions = new int[nbTraces];
+        Arrays.fill(fHeapPositions, NO_TRACE);
+        fKeys = new long[nbTraces];
+        fTraceLocations = new ITmfLocation[nbTraces];
+        fTraceRanks = new long[nbTraces];
 
 
         /* Initialize the arrays to the requested size */
@@ -146,6 +181,35 @@ public final class TmfExperimentContext extends TmfContext {
      */
     public void setEvent(int traceIndex, ITmfEvent event) {
         fEvents.set(traceIndex, event);
+        int position = fHeapPositions[traceIndex];
+        if (event == null) {
+            if (position != NO_TRACE) {
+                removeFromHeap(position);
+            }
+            return;
+        }
+        fKeys[traceIndex] = event.getTimestamp().toNanos();
+        if (position == NO_TRACE) {
+            position = fHeapSize++;
+            fHeap[position] = traceIndex;
+            fHeapPositions[traceIndex] = position;
+            siftUp(position);
+        } else {
+            siftUp(position);
+            siftDown(fHeapPositions[traceIndex]);
+        }
+    }
+
+    /**
+     * Get the index of the trace whose current event is the first in
+     * chronological order. When several events have the same timestamp, the
+     * trace with the lowest index is returned.
+     *
+     * @return The index of the trace, or {@link #NO_TRACE} if no trace has a
+     *         current event
+     */
+    public int getNextTrace() {
+        return (fHeapSize == 0) ? NO_TRACE : fHeap[0];
     }
 
     /**
@@ -168,6 +232,132 @@ public final class TmfExperimentContext extends TmfContext {
         fLastTraceRead = newIndex;
     }
 
+    /**
+     * Update the location and rank of a trace in the experiment location, if
+     * the location of this context is an experiment location. The experiment
+     * location is created again only when it is queried.
+     *
+     * @param traceIndex
+     *            The index of the trace in the experiment
+     * @param location
+     *            The new location of the trace
+     * @param rank
+     *            The new rank of the trace
+     */
+    public void setTraceLocation(int traceIndex, ITmfLocation location, long rank) {
+        if (fTracksLocations) {
+            fTraceLocations[traceIndex] = location;
+            fTraceRanks[traceIndex] = rank;
+            fLocationOutdated = true;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // TmfContext
+    // ------------------------------------------------------------------------
+
+    @Override
+    public @Nullable ITmfLocation getLocation() {
+        if (fLocationOutdated) {
+            super.setLocation(new TmfExperimentLocation(new TmfLocationArray(fTraceLocations, fTraceRanks)));
+            fLocationOutdated = false;
+        }
+        return super.getLocation();
+    }
+
+    @Override
+    public void setLocation(final ITmfLocation location) {
+        super.setLocation(location);
+        fLocationOutdated = false;
+        fTracksLocations = false;
+        if (location instanceof TmfExperimentLocation) {
+            TmfLocationArray locationArray = ((TmfExperimentLocation) location).getLocationInfo();
+            if (locationArray.size() == fTraceLocations.length) {
+                for (int i = 0; i < fTraceLocations.length; i++) {
+                    fTraceLocations[i] = locationArray.getLocation(i);
+                    fTraceRanks[i] = locationArray.getRank(i);
+                }
+                fTracksLocations = true;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Heap operations
+    // ------------------------------------------------------------------------
+
+    private boolean isBefore(int trace1, int trace2) {
+        long key1 = fKeys[trace1];
+        long key2 = fKeys[trace2];
+        if (key1 != key2) {
+            return key1 < key2;
+        }
+        ITmfEvent event1 = fEvents.get(trace1);
+        ITmfEvent event2 = fEvents.get(trace2);
+        if (event1 != null && event2 != null) {
+            int comparison = event1.getTimestamp().compareTo(event2.getTimestamp());
+            if (comparison != 0) {
+                return comparison < 0;
+            }
+        }
+        return trace1 < trace2;
+    }
+
+    private void siftUp(int position) {
+        int pos = position;
+        int trace = fHeap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) / 2;
+            int parent = fHeap[parentPos];
+            if (!isBefore(trace, parent)) {
+                break;
+            }
+            fHeap[pos] = parent;
+            fHeapPositions[parent] = pos;
+            pos = parentPos;
+        }
+        fHeap[pos] = trace;
+        fHeapPositions[trace] = pos;
+    }
+
+    private void siftDown(int position) {
+        int pos = position;
+        int trace = fHeap[pos];
+        while (true) {
+            int childPos = 2 * pos + 1;
+            if (childPos >= fHeapSize) {
+                break;
+            }
+            if (childPos + 1 < fHeapSize && isBefore(fHeap[childPos + 1], fHeap[childPos])) {
+                childPos++;
+            }
+            int child = fHeap[childPos];
+            if (!isBefore(child, trace)) {
+                break;
+            }
+            fHeap[pos] = child;
+            fHeapPositions[child] = pos;
+            pos = childPos;
+        }
+        fHeap[pos] = trace;
+        fHeapPositions[trace] = pos;
+    }
+
+    private void removeFromHeap(int position) {
+        int removed = fHeap[position];
+        fHeapPositions[removed] = NO_TRACE;
+        fHeapSize--;
+        if (position == fHeapSize) {
+            return;
+        }
+        /* Move the last trace of the heap to the free position */
+        int last = fHeap[fHeapSize];
+        fHeap[position] = last;
+        fHeapPositions[last] = position;
+        siftUp(position);
+        siftDown(fHeapPositions[last]);
+    }
+
     // ------------------------------------------------------------------------
     // Object
     // ------------------------------------------------------------------------
@@ -186,6 +376,11 @@ public final class TmfExperimentContext extends TmfContext {
         if (this == other) {
             return true;
         }
+        if (other instanceof TmfExperimentContext) {
+            /* Create the outdated locations before comparing them */
+            getLocation();
+            ((TmfExperimentContext) other).getLocation();
+        }
         if (!super.equals(other)) {
             return false;
         }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2017 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -22,8 +22,10 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
@@ -70,6 +72,13 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     /** List of coalesced requests */
     private final List<TmfCoalescedEventRequest> fPendingCoalescedRequests = new LinkedList<>();
 
+    /**
+     * The threads of the coalesced requests that were queued, which requests
+     * can join. It is not guarded by fLock, the coalesced requests must not be
+     * called while holding fLock.
+     */
+    private final Queue<TmfEventThread> fQueuedCoalescedThreads = new ConcurrentLinkedQueue<>();
+
     /** The type of event handled by this provider */
     private Class<? extends ITmfEvent> fType;
 
@@ -134,7 +143,6 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
     public void init(String name, Class<? extends ITmfEvent> type) {
         super.init(name);
         fType = type;
-        fExecutor.init();
 
         fSignalDepth = 0;
 
@@ -197,7 +205,13 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
             if (sendWithParent(request)) {
                 return;
             }
+        }
+
+        if (joinRunningRequest(request)) {
+            return;
+        }
 
+        synchronized (fLock) {
             if (request.getExecType() == ExecutionType.FOREGROUND) {
                 if ((fSignalDepth > 0) || (fRequestPendingCounter > 0)) {
                     coalesceEventRequest(request);
@@ -334,6 +348,33 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         }
     }
 
+    /*
+     * Lets a request that handles its events in any order join a running
+     * coalesced request instead of reading the trace again. It is only done
+     * when no pending coalesced request could take it. The running requests
+     * lock themselves and may send requests to this provider while they do,
+     * so they are joined without holding fLock.
+     */
+    private boolean joinRunningRequest(final ITmfEventRequest request) {
+        if (!request.isOrderIndependent() || Thread.holdsLock(fLock)) {
+            return false;
+        }
+        synchronized (fLock) {
+            for (TmfCoalescedEventRequest coalescedRequest : getPendingRequests()) {
+                if (coalescedRequest.isCompatible(request)) {
+                    return false;
+                }
+            }
+        }
+        for (TmfEventThread thread : fQueuedCoalescedThreads) {
+            if (!thread.isCompleted() &&
+                    ((TmfCoalescedEventRequest) thread.getRequest()).join(request)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*
      * Sends a request with the parent if compatible.
      */
@@ -410,6 +451,11 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
 
         TmfEventThread thread = new TmfEventThread(this, request);
 
+        if (request instanceof TmfCoalescedEventRequest) {
+            fQueuedCoalescedThreads.removeIf(TmfEventThread::isCompleted);
+            fQueuedCoalescedThreads.add(thread);
+        }
+
         if (TmfCoreTracer.isRequestTraced()) {
             TmfCoreTracer.traceRequest(request.getRequestId(), "QUEUED"); //$NON-NLS-1$
         }
@@ -619,6 +665,7 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
      */
     private void  clearPendingRequests() {
         fPendingCoalescedRequests.clear();
+        fQueuedCoalescedThreads.clear();
     }
 
     /**
@@ -79,6 +79,18 @@ public interface ITmfEventRequest {
         return 0;
     }
 
+    /**
+     * Gets whether the request can handle its events in any order. Such a
+     * request can join a request that is already reading the trace: it gets
+     * the rest of that read first, then the events it missed.
+     *
+     * @return true if the events can be handled in any order
+     * @since 2.3
+     */
+    default boolean isOrderIndependent() {
+        return false;
+    }
+
     /**
      * @return the index of the first event requested
      */
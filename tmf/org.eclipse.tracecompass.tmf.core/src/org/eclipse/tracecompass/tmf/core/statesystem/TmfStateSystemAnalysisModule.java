@@ -90,7 +90,13 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         /** Null history */
         NULL,
         /** State system backed with partial history */
-        PARTIAL
+        PARTIAL,
+        /**
+         * Full history in several files, built in parallel by several threads
+         *
+         * @since 2.3
+         */
+        SHARDED
     }
 
     /**
@@ -140,6 +146,18 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         return StateSystemBackendType.FULL;
     }
 
+    /**
+     * Get the number of history trees to build in parallel when the backend
+     * type is {@link StateSystemBackendType#SHARDED}. By default, one per
+     * available processor, keeping one for the state provider, up to 8.
+     *
+     * @return The number of history trees
+     * @since 2.3
+     */
+    protected int getNbHistoryShards() {
+        return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
     /**
      * Get the supplementary file name where to save this state system. The
      * default is the ID of the analysis followed by the extension.
@@ -232,7 +250,15 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                 if (htFile == null) {
                     return false;
                 }
-                createFullHistory(id, provider, htFile);
+                createFullHistory(id, provider, htFile, false);
+            }
+                break;
+            case SHARDED: {
+                File htFile = getSsFile();
+                if (htFile == null) {
+                    return false;
+                }
+                createFullHistory(id, provider, htFile, true);
             }
                 break;
             case PARTIAL: {
@@ -295,9 +321,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     /*
      * Load the history file matching the target trace. If the file already
      * exists, it will be opened directly. If not, it will be created from
-     * scratch.
+     * scratch. A sharded history is split in several history trees built in
+     * parallel.
      */
-    private void createFullHistory(String id, ITmfStateProvider provider, File htFile) throws TmfTraceException {
+    private void createFullHistory(String id, ITmfStateProvider provider, File htFile, boolean sharded) throws TmfTraceException {
 
         /* If the target file already exists, do not rebuild it uselessly */
         // TODO for now we assume it's complete. Might be a good idea to check
@@ -307,8 +334,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
            /* Load an existing history */
             final int version = provider.getVersion();
             try {
-                IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(
-                        id, htFile, version);
+                IStateHistoryBackend backend = sharded ?
+                        StateHistoryBackendFactory.createShardedHistoryTreeBackendExistingFile(id, htFile, version) :
+                        StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(id, htFile, version);
                 fStateSystem = StateSystemFactory.newStateSystem(backend, false);
                 analysisReady(true);
                 return;
@@ -325,8 +353,11 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         final int QUEUE_SIZE = 10000;
 
         try {
-            IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
-                    id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
+            IStateHistoryBackend backend = sharded ?
+                    StateHistoryBackendFactory.createShardedHistoryTreeBackendNewFile(
+                            id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE, getNbHistoryShards()) :
+                    StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
+                            id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
             fStateSystem = StateSystemFactory.newStateSystem(backend);
             provider.assignTargetStateSystem(fStateSystem);
             build(provider);
@@ -624,6 +655,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         switch (backend) {
         case FULL:
         case PARTIAL:
+        case SHARDED:
             File htFile = getSsFile();
             if (htFile != null) {
                 if (htFile.exists()) {
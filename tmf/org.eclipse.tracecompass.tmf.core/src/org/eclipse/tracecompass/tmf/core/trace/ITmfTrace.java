@@ -51,6 +51,8 @@ import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
  * A trace can be accessed simultaneously from multiple threads by various
  * application components. To avoid obvious multi-threading issues, the trace
  * uses an ITmfContext as a synchronization aid for its read operations.
+ * Several contexts of a trace may be read at the same time from different
+ * threads, for example by event requests running concurrently.
  * <p>
  * A proper ITmfContext can be obtained by performing a seek operation on the
  * trace. Seek operations can be performed for a particular event (by rank or
@@ -124,8 +124,8 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
     private volatile long fNbEvents = 0;
 
     // The time span of the event stream
-    private @NonNull ITmfTimestamp fStartTime = TmfTimestamp.BIG_BANG;
-    private @NonNull ITmfTimestamp fEndTime = TmfTimestamp.BIG_BANG;
+    private volatile @NonNull ITmfTimestamp fStartTime = TmfTimestamp.BIG_BANG;
+    private volatile @NonNull ITmfTimestamp fEndTime = TmfTimestamp.BIG_BANG;
 
     // The trace streaming interval (0 = no streaming)
     private long fStreamingInterval = 0;
@@ -576,31 +576,48 @@ public abstract class TmfTrace extends TmfEventProvider implements ITmfTrace, IT
     /**
      * Update the trace attributes
      *
+     * The trace is only locked when the event extends the time range or the
+     * number of events of the trace, so that readers of events already seen
+     * do not wait on each other.
+     *
      * @param context the current trace context
      * @param event the corresponding event
      * @since 1.1
      */
-    protected synchronized void updateAttributes(final ITmfContext context, final @NonNull ITmfEvent event) {
+    protected void updateAttributes(final ITmfContext context, final @NonNull ITmfEvent event) {
         ITmfTimestamp timestamp = event.getTimestamp();
         ITmfTimestamp endTime = timestamp;
         if (event instanceof ITmfLostEvent) {
             endTime = ((ITmfLostEvent) event).getTimeRange().getEndTime();
         }
-        if (fStartTime.equals(TmfTimestamp.BIG_BANG) || (fStartTime.compareTo(timestamp) > 0)) {
-            fStartTime = timestamp;
-        }
-        if (fEndTime.equals(TmfTimestamp.BIG_CRUNCH) || (fEndTime.compareTo(endTime) < 0)) {
-            fEndTime = endTime;
-        }
-        if (context.hasValidRank()) {
-            long rank = context.getRank();
-            if (fNbEvents <= rank) {
-                fNbEvents = rank + 1;
-            }
-            if (fIndexer != null) {
-                fIndexer.updateIndex(context, timestamp);
+        boolean validRank = context.hasValidRank();
+        if (extendsTrace(timestamp, endTime) || (validRank && fNbEvents <= context.getRank())) {
+            synchronized (this) {
+                if (fStartTime.equals(TmfTimestamp.BIG_BANG) || (fStartTime.compareTo(timestamp) > 0)) {
+                    fStartTime = timestamp;
+                }
+                if (fEndTime.equals(TmfTimestamp.BIG_CRUNCH) || (fEndTime.compareTo(endTime) < 0)) {
+                    fEndTime = endTime;
+                }
+                if (validRank) {
+                    long rank = context.getRank();
+                    if (fNbEvents <= rank) {
+                        fNbEvents = rank + 1;
+                    }
+                }
             }
         }
+        ITmfTraceIndexer indexer = fIndexer;
+        if (validRank && indexer != null) {
+            indexer.updateIndex(context, timestamp);
+        }
+    }
+
+    private boolean extendsTrace(ITmfTimestamp startTime, ITmfTimestamp endTime) {
+        ITmfTimestamp traceStart = fStartTime;
+        ITmfTimestamp traceEnd = fEndTime;
+        return traceStart.equals(TmfTimestamp.BIG_BANG) || (traceStart.compareTo(startTime) > 0) ||
+                traceEnd.equals(TmfTimestamp.BIG_CRUNCH) || (traceEnd.compareTo(endTime) < 0);
     }
 
     // ------------------------------------------------------------------------
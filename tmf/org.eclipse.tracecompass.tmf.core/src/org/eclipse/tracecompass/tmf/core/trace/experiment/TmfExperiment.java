@@ -462,14 +462,14 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
     // ------------------------------------------------------------------------
 
     @Override
-    public synchronized ITmfEvent parseEvent(final ITmfContext context) {
+    public ITmfEvent parseEvent(final ITmfContext context) {
         final ITmfContext tmpContext = seekEvent(context.getLocation());
         final ITmfEvent event = getNext(tmpContext);
         return event;
     }
 
     @Override
-    public synchronized ITmfEvent getNext(ITmfContext context) {
+    public ITmfEvent getNext(ITmfContext context) {
 
         // Validate the context
         if (!(context instanceof TmfExperimentContext)) {
@@ -494,20 +494,8 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
             expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
         }
 
-        // Scan the candidate events and identify the "next" trace to read from
-        int trace = TmfExperimentContext.NO_TRACE;
-        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
-        for (int i = 0; i < length; i++) {
-            final ITmfEvent event = expContext.getEvent(i);
-
-            if (event != null) {
-                final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
-                    trace = i;
-                    timestamp = otherTS;
-                }
-            }
-        }
+        // Identify the "next" trace to read from
+        int trace = expContext.getNextTrace();
 
         ITmfEvent event = null;
         if (trace != TmfExperimentContext.NO_TRACE) {
@@ -522,13 +510,7 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
                 }
 
                 // Update the experiment location
-                ITmfLocation location = expContext.getLocation();
-                if (location instanceof TmfExperimentLocation) {
-                    TmfLocationArray locationArray = new TmfLocationArray(
-                            ((TmfExperimentLocation) location).getLocationInfo(),
-                            trace, traceContext.getLocation(), traceContext.getRank());
-                    expContext.setLocation(new TmfExperimentLocation(locationArray));
-                }
+                expContext.setTraceLocation(trace, traceContext.getLocation(), traceContext.getRank());
             }
         }
 
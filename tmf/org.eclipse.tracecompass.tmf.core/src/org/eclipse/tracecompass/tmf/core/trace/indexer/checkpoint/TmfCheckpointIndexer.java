@@ -249,15 +249,18 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
     // ------------------------------------------------------------------------
 
     @Override
-    public synchronized void updateIndex(final ITmfContext context, final ITmfTimestamp timestamp) {
+    public void updateIndex(final ITmfContext context, final ITmfTimestamp timestamp) {
+        /* Only lock the indexer for the events that can be checkpoints */
         if ((context.getRank() % fCheckpointInterval) == 0) {
-            // Determine the table position
-            final long position = context.getRank() / fCheckpointInterval;
-            // Add new entry at proper location (if empty)
-            if (fTraceIndex.size() == position) {
-                TmfCheckpoint checkpoint = new TmfCheckpoint(timestamp, context.getLocation(), position);
-                TmfCoreTracer.traceIndexer("Inserting checkpoint: " + checkpoint); //$NON-NLS-1$
-                fTraceIndex.insert(checkpoint);
+            synchronized (this) {
+                // Determine the table position
+                final long position = context.getRank() / fCheckpointInterval;
+                // Add new entry at proper location (if empty)
+                if (fTraceIndex.size() == position) {
+                    TmfCheckpoint checkpoint = new TmfCheckpoint(timestamp, context.getLocation(), position);
+                    TmfCoreTracer.traceIndexer("Inserting checkpoint: " + checkpoint); //$NON-NLS-1$
+                    fTraceIndex.insert(checkpoint);
+                }
             }
         }
     }
@@ -103,6 +103,15 @@ public class HistogramRequest extends TmfEventRequest {
         }
     }
 
+    /**
+     * The histogram model counts the events in any order, so the request can
+     * join a request already reading the trace.
+     */
+    @Override
+    public boolean isOrderIndependent() {
+        return true;
+    }
+
     /**
      * Complete the request. It also notifies the histogram model about the
      * completion.